@@ -1,2 +1,27 @@
 CREATE EXTENSION IF NOT EXISTS vector;
 
+
+-- Target of the crawler's pgcopy-text / pgcopy-binary output; column order matches PgCopyChunkWriter.COLUMNS.
+CREATE TABLE IF NOT EXISTS doc_chunks (
+    id            TEXT PRIMARY KEY,
+    url           TEXT NOT NULL,
+    canonical_url TEXT,
+    root_url      TEXT,
+    title         TEXT,
+    headings      TEXT[],
+    chunk_index   INTEGER NOT NULL,
+    chunk_count   INTEGER NOT NULL,
+    content       TEXT NOT NULL,
+    content_type  TEXT,
+    block_types   TEXT[],
+    code_language TEXT,
+    page_hash     TEXT,
+    chunk_hash    TEXT,
+    depth         INTEGER,
+    h_path        TEXT[],
+    lang          TEXT,
+    crawled_at    TIMESTAMPTZ,
+    source        TEXT,
+    metadata      JSONB,
+    embedding     VECTOR
+);
@@ -0,0 +1,192 @@
+package dev.ragcrawler.crawler.bench;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Fixed, deterministic corpus of documentation pages for the benchmarks and tests.
+ * <p>
+ * Pages are generated from a seeded RNG rather than checked in, so every run (and every machine)
+ * measures byte-identical input. Each page mimics a typical docs site: header nav, a large sidebar,
+ * prose sections with inline code and links, lists, code blocks, and (for the large page) an
+ * API-reference style member listing.
+ */
+public final class DocCorpus {
+
+    public static final String BASE_URL = "https://docs.example.com/reference/guide/page.html";
+
+    public enum PageSize {
+        SMALL(8 * 1024),
+        MEDIUM(128 * 1024),
+        LARGE(2 * 1024 * 1024);
+
+        private final int targetChars;
+
+        PageSize(int targetChars) {
+            this.targetChars = targetChars;
+        }
+
+        public int targetChars() {
+            return targetChars;
+        }
+    }
+
+    private static final String[] WORDS = {
+            "the", "crawler", "request", "response", "configuration", "property", "value", "default",
+            "application", "context", "bean", "method", "returns", "instance", "thread", "virtual",
+            "executor", "timeout", "connection", "handler", "client", "server", "document", "element",
+            "stream", "buffer", "index", "chunk", "embedding", "vector", "query", "table", "schema",
+            "when", "if", "is", "a", "an", "of", "to", "and", "or", "with", "for", "in", "on", "by",
+            "this", "that", "can", "must", "should", "may", "be", "not", "set", "used", "using",
+            "override", "custom", "support", "enable", "disable", "example", "following", "section"
+    };
+
+    private static final String[] LANGS = {"language-java", "language-yaml", "language-bash", "language-xml"};
+
+    private static final Map<PageSize, String> CACHE = new EnumMap<>(PageSize.class);
+
+    private DocCorpus() {}
+
+    public static synchronized String page(PageSize size) {
+        return CACHE.computeIfAbsent(size, DocCorpus::generate);
+    }
+
+    private static String generate(PageSize size) {
+        Random rnd = new Random(0x5EEDL + size.ordinal());
+        StringBuilder sb = new StringBuilder(size.targetChars() + 16 * 1024);
+        boolean apiReference = size == PageSize.LARGE;
+
+        sb.append("<!DOCTYPE html>\n<html lang=\"en\">\n<head>\n<meta charset=\"utf-8\">\n")
+                .append("<title>").append(sentence(rnd, 5)).append("</title>\n")
+                .append("<link rel=\"canonical\" href=\"").append(BASE_URL).append("\">\n")
+                .append("<link rel=\"stylesheet\" href=\"/css/site.css\">\n")
+                .append("<script src=\"/js/site.js\"></script>\n")
+                .append("</head>\n<body>\n");
+
+        sb.append("<header><nav class=\"top\"><ul>\n");
+        for (int i = 0; i < 12; i++) {
+            sb.append("<li><a href=\"/").append(word(rnd)).append('/').append(word(rnd))
+                    .append(".html\">").append(sentence(rnd, 2)).append("</a></li>\n");
+        }
+        sb.append("</ul></nav></header>\n");
+
+        sb.append("<aside class=\"sidebar\"><nav><ul>\n");
+        int sidebarLinks = apiReference ? 400 : 80;
+        for (int i = 0; i < sidebarLinks; i++) {
+            sb.append("<li><a href=\"../").append(word(rnd)).append("/").append(word(rnd)).append('-').append(i)
+                    .append(".html\">").append(sentence(rnd, 3)).append("</a></li>\n");
+        }
+        sb.append("</ul></nav></aside>\n");
+
+        sb.append("<main><article>\n<h1>").append(sentence(rnd, 4)).append("</h1>\n");
+        int section = 0;
+        while (sb.length() < size.targetChars()) {
+            section++;
+            if (apiReference) {
+                appendApiMember(sb, rnd, section);
+            } else {
+                appendGuideSection(sb, rnd, section);
+            }
+        }
+        sb.append("</article></main>\n");
+
+        sb.append("<footer><p>Copyright example.com. <a href=\"/privacy.html\">Privacy</a> ")
+                .append("<a href=\"https://github.com/example/docs\">Edit on GitHub</a></p></footer>\n")
+                .append("</body>\n</html>\n");
+        return sb.toString();
+    }
+
+    private static void appendGuideSection(StringBuilder sb, Random rnd, int section) {
+        sb.append("<section id=\"s").append(section).append("\">\n<h2>").append(sentence(rnd, 4)).append("</h2>\n");
+        int paragraphs = 2 + rnd.nextInt(4);
+        for (int i = 0; i < paragraphs; i++) {
+            appendParagraph(sb, rnd);
+        }
+        if (rnd.nextInt(3) == 0) {
+            sb.append("<h3>").append(sentence(rnd, 3)).append("</h3>\n");
+            appendList(sb, rnd);
+        }
+        if (rnd.nextInt(2) == 0) {
+            appendCode(sb, rnd, 6 + rnd.nextInt(20));
+        }
+        sb.append("</section>\n");
+    }
+
+    private static void appendApiMember(StringBuilder sb, Random rnd, int section) {
+        String name = word(rnd) + capitalize(word(rnd)) + section;
+        sb.append("<section class=\"member\" id=\"").append(name).append("\">\n")
+                .append("<h3>").append(name).append("</h3>\n")
+                .append("<div class=\"signature\"><code>public ").append(capitalize(word(rnd))).append(' ')
+                .append(name).append('(').append(capitalize(word(rnd))).append(' ').append(word(rnd))
+                .append(")</code></div>\n");
+        appendParagraph(sb, rnd);
+        sb.append("<dl><dt>Parameters:</dt><dd><code>").append(word(rnd)).append("</code> - ")
+                .append(sentence(rnd, 8)).append("</dd><dt>Returns:</dt><dd>").append(sentence(rnd, 6))
+                .append("</dd></dl>\n");
+        sb.append("<table class=\"summary\"><tr><th>Modifier</th><th>Type</th><th>Description</th></tr>\n");
+        for (int i = 0; i < 3; i++) {
+            sb.append("<tr><td>static</td><td><a href=\"../api/").append(capitalize(word(rnd)))
+                    .append(".html\">").append(capitalize(word(rnd))).append("</a></td><td>")
+                    .append(sentence(rnd, 10)).append("</td></tr>\n");
+        }
+        sb.append("</table>\n");
+        if (rnd.nextInt(3) == 0) {
+            appendCode(sb, rnd, 4 + rnd.nextInt(8));
+        }
+        sb.append("</section>\n");
+    }
+
+    private static void appendParagraph(StringBuilder sb, Random rnd) {
+        sb.append("<p>");
+        int sentences = 2 + rnd.nextInt(5);
+        for (int s = 0; s < sentences; s++) {
+            sb.append(capitalize(sentence(rnd, 8 + rnd.nextInt(14))));
+            if (rnd.nextInt(4) == 0) {
+                sb.append(" See <code>").append(word(rnd)).append('.').append(word(rnd)).append("</code>");
+            }
+            if (rnd.nextInt(5) == 0) {
+                sb.append(" and <a href=\"").append(rnd.nextBoolean() ? "#s" : "../other/page-")
+                        .append(rnd.nextInt(200)).append("\">").append(sentence(rnd, 3)).append("</a>");
+            }
+            sb.append(". ");
+        }
+        sb.append("</p>\n");
+    }
+
+    private static void appendList(StringBuilder sb, Random rnd) {
+        String tag = rnd.nextBoolean() ? "ul" : "ol";
+        sb.append('<').append(tag).append(">\n");
+        int items = 3 + rnd.nextInt(6);
+        for (int i = 0; i < items; i++) {
+            sb.append("<li><p>").append(capitalize(sentence(rnd, 6 + rnd.nextInt(10)))).append(".</p></li>\n");
+        }
+        sb.append("</").append(tag).append(">\n");
+    }
+
+    private static void appendCode(StringBuilder sb, Random rnd, int lines) {
+        sb.append("<pre><code class=\"").append(LANGS[rnd.nextInt(LANGS.length)]).append("\">");
+        for (int i = 0; i < lines; i++) {
+            sb.append("    ").append(word(rnd)).append('.').append(word(rnd)).append("(\"")
+                    .append(word(rnd)).append("\", ").append(rnd.nextInt(1000)).append(");\n");
+        }
+        sb.append("</code></pre>\n");
+    }
+
+    private static String sentence(Random rnd, int words) {
+        StringBuilder sb = new StringBuilder(words * 8);
+        for (int i = 0; i < words; i++) {
+            if (i > 0) sb.append(' ');
+            sb.append(word(rnd));
+        }
+        return sb.toString();
+    }
+
+    private static String word(Random rnd) {
+        return WORDS[rnd.nextInt(WORDS.length)];
+    }
+
+    private static String capitalize(String s) {
+        return s.isEmpty() ? s : Character.toUpperCase(s.charAt(0)) + s.substring(1);
+    }
+}
@@ -0,0 +1,79 @@
+package dev.ragcrawler.crawler.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Small, deterministic vocabulary files for the tokenizer benchmarks and tests, since real model
+ * vocabularies are not checked in. Every second word of the corpus is a whole token; the others
+ * have to be assembled from shorter pieces, so both tokenizers exercise their slow paths too.
+ */
+public final class TokenizerVocab {
+
+    private static final String[] WORDS = {
+            "the", "crawler", "request", "response", "configuration", "property", "value", "default",
+            "application", "context", "bean", "method", "returns", "instance", "thread", "virtual",
+            "executor", "timeout", "connection", "handler", "client", "server", "document", "element",
+            "stream", "buffer", "index", "chunk", "embedding", "vector", "query", "table", "schema",
+            "public", "class", "return", "new", "string", "void", "static", "final", "private", "import"
+    };
+
+    private TokenizerVocab() {}
+
+    /**
+     * BERT-style {@code vocab.txt}: special tokens, printable ASCII as word starts and as
+     * {@code ##} continuations, common suffixes and half of {@link #WORDS}.
+     */
+    public static Path wordPiece() throws IOException {
+        Set<String> tokens = new LinkedHashSet<>(List.of("[PAD]", "[UNK]", "[CLS]", "[SEP]", "[MASK]"));
+        for (char ch = '!'; ch <= '~'; ch++) {
+            if (Character.isUpperCase(ch)) continue;
+            tokens.add(String.valueOf(ch));
+            tokens.add("##" + ch);
+        }
+        for (String suffix : List.of("s", "ed", "ing", "er", "tion", "ion", "ent", "ly")) {
+            tokens.add("##" + suffix);
+        }
+        for (int i = 0; i < WORDS.length; i += 2) {
+            tokens.add(WORDS[i]);
+        }
+        Path file = Files.createTempFile("vocab", ".txt");
+        Files.write(file, tokens, StandardCharsets.UTF_8);
+        file.toFile().deleteOnExit();
+        return file;
+    }
+
+    /**
+     * tiktoken ranks file: all 256 bytes, then every prefix of half of {@link #WORDS}, with and
+     * without a leading space, so each can be merged one byte at a time.
+     */
+    public static Path bpe() throws IOException {
+        Set<String> pieces = new LinkedHashSet<>();
+        for (int i = 0; i < WORDS.length; i += 2) {
+            for (String word : List.of(WORDS[i], " " + WORDS[i])) {
+                for (int end = 2; end <= word.length(); end++) {
+                    pieces.add(word.substring(0, end));
+                }
+            }
+        }
+        List<String> lines = new ArrayList<>();
+        Base64.Encoder base64 = Base64.getEncoder();
+        for (int b = 0; b < 256; b++) {
+            lines.add(base64.encodeToString(new byte[]{(byte) b}) + " " + lines.size());
+        }
+        for (String piece : pieces) {
+            lines.add(base64.encodeToString(piece.getBytes(StandardCharsets.UTF_8)) + " " + lines.size());
+        }
+        Path file = Files.createTempFile("ranks", ".tiktoken");
+        Files.write(file, lines, StandardCharsets.UTF_8);
+        file.toFile().deleteOnExit();
+        return file;
+    }
+}
@@ -0,0 +1,134 @@
+package dev.ragcrawler.crawler;
+
+import dev.ragcrawler.crawler.bench.DocCorpus;
+import dev.ragcrawler.crawler.embedding.EmbeddingStage;
+import dev.ragcrawler.crawler.http.HttpFetcher;
+import dev.ragcrawler.crawler.http.PerHostScheduler;
+import dev.ragcrawler.crawler.metrics.CrawlMetrics;
+import dev.ragcrawler.crawler.output.JsonlChunkWriter;
+import dev.ragcrawler.crawler.parsing.ContentChunker;
+import dev.ragcrawler.crawler.parsing.ContentExtractor;
+import dev.ragcrawler.crawler.parsing.HtmlParser;
+import dev.ragcrawler.crawler.robots.RobotsCache;
+import dev.ragcrawler.crawler.robots.RobotsPolicy;
+import dev.ragcrawler.crawler.state.ContentDeduplicator;
+import dev.ragcrawler.crawler.state.CrawlJournal;
+import dev.ragcrawler.crawler.state.StringVisitedUrlStore;
+import dev.ragcrawler.crawler.state.UrlFrontier;
+import dev.ragcrawler.crawler.state.UrlNormalizer;
+import dev.ragcrawler.crawler.state.ValidatorCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Whole {@link PageCrawlTask} processing path for one fetched page, minus the network:
+ * parse, extract, chunk, dedup, write and link expansion into the frontier.
+ * Dedup and frontier state are fresh per operation so every iteration does the full work.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PageProcessingBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "LARGE"})
+    public DocCorpus.PageSize page;
+
+    private CrawlConfig config;
+    private Instant deadline;
+    private URI uri;
+    private HttpFetcher.Response response;
+    private HttpFetcher httpFetcher;
+    private RobotsPolicy robotsPolicy;
+    private UrlNormalizer normalizer;
+    private JsonlChunkWriter writer;
+    private final CrawlMetrics metrics = new CrawlMetrics();
+    private final HtmlParser htmlParser = new HtmlParser();
+    private final ContentExtractor contentExtractor = new ContentExtractor();
+    private final ContentChunker chunker = new ContentChunker();
+
+    @Setup
+    public void setUp() throws IOException {
+        uri = URI.create(DocCorpus.BASE_URL);
+        config = new CrawlConfig(uri, Duration.ofDays(1), null, null, 4, 0, CliOptions.DEFAULT_USER_AGENT,
+                (int) CliOptions.DEFAULT_MAX_PAGE_BYTES, CliOptions.DEFAULT_OVERSIZE_POLICY, null, null, false,
+                CliOptions.DEFAULT_VISITED_STORE, false, false, false, null,
+                CliOptions.DEFAULT_FRONTIER_MEMORY_BYTES, null, null, null, null, null, false,
+                CliOptions.DEFAULT_PER_HOST_MAX_CONCURRENCY, false, null, null, null, false,
+                CliOptions.DEFAULT_FLUSH_BYTES, Duration.ofMillis(CliOptions.DEFAULT_FLUSH_MILLIS),
+                CliOptions.DEFAULT_FSYNC, null, CliOptions.DEFAULT_SHARD_MAX_BYTES, null,
+                CliOptions.DEFAULT_COMPRESSION, CliOptions.DEFAULT_OUTPUT_FORMAT, null,
+                CliOptions.DEFAULT_EMBED_DIMENSIONS, CliOptions.DEFAULT_EMBED_BATCH_SIZE,
+                Duration.ofMillis(CliOptions.DEFAULT_EMBED_LINGER_MILLIS), CliOptions.DEFAULT_EMBED_PARALLELISM,
+                CliOptions.DEFAULT_EMBED_FORMAT, null, null, CliOptions.DEFAULT_CHUNK_MAX_TOKENS,
+                CliOptions.DEFAULT_CHUNK_OVERLAP_TOKENS, false, CliOptions.DEFAULT_BOILERPLATE_MAX_LINK_DENSITY,
+                CliOptions.DEFAULT_BOILERPLATE_MIN_TEXT_DENSITY, (int) CliOptions.DEFAULT_STREAMING_THRESHOLD_BYTES);
+        deadline = Instant.now().plus(config.maxTime());
+        AtomicBoolean cancelled = new AtomicBoolean(false);
+        byte[] body = DocCorpus.page(page).getBytes(StandardCharsets.UTF_8);
+        response = new HttpFetcher.Response(uri, uri, 200, "text/html; charset=utf-8",
+                body, StandardCharsets.UTF_8,
+                HttpFetcher.BodyStatus.COMPLETE, new HttpFetcher.Validators(null, null), null, null, body.length);
+        httpFetcher = new HttpFetcher(config, deadline, cancelled);
+        robotsPolicy = new RobotsPolicy(new RobotsCache(httpFetcher, config.userAgent()));
+        normalizer = new UrlNormalizer(uri);
+        writer = new JsonlChunkWriter(OutputStream.nullOutputStream());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        writer.close();
+        httpFetcher.close();
+    }
+
+    @Benchmark
+    public long processPage() throws IOException {
+        UrlFrontier frontier = new UrlFrontier();
+        PageCrawlTask task = new PageCrawlTask(
+                new UrlFrontier.Task(DocCorpus.BASE_URL, 0),
+                config,
+                deadline,
+                new AtomicBoolean(false),
+                normalizer,
+                frontier,
+                new AtomicInteger(0),
+                httpFetcher,
+                robotsPolicy,
+                PerHostScheduler.unlimited(),
+                htmlParser,
+                contentExtractor,
+                chunker,
+                new ContentDeduplicator(),
+                EmbeddingStage.disabled(),
+                writer,
+                ValidatorCache.disabled(),
+                CrawlJournal.disabled(),
+                new StringVisitedUrlStore(),
+                metrics
+        );
+        task.process(uri, response, null);
+        return frontier.size();
+    }
+}
@@ -0,0 +1,94 @@
+package dev.ragcrawler.crawler.embedding;
+
+import dev.ragcrawler.crawler.CrawlConfig;
+import dev.ragcrawler.crawler.bench.DocCorpus;
+import dev.ragcrawler.crawler.metrics.CrawlMetrics;
+import dev.ragcrawler.crawler.parsing.ContentChunker;
+import dev.ragcrawler.crawler.parsing.ContentExtractor;
+import dev.ragcrawler.crawler.parsing.HtmlParser;
+import dev.ragcrawler.crawler.parsing.OutputChunk;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Eight crawl threads embedding SMALL pages through the stage, with and without micro-batching.
+ * {@code callOverheadMicros} adds a fixed wait to every embedder call, standing in for the
+ * per-call cost of a model runtime or a remote service, which batching amortizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class EmbeddingStageBenchmark {
+
+    @Param({"1", "32"})
+    public int batchSize;
+
+    @Param({"0", "500"})
+    public int callOverheadMicros;
+
+    private List<OutputChunk> chunks;
+    private EmbeddingStage stage;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        chunks = new ContentChunker().chunk(new ContentExtractor().extract(
+                new HtmlParser().parse(DocCorpus.page(DocCorpus.PageSize.SMALL), DocCorpus.BASE_URL),
+                DocCorpus.BASE_URL,
+                DocCorpus.BASE_URL,
+                1
+        ));
+        HashingEmbedder hashing = new HashingEmbedder(256);
+        long overheadNanos = TimeUnit.MICROSECONDS.toNanos(callOverheadMicros);
+        Embedder embedder = new Embedder() {
+            @Override
+            public String model() {
+                return hashing.model();
+            }
+
+            @Override
+            public int dimensions() {
+                return hashing.dimensions();
+            }
+
+            @Override
+            public float[][] embed(List<String> texts) {
+                if (overheadNanos > 0) LockSupport.parkNanos(overheadNanos);
+                return hashing.embed(texts);
+            }
+        };
+        stage = EmbeddingStage.start(embedder, CrawlConfig.EmbeddingFormat.FLOAT32, batchSize, Duration.ofMillis(2),
+                2, new CrawlMetrics());
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        stage.close();
+    }
+
+    @Benchmark
+    public int embedPage() throws IOException {
+        return stage.embed(chunks).size();
+    }
+}
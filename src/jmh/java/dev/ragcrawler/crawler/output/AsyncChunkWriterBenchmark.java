@@ -0,0 +1,89 @@
+package dev.ragcrawler.crawler.output;
+
+import dev.ragcrawler.crawler.CrawlConfig;
+import dev.ragcrawler.crawler.bench.DocCorpus;
+import dev.ragcrawler.crawler.metrics.Histogram;
+import dev.ragcrawler.crawler.parsing.ContentChunker;
+import dev.ragcrawler.crawler.parsing.ContentExtractor;
+import dev.ragcrawler.crawler.parsing.HtmlParser;
+import dev.ragcrawler.crawler.parsing.OutputChunk;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Eight crawl threads writing SMALL pages to a real file: the synchronous writer chunk by chunk
+ * (a flush per chunk) or page by page, and the asynchronous writer with group commit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class AsyncChunkWriterBenchmark {
+
+    // Small, so the backlog left at the end of an iteration drains quickly.
+    private static final int QUEUE_PAGES = 64;
+
+    public enum Mode { CHUNKS, PAGES, ASYNC }
+
+    @Param({"CHUNKS", "PAGES", "ASYNC"})
+    public Mode mode;
+
+    private List<OutputChunk> chunks;
+    private Path file;
+    private ChunkWriter writer;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        chunks = new ContentChunker().chunk(new ContentExtractor().extract(
+                new HtmlParser().parse(DocCorpus.page(DocCorpus.PageSize.SMALL), DocCorpus.BASE_URL),
+                DocCorpus.BASE_URL,
+                DocCorpus.BASE_URL,
+                1
+        ));
+        file = Files.createTempFile("chunks", ".jsonl");
+        writer = mode == Mode.ASYNC
+                ? new AsyncChunkWriter(file, CrawlConfig.OutputFormat.JSONL, false, QUEUE_PAGES, 1024 * 1024,
+                        Duration.ofMillis(200), CrawlConfig.FsyncPolicy.NEVER, new Histogram())
+                : new JsonlChunkWriter(file);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        writer.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public int writePage() throws IOException {
+        if (mode == Mode.CHUNKS) {
+            for (OutputChunk chunk : chunks) {
+                ((JsonlChunkWriter) writer).writeChunk(chunk);
+            }
+        } else {
+            writer.writePage(chunks);
+        }
+        return chunks.size();
+    }
+}
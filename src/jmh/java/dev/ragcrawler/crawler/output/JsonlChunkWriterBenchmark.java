@@ -0,0 +1,73 @@
+package dev.ragcrawler.crawler.output;
+
+import dev.ragcrawler.crawler.bench.DocCorpus;
+import dev.ragcrawler.crawler.parsing.ContentChunker;
+import dev.ragcrawler.crawler.parsing.ContentExtractor;
+import dev.ragcrawler.crawler.parsing.HtmlParser;
+import dev.ragcrawler.crawler.parsing.OutputChunk;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializes every chunk of one page per operation, chunk by chunk or as one page. Output goes to
+ * a null stream so the numbers reflect serialization, locking and flushing, not the disk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonlChunkWriterBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "LARGE"})
+    public DocCorpus.PageSize page;
+
+    private List<OutputChunk> chunks;
+    private JsonlChunkWriter writer;
+
+    @Setup
+    public void setUp() throws IOException {
+        chunks = new ContentChunker().chunk(new ContentExtractor().extract(
+                new HtmlParser().parse(DocCorpus.page(page), DocCorpus.BASE_URL),
+                DocCorpus.BASE_URL,
+                DocCorpus.BASE_URL,
+                1
+        ));
+        writer = new JsonlChunkWriter(OutputStream.nullOutputStream());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        writer.close();
+    }
+
+    @Benchmark
+    public int writeChunks() throws IOException {
+        for (OutputChunk chunk : chunks) {
+            writer.writeChunk(chunk);
+        }
+        return chunks.size();
+    }
+
+    @Benchmark
+    public int writePage() throws IOException {
+        writer.writePage(chunks);
+        return chunks.size();
+    }
+}
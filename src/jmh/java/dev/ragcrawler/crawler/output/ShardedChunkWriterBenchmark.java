@@ -0,0 +1,84 @@
+package dev.ragcrawler.crawler.output;
+
+import dev.ragcrawler.crawler.CrawlConfig;
+import dev.ragcrawler.crawler.bench.DocCorpus;
+import dev.ragcrawler.crawler.metrics.Histogram;
+import dev.ragcrawler.crawler.parsing.ContentChunker;
+import dev.ragcrawler.crawler.parsing.ContentExtractor;
+import dev.ragcrawler.crawler.parsing.HtmlParser;
+import dev.ragcrawler.crawler.parsing.OutputChunk;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Eight crawl threads writing SMALL pages into compressed shards, with one writer lane or four,
+ * to show whether compression keeps up with the crawl.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class ShardedChunkWriterBenchmark {
+
+    @Param({"GZIP", "ZSTD"})
+    public CrawlConfig.OutputCompression compression;
+
+    @Param({"1", "4"})
+    public int lanes;
+
+    private List<OutputChunk> chunks;
+    private Path dir;
+    private ShardedChunkWriter writer;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        chunks = new ContentChunker().chunk(new ContentExtractor().extract(
+                new HtmlParser().parse(DocCorpus.page(DocCorpus.PageSize.SMALL), DocCorpus.BASE_URL),
+                DocCorpus.BASE_URL,
+                DocCorpus.BASE_URL,
+                1
+        ));
+        dir = Files.createTempDirectory("shards");
+        writer = new ShardedChunkWriter(dir, CrawlConfig.OutputFormat.JSONL, false, lanes, compression, 64L * 1024 * 1024, null,
+                CrawlConfig.FsyncPolicy.NEVER, new Histogram());
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        writer.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public int writePage() throws IOException {
+        writer.writePage(chunks);
+        return chunks.size();
+    }
+}
@@ -0,0 +1,70 @@
+package dev.ragcrawler.crawler.parsing;
+
+import dev.ragcrawler.crawler.bench.DocCorpus;
+import dev.ragcrawler.crawler.bench.TokenizerVocab;
+import dev.ragcrawler.crawler.tokenizer.BpeTokenizer;
+import dev.ragcrawler.crawler.tokenizer.WordPieceTokenizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContentChunkerBenchmark {
+
+    /** Character budget, or a 512-token budget (64 overlap) counted by each tokenizer. */
+    public enum Budget { CHARS, WORDPIECE, BPE }
+
+    @Param({"SMALL", "MEDIUM", "LARGE"})
+    public DocCorpus.PageSize page;
+
+    @Param({"CHARS", "WORDPIECE", "BPE"})
+    public Budget budget;
+
+    private ContentChunker chunker;
+    private ExtractedDocument document;
+
+    @Setup
+    public void setUp() throws IOException {
+        chunker = switch (budget) {
+            case CHARS -> new ContentChunker();
+            case WORDPIECE -> new ContentChunker(WordPieceTokenizer.load(TokenizerVocab.wordPiece()), 512, 64);
+            case BPE -> new ContentChunker(BpeTokenizer.load(TokenizerVocab.bpe()), 512, 64);
+        };
+        document = new ContentExtractor().extract(
+                new HtmlParser().parse(DocCorpus.page(page), DocCorpus.BASE_URL),
+                DocCorpus.BASE_URL,
+                DocCorpus.BASE_URL,
+                1
+        );
+    }
+
+    @Benchmark
+    public List<OutputChunk> chunk() {
+        return chunker.chunk(document);
+    }
+
+    /** Eight crawl threads chunking at once, as under a busy crawl. */
+    @Benchmark
+    @Threads(8)
+    public List<OutputChunk> chunkConcurrent() {
+        return chunker.chunk(document);
+    }
+}
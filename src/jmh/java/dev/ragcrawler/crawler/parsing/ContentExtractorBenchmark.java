@@ -0,0 +1,73 @@
+package dev.ragcrawler.crawler.parsing;
+
+import dev.ragcrawler.crawler.CliOptions;
+import dev.ragcrawler.crawler.bench.DocCorpus;
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContentExtractorBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "LARGE"})
+    public DocCorpus.PageSize page;
+
+    /** Whether navigation and other boilerplate is scored and dropped, with the default thresholds. */
+    @Param({"false", "true"})
+    public boolean stripBoilerplate;
+
+    private ContentExtractor extractor;
+    private Document document;
+    private byte[] body;
+
+    @Setup
+    public void setUp() {
+        extractor = stripBoilerplate
+                ? new ContentExtractor(new BoilerplateFilter(CliOptions.DEFAULT_BOILERPLATE_MAX_LINK_DENSITY,
+                        CliOptions.DEFAULT_BOILERPLATE_MIN_TEXT_DENSITY))
+                : new ContentExtractor();
+        document = new HtmlParser().parse(DocCorpus.page(page), DocCorpus.BASE_URL);
+        body = DocCorpus.page(page).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public ExtractedDocument extract() {
+        return extractor.extract(document, DocCorpus.BASE_URL, DocCorpus.BASE_URL, 1);
+    }
+
+    /** Parse and extract from the body bytes, as a buffered page is processed. */
+    @Benchmark
+    public ExtractedDocument parseAndExtract() throws IOException {
+        ParsedPage parsed = new HtmlParser().parsePage(body, StandardCharsets.UTF_8, DocCorpus.BASE_URL);
+        return extractor.extract(parsed.document(), DocCorpus.BASE_URL, DocCorpus.BASE_URL, 1);
+    }
+
+    /** The same page through {@link StreamingExtractor}, fed 16 KB at a time as it would arrive. */
+    @Benchmark
+    public ExtractedDocument stream() {
+        StreamingExtractor streaming = extractor.streaming(StandardCharsets.UTF_8, DocCorpus.BASE_URL);
+        for (int offset = 0; offset < body.length; offset += 16 * 1024) {
+            streaming.feed(ByteBuffer.wrap(body, offset, Math.min(16 * 1024, body.length - offset)));
+        }
+        return extractor.extract(streaming.finish(), DocCorpus.BASE_URL, DocCorpus.BASE_URL, 1);
+    }
+}
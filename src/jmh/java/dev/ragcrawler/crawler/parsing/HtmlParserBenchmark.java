@@ -0,0 +1,53 @@
+package dev.ragcrawler.crawler.parsing;
+
+import dev.ragcrawler.crawler.bench.DocCorpus;
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HtmlParserBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "LARGE"})
+    public DocCorpus.PageSize page;
+
+    private final HtmlParser parser = new HtmlParser();
+    private String html;
+
+    @Setup
+    public void setUp() {
+        html = DocCorpus.page(page);
+    }
+
+    @Benchmark
+    public Document parse() {
+        return parser.parse(html, DocCorpus.BASE_URL);
+    }
+
+    @Benchmark
+    public ParsedPage parsePage() {
+        return parser.parsePage(html, DocCorpus.BASE_URL);
+    }
+
+    @Benchmark
+    public List<String> extractLinks() {
+        return parser.extractLinks(html, DocCorpus.BASE_URL);
+    }
+}
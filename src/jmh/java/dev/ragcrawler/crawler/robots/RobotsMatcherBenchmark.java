@@ -0,0 +1,85 @@
+package dev.ragcrawler.crawler.robots;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one robots.txt check against a large rule group (200 Disallow/Allow lines, a tenth of
+ * them with wildcards), compiled matcher versus the old linear scan of Disallow prefixes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@OperationsPerInvocation(RobotsMatcherBenchmark.URLS)
+public class RobotsMatcherBenchmark {
+
+    static final int URLS = 1024;
+    private static final int RULES = 200;
+
+    private RobotsCache.RobotsRules rules;
+    private List<String> disallowPrefixes;
+    private String[] paths;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        StringBuilder robots = new StringBuilder("User-agent: *\n");
+        disallowPrefixes = new ArrayList<>();
+        for (int i = 0; i < RULES; i++) {
+            String section = "/section-" + (i % 40) + "/part-" + i;
+            if (i % 10 == 0) {
+                robots.append("Disallow: ").append(section).append("/*.json$\n");
+            } else if (i % 7 == 0) {
+                robots.append("Allow: ").append(section).append("/public\n");
+            } else {
+                robots.append("Disallow: ").append(section).append('\n');
+                disallowPrefixes.add(section);
+            }
+        }
+        rules = RobotsParser.parse(robots.toString(), "RagCrawler/0.1");
+        paths = new String[URLS];
+        for (int i = 0; i < URLS; i++) {
+            paths[i] = "/section-" + random.nextInt(60) + "/part-" + random.nextInt(300)
+                    + "/docs/page-" + random.nextInt(1000) + (random.nextBoolean() ? ".html" : ".json");
+        }
+    }
+
+    @Benchmark
+    public int compiled() {
+        int allowed = 0;
+        for (String path : paths) {
+            if (rules.isAllowed(path)) allowed++;
+        }
+        return allowed;
+    }
+
+    @Benchmark
+    public int linearPrefixes() {
+        int allowed = 0;
+        outer:
+        for (String path : paths) {
+            for (String prefix : disallowPrefixes) {
+                if (path.startsWith(prefix)) continue outer;
+            }
+            allowed++;
+        }
+        return allowed;
+    }
+}
@@ -0,0 +1,69 @@
+package dev.ragcrawler.crawler.state;
+
+import dev.ragcrawler.crawler.bench.DocCorpus;
+import dev.ragcrawler.crawler.parsing.ContentChunker;
+import dev.ragcrawler.crawler.parsing.ContentExtractor;
+import dev.ragcrawler.crawler.parsing.HtmlParser;
+import dev.ragcrawler.crawler.parsing.OutputChunk;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-page cost of the optional dedup checks: the body fingerprint, and SimHash plus an LSH
+ * lookup for every chunk (against an index that already holds the page, so every lookup hits).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContentDeduplicatorBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "LARGE"})
+    public DocCorpus.PageSize page;
+
+    private byte[] body;
+    private List<String> contents;
+    private ContentDeduplicator deduplicator;
+
+    @Setup
+    public void setUp() {
+        String html = DocCorpus.page(page);
+        body = html.getBytes(StandardCharsets.UTF_8);
+        contents = new ContentChunker().chunk(new ContentExtractor().extract(
+                new HtmlParser().parse(html, DocCorpus.BASE_URL), DocCorpus.BASE_URL, DocCorpus.BASE_URL, 1))
+                .stream().map(OutputChunk::content).toList();
+        deduplicator = new ContentDeduplicator(true, true);
+        nearDuplicates();
+    }
+
+    @Benchmark
+    public long pageFingerprint() {
+        return Fingerprints.fingerprint64(body);
+    }
+
+    @Benchmark
+    public int nearDuplicates() {
+        int dropped = 0;
+        for (String content : contents) {
+            if (deduplicator.isNearDuplicate(ContentDeduplicator.nearDuplicateHash(content))) {
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+}
@@ -0,0 +1,83 @@
+package dev.ragcrawler.crawler.state;
+
+import dev.ragcrawler.crawler.http.PerHostScheduler;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Prints retained heap per queued URL for a plain queue of tasks, the in-memory frontier and a
+ * spilling frontier, then drains each frontier to check that every URL comes back in order. Run with:
+ * <pre>
+ * java -Xmx2g -cp target/benchmarks.jar dev.ragcrawler.crawler.state.FrontierFootprint [urls]
+ * </pre>
+ */
+public final class FrontierFootprint {
+
+    private static final long SPILL_BUDGET_BYTES = 4L * 1024 * 1024;
+
+    private FrontierFootprint() {}
+
+    public static void main(String[] args) throws Exception {
+        int urls = args.length > 0 ? Integer.parseInt(args[0]) : VisitedUrlStoreBenchmark.URLS;
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.out.printf("%-20s %12s %12s %12s%n", "frontier", "heap B/url", "offer ms", "drain ms");
+
+        long before = usedHeapAfterGc(memory);
+        long start = System.nanoTime();
+        ArrayDeque<UrlFrontier.Task> plain = new ArrayDeque<>();
+        for (int i = 0; i < urls; i++) {
+            plain.add(new UrlFrontier.Task(VisitedUrlStoreBenchmark.generate(i, 1)[0], i % 8));
+        }
+        long offerMs = (System.nanoTime() - start) / 1_000_000;
+        long plainHeap = usedHeapAfterGc(memory) - before;
+        System.out.printf("%-20s %12.1f %12d %12s%n", "ArrayDeque<Task>", (double) plainHeap / urls, offerMs,
+                plain.size() == urls ? "-" : "lost URLs");
+        plain = null;
+
+        measure("compact", new UrlFrontier(), urls, memory);
+        Path dir = Files.createTempDirectory("frontier-spill");
+        try (UrlFrontier spilling = new UrlFrontier(PerHostScheduler.unlimited(), dir, SPILL_BUDGET_BYTES)) {
+            measure("compact+spill", spilling, urls, memory);
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    private static void measure(String name, UrlFrontier frontier, int urls, MemoryMXBean memory)
+            throws InterruptedException {
+        long before = usedHeapAfterGc(memory);
+        long start = System.nanoTime();
+        for (int i = 0; i < urls; i++) {
+            frontier.offer(new UrlFrontier.Task(VisitedUrlStoreBenchmark.generate(i, 1)[0], i % 8));
+        }
+        long offerMs = (System.nanoTime() - start) / 1_000_000;
+        long heap = usedHeapAfterGc(memory) - before;
+
+        start = System.nanoTime();
+        Instant deadline = Instant.now().plusSeconds(600);
+        AtomicBoolean cancelled = new AtomicBoolean(false);
+        for (int i = 0; i < urls; i++) {
+            Optional<UrlFrontier.Task> task = frontier.take(deadline, cancelled, t -> true);
+            String expected = VisitedUrlStoreBenchmark.generate(i, 1)[0];
+            if (task.isEmpty() || !task.get().normalizedUrl().equals(expected) || task.get().depth() != i % 8) {
+                throw new IllegalStateException(name + " returned " + task + " at " + i + ", expected " + expected);
+            }
+            frontier.complete(task.get());
+        }
+        long drainMs = (System.nanoTime() - start) / 1_000_000;
+        System.out.printf("%-20s %12.1f %12d %12d%n", name, (double) heap / urls, offerMs, drainMs);
+    }
+
+    private static long usedHeapAfterGc(MemoryMXBean memory) {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
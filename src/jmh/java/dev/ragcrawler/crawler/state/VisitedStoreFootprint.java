@@ -0,0 +1,55 @@
+package dev.ragcrawler.crawler.state;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+/**
+ * Prints retained memory per URL for each visited-store type, as if URLs were discarded after
+ * being marked (which is what the crawler does). Run with:
+ * <pre>
+ * java -Xmx2g -cp target/benchmarks.jar dev.ragcrawler.crawler.state.VisitedStoreFootprint [urls]
+ * </pre>
+ */
+public final class VisitedStoreFootprint {
+
+    private VisitedStoreFootprint() {}
+
+    public static void main(String[] args) {
+        int urls = args.length > 0 ? Integer.parseInt(args[0]) : VisitedUrlStoreBenchmark.URLS;
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.out.printf("%-20s %12s %12s %12s%n", "store", "heap B/url", "direct B/url", "insert ms");
+        for (String type : new String[]{"strings", "fingerprint", "offheap", "fingerprint+bloom"}) {
+            long heapBefore = usedHeapAfterGc(memory);
+            long directBefore = usedDirect();
+            long start = System.nanoTime();
+            VisitedUrlStore store = VisitedUrlStoreBenchmark.newStore(type);
+            for (int i = 0; i < urls; i++) {
+                // Build each URL fresh so the store is the only thing that can retain it.
+                store.markVisited(VisitedUrlStoreBenchmark.generate(i, 1)[0]);
+            }
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+            long heap = usedHeapAfterGc(memory) - heapBefore;
+            long direct = usedDirect() - directBefore;
+            System.out.printf("%-20s %12.1f %12.1f %12d%n", type,
+                    (double) heap / urls, (double) direct / urls, elapsedMs);
+            if (!store.isVisited(VisitedUrlStoreBenchmark.generate(0, 1)[0])) {
+                throw new IllegalStateException("store lost a URL");
+            }
+        }
+    }
+
+    private static long usedHeapAfterGc(MemoryMXBean memory) {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static long usedDirect() {
+        return ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                .filter(b -> b.getName().equals("direct"))
+                .mapToLong(BufferPoolMXBean::getMemoryUsed)
+                .sum();
+    }
+}
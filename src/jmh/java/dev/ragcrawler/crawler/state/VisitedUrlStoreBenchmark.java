@@ -0,0 +1,105 @@
+package dev.ragcrawler.crawler.state;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Visited-store throughput on faceted query URLs: {@code populate} inserts one million URLs into an
+ * empty store, {@code isVisited} probes a populated store from four threads with a 50% hit rate.
+ * Probe strings are reused, so {@code strings} benefits from their cached {@code hashCode()}; in the
+ * crawler every URL is a fresh string. Retained memory per URL is printed by {@link VisitedStoreFootprint}.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+public class VisitedUrlStoreBenchmark {
+
+    static final int URLS = 1_000_000;
+
+    @Param({"strings", "fingerprint", "offheap", "fingerprint+bloom"})
+    public String store;
+
+    private String[] urls;
+    private String[] probes;
+    private VisitedUrlStore populated;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        urls = generate(0, URLS);
+        String[] misses = generate(URLS, URLS);
+        probes = new String[URLS * 2];
+        for (int i = 0; i < URLS; i++) {
+            probes[2 * i] = urls[i];
+            probes[2 * i + 1] = misses[i];
+        }
+        populated = newStore(store);
+        for (String url : urls) {
+            populated.markVisited(url);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 5)
+    public VisitedUrlStore populate() {
+        VisitedUrlStore s = newStore(store);
+        for (String url : urls) {
+            s.markVisited(url);
+        }
+        return s;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    @Threads(4)
+    public boolean isVisited(Cursor cursor) {
+        return populated.isVisited(probes[cursor.next(probes.length)]);
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int i = (int) (Thread.currentThread().threadId() * 7919);
+
+        int next(int bound) {
+            i = (i + 1) % bound;
+            return i;
+        }
+    }
+
+    static VisitedUrlStore newStore(String type) {
+        return switch (type) {
+            case "strings" -> new StringVisitedUrlStore();
+            case "fingerprint" -> new FingerprintVisitedUrlStore(false, false, URLS);
+            case "offheap" -> new FingerprintVisitedUrlStore(true, false, URLS);
+            case "fingerprint+bloom" -> new FingerprintVisitedUrlStore(false, true, URLS);
+            default -> throw new IllegalArgumentException(type);
+        };
+    }
+
+    static String[] generate(int from, int count) {
+        String[] out = new String[count];
+        for (int i = 0; i < count; i++) {
+            int n = from + i;
+            out[i] = "https://docs.example.com/reference/search?facet=" + (n % 97)
+                    + "&version=" + (n % 13) + "&lang=en&page=" + n;
+        }
+        return out;
+    }
+}
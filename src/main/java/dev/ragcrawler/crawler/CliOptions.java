@@ -1,7 +1,10 @@
 package dev.ragcrawler.crawler;
 
 import java.io.PrintStream;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 /**
@@ -15,13 +18,80 @@ public record CliOptions(
         String outputPath,
         int perHostConcurrency,
         long perHostMinDelayMillis,
-        String userAgent
+        String userAgent,
+        long maxPageBytes,
+        CrawlConfig.OversizePolicy oversizePolicy,
+        String cacheDir,
+        String checkpointDir,
+        boolean resume,
+        CrawlConfig.VisitedStoreType visitedStore,
+        boolean visitedBloom,
+        boolean dedupPages,
+        boolean dedupNearChunks,
+        String frontierSpillDir,
+        long frontierMemoryBytes,
+        String seedsFile,
+        List<String> allowDomains,
+        Integer maxConcurrency,
+        Integer perHostMaxPages,
+        Long perHostMaxTimeSeconds,
+        boolean adaptiveRate,
+        int perHostMaxConcurrency,
+        boolean sitemaps,
+        Integer metricsPort,
+        Long progressIntervalSeconds,
+        String jfrFile,
+        boolean asyncWriter,
+        long flushBytes,
+        long flushMillis,
+        CrawlConfig.FsyncPolicy fsync,
+        Integer shards,
+        long shardMaxBytes,
+        Long shardMaxChunks,
+        CrawlConfig.OutputCompression compression,
+        CrawlConfig.OutputFormat outputFormat,
+        String embedder,
+        int embedDimensions,
+        int embedBatchSize,
+        long embedLingerMillis,
+        int embedParallelism,
+        CrawlConfig.EmbeddingFormat embedFormat,
+        CrawlConfig.TokenizerType tokenizer,
+        String tokenizerVocab,
+        int chunkMaxTokens,
+        int chunkOverlapTokens,
+        boolean stripBoilerplate,
+        double boilerplateMaxLinkDensity,
+        double boilerplateMinTextDensity,
+        long streamingThresholdBytes
 ) {
 
     public static final long DEFAULT_MAX_TIME_SECONDS = 20;
     public static final int DEFAULT_PER_HOST_CONCURRENCY = 4;
     public static final long DEFAULT_PER_HOST_MIN_DELAY_MILLIS = 250;
     public static final String DEFAULT_USER_AGENT = "rag-webcrawler/0.1";
+    public static final long DEFAULT_MAX_PAGE_BYTES = 10L * 1024 * 1024;
+    public static final CrawlConfig.OversizePolicy DEFAULT_OVERSIZE_POLICY = CrawlConfig.OversizePolicy.TRUNCATE;
+    public static final CrawlConfig.VisitedStoreType DEFAULT_VISITED_STORE = CrawlConfig.VisitedStoreType.STRINGS;
+    public static final long DEFAULT_FRONTIER_MEMORY_BYTES = 64L * 1024 * 1024;
+    public static final String DEFAULT_JFR_FILE = "crawl.jfr";
+    public static final int DEFAULT_PER_HOST_MAX_CONCURRENCY = 16;
+    public static final long DEFAULT_FLUSH_BYTES = 1024 * 1024;
+    public static final long DEFAULT_FLUSH_MILLIS = 200;
+    public static final CrawlConfig.FsyncPolicy DEFAULT_FSYNC = CrawlConfig.FsyncPolicy.NEVER;
+    public static final long DEFAULT_SHARD_MAX_BYTES = 256L * 1024 * 1024;
+    public static final CrawlConfig.OutputCompression DEFAULT_COMPRESSION = CrawlConfig.OutputCompression.GZIP;
+    public static final CrawlConfig.OutputFormat DEFAULT_OUTPUT_FORMAT = CrawlConfig.OutputFormat.JSONL;
+    public static final int DEFAULT_EMBED_DIMENSIONS = 256;
+    public static final int DEFAULT_EMBED_BATCH_SIZE = 32;
+    public static final long DEFAULT_EMBED_LINGER_MILLIS = 5;
+    public static final int DEFAULT_EMBED_PARALLELISM = 2;
+    public static final CrawlConfig.EmbeddingFormat DEFAULT_EMBED_FORMAT = CrawlConfig.EmbeddingFormat.FLOAT32;
+    public static final int DEFAULT_CHUNK_MAX_TOKENS = 512;
+    public static final int DEFAULT_CHUNK_OVERLAP_TOKENS = 0;
+    public static final double DEFAULT_BOILERPLATE_MAX_LINK_DENSITY = 0.5;
+    public static final double DEFAULT_BOILERPLATE_MIN_TEXT_DENSITY = 10;
+    public static final long DEFAULT_STREAMING_THRESHOLD_BYTES = 2L * 1024 * 1024;
 
     public static CliOptions parse(String[] args) throws CliException {
         Map<String, String> flags = new HashMap<>();
@@ -48,6 +118,65 @@ public record CliOptions(
         long perHostMinDelayMillis = parseLongOrDefault(flags.get("--perHostMinDelayMillis"),
                 DEFAULT_PER_HOST_MIN_DELAY_MILLIS);
         String userAgent = flags.getOrDefault("--userAgent", DEFAULT_USER_AGENT);
+        long maxPageBytes = parseLongOrDefault(flags.get("--maxPageBytes"), DEFAULT_MAX_PAGE_BYTES);
+        CrawlConfig.OversizePolicy oversizePolicy = parseOversizePolicy(flags.get("--oversizePolicy"));
+        String cacheDir = flags.get("--cacheDir");
+        // --resume <dir> checkpoints into the same directory it resumes from.
+        String resumeDir = flags.get("--resume");
+        if (flags.containsKey("--resume") && resumeDir == null) {
+            throw new CliException("--resume requires a checkpoint directory");
+        }
+        String checkpointDir = resumeDir != null ? resumeDir : flags.get("--checkpointDir");
+        CrawlConfig.VisitedStoreType visitedStore = parseVisitedStore(flags.get("--visitedStore"));
+        boolean visitedBloom = flags.containsKey("--visitedBloom");
+        boolean dedupPages = flags.containsKey("--dedupPages");
+        boolean dedupNearChunks = flags.containsKey("--dedupNearChunks");
+        String frontierSpillDir = flags.get("--frontierSpillDir");
+        long frontierMemoryBytes = parseLongOrDefault(flags.get("--frontierMemoryBytes"),
+                DEFAULT_FRONTIER_MEMORY_BYTES);
+        String seedsFile = flags.get("--seeds");
+        List<String> allowDomains = parseList(flags.get("--allowDomains"));
+        Integer maxConcurrency = parseNullableInt(flags.get("--maxConcurrency"));
+        Integer perHostMaxPages = parseNullableInt(flags.get("--perHostMaxPages"));
+        Long perHostMaxTimeSeconds = flags.get("--perHostMaxTime") == null
+                ? null : parseLongOrDefault(flags.get("--perHostMaxTime"), 0);
+        boolean adaptiveRate = flags.containsKey("--adaptiveRate");
+        boolean sitemaps = flags.containsKey("--sitemaps");
+        Integer metricsPort = parseNullableInt(flags.get("--metricsPort"));
+        Long progressIntervalSeconds = flags.get("--progressInterval") == null
+                ? null : parseLongOrDefault(flags.get("--progressInterval"), 0);
+        String jfrFile = !flags.containsKey("--jfr") ? null
+                : flags.get("--jfr") != null ? flags.get("--jfr") : DEFAULT_JFR_FILE;
+        int perHostMaxConcurrency = (int) parseLongOrDefault(flags.get("--perHostMaxConcurrency"),
+                DEFAULT_PER_HOST_MAX_CONCURRENCY);
+        boolean asyncWriter = flags.containsKey("--asyncWriter");
+        long flushBytes = parseLongOrDefault(flags.get("--flushBytes"), DEFAULT_FLUSH_BYTES);
+        long flushMillis = parseLongOrDefault(flags.get("--flushMillis"), DEFAULT_FLUSH_MILLIS);
+        CrawlConfig.FsyncPolicy fsync = parseFsyncPolicy(flags.get("--fsync"));
+        Integer shards = parseNullableInt(flags.get("--shards"));
+        long shardMaxBytes = parseLongOrDefault(flags.get("--shardMaxBytes"), DEFAULT_SHARD_MAX_BYTES);
+        Long shardMaxChunks = flags.get("--shardMaxChunks") == null
+                ? null : parseLongOrDefault(flags.get("--shardMaxChunks"), 0);
+        CrawlConfig.OutputCompression compression = parseCompression(flags.get("--compression"));
+        CrawlConfig.OutputFormat outputFormat = parseOutputFormat(flags.get("--outputFormat"));
+        String embedder = flags.get("--embedder");
+        int embedDimensions = (int) parseLongOrDefault(flags.get("--embedDimensions"), DEFAULT_EMBED_DIMENSIONS);
+        int embedBatchSize = (int) parseLongOrDefault(flags.get("--embedBatchSize"), DEFAULT_EMBED_BATCH_SIZE);
+        long embedLingerMillis = parseLongOrDefault(flags.get("--embedLingerMillis"), DEFAULT_EMBED_LINGER_MILLIS);
+        int embedParallelism = (int) parseLongOrDefault(flags.get("--embedParallelism"), DEFAULT_EMBED_PARALLELISM);
+        CrawlConfig.EmbeddingFormat embedFormat = parseEmbeddingFormat(flags.get("--embedFormat"));
+        CrawlConfig.TokenizerType tokenizer = parseTokenizer(flags.get("--tokenizer"));
+        String tokenizerVocab = flags.get("--tokenizerVocab");
+        int chunkMaxTokens = (int) parseLongOrDefault(flags.get("--chunkMaxTokens"), DEFAULT_CHUNK_MAX_TOKENS);
+        int chunkOverlapTokens = (int) parseLongOrDefault(flags.get("--chunkOverlapTokens"),
+                DEFAULT_CHUNK_OVERLAP_TOKENS);
+        boolean stripBoilerplate = flags.containsKey("--stripBoilerplate");
+        double boilerplateMaxLinkDensity = parseDoubleOrDefault(flags.get("--boilerplateMaxLinkDensity"),
+                DEFAULT_BOILERPLATE_MAX_LINK_DENSITY);
+        double boilerplateMinTextDensity = parseDoubleOrDefault(flags.get("--boilerplateMinTextDensity"),
+                DEFAULT_BOILERPLATE_MIN_TEXT_DENSITY);
+        long streamingThresholdBytes = parseLongOrDefault(flags.get("--streamingThresholdBytes"),
+                DEFAULT_STREAMING_THRESHOLD_BYTES);
 
         return new CliOptions(
                 url,
@@ -57,7 +186,52 @@ public record CliOptions(
                 output,
                 perHostConcurrency,
                 perHostMinDelayMillis,
-                userAgent
+                userAgent,
+                maxPageBytes,
+                oversizePolicy,
+                cacheDir,
+                checkpointDir,
+                resumeDir != null,
+                visitedStore,
+                visitedBloom,
+                dedupPages,
+                dedupNearChunks,
+                frontierSpillDir,
+                frontierMemoryBytes,
+                seedsFile,
+                allowDomains,
+                maxConcurrency,
+                perHostMaxPages,
+                perHostMaxTimeSeconds,
+                adaptiveRate,
+                perHostMaxConcurrency,
+                sitemaps,
+                metricsPort,
+                progressIntervalSeconds,
+                jfrFile,
+                asyncWriter,
+                flushBytes,
+                flushMillis,
+                fsync,
+                shards,
+                shardMaxBytes,
+                shardMaxChunks,
+                compression,
+                outputFormat,
+                embedder,
+                embedDimensions,
+                embedBatchSize,
+                embedLingerMillis,
+                embedParallelism,
+                embedFormat,
+                tokenizer,
+                tokenizerVocab,
+                chunkMaxTokens,
+                chunkOverlapTokens,
+                stripBoilerplate,
+                boilerplateMaxLinkDensity,
+                boilerplateMinTextDensity,
+                streamingThresholdBytes
         );
     }
 
@@ -70,6 +244,15 @@ public record CliOptions(
         }
     }
 
+    private static double parseDoubleOrDefault(String value, double defaultVal) throws CliException {
+        if (value == null) return defaultVal;
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new CliException("Invalid numeric value: " + value);
+        }
+    }
+
     private static Integer parseNullableInt(String value) throws CliException {
         if (value == null) return null;
         try {
@@ -79,9 +262,128 @@ public record CliOptions(
         }
     }
 
+    private static List<String> parseList(String value) {
+        if (value == null) return List.of();
+        return Arrays.stream(value.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .toList();
+    }
+
+    private static CrawlConfig.OversizePolicy parseOversizePolicy(String value) throws CliException {
+        if (value == null) return DEFAULT_OVERSIZE_POLICY;
+        try {
+            return CrawlConfig.OversizePolicy.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new CliException("Invalid oversize policy (expected truncate or reject): " + value);
+        }
+    }
+
+    private static CrawlConfig.VisitedStoreType parseVisitedStore(String value) throws CliException {
+        if (value == null) return DEFAULT_VISITED_STORE;
+        try {
+            return CrawlConfig.VisitedStoreType.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new CliException("Invalid visited store (expected strings, fingerprint or offheap): " + value);
+        }
+    }
+
+    private static CrawlConfig.FsyncPolicy parseFsyncPolicy(String value) throws CliException {
+        if (value == null) return DEFAULT_FSYNC;
+        try {
+            return CrawlConfig.FsyncPolicy.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new CliException("Invalid fsync policy (expected never, close or commit): " + value);
+        }
+    }
+
+    private static CrawlConfig.OutputCompression parseCompression(String value) throws CliException {
+        if (value == null) return DEFAULT_COMPRESSION;
+        try {
+            return CrawlConfig.OutputCompression.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new CliException("Invalid compression (expected none, gzip or zstd): " + value);
+        }
+    }
+
+    private static CrawlConfig.OutputFormat parseOutputFormat(String value) throws CliException {
+        if (value == null) return DEFAULT_OUTPUT_FORMAT;
+        try {
+            return CrawlConfig.OutputFormat.valueOf(value.toUpperCase(Locale.ROOT).replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new CliException("Invalid output format (expected jsonl, pgcopy-text or pgcopy-binary): " + value);
+        }
+    }
+
+    private static CrawlConfig.EmbeddingFormat parseEmbeddingFormat(String value) throws CliException {
+        if (value == null) return DEFAULT_EMBED_FORMAT;
+        try {
+            return CrawlConfig.EmbeddingFormat.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new CliException("Invalid embedding format (expected float32 or int8): " + value);
+        }
+    }
+
+    private static CrawlConfig.TokenizerType parseTokenizer(String value) throws CliException {
+        if (value == null) return null;
+        try {
+            return CrawlConfig.TokenizerType.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new CliException("Invalid tokenizer (expected wordpiece or bpe): " + value);
+        }
+    }
+
     public static void printUsage(PrintStream out) {
         out.println("Usage: java -jar rag-webcrawler.jar --url <URL> --output <FILE> [options]");
+        out.println("       java -jar rag-webcrawler.jar --seeds <FILE> --output <FILE> [options]");
         out.println("Options:");
+        out.println("  --seeds <file>                 Seed URLs, one per line (crawled together with --url)");
+        out.println("  --allowDomains <d1,d2>         Also crawl hosts under these domains (default: seed hosts only)");
+        out.println("  --sitemaps                     Queue URLs from the seed sites' sitemaps at startup");
+        out.println("  --maxConcurrency <n>           Max concurrent requests across all hosts (default unlimited)");
+        out.println("  --perHostMaxPages <n>          Max requests per host");
+        out.println("  --perHostMaxTime <seconds>     Max time per host, from its first request");
+        out.println("  --adaptiveRate                 Adapt per-host concurrency and delay to latency and throttling");
+        out.println("  --perHostMaxConcurrency <n>    Upper bound for adaptive per-host concurrency (default "
+                + DEFAULT_PER_HOST_MAX_CONCURRENCY + ")");
+        out.println("  --metricsPort <port>           Serve Prometheus metrics on http://127.0.0.1:<port>/metrics");
+        out.println("  --progressInterval <seconds>   Log a progress line at this interval");
+        out.println("  --jfr [file]                   Record the crawl with JDK Flight Recorder (default "
+                + DEFAULT_JFR_FILE + ")");
+        out.println("  --outputFormat <format>        jsonl | pgcopy-text | pgcopy-binary (default "
+                + DEFAULT_OUTPUT_FORMAT.name().toLowerCase(Locale.ROOT) + ")");
+        out.println("  --asyncWriter                  Write output on a background thread with batched flushes");
+        out.println("  --flushBytes <n>               Async writer: flush once this many bytes are pending (default "
+                + DEFAULT_FLUSH_BYTES + ")");
+        out.println("  --flushMillis <ms>             Async writer: flush at least this often (default "
+                + DEFAULT_FLUSH_MILLIS + "ms)");
+        out.println("  --fsync <policy>               Async or sharded writer: never | close | commit (default "
+                + DEFAULT_FSYNC.name().toLowerCase(Locale.ROOT) + ")");
+        out.println("  --shards <n>                   Write rolling shard files into the --output directory with n writers");
+        out.println("  --shardMaxBytes <n>            Roll a shard after this many uncompressed bytes (default "
+                + DEFAULT_SHARD_MAX_BYTES + ")");
+        out.println("  --shardMaxChunks <n>           Roll a shard after this many chunks");
+        out.println("  --compression <codec>          Shard compression: none | gzip | zstd (default "
+                + DEFAULT_COMPRESSION.name().toLowerCase(Locale.ROOT) + ")");
+        out.println("  --embedder <name>              Embed every chunk in-process with this embedder, e.g. hashing");
+        out.println("  --embedDimensions <n>          Embedding dimensions (default " + DEFAULT_EMBED_DIMENSIONS + ")");
+        out.println("  --embedBatchSize <n>           Max chunks per embedder call (default " + DEFAULT_EMBED_BATCH_SIZE + ")");
+        out.println("  --embedLingerMillis <ms>       Max wait for a batch to fill (default "
+                + DEFAULT_EMBED_LINGER_MILLIS + "ms)");
+        out.println("  --embedParallelism <n>         Embedder worker threads (default " + DEFAULT_EMBED_PARALLELISM + ")");
+        out.println("  --embedFormat <format>         float32 | int8 (default "
+                + DEFAULT_EMBED_FORMAT.name().toLowerCase(Locale.ROOT) + ")");
+        out.println("  --tokenizer <type>             Size chunks by tokens: wordpiece | bpe (needs --tokenizerVocab)");
+        out.println("  --tokenizerVocab <file>        vocab.txt for wordpiece, .tiktoken ranks file for bpe");
+        out.println("  --chunkMaxTokens <n>           Max tokens per chunk with --tokenizer (default "
+                + DEFAULT_CHUNK_MAX_TOKENS + ")");
+        out.println("  --chunkOverlapTokens <n>       Tokens repeated from the previous chunk (default "
+                + DEFAULT_CHUNK_OVERLAP_TOKENS + ")");
+        out.println("  --stripBoilerplate             Drop navigation, sidebars, footers and link lists before chunking");
+        out.println("  --boilerplateMaxLinkDensity <r> Drop containers with a larger share of link text (default "
+                + DEFAULT_BOILERPLATE_MAX_LINK_DENSITY + ")");
+        out.println("  --boilerplateMinTextDensity <n> Drop linked containers with fewer text chars per element (default "
+                + DEFAULT_BOILERPLATE_MIN_TEXT_DENSITY + ")");
         out.println("  --maxtime <seconds>            Max crawl time (default " + DEFAULT_MAX_TIME_SECONDS + ")");
         out.println("  --maxPages <n>                 Max number of pages to crawl");
         out.println("  --maxDepth <n>                 Max crawl depth from root (0 = only root)");
@@ -90,6 +392,22 @@ public record CliOptions(
         out.println("  --perHostMinDelayMillis <ms>   Minimum delay between requests per host (default "
                 + DEFAULT_PER_HOST_MIN_DELAY_MILLIS + "ms)");
         out.println("  --userAgent <string>           User agent string (default " + DEFAULT_USER_AGENT + ")");
+        out.println("  --maxPageBytes <n>             Max page body size in bytes (default " + DEFAULT_MAX_PAGE_BYTES + ")");
+        out.println("  --oversizePolicy <policy>      truncate | reject pages above maxPageBytes (default "
+                + DEFAULT_OVERSIZE_POLICY.name().toLowerCase(Locale.ROOT) + ")");
+        out.println("  --streamingThresholdBytes <n>  Extract larger pages as they arrive, without a DOM; 0 = never (default "
+                + DEFAULT_STREAMING_THRESHOLD_BYTES + ")");
+        out.println("  --cacheDir <dir>               Validator cache for conditional re-crawls (default off)");
+        out.println("  --checkpointDir <dir>          Journal frontier/visited/dedup state for crash recovery (default off)");
+        out.println("  --resume <dir>                 Resume a crawl from the checkpoint in <dir> and keep checkpointing");
+        out.println("  --visitedStore <type>          strings | fingerprint | offheap (default "
+                + DEFAULT_VISITED_STORE.name().toLowerCase(Locale.ROOT) + ")");
+        out.println("  --visitedBloom                 Put a Bloom filter in front of a fingerprint visited store");
+        out.println("  --dedupPages                   Drop pages whose body was already seen under another URL");
+        out.println("  --dedupNearChunks              Drop chunks that near-duplicate an earlier chunk (SimHash)");
+        out.println("  --frontierSpillDir <dir>       Bound the frontier and spill overflow to segment files in <dir>");
+        out.println("  --frontierMemoryBytes <n>      Frontier memory budget when spilling (default "
+                + DEFAULT_FRONTIER_MEMORY_BYTES + ")");
     }
 
     public static class CliException extends Exception {
@@ -1,7 +1,9 @@
 package dev.ragcrawler.crawler;
 
 import java.net.URI;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.List;
 
 /**
  * Immutable crawl configuration.
@@ -13,9 +15,133 @@ public record CrawlConfig(
         Integer maxDepth,
         int perHostConcurrency,
         long perHostMinDelayMillis,
-        String userAgent
+        String userAgent,
+        int maxPageBytes,
+        OversizePolicy oversizePolicy,
+        Path cacheDir,
+        Path checkpointDir,
+        boolean resume,
+        VisitedStoreType visitedStore,
+        boolean visitedBloom,
+        boolean dedupPages,
+        boolean dedupNearChunks,
+        Path frontierSpillDir,
+        long frontierMemoryBytes,
+        List<URI> seeds,
+        List<String> allowedDomains,
+        Integer maxConcurrency,
+        Integer perHostMaxPages,
+        Duration perHostMaxTime,
+        boolean adaptiveRate,
+        int perHostMaxConcurrency,
+        boolean sitemaps,
+        Integer metricsPort,
+        Duration progressInterval,
+        Path jfrFile,
+        boolean asyncWriter,
+        long flushBytes,
+        Duration flushInterval,
+        FsyncPolicy fsync,
+        Integer shards,
+        long shardMaxBytes,
+        Long shardMaxChunks,
+        OutputCompression compression,
+        OutputFormat outputFormat,
+        String embedder,
+        int embedDimensions,
+        int embedBatchSize,
+        Duration embedLinger,
+        int embedParallelism,
+        EmbeddingFormat embedFormat,
+        TokenizerType tokenizer,
+        Path tokenizerVocab,
+        int chunkMaxTokens,
+        int chunkOverlapTokens,
+        boolean stripBoilerplate,
+        double boilerplateMaxLinkDensity,
+        double boilerplateMinTextDensity,
+        int streamingThresholdBytes
 ) {
 
+    /**
+     * What to do with a page body larger than {@code maxPageBytes}.
+     */
+    public enum OversizePolicy {
+        /** Keep the first {@code maxPageBytes} bytes and process them. */
+        TRUNCATE,
+        /** Drop the page without processing it. */
+        REJECT
+    }
+
+    /**
+     * Implementation of the visited-URL set.
+     */
+    public enum VisitedStoreType {
+        /** Exact set of URL strings. */
+        STRINGS,
+        /** 64-bit URL fingerprints in primitive on-heap tables. */
+        FINGERPRINT,
+        /** 64-bit URL fingerprints in off-heap tables. */
+        OFFHEAP
+    }
+
+    /**
+     * When the asynchronous writer forces the output file to disk. Sharded output forces each
+     * shard as it is finished under either {@code CLOSE} or {@code COMMIT}.
+     */
+    public enum FsyncPolicy {
+        /** Leave it to the operating system. */
+        NEVER,
+        /** Once, when the writer closes. */
+        CLOSE,
+        /** After every group commit. */
+        COMMIT
+    }
+
+    /**
+     * Serialization of output chunks.
+     */
+    public enum OutputFormat {
+        /** One JSON object per line. */
+        JSONL,
+        /** PostgreSQL {@code COPY} text format for the {@code doc_chunks} table. */
+        PGCOPY_TEXT,
+        /** PostgreSQL {@code COPY} binary format for the {@code doc_chunks} table. */
+        PGCOPY_BINARY
+    }
+
+    /**
+     * Compression of sharded output files.
+     */
+    public enum OutputCompression {
+        /** Plain {@code .jsonl}. */
+        NONE,
+        /** {@code .jsonl.gz}. */
+        GZIP,
+        /** {@code .jsonl.zst}. */
+        ZSTD
+    }
+
+    /**
+     * Encoding of chunk embeddings in the output.
+     */
+    public enum EmbeddingFormat {
+        /** Four bytes per dimension, exact. */
+        FLOAT32,
+        /** One byte per dimension plus a scale factor. */
+        INT8
+    }
+
+    /**
+     * Tokenizer for sizing chunks by tokens, and the vocabulary file format it reads.
+     */
+    public enum TokenizerType {
+        /** BERT-style {@code vocab.txt}. */
+        WORDPIECE,
+        /** tiktoken ranks file, e.g. {@code cl100k_base.tiktoken}. */
+        BPE
+    }
+
     public CrawlConfig {
         if (rootUri == null) throw new IllegalArgumentException("rootUri must not be null");
         if (maxTime == null || maxTime.isNegative() || maxTime.isZero()) {
@@ -24,12 +150,116 @@ public record CrawlConfig(
         if (perHostConcurrency <= 0) {
             throw new IllegalArgumentException("perHostConcurrency must be > 0");
         }
+        if (perHostMaxConcurrency <= 0) {
+            throw new IllegalArgumentException("perHostMaxConcurrency must be > 0");
+        }
         if (perHostMinDelayMillis < 0) {
             throw new IllegalArgumentException("perHostMinDelayMillis must be >= 0");
         }
         if (userAgent == null || userAgent.isBlank()) {
             throw new IllegalArgumentException("userAgent must not be blank");
         }
+        if (maxPageBytes <= 0) {
+            throw new IllegalArgumentException("maxPageBytes must be > 0");
+        }
+        if (oversizePolicy == null) {
+            throw new IllegalArgumentException("oversizePolicy must not be null");
+        }
+        if (visitedStore == null) {
+            throw new IllegalArgumentException("visitedStore must not be null");
+        }
+        seeds = seeds == null || seeds.isEmpty() ? List.of(rootUri) : List.copyOf(seeds);
+        if (!seeds.get(0).equals(rootUri)) {
+            throw new IllegalArgumentException("rootUri must be the first seed");
+        }
+        allowedDomains = allowedDomains == null ? List.of() : List.copyOf(allowedDomains);
+        if (maxConcurrency != null && maxConcurrency <= 0) {
+            throw new IllegalArgumentException("maxConcurrency must be > 0");
+        }
+        if (perHostMaxPages != null && perHostMaxPages <= 0) {
+            throw new IllegalArgumentException("perHostMaxPages must be > 0");
+        }
+        if (perHostMaxTime != null && (perHostMaxTime.isNegative() || perHostMaxTime.isZero())) {
+            throw new IllegalArgumentException("perHostMaxTime must be positive");
+        }
+        if (frontierMemoryBytes <= 0) {
+            throw new IllegalArgumentException("frontierMemoryBytes must be > 0");
+        }
+        if (metricsPort != null && (metricsPort < 0 || metricsPort > 65535)) {
+            throw new IllegalArgumentException("metricsPort must be between 0 and 65535");
+        }
+        if (progressInterval != null && (progressInterval.isNegative() || progressInterval.isZero())) {
+            throw new IllegalArgumentException("progressInterval must be positive");
+        }
+        if (flushBytes <= 0) {
+            throw new IllegalArgumentException("flushBytes must be > 0");
+        }
+        if (flushInterval == null || flushInterval.isNegative() || flushInterval.isZero()) {
+            throw new IllegalArgumentException("flushInterval must be positive");
+        }
+        if (fsync == null) {
+            throw new IllegalArgumentException("fsync must not be null");
+        }
+        if (shards != null && shards <= 0) {
+            throw new IllegalArgumentException("shards must be > 0");
+        }
+        if (shards != null && asyncWriter) {
+            throw new IllegalArgumentException("sharded output is always asynchronous; asyncWriter does not apply");
+        }
+        if (shardMaxBytes <= 0) {
+            throw new IllegalArgumentException("shardMaxBytes must be > 0");
+        }
+        if (shardMaxChunks != null && shardMaxChunks <= 0) {
+            throw new IllegalArgumentException("shardMaxChunks must be > 0");
+        }
+        if (compression == null) {
+            throw new IllegalArgumentException("compression must not be null");
+        }
+        if (outputFormat == null) {
+            throw new IllegalArgumentException("outputFormat must not be null");
+        }
+        if (outputFormat == OutputFormat.PGCOPY_BINARY && resume && shards == null) {
+            throw new IllegalArgumentException("binary COPY output cannot be appended to on resume; use shards");
+        }
+        if (fsync != FsyncPolicy.NEVER && !asyncWriter && shards == null) {
+            throw new IllegalArgumentException("fsync requires the asynchronous writer or sharded output");
+        }
+        if (embedDimensions <= 0) {
+            throw new IllegalArgumentException("embedDimensions must be > 0");
+        }
+        if (embedBatchSize <= 0) {
+            throw new IllegalArgumentException("embedBatchSize must be > 0");
+        }
+        if (embedLinger == null || embedLinger.isNegative()) {
+            throw new IllegalArgumentException("embedLinger must be >= 0");
+        }
+        if (embedParallelism <= 0) {
+            throw new IllegalArgumentException("embedParallelism must be > 0");
+        }
+        if (embedFormat == null) {
+            throw new IllegalArgumentException("embedFormat must not be null");
+        }
+        if ((tokenizer == null) != (tokenizerVocab == null)) {
+            throw new IllegalArgumentException("tokenizer and tokenizerVocab must be set together");
+        }
+        if (chunkMaxTokens <= 0) {
+            throw new IllegalArgumentException("chunkMaxTokens must be > 0");
+        }
+        if (chunkOverlapTokens < 0 || chunkOverlapTokens >= chunkMaxTokens) {
+            throw new IllegalArgumentException("chunkOverlapTokens must be >= 0 and < chunkMaxTokens");
+        }
+        if (!(boilerplateMaxLinkDensity > 0 && boilerplateMaxLinkDensity <= 1)) {
+            throw new IllegalArgumentException("boilerplateMaxLinkDensity must be > 0 and <= 1");
+        }
+        if (!(boilerplateMinTextDensity >= 0)) {
+            throw new IllegalArgumentException("boilerplateMinTextDensity must be >= 0");
+        }
+        if (streamingThresholdBytes < 0) {
+            throw new IllegalArgumentException("streamingThresholdBytes must be >= 0");
+        }
+        if (resume && checkpointDir == null) {
+            throw new IllegalArgumentException("resume requires a checkpointDir");
+        }
     }
 }
 
@@ -1,30 +1,51 @@
 package dev.ragcrawler.crawler;
 
+import dev.ragcrawler.crawler.embedding.EmbedderProvider;
+import dev.ragcrawler.crawler.embedding.EmbeddingStage;
 import dev.ragcrawler.crawler.http.HttpFetcher;
 import dev.ragcrawler.crawler.http.PerHostScheduler;
+import dev.ragcrawler.crawler.jfr.CrawlRecording;
+import dev.ragcrawler.crawler.metrics.CrawlMetrics;
+import dev.ragcrawler.crawler.metrics.MetricsExporter;
+import dev.ragcrawler.crawler.output.AsyncChunkWriter;
+import dev.ragcrawler.crawler.output.ChunkWriter;
 import dev.ragcrawler.crawler.output.JsonlChunkWriter;
+import dev.ragcrawler.crawler.output.PgCopyChunkWriter;
+import dev.ragcrawler.crawler.output.ShardedChunkWriter;
+import dev.ragcrawler.crawler.parsing.BoilerplateFilter;
 import dev.ragcrawler.crawler.parsing.ContentChunker;
 import dev.ragcrawler.crawler.parsing.ContentExtractor;
 import dev.ragcrawler.crawler.parsing.HtmlParser;
 import dev.ragcrawler.crawler.robots.RobotsCache;
 import dev.ragcrawler.crawler.robots.RobotsPolicy;
 import dev.ragcrawler.crawler.state.ContentDeduplicator;
+import dev.ragcrawler.crawler.state.FingerprintVisitedUrlStore;
+import dev.ragcrawler.crawler.state.StringVisitedUrlStore;
+import dev.ragcrawler.crawler.state.CrawlJournal;
 import dev.ragcrawler.crawler.state.UrlFrontier;
 import dev.ragcrawler.crawler.state.UrlNormalizer;
+import dev.ragcrawler.crawler.state.ValidatorCache;
 import dev.ragcrawler.crawler.state.VisitedUrlStore;
+import dev.ragcrawler.crawler.tokenizer.Tokenizer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 
 /**
  * Orchestrates the crawl lifecycle.
@@ -33,6 +54,9 @@ public final class CrawlerApplication {
 
     private static final Logger log = LoggerFactory.getLogger(CrawlerApplication.class);
 
+    private static final Duration SHUTDOWN_DRAIN_TIMEOUT = Duration.ofSeconds(30);
+    private static final long DEFAULT_EXPECTED_URLS = 1_000_000;
+
     private final CrawlConfig config;
     private final Path outputPath;
 
@@ -44,62 +68,194 @@ public final class CrawlerApplication {
     public void run() throws IOException {
         Instant deadline = Instant.now().plus(config.maxTime());
         AtomicBoolean cancelled = new AtomicBoolean(false);
+        CountDownLatch finished = new CountDownLatch(1);
+        PerHostScheduler politeness = new PerHostScheduler(config);
+        UrlFrontier frontier = config.frontierSpillDir() == null
+                ? new UrlFrontier(politeness)
+                : new UrlFrontier(politeness, config.frontierSpillDir(), config.frontierMemoryBytes());
+        Thread shutdownHook = new Thread(() -> drainOnShutdown(cancelled, frontier, finished), "crawler-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+        try (CrawlRecording _ = config.jfrFile() == null
+                     ? CrawlRecording.disabled()
+                     : CrawlRecording.start(config.jfrFile());
+             frontier) {
+            crawl(deadline, cancelled, frontier, politeness);
+        } finally {
+            finished.countDown();
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // JVM is already shutting down; the hook is waiting on us.
+            }
+        }
+    }
+
+    /**
+     * On SIGTERM, stop dispatching and wait for {@link #crawl} to drain in-flight tasks and
+     * close the writer and journal, which writes the final checkpoint.
+     */
+    private static void drainOnShutdown(AtomicBoolean cancelled, UrlFrontier frontier, CountDownLatch finished) {
+        log.info("Shutdown requested; draining in-flight tasks");
+        cancelled.set(true);
+        frontier.wakeUp();
+        try {
+            if (!finished.await(SHUTDOWN_DRAIN_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+                log.warn("Crawl did not drain within {}; exiting anyway", SHUTDOWN_DRAIN_TIMEOUT);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private ChunkWriter openWriter(CrawlMetrics metrics) throws IOException {
+        if (config.shards() != null) {
+            ShardedChunkWriter writer = new ShardedChunkWriter(outputPath, config.outputFormat(), config.resume(),
+                    config.shards(), config.compression(), config.shardMaxBytes(), config.shardMaxChunks(),
+                    config.fsync(), metrics.flushTime());
+            metrics.watchOutputQueue(writer::queueDepth);
+            return writer;
+        }
+        if (!config.asyncWriter()) {
+            return switch (config.outputFormat()) {
+                case JSONL -> config.resume()
+                        ? JsonlChunkWriter.openForAppend(outputPath) : new JsonlChunkWriter(outputPath);
+                case PGCOPY_TEXT -> config.resume()
+                        ? PgCopyChunkWriter.openForAppend(outputPath) : new PgCopyChunkWriter(outputPath, false);
+                case PGCOPY_BINARY -> new PgCopyChunkWriter(outputPath, true);
+            };
+        }
+        AsyncChunkWriter writer = new AsyncChunkWriter(outputPath, config.outputFormat(), config.resume(),
+                AsyncChunkWriter.DEFAULT_QUEUE_PAGES, config.flushBytes(), config.flushInterval(), config.fsync(),
+                metrics.flushTime());
+        metrics.watchOutputQueue(writer::queueDepth);
+        return writer;
+    }
+
+    private EmbeddingStage startEmbeddings(CrawlMetrics metrics) {
+        if (config.embedder() == null) {
+            return EmbeddingStage.disabled();
+        }
+        EmbedderProvider provider = EmbedderProvider.find(config.embedder())
+                .orElseThrow(() -> new IllegalArgumentException("Unknown embedder: " + config.embedder()));
+        return EmbeddingStage.start(provider.create(config.embedDimensions()), config.embedFormat(),
+                config.embedBatchSize(), config.embedLinger(), config.embedParallelism(), metrics);
+    }
+
+    private ContentExtractor createExtractor() {
+        if (!config.stripBoilerplate()) {
+            return new ContentExtractor();
+        }
+        return new ContentExtractor(new BoilerplateFilter(config.boilerplateMaxLinkDensity(),
+                config.boilerplateMinTextDensity()));
+    }
+
+    private ContentChunker createChunker() throws IOException {
+        if (config.tokenizer() == null) {
+            return new ContentChunker();
+        }
+        log.info("Chunking by {} tokens (overlap {}) with {} vocabulary {}", config.chunkMaxTokens(),
+                config.chunkOverlapTokens(), config.tokenizer(), config.tokenizerVocab());
+        return new ContentChunker(Tokenizer.load(config.tokenizer(), config.tokenizerVocab()),
+                config.chunkMaxTokens(), config.chunkOverlapTokens());
+    }
 
-        if (Files.notExists(outputPath.getParent())) {
-            Files.createDirectories(outputPath.getParent());
+    private VisitedUrlStore createVisitedStore() {
+        long expectedUrls = config.maxPages() != null ? config.maxPages() : DEFAULT_EXPECTED_URLS;
+        return switch (config.visitedStore()) {
+            case STRINGS -> new StringVisitedUrlStore();
+            case FINGERPRINT -> new FingerprintVisitedUrlStore(false, config.visitedBloom(), expectedUrls);
+            case OFFHEAP -> new FingerprintVisitedUrlStore(true, config.visitedBloom(), expectedUrls);
+        };
+    }
+
+    private void crawl(Instant deadline, AtomicBoolean cancelled, UrlFrontier frontier, PerHostScheduler politeness)
+            throws IOException {
+        // Sharded output goes into outputPath itself.
+        Path outputDir = config.shards() != null ? outputPath : outputPath.toAbsolutePath().getParent();
+        if (Files.notExists(outputDir)) {
+            Files.createDirectories(outputDir);
         }
 
-        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
-             JsonlChunkWriter writer = new JsonlChunkWriter(outputPath);
-             HttpFetcher httpFetcher = new HttpFetcher(config, deadline, cancelled);
+        CrawlMetrics metrics = new CrawlMetrics();
+        AtomicInteger pagesCrawled = new AtomicInteger(0);
+        metrics.watch(frontier, politeness, pagesCrawled);
+        // Shared with the fetcher, which extracts pages above the streaming threshold as they arrive.
+        ContentExtractor contentExtractor = createExtractor();
+
+        // Resources close in reverse order: the executor first, so in-flight tasks finish
+        // before the writer, caches and journal are closed.
+        try (MetricsExporter exporter = MetricsExporter.start(metrics, config.metricsPort(), config.progressInterval());
+             CrawlJournal journal = config.checkpointDir() == null
+                     ? CrawlJournal.disabled()
+                     : CrawlJournal.open(config.checkpointDir(), config.resume());
+             ChunkWriter writer = openWriter(metrics);
+             EmbeddingStage embeddings = startEmbeddings(metrics);
+             HttpFetcher httpFetcher = new HttpFetcher(config, deadline, cancelled, contentExtractor);
+             ValidatorCache validatorCache = config.cacheDir() == null
+                     ? ValidatorCache.disabled()
+                     : ValidatorCache.open(config.cacheDir());
+             ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
         ) {
-            UrlNormalizer normalizer = new UrlNormalizer(config.rootUri());
-            UrlFrontier frontier = new UrlFrontier();
-            VisitedUrlStore visited = new VisitedUrlStore();
-            ContentDeduplicator deduplicator = new ContentDeduplicator();
+            UrlNormalizer normalizer = new UrlNormalizer(config.seeds(), config.allowedDomains());
+            VisitedUrlStore visited = createVisitedStore();
+            ContentDeduplicator deduplicator = new ContentDeduplicator(config.dedupPages(), config.dedupNearChunks());
             RobotsCache robotsCache = new RobotsCache(httpFetcher, config.userAgent());
             RobotsPolicy robotsPolicy = new RobotsPolicy(robotsCache);
-            PerHostScheduler perHostScheduler = new PerHostScheduler(
-                    config.perHostConcurrency(),
-                    config.perHostMinDelayMillis(),
-                    deadline,
-                    cancelled
-            );
+            // Load robots.txt before a host's first dispatch, so its Crawl-delay spaces the first requests too.
+            frontier.prepareHostsWith(origin -> {
+                URI uri = URI.create(origin + "/");
+                politeness.crawlDelay(PerHostScheduler.hostKey(uri), robotsPolicy.crawlDelay(uri));
+            });
             HtmlParser htmlParser = new HtmlParser();
-            ContentExtractor contentExtractor = new ContentExtractor();
-            ContentChunker chunker = new ContentChunker();
-            AtomicInteger pagesCrawled = new AtomicInteger(0);
+            ContentChunker chunker = createChunker();
 
-            String normalizedRoot = normalizer.normalize(config.rootUri());
-            frontier.offer(new UrlFrontier.Task(normalizedRoot, 0));
+            if (!config.resume() || !journal.restore(visited, frontier, deduplicator)) {
+                for (URI seed : config.seeds()) {
+                    UrlFrontier.Task seedTask = new UrlFrontier.Task(normalizer.normalize(seed), 0);
+                    journal.offered(seedTask);
+                    frontier.offer(seedTask);
+                }
+            }
+            if (config.sitemaps() && !journal.isSitemapIngestionFinished()) {
+                // A restored crawl has the URLs of the sitemaps it ingested in the journal; the seeder skips those.
+                executor.submit(new SitemapSeeder(config, deadline, cancelled, normalizer, frontier, httpFetcher,
+                        robotsPolicy, politeness, journal, visited));
+            }
 
-            AtomicInteger inFlight = new AtomicInteger(0);
+            log.info("Starting crawl: root={} seeds={} allowedDomains={} maxTime={} maxPages={} maxDepth={}",
+                    config.rootUri(), config.seeds().size(), config.allowedDomains(), config.maxTime(),
+                    config.maxPages(), config.maxDepth());
 
-            log.info("Starting crawl: root={} maxTime={} maxPages={} maxDepth={}",
-                    config.rootUri(), config.maxTime(), config.maxPages(), config.maxDepth());
+            // Depth and visited filtering happen inside take() so skipped URLs do not use a politeness slot.
+            Predicate<UrlFrontier.Task> dispatchable = task ->
+                    (config.maxDepth() == null || task.depth() <= config.maxDepth())
+                            && visited.markVisited(task.normalizedUrl());
 
-            while (!cancelled.get()) {
-                if (Instant.now().isAfter(deadline)) {
-                    log.info("Global deadline reached; stopping crawl loop");
-                    cancelled.set(true);
-                    break;
-                }
+            while (true) {
                 if (config.maxPages() != null && pagesCrawled.get() >= config.maxPages()) {
                     log.info("Reached maxPages {}; stopping crawl loop", config.maxPages());
                     cancelled.set(true);
                     break;
                 }
 
-                Optional<UrlFrontier.Task> maybeTask = frontier.poll();
+                Optional<UrlFrontier.Task> maybeTask;
+                try {
+                    maybeTask = frontier.take(deadline, cancelled, dispatchable);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    cancelled.set(true);
+                    break;
+                }
                 if (maybeTask.isEmpty()) {
-                    if (inFlight.get() == 0) {
+                    if (cancelled.get()) {
+                        break;
+                    }
+                    if (frontier.isDrained()) {
                         log.info("Frontier empty and no in-flight tasks; crawl complete");
                         break;
                     }
-                    try {
-                        Thread.sleep(50);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
+                    if (Instant.now().isAfter(deadline)) {
+                        log.info("Global deadline reached; stopping crawl loop");
                         cancelled.set(true);
                         break;
                     }
@@ -107,21 +263,13 @@ public final class CrawlerApplication {
                 }
 
                 UrlFrontier.Task task = maybeTask.get();
-
-                if (config.maxDepth() != null && task.depth() > config.maxDepth()) {
-                    continue;
-                }
-
-                // Skip only if URL was already visited; markVisited returns true on first visit.
-                if (!visited.markVisited(task.normalizedUrl())) {
-                    continue;
-                }
+                journal.visited(task.normalizedUrl());
 
                 if (config.maxPages() != null && pagesCrawled.get() >= config.maxPages()) {
+                    frontier.complete(task);
                     continue;
                 }
 
-                inFlight.incrementAndGet();
                 executor.submit(new PageCrawlTask(
                         task,
                         config,
@@ -130,33 +278,34 @@ public final class CrawlerApplication {
                         normalizer,
                         frontier,
                         pagesCrawled,
-                        inFlight,
                         httpFetcher,
                         robotsPolicy,
-                        perHostScheduler,
+                        politeness,
                         htmlParser,
                         contentExtractor,
                         chunker,
                         deduplicator,
-                        writer
+                        embeddings,
+                        writer,
+                        validatorCache,
+                        journal,
+                        visited,
+                        metrics
                 ));
             }
 
-            while (inFlight.get() > 0 && !cancelled.get()) {
-                if (Instant.now().isAfter(deadline)) {
-                    log.info("Deadline reached while waiting for tasks; setting cancelled");
-                    cancelled.set(true);
-                    break;
-                }
-                try {
-                    Thread.sleep(50);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
-                }
-            }
-
             log.info("Crawl finished: pagesCrawled={}", pagesCrawled.get());
+            List<PerHostScheduler.HostRate> rates = politeness.rates();
+            for (PerHostScheduler.HostRate rate : rates.subList(0, Math.min(20, rates.size()))) {
+                log.info("Host {}: requests={} throttled={} concurrency={} delay={}ms crawlDelay={}ms latency={}ms rate={} req/s bytes={} wire={}",
+                        rate.host(), rate.requests(), rate.throttled(), String.format("%.1f", rate.concurrency()),
+                        rate.delayMillis(), rate.crawlDelayMillis(), rate.latencyMillis(),
+                        String.format("%.1f", rate.requestsPerSecond()), rate.bodyBytes(), rate.wireBytes());
+            }
+            exporter.logSummary();
+            log.info("Dedup: duplicatePages={} duplicateChunks={} nearDuplicateChunks={}",
+                    deduplicator.duplicatePages(), deduplicator.duplicateChunks(),
+                    deduplicator.nearDuplicateChunks());
         }
     }
 }
@@ -1,22 +1,32 @@
 package dev.ragcrawler.crawler;
 
+import dev.ragcrawler.crawler.embedding.EmbedderProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.net.URI;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
 public final class Main {
 
     private static final Logger log = LoggerFactory.getLogger(Main.class);
 
+    // Bodies below the streaming threshold are buffered in a single byte[].
+    private static final long MAX_PAGE_BYTES_LIMIT = Integer.MAX_VALUE - 8;
+
     public static void main(String[] args) {
         try {
             CliOptions options = CliOptions.parse(args);
             validateOptions(options);
 
-            URI rootUri = URI.create(options.url());
+            List<URI> seeds = readSeeds(options);
+            URI rootUri = seeds.get(0);
             Duration maxTime = Duration.ofSeconds(options.maxTimeSeconds());
             Path outputPath = Path.of(options.outputPath());
 
@@ -27,7 +37,52 @@ public final class Main {
                     options.maxDepth(),
                     options.perHostConcurrency(),
                     options.perHostMinDelayMillis(),
-                    options.userAgent()
+                    options.userAgent(),
+                    (int) options.maxPageBytes(),
+                    options.oversizePolicy(),
+                    options.cacheDir() == null ? null : Path.of(options.cacheDir()),
+                    options.checkpointDir() == null ? null : Path.of(options.checkpointDir()),
+                    options.resume(),
+                    options.visitedStore(),
+                    options.visitedBloom(),
+                    options.dedupPages(),
+                    options.dedupNearChunks(),
+                    options.frontierSpillDir() == null ? null : Path.of(options.frontierSpillDir()),
+                    options.frontierMemoryBytes(),
+                    seeds,
+                    options.allowDomains(),
+                    options.maxConcurrency(),
+                    options.perHostMaxPages(),
+                    options.perHostMaxTimeSeconds() == null ? null : Duration.ofSeconds(options.perHostMaxTimeSeconds()),
+                    options.adaptiveRate(),
+                    options.perHostMaxConcurrency(),
+                    options.sitemaps(),
+                    options.metricsPort(),
+                    options.progressIntervalSeconds() == null ? null : Duration.ofSeconds(options.progressIntervalSeconds()),
+                    options.jfrFile() == null ? null : Path.of(options.jfrFile()),
+                    options.asyncWriter(),
+                    options.flushBytes(),
+                    Duration.ofMillis(options.flushMillis()),
+                    options.fsync(),
+                    options.shards(),
+                    options.shardMaxBytes(),
+                    options.shardMaxChunks(),
+                    options.compression(),
+                    options.outputFormat(),
+                    options.embedder(),
+                    options.embedDimensions(),
+                    options.embedBatchSize(),
+                    Duration.ofMillis(options.embedLingerMillis()),
+                    options.embedParallelism(),
+                    options.embedFormat(),
+                    options.tokenizer(),
+                    options.tokenizerVocab() == null ? null : Path.of(options.tokenizerVocab()),
+                    options.chunkMaxTokens(),
+                    options.chunkOverlapTokens(),
+                    options.stripBoilerplate(),
+                    options.boilerplateMaxLinkDensity(),
+                    options.boilerplateMinTextDensity(),
+                    (int) options.streamingThresholdBytes()
             );
 
             CrawlerApplication app = new CrawlerApplication(config, outputPath);
@@ -43,8 +98,8 @@ public final class Main {
     }
 
     private static void validateOptions(CliOptions opts) throws CliOptions.CliException {
-        if (opts.url() == null) {
-            throw new CliOptions.CliException("--url is required");
+        if (opts.url() == null && opts.seedsFile() == null) {
+            throw new CliOptions.CliException("--url or --seeds is required");
         }
         if (opts.outputPath() == null) {
             throw new CliOptions.CliException("--output is required");
@@ -58,6 +113,113 @@ public final class Main {
         if (opts.maxDepth() != null && opts.maxDepth() < 0) {
             throw new CliOptions.CliException("--maxDepth must be >= 0");
         }
+        if (opts.maxPageBytes() <= 0 || opts.maxPageBytes() > MAX_PAGE_BYTES_LIMIT) {
+            throw new CliOptions.CliException("--maxPageBytes must be between 1 and " + MAX_PAGE_BYTES_LIMIT);
+        }
+        if (opts.streamingThresholdBytes() < 0 || opts.streamingThresholdBytes() > MAX_PAGE_BYTES_LIMIT) {
+            throw new CliOptions.CliException("--streamingThresholdBytes must be between 0 and " + MAX_PAGE_BYTES_LIMIT);
+        }
+        if (opts.perHostMaxConcurrency() <= 0) {
+            throw new CliOptions.CliException("--perHostMaxConcurrency must be > 0");
+        }
+        if (opts.maxConcurrency() != null && opts.maxConcurrency() <= 0) {
+            throw new CliOptions.CliException("--maxConcurrency must be > 0");
+        }
+        if (opts.perHostMaxPages() != null && opts.perHostMaxPages() <= 0) {
+            throw new CliOptions.CliException("--perHostMaxPages must be > 0");
+        }
+        if (opts.perHostMaxTimeSeconds() != null && opts.perHostMaxTimeSeconds() <= 0) {
+            throw new CliOptions.CliException("--perHostMaxTime must be > 0");
+        }
+        if (opts.metricsPort() != null && (opts.metricsPort() < 0 || opts.metricsPort() > 65535)) {
+            throw new CliOptions.CliException("--metricsPort must be between 0 and 65535");
+        }
+        if (opts.progressIntervalSeconds() != null && opts.progressIntervalSeconds() <= 0) {
+            throw new CliOptions.CliException("--progressInterval must be > 0");
+        }
+        if (opts.flushBytes() <= 0) {
+            throw new CliOptions.CliException("--flushBytes must be > 0");
+        }
+        if (opts.flushMillis() <= 0) {
+            throw new CliOptions.CliException("--flushMillis must be > 0");
+        }
+        if (opts.shards() != null && opts.shards() <= 0) {
+            throw new CliOptions.CliException("--shards must be > 0");
+        }
+        if (opts.shards() != null && opts.asyncWriter()) {
+            throw new CliOptions.CliException("--asyncWriter does not apply to --shards, which always writes asynchronously");
+        }
+        if (opts.shardMaxBytes() <= 0) {
+            throw new CliOptions.CliException("--shardMaxBytes must be > 0");
+        }
+        if (opts.shardMaxChunks() != null && opts.shardMaxChunks() <= 0) {
+            throw new CliOptions.CliException("--shardMaxChunks must be > 0");
+        }
+        if (opts.outputFormat() == CrawlConfig.OutputFormat.PGCOPY_BINARY && opts.resume() && opts.shards() == null) {
+            throw new CliOptions.CliException("--resume cannot append to pgcopy-binary output; use --shards");
+        }
+        if (opts.fsync() != CrawlConfig.FsyncPolicy.NEVER && !opts.asyncWriter() && opts.shards() == null) {
+            throw new CliOptions.CliException("--fsync requires --asyncWriter or --shards");
+        }
+        if (opts.embedder() != null && EmbedderProvider.find(opts.embedder()).isEmpty()) {
+            throw new CliOptions.CliException("Unknown embedder " + opts.embedder() + " (available: "
+                    + String.join(", ", EmbedderProvider.names()) + ")");
+        }
+        if (opts.embedDimensions() <= 0) {
+            throw new CliOptions.CliException("--embedDimensions must be > 0");
+        }
+        if (opts.embedBatchSize() <= 0) {
+            throw new CliOptions.CliException("--embedBatchSize must be > 0");
+        }
+        if (opts.embedLingerMillis() < 0) {
+            throw new CliOptions.CliException("--embedLingerMillis must be >= 0");
+        }
+        if (opts.embedParallelism() <= 0) {
+            throw new CliOptions.CliException("--embedParallelism must be > 0");
+        }
+        if ((opts.tokenizer() == null) != (opts.tokenizerVocab() == null)) {
+            throw new CliOptions.CliException("--tokenizer and --tokenizerVocab must be given together");
+        }
+        if (opts.tokenizerVocab() != null && !Files.isRegularFile(Path.of(opts.tokenizerVocab()))) {
+            throw new CliOptions.CliException("--tokenizerVocab file not found: " + opts.tokenizerVocab());
+        }
+        if (opts.chunkMaxTokens() <= 0) {
+            throw new CliOptions.CliException("--chunkMaxTokens must be > 0");
+        }
+        if (opts.chunkOverlapTokens() < 0 || opts.chunkOverlapTokens() >= opts.chunkMaxTokens()) {
+            throw new CliOptions.CliException("--chunkOverlapTokens must be >= 0 and < --chunkMaxTokens");
+        }
+        if (!(opts.boilerplateMaxLinkDensity() > 0 && opts.boilerplateMaxLinkDensity() <= 1)) {
+            throw new CliOptions.CliException("--boilerplateMaxLinkDensity must be > 0 and <= 1");
+        }
+        if (!(opts.boilerplateMinTextDensity() >= 0)) {
+            throw new CliOptions.CliException("--boilerplateMinTextDensity must be >= 0");
+        }
+    }
+
+    /**
+     * {@code --url} first, then the lines of {@code --seeds}, skipping blanks, {@code #} comments and duplicates.
+     */
+    private static List<URI> readSeeds(CliOptions opts) throws IOException, CliOptions.CliException {
+        Set<URI> seeds = new LinkedHashSet<>();
+        if (opts.url() != null) {
+            seeds.add(URI.create(opts.url()));
+        }
+        if (opts.seedsFile() != null) {
+            for (String line : Files.readAllLines(Path.of(opts.seedsFile()))) {
+                String url = line.strip();
+                if (url.isEmpty() || url.startsWith("#")) continue;
+                URI uri = URI.create(url);
+                if (!uri.isAbsolute() || uri.getHost() == null) {
+                    throw new CliOptions.CliException("Invalid seed URL in " + opts.seedsFile() + ": " + url);
+                }
+                seeds.add(uri);
+            }
+        }
+        if (seeds.isEmpty()) {
+            throw new CliOptions.CliException("--seeds file contains no URLs: " + opts.seedsFile());
+        }
+        return List.copyOf(seeds);
     }
 }
 
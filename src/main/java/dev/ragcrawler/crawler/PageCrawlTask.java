@@ -1,22 +1,31 @@
 package dev.ragcrawler.crawler;
 
+import dev.ragcrawler.crawler.embedding.EmbeddingStage;
 import dev.ragcrawler.crawler.http.HttpFetcher;
 import dev.ragcrawler.crawler.http.PerHostScheduler;
-import dev.ragcrawler.crawler.output.JsonlChunkWriter;
+import dev.ragcrawler.crawler.metrics.CrawlMetrics;
+import dev.ragcrawler.crawler.output.ChunkWriter;
 import dev.ragcrawler.crawler.parsing.ContentChunker;
 import dev.ragcrawler.crawler.parsing.ContentExtractor;
 import dev.ragcrawler.crawler.parsing.ExtractedDocument;
 import dev.ragcrawler.crawler.parsing.HtmlParser;
 import dev.ragcrawler.crawler.parsing.OutputChunk;
+import dev.ragcrawler.crawler.parsing.ParsedPage;
 import dev.ragcrawler.crawler.robots.RobotsPolicy;
 import dev.ragcrawler.crawler.state.ContentDeduplicator;
+import dev.ragcrawler.crawler.state.CrawlJournal;
+import dev.ragcrawler.crawler.state.Fingerprints;
 import dev.ragcrawler.crawler.state.UrlFrontier;
 import dev.ragcrawler.crawler.state.UrlNormalizer;
+import dev.ragcrawler.crawler.state.ValidatorCache;
+import dev.ragcrawler.crawler.state.VisitedUrlStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.net.URI;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -26,6 +35,9 @@ public final class PageCrawlTask implements Runnable {
 
     private static final Logger log = LoggerFactory.getLogger(PageCrawlTask.class);
 
+    /** How often a page answered with 429 or 503 goes back into the frontier before it is given up. */
+    static final int MAX_THROTTLED_RETRIES = 3;
+
     private final UrlFrontier.Task task;
     private final CrawlConfig config;
     private final Instant deadline;
@@ -33,7 +45,6 @@ public final class PageCrawlTask implements Runnable {
     private final UrlNormalizer normalizer;
     private final UrlFrontier frontier;
     private final AtomicInteger pagesCrawled;
-    private final AtomicInteger inFlight;
     private final HttpFetcher httpFetcher;
     private final RobotsPolicy robotsPolicy;
     private final PerHostScheduler perHostScheduler;
@@ -41,7 +52,16 @@ public final class PageCrawlTask implements Runnable {
     private final ContentExtractor contentExtractor;
     private final ContentChunker chunker;
     private final ContentDeduplicator deduplicator;
-    private final JsonlChunkWriter writer;
+    private final EmbeddingStage embeddings;
+    private final ChunkWriter writer;
+    private final ValidatorCache validatorCache;
+    private final CrawlJournal journal;
+    private final VisitedUrlStore visited;
+    private final CrawlMetrics metrics;
+    private final CrawlJournal.Page journalPage;
+    // Set once the writer owns the page's C record: it is journaled when the chunks are committed.
+    private boolean completionHandedOff;
+    private boolean throttled;
 
     public PageCrawlTask(
             UrlFrontier.Task task,
@@ -51,7 +71,6 @@ public final class PageCrawlTask implements Runnable {
             UrlNormalizer normalizer,
             UrlFrontier frontier,
             AtomicInteger pagesCrawled,
-            AtomicInteger inFlight,
             HttpFetcher httpFetcher,
             RobotsPolicy robotsPolicy,
             PerHostScheduler perHostScheduler,
@@ -59,7 +78,12 @@ public final class PageCrawlTask implements Runnable {
             ContentExtractor contentExtractor,
             ContentChunker chunker,
             ContentDeduplicator deduplicator,
-            JsonlChunkWriter writer
+            EmbeddingStage embeddings,
+            ChunkWriter writer,
+            ValidatorCache validatorCache,
+            CrawlJournal journal,
+            VisitedUrlStore visited,
+            CrawlMetrics metrics
     ) {
         this.task = task;
         this.config = config;
@@ -68,7 +92,6 @@ public final class PageCrawlTask implements Runnable {
         this.normalizer = normalizer;
         this.frontier = frontier;
         this.pagesCrawled = pagesCrawled;
-        this.inFlight = inFlight;
         this.httpFetcher = httpFetcher;
         this.robotsPolicy = robotsPolicy;
         this.perHostScheduler = perHostScheduler;
@@ -76,71 +99,214 @@ public final class PageCrawlTask implements Runnable {
         this.contentExtractor = contentExtractor;
         this.chunker = chunker;
         this.deduplicator = deduplicator;
+        this.embeddings = embeddings;
         this.writer = writer;
+        this.validatorCache = validatorCache;
+        this.journal = journal;
+        this.visited = visited;
+        this.metrics = metrics;
+        this.journalPage = journal.page(task.normalizedUrl());
     }
 
     @Override
     public void run() {
+        boolean completed = false;
         try {
             if (cancelled.get()) return;
             if (Instant.now().isAfter(deadline)) {
                 cancelled.set(true);
                 return;
             }
-
-            URI uri = URI.create(task.normalizedUrl());
-            if (!robotsPolicy.isAllowed(uri)) {
-                return;
+            fetchAndProcess();
+            completed = true;
+        } catch (Exception e) {
+            log.warn("Error while crawling {}: {}", task.normalizedUrl(), e.toString());
+            // Failures caused by stopping the crawl are retried on resume; others are final.
+            completed = !cancelled.get();
+        } finally {
+            boolean requeued = false;
+            if (throttled) {
+                // Not done: fetch it again once the host's hold expires, or on resume if stopping.
+                requeued = !cancelled.get() && frontier.retry(task, MAX_THROTTLED_RETRIES);
+                if (!requeued && !cancelled.get()) {
+                    log.warn("Giving up on {}: still throttled after {} retries", task.normalizedUrl(),
+                            MAX_THROTTLED_RETRIES);
+                }
+                completed = !requeued && !cancelled.get();
+            }
+            if (completed && !completionHandedOff) {
+                journal.completed(journalPage);
+            }
+            if (!requeued) {
+                frontier.complete(task);
             }
+        }
+    }
 
-            if (!perHostScheduler.beforeRequest(uri)) {
-                return;
+    private void fetchAndProcess() throws IOException, InterruptedException {
+        URI uri = URI.create(task.normalizedUrl());
+        boolean allowed = robotsPolicy.isAllowed(uri);
+        metrics.robots(allowed);
+        if (!allowed) {
+            return;
+        }
+        String hostKey = PerHostScheduler.hostKey(uri);
+        perHostScheduler.crawlDelay(hostKey, robotsPolicy.crawlDelay(uri));
+
+        ValidatorCache.Entry cached = validatorCache.get(task.normalizedUrl());
+        long start = System.nanoTime();
+        HttpFetcher.Response response;
+        try {
+            response = httpFetcher.fetch(uri,
+                    cached == null ? null : new HttpFetcher.Validators(cached.etag(), cached.lastModified()));
+        } catch (IOException e) {
+            if (!cancelled.get()) {
+                perHostScheduler.onFailure(hostKey);
+                metrics.fetchFailed();
             }
+            throw e;
+        }
+        long latency = System.nanoTime() - start;
+        perHostScheduler.onResponse(hostKey, response.statusCode(), latency, response.retryAfter());
+        perHostScheduler.received(hostKey, response.bodyLength(), response.wireBytes());
+        metrics.fetched(response.statusCode(), latency, response.bodyLength(), response.wireBytes());
+        if (response.isNotModified() && cached != null) {
+            validatorCache.recordNotModified();
+            countPage();
+            offerLinks(cached.links());
+            return;
+        }
+        if (response.statusCode() == 429 || response.statusCode() == 503) {
+            throttled = true;
+            return;
+        }
+        if (!response.isSuccessHtml()) {
+            return;
+        }
+
+        process(uri, response, cached);
+    }
 
-            HttpFetcher.Response response = httpFetcher.fetch(uri);
-            if (!response.isSuccessHtml()) {
+    /**
+     * Runs everything after a successful fetch: a single parse, link expansion, extraction, chunking and writing.
+     * Pages whose body fingerprint matches the validator cache skip straight to link expansion;
+     * with page dedup on, bodies already seen under another URL are dropped before parsing.
+     * A body the fetcher streamed arrives already parsed and extracted; its fingerprints come from
+     * its digest.
+     * Kept separate from {@link #run()} so the processing path can be exercised without a network.
+     */
+    void process(URI uri, HttpFetcher.Response response, ValidatorCache.Entry cached) throws IOException {
+        countPage();
+
+        HttpFetcher.StreamedBody streamed = response.streamed();
+        String fingerprint = !validatorCache.isEnabled() ? null
+                : streamed != null ? ValidatorCache.fingerprintOfDigest(streamed.sha256())
+                : ValidatorCache.fingerprint(response.body());
+        if (cached != null && fingerprint.equals(cached.fingerprint())) {
+            // Server ignored the conditional request but the body is byte-identical.
+            validatorCache.recordUnchanged();
+            offerLinks(cached.links());
+            remember(response, fingerprint, cached.links());
+            return;
+        }
+
+        if (deduplicator.dedupsPages()) {
+            // Bodies stream by size, so a given body is always fingerprinted the same way.
+            long pageFingerprint = streamed != null
+                    ? Fingerprints.fingerprint64(streamed.sha256())
+                    : Fingerprints.fingerprint64(response.body());
+            if (deduplicator.isDuplicatePage(pageFingerprint)) {
+                // Same bytes already crawled under another URL: nothing new to parse, extract or follow.
                 return;
             }
+            journalPage.pageFingerprint(pageFingerprint);
+        }
 
-            int pageIndex = pagesCrawled.incrementAndGet();
+        long start = System.nanoTime();
+        ParsedPage page = null;
+        List<String> links;
+        if (streamed != null) {
+            metrics.parsed(streamed.page().parseNanos());
+            links = streamed.page().links();
+        } else {
+            page = htmlParser.parsePage(response.body(), response.charset(), uri.toString());
+            metrics.parsed(System.nanoTime() - start);
+            links = page.links();
+        }
 
-            String body = response.body();
-            ExtractedDocument doc = contentExtractor.extract(
-                    htmlParser.parse(body, uri.toString()),
-                    uri.toString(),
-                    response.effectiveUri().toString(),
-                    task.depth()
-            );
+        // Offer links before extraction so fetching the next pages overlaps with processing this one.
+        offerLinks(links);
+        remember(response, fingerprint, links);
 
-            List<OutputChunk> chunks = chunker.chunk(doc);
-            for (OutputChunk chunk : chunks) {
-                if (deduplicator.isDuplicate(chunk.chunkHash())) {
-                    continue;
-                }
-                writer.writeChunk(chunk);
-            }
+        start = System.nanoTime();
+        ExtractedDocument doc = page != null
+                ? contentExtractor.extract(page.document(), uri.toString(), response.effectiveUri().toString(),
+                        task.depth())
+                : contentExtractor.extract(streamed.page(), uri.toString(), response.effectiveUri().toString(),
+                        task.depth());
 
-            if (config.maxPages() != null && pageIndex >= config.maxPages()) {
-                cancelled.set(true);
+        long extracted = System.nanoTime();
+        metrics.extracted(extracted - start);
+        metrics.boilerplateDropped(doc.boilerplateBlocks(), doc.boilerplateBytes());
+        List<OutputChunk> chunks = chunker.chunk(doc);
+        metrics.chunked(System.nanoTime() - extracted);
+        List<OutputChunk> accepted = new ArrayList<>(chunks.size());
+        for (OutputChunk chunk : chunks) {
+            if (deduplicator.isDuplicate(chunk.chunkHash())) {
+                continue;
             }
-
-            List<String> links = htmlParser.extractLinks(body, uri.toString());
-            for (String link : links) {
-                if (cancelled.get()) break;
-                Optional<String> norm = normalizer.normalizeIfSameHost(link);
-                if (norm.isEmpty()) continue;
-                int nextDepth = task.depth() + 1;
-                if (config.maxDepth() != null && nextDepth > config.maxDepth()) {
+            journalPage.chunkHash(chunk.chunkHash());
+            if (deduplicator.dedupsNearChunks()) {
+                long simHash = ContentDeduplicator.nearDuplicateHash(chunk.content());
+                if (deduplicator.isNearDuplicate(simHash)) {
                     continue;
                 }
-                frontier.offer(new UrlFrontier.Task(norm.get(), nextDepth));
+                if (simHash != 0) {
+                    journalPage.nearDuplicateHash(simHash);
+                }
             }
+            accepted.add(chunk);
+        }
+        accepted = embeddings.embed(accepted);
+        // One write per page keeps its chunks contiguous and lets the writer batch. The page only
+        // counts as completed once its chunks are committed; if they never are, it is crawled again.
+        long writeStart = System.nanoTime();
+        completionHandedOff = true;
+        writer.writePage(accepted, () -> journal.completed(journalPage));
+        metrics.written(System.nanoTime() - writeStart, accepted.size());
+    }
 
-        } catch (Exception e) {
-            log.warn("Error while crawling {}: {}", task.normalizedUrl(), e.toString());
-        } finally {
-            inFlight.decrementAndGet();
+    private void countPage() {
+        int pageIndex = pagesCrawled.incrementAndGet();
+        if (config.maxPages() != null && pageIndex >= config.maxPages()) {
+            cancelled.set(true);
         }
     }
-}
 
+    private void remember(HttpFetcher.Response response, String fingerprint, List<String> links) throws IOException {
+        if (!validatorCache.isEnabled()) return;
+        HttpFetcher.Validators v = response.validators();
+        validatorCache.put(new ValidatorCache.Entry(task.normalizedUrl(), v.etag(), v.lastModified(),
+                fingerprint, links));
+    }
+
+    private void offerLinks(List<String> links) {
+        int nextDepth = task.depth() + 1;
+        if (config.maxDepth() != null && nextDepth > config.maxDepth()) {
+            return;
+        }
+        URI base = URI.create(task.normalizedUrl());
+        for (String link : links) {
+            Optional<String> norm = normalizer.normalizeIfInScope(link, base);
+            if (norm.isEmpty()) continue;
+            // Already-visited links would only be dropped at dispatch; keep them out of the frontier.
+            if (visited.isVisited(norm.get())) continue;
+            UrlFrontier.Task next = new UrlFrontier.Task(norm.get(), nextDepth);
+            // Once stopping, links are only journaled: this page still completes, so resume needs them.
+            journal.offered(next);
+            if (!cancelled.get()) {
+                frontier.offer(next);
+            }
+        }
+    }
+}
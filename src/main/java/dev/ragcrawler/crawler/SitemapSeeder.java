@@ -0,0 +1,210 @@
+package dev.ragcrawler.crawler;
+
+import dev.ragcrawler.crawler.http.HttpFetcher;
+import dev.ragcrawler.crawler.http.PerHostScheduler;
+import dev.ragcrawler.crawler.parsing.SitemapParser;
+import dev.ragcrawler.crawler.robots.RobotsPolicy;
+import dev.ragcrawler.crawler.state.CrawlJournal;
+import dev.ragcrawler.crawler.state.UrlFrontier;
+import dev.ragcrawler.crawler.state.UrlNormalizer;
+import dev.ragcrawler.crawler.state.VisitedUrlStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpResponse;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Seeds the frontier from the sitemaps of the seed origins, so a site's pages are queued in the
+ * first seconds of a crawl instead of one link level per fetch.
+ * <p>
+ * Sitemaps come from the {@code Sitemap} lines of each origin's robots.txt, falling back to
+ * {@code /sitemap.xml}; indexes are followed. Each sitemap is streamed through
+ * {@link SitemapParser}, and its in-scope URLs are offered at depth 1, most recently modified
+ * first. Runs beside the crawl loop, registered as a frontier producer so the crawl does not end
+ * before ingestion does.
+ * <p>
+ * Sitemaps are fetched like pages: only in scope, when robots.txt allows, in a host slot taken from
+ * the frontier so the host's delay and concurrency limit apply, and reading at most
+ * {@code maxPageBytes} of each. Sitemaps whose URLs have all been offered are journaled, so a
+ * resumed crawl continues an unfinished ingestion without reading them again.
+ */
+public final class SitemapSeeder implements Runnable {
+
+    private static final Logger log = LoggerFactory.getLogger(SitemapSeeder.class);
+
+    static final int MAX_SITEMAPS = 1_000;
+    private static final Comparator<SitemapParser.Entry> NEWEST_FIRST = Comparator.comparing(
+            SitemapParser.Entry::lastModified, Comparator.nullsLast(Comparator.reverseOrder()));
+
+    private final CrawlConfig config;
+    private final Instant deadline;
+    private final AtomicBoolean cancelled;
+    private final UrlNormalizer normalizer;
+    private final UrlFrontier frontier;
+    private final HttpFetcher httpFetcher;
+    private final RobotsPolicy robotsPolicy;
+    private final PerHostScheduler perHostScheduler;
+    private final CrawlJournal journal;
+    private final VisitedUrlStore visited;
+    private final SitemapParser parser = new SitemapParser();
+
+    public SitemapSeeder(
+            CrawlConfig config,
+            Instant deadline,
+            AtomicBoolean cancelled,
+            UrlNormalizer normalizer,
+            UrlFrontier frontier,
+            HttpFetcher httpFetcher,
+            RobotsPolicy robotsPolicy,
+            PerHostScheduler perHostScheduler,
+            CrawlJournal journal,
+            VisitedUrlStore visited
+    ) {
+        this.config = config;
+        this.deadline = deadline;
+        this.cancelled = cancelled;
+        this.normalizer = normalizer;
+        this.frontier = frontier;
+        this.httpFetcher = httpFetcher;
+        this.robotsPolicy = robotsPolicy;
+        this.perHostScheduler = perHostScheduler;
+        this.journal = journal;
+        this.visited = visited;
+        frontier.producerStarted();
+    }
+
+    @Override
+    public void run() {
+        try {
+            ingest();
+        } catch (Exception e) {
+            log.warn("Sitemap ingestion failed: {}", e.toString());
+        } finally {
+            frontier.producerDone();
+        }
+    }
+
+    private void ingest() throws InterruptedException {
+        Deque<String> pending = new ArrayDeque<>(discover());
+        Set<String> seen = new HashSet<>(pending);
+        // Ingested by an earlier run; indexes are never recorded, so their children are still found.
+        Set<String> ingested = journal.sitemapsIngested();
+        int sitemaps = 0;
+        long offered = 0;
+        while (!pending.isEmpty() && sitemaps < MAX_SITEMAPS && !cancelled.get()) {
+            String sitemap = pending.poll();
+            sitemaps++;
+            if (ingested.contains(sitemap)) continue;
+            List<SitemapParser.Entry> entries = new ArrayList<>();
+            SitemapParser.Type type;
+            try {
+                type = read(URI.create(sitemap), entries);
+            } catch (IOException | IllegalArgumentException e) {
+                log.info("Skipping sitemap {}: {}", sitemap, e.toString());
+                continue;
+            }
+            if (type == SitemapParser.Type.INDEX) {
+                for (SitemapParser.Entry child : entries) {
+                    Optional<String> norm = normalizer.normalizeIfInScope(child.loc());
+                    if (norm.isPresent() && seen.add(norm.get())) pending.add(norm.get());
+                }
+            } else if (type == SitemapParser.Type.URLSET) {
+                offered += offer(entries);
+                if (!cancelled.get()) {
+                    journal.sitemapIngested(sitemap);
+                }
+            }
+        }
+        if (!cancelled.get()) {
+            journal.sitemapIngestionFinished();
+        }
+        log.info("Sitemaps: read={} urlsOffered={}", sitemaps, offered);
+    }
+
+    /**
+     * @return sitemap URLs named in robots.txt of each seed origin, or its {@code /sitemap.xml}
+     */
+    private Set<String> discover() {
+        Set<String> sitemaps = new LinkedHashSet<>();
+        Set<String> origins = new HashSet<>();
+        for (URI seed : config.seeds()) {
+            URI origin = seed.resolve("/");
+            if (!origins.add(origin.toString())) continue;
+            List<String> listed = robotsPolicy.sitemaps(origin);
+            if (listed.isEmpty()) {
+                sitemaps.add(origin.resolve("/sitemap.xml").toString());
+            } else {
+                sitemaps.addAll(listed);
+            }
+        }
+        return sitemaps;
+    }
+
+    private SitemapParser.Type read(URI uri, List<SitemapParser.Entry> entries)
+            throws IOException, InterruptedException {
+        if (!robotsPolicy.isAllowed(uri)) {
+            throw new IOException("Disallowed by robots.txt");
+        }
+        String hostKey = PerHostScheduler.hostKey(uri);
+        perHostScheduler.crawlDelay(hostKey, robotsPolicy.crawlDelay(uri));
+        if (!frontier.acquire(uri.toString(), deadline, cancelled)) {
+            throw new IOException("Cancelled or deadline exceeded before fetch");
+        }
+        try {
+            long start = System.nanoTime();
+            HttpResponse<InputStream> response;
+            try {
+                response = httpFetcher.openStream(uri);
+            } catch (IOException e) {
+                perHostScheduler.onFailure(hostKey);
+                throw e;
+            }
+            try (InputStream body = response.body()) {
+                int status = response.statusCode();
+                if (status < 200 || status >= 300) {
+                    perHostScheduler.onResponse(hostKey, status, System.nanoTime() - start,
+                            response.headers().firstValue("Retry-After").map(HttpFetcher::parseRetryAfter).orElse(null));
+                    throw new IOException("HTTP " + status);
+                }
+                SitemapParser.Type type = parser.parse(body, entries::add, config.maxPageBytes());
+                perHostScheduler.onResponse(hostKey, status, System.nanoTime() - start, null);
+                return type;
+            }
+        } finally {
+            frontier.release(uri.toString());
+        }
+    }
+
+    private long offer(List<SitemapParser.Entry> entries) {
+        if (config.maxDepth() != null && config.maxDepth() < 1) {
+            return 0;
+        }
+        // Stable sort: entries without lastmod keep document order, after the dated ones.
+        entries.sort(NEWEST_FIRST);
+        long offered = 0;
+        for (SitemapParser.Entry entry : entries) {
+            if (cancelled.get()) break;
+            Optional<String> norm = normalizer.normalizeIfInScope(entry.loc());
+            if (norm.isEmpty() || visited.isVisited(norm.get())) continue;
+            UrlFrontier.Task task = new UrlFrontier.Task(norm.get(), 1);
+            journal.offered(task);
+            frontier.offer(task);
+            offered++;
+        }
+        return offered;
+    }
+}
@@ -0,0 +1,23 @@
+package dev.ragcrawler.crawler.embedding;
+
+import java.util.List;
+
+/**
+ * Turns chunk texts into vectors. {@link EmbeddingStage} calls {@link #embed} with micro-batches
+ * from several worker threads at once, so implementations must be thread-safe. A failed call
+ * fails every chunk of the batch.
+ */
+public interface Embedder {
+
+    /**
+     * Identifies the model in the output, e.g. {@code hashing-256}.
+     */
+    String model();
+
+    int dimensions();
+
+    /**
+     * @return one vector of {@link #dimensions()} values per text, in order
+     */
+    float[][] embed(List<String> texts) throws Exception;
+}
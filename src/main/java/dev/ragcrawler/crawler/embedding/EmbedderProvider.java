@@ -0,0 +1,35 @@
+package dev.ragcrawler.crawler.embedding;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.ServiceLoader;
+
+/**
+ * Service-provider interface for embedders selected with {@code --embedder <name>}. Providers are
+ * found with {@link ServiceLoader}: list the implementation in
+ * {@code META-INF/services/dev.ragcrawler.crawler.embedding.EmbedderProvider} on the classpath.
+ */
+public interface EmbedderProvider {
+
+    String name();
+
+    Embedder create(int dimensions);
+
+    static Optional<EmbedderProvider> find(String name) {
+        for (EmbedderProvider provider : ServiceLoader.load(EmbedderProvider.class)) {
+            if (provider.name().equals(name)) {
+                return Optional.of(provider);
+            }
+        }
+        return Optional.empty();
+    }
+
+    static List<String> names() {
+        List<String> names = new ArrayList<>();
+        for (EmbedderProvider provider : ServiceLoader.load(EmbedderProvider.class)) {
+            names.add(provider.name());
+        }
+        return names;
+    }
+}
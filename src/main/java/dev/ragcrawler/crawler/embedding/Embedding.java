@@ -0,0 +1,48 @@
+package dev.ragcrawler.crawler.embedding;
+
+import dev.ragcrawler.crawler.CrawlConfig.EmbeddingFormat;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A chunk's vector in compact form. {@code data} holds little-endian float32 values, or int8
+ * values that multiply by {@code scale} to give the floats back; in JSON it is base64.
+ */
+public record Embedding(String model, EmbeddingFormat format, int dimensions, float scale, byte[] data) {
+
+    public static Embedding encode(String model, EmbeddingFormat format, float[] vector) {
+        return switch (format) {
+            case FLOAT32 -> {
+                ByteBuffer buf = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                buf.asFloatBuffer().put(vector);
+                yield new Embedding(model, format, vector.length, 1f, buf.array());
+            }
+            case INT8 -> {
+                // Symmetric quantization: the largest magnitude maps to 127.
+                float max = 0;
+                for (float v : vector) {
+                    max = Math.max(max, Math.abs(v));
+                }
+                float scale = max == 0 ? 1f : max / 127f;
+                byte[] data = new byte[vector.length];
+                for (int i = 0; i < vector.length; i++) {
+                    data[i] = (byte) Math.round(vector[i] / scale);
+                }
+                yield new Embedding(model, format, vector.length, scale, data);
+            }
+        };
+    }
+
+    public float[] toFloats() {
+        float[] out = new float[dimensions];
+        if (format == EmbeddingFormat.FLOAT32) {
+            ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(out);
+        } else {
+            for (int i = 0; i < dimensions; i++) {
+                out[i] = data[i] * scale;
+            }
+        }
+        return out;
+    }
+}
@@ -0,0 +1,198 @@
+package dev.ragcrawler.crawler.embedding;
+
+import dev.ragcrawler.crawler.CrawlConfig.EmbeddingFormat;
+import dev.ragcrawler.crawler.jfr.EmbedEvent;
+import dev.ragcrawler.crawler.metrics.CrawlMetrics;
+import dev.ragcrawler.crawler.parsing.OutputChunk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pipeline stage between chunking and writing that attaches an {@link Embedding} to every chunk.
+ * <p>
+ * Crawl threads put each chunk's text on a bounded queue and wait for its vector; a full queue
+ * makes them wait, so the crawl never runs ahead of the embedder. Worker threads take
+ * micro-batches off the queue: a batch is sent to the {@link Embedder} once it holds
+ * {@code batchSize} texts or {@code linger} has passed since its first one, so batches fill up
+ * across pages under load and stay small when the crawl is quiet.
+ */
+public final class EmbeddingStage implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(EmbeddingStage.class);
+
+    private static final Request STOP = new Request(null, null);
+
+    private record Request(String text, CompletableFuture<float[]> result) {
+    }
+
+    private final Embedder embedder;
+    private final EmbeddingFormat format;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final CrawlMetrics metrics;
+    private final BlockingQueue<Request> queue;
+    private final Thread[] workers;
+    private volatile boolean closed;
+
+    private EmbeddingStage(Embedder embedder, EmbeddingFormat format, int batchSize, Duration linger,
+                           int parallelism, CrawlMetrics metrics) {
+        this.embedder = embedder;
+        this.format = format;
+        this.batchSize = batchSize;
+        this.lingerNanos = linger.toNanos();
+        this.metrics = metrics;
+        if (embedder == null) {
+            this.queue = null;
+            this.workers = new Thread[0];
+            return;
+        }
+        // Room for a few batches per worker keeps them busy without a large backlog.
+        this.queue = new ArrayBlockingQueue<>(batchSize * parallelism * 4);
+        this.workers = new Thread[parallelism];
+        for (int i = 0; i < parallelism; i++) {
+            workers[i] = new Thread(this::work, "embedder-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * A stage that passes chunks through without embeddings.
+     */
+    public static EmbeddingStage disabled() {
+        return new EmbeddingStage(null, EmbeddingFormat.FLOAT32, 1, Duration.ZERO, 0, null);
+    }
+
+    public static EmbeddingStage start(Embedder embedder, EmbeddingFormat format, int batchSize, Duration linger,
+                                       int parallelism, CrawlMetrics metrics) {
+        log.info("Embedding chunks with {} ({} dimensions, {}), batches of {} within {}ms, {} workers",
+                embedder.model(), embedder.dimensions(), format, batchSize, linger.toMillis(), parallelism);
+        EmbeddingStage stage = new EmbeddingStage(embedder, format, batchSize, linger, parallelism, metrics);
+        metrics.watchEmbeddingQueue(stage.queue::size);
+        return stage;
+    }
+
+    public boolean isEnabled() {
+        return embedder != null;
+    }
+
+    /**
+     * @return the chunks with embeddings attached, once every one of them has been embedded
+     */
+    public List<OutputChunk> embed(List<OutputChunk> chunks) throws IOException {
+        if (embedder == null || chunks.isEmpty()) return chunks;
+        if (closed) throw new IOException("Embedding stage is closed");
+        EmbedEvent event = new EmbedEvent();
+        event.begin();
+        List<CompletableFuture<float[]>> results = new ArrayList<>(chunks.size());
+        try {
+            for (OutputChunk chunk : chunks) {
+                Request request = new Request(chunk.content(), new CompletableFuture<>());
+                queue.put(request);
+                results.add(request.result());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the embedding queue", e);
+        }
+        List<OutputChunk> out = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            float[] vector;
+            try {
+                vector = results.get(i).join();
+            } catch (CompletionException e) {
+                throw new IOException("Embedding failed", e.getCause());
+            }
+            out.add(chunks.get(i).withEmbedding(Embedding.encode(embedder.model(), format, vector)));
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.page(chunks.get(0).rootUrl());
+            event.chunks = chunks.size();
+            event.commit();
+        }
+        return out;
+    }
+
+    private void work() {
+        List<Request> batch = new ArrayList<>(batchSize);
+        boolean stopping = false;
+        while (!stopping) {
+            try {
+                Request first = queue.take();
+                if (first == STOP) return;
+                batch.add(first);
+                long deadline = System.nanoTime() + lingerNanos;
+                while (batch.size() < batchSize) {
+                    Request next = queue.poll(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    if (next == STOP) {
+                        stopping = true;
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                stopping = true;
+            }
+            if (!batch.isEmpty()) {
+                run(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void run(List<Request> batch) {
+        List<String> texts = new ArrayList<>(batch.size());
+        for (Request request : batch) {
+            texts.add(request.text());
+        }
+        long start = System.nanoTime();
+        try {
+            float[][] vectors = embedder.embed(texts);
+            if (vectors.length != batch.size()) {
+                throw new IllegalStateException("Embedder returned " + vectors.length + " vectors for "
+                        + batch.size() + " texts");
+            }
+            metrics.embedded(System.nanoTime() - start, batch.size());
+            for (int i = 0; i < vectors.length; i++) {
+                batch.get(i).result().complete(vectors[i]);
+            }
+        } catch (Exception e) {
+            log.warn("Embedding a batch of {} chunks failed: {}", batch.size(), e.toString());
+            for (Request request : batch) {
+                request.result().completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Embeds what is still queued, then stops the workers.
+     */
+    @Override
+    public void close() {
+        if (closed || embedder == null) return;
+        closed = true;
+        try {
+            for (int i = 0; i < workers.length; i++) {
+                queue.put(STOP);
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package dev.ragcrawler.crawler.embedding;
+
+import java.util.List;
+
+/**
+ * Deterministic local embedder: feature hashing of lower-cased word unigrams and bigrams into a
+ * signed, L2-normalized vector. Texts that share words get similar vectors, with no model or
+ * network involved, which makes it a baseline for search and a fixed workload for benchmarks.
+ * Tokens are hashed character by character as they are scanned, without building strings.
+ */
+public final class HashingEmbedder implements Embedder {
+
+    public static final String NAME = "hashing";
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final float BIGRAM_WEIGHT = 0.5f;
+
+    private final int dimensions;
+
+    public HashingEmbedder(int dimensions) {
+        if (dimensions <= 0) throw new IllegalArgumentException("dimensions must be > 0");
+        this.dimensions = dimensions;
+    }
+
+    @Override
+    public String model() {
+        return NAME + "-" + dimensions;
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+
+    @Override
+    public float[][] embed(List<String> texts) {
+        float[][] out = new float[texts.size()][];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = embed(texts.get(i));
+        }
+        return out;
+    }
+
+    public float[] embed(String text) {
+        float[] vector = new float[dimensions];
+        long token = FNV_OFFSET;
+        long previous = 0;
+        boolean inToken = false;
+        for (int i = 0, n = text.length(); i <= n; i++) {
+            int ch = i < n ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(ch)) {
+                token = (token ^ Character.toLowerCase(ch)) * FNV_PRIME;
+                inToken = true;
+            } else if (inToken) {
+                long hash = mix(token);
+                add(vector, hash, 1f);
+                if (previous != 0) {
+                    add(vector, mix(previous * 31 + hash), BIGRAM_WEIGHT);
+                }
+                previous = hash;
+                token = FNV_OFFSET;
+                inToken = false;
+            }
+        }
+        normalize(vector);
+        return vector;
+    }
+
+    private void add(float[] vector, long hash, float weight) {
+        int index = (int) Long.remainderUnsigned(hash >>> 1, dimensions);
+        vector[index] += (hash & 1) == 0 ? weight : -weight;
+    }
+
+    private static long mix(long h) {
+        // Finalizer from MurmurHash3, so nearby FNV values spread over all buckets.
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static void normalize(float[] vector) {
+        double sum = 0;
+        for (float v : vector) {
+            sum += v * v;
+        }
+        if (sum == 0) return;
+        float scale = (float) (1 / Math.sqrt(sum));
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] *= scale;
+        }
+    }
+
+    public static final class Provider implements EmbedderProvider {
+        @Override
+        public String name() {
+            return NAME;
+        }
+
+        @Override
+        public Embedder create(int dimensions) {
+            return new HashingEmbedder(dimensions);
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package dev.ragcrawler.crawler.http;
+
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Decodes a {@code gzip} or {@code deflate} {@code Content-Encoding} as the body arrives, into a
+ * fixed 32 KB window, so the size cap and streaming extraction apply to decoded bytes and no
+ * compressed copy of the body is kept.
+ * <p>
+ * {@code deflate} should be zlib-wrapped, but some servers send raw deflate; the first two bytes
+ * tell them apart. A gzip body may hold several members, each checked against its CRC-32 and
+ * length; anything after the last member is ignored, as {@link java.util.zip.GZIPInputStream} does.
+ */
+final class ContentDecoder {
+
+    private static final int OUTPUT_BYTES = 32 * 1024;
+
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private enum State { HEADER, EXTRA_LENGTH, EXTRA, NAME, COMMENT, HEADER_CRC, DEFLATE_HEADER, BODY, TRAILER, DONE }
+
+    private final boolean gzip;
+    private final Inflater inflater;
+    private final CRC32 crc = new CRC32();
+    private final byte[] output = new byte[OUTPUT_BYTES];
+    /** Header or trailer bytes read so far, and how many of them the current state needs. */
+    private final byte[] field = new byte[10];
+    private int fieldLength;
+    private int fieldNeeded;
+    private int flags;
+    private int extraRemaining;
+    private boolean firstMember = true;
+    private State state;
+
+    private ContentDecoder(boolean gzip) {
+        this.gzip = gzip;
+        // Both gzip members and deflate's sniffed zlib header are handled here, not by the Inflater.
+        this.inflater = new Inflater(true);
+        if (gzip) {
+            expect(State.HEADER, 10);
+        } else {
+            expect(State.DEFLATE_HEADER, 2);
+        }
+    }
+
+    /**
+     * @param contentEncoding the {@code Content-Encoding} header, or "" if absent
+     * @return a decoder, or null for an identity encoding
+     * @throws ZipException if the encoding is not supported
+     */
+    static ContentDecoder forEncoding(String contentEncoding) throws ZipException {
+        return switch (contentEncoding.trim().toLowerCase(Locale.ROOT)) {
+            case "", "identity" -> null;
+            case "gzip", "x-gzip" -> new ContentDecoder(true);
+            case "deflate" -> new ContentDecoder(false);
+            default -> throw new ZipException("Unsupported Content-Encoding: " + contentEncoding);
+        };
+    }
+
+    /**
+     * Decodes from {@code in} until there is output or {@code in} is used up; call again with the
+     * same buffer until it returns null.
+     *
+     * @return decoded bytes, valid until the next call; null once {@code in} is used up
+     */
+    ByteBuffer decode(ByteBuffer in) throws ZipException {
+        while (true) {
+            switch (state) {
+                case BODY -> {
+                    ByteBuffer out = inflate(in);
+                    if (out != null) return out;
+                    if (state == State.BODY) return null;
+                }
+                case DONE -> {
+                    in.position(in.limit());
+                    return null;
+                }
+                default -> {
+                    if (!in.hasRemaining()) return null;
+                    header(in.get());
+                }
+            }
+        }
+    }
+
+    /**
+     * Whether the encoded stream ended properly; a body that stops earlier was cut off.
+     */
+    boolean finished() {
+        return state == State.DONE || gzip && !firstMember && state == State.HEADER && fieldLength == 0;
+    }
+
+    /**
+     * Frees the inflater's native memory. The decoder cannot be used afterwards.
+     */
+    void end() {
+        inflater.end();
+    }
+
+    private ByteBuffer inflate(ByteBuffer in) throws ZipException {
+        while (true) {
+            if (inflater.needsInput()) {
+                if (!in.hasRemaining()) return null;
+                inflater.setInput(in);
+            }
+            int n;
+            try {
+                n = inflater.inflate(output);
+            } catch (DataFormatException e) {
+                throw new ZipException("Corrupt " + (gzip ? "gzip" : "deflate") + " body: " + e.getMessage());
+            }
+            if (inflater.finished()) {
+                if (gzip) {
+                    expect(State.TRAILER, 8);
+                } else {
+                    state = State.DONE;
+                }
+            } else if (n == 0 && inflater.needsDictionary()) {
+                throw new ZipException("Deflate body needs a preset dictionary");
+            }
+            if (n > 0) {
+                crc.update(output, 0, n);
+                return ByteBuffer.wrap(output, 0, n);
+            }
+            if (state != State.BODY) return null;
+        }
+    }
+
+    private void header(byte b) throws ZipException {
+        switch (state) {
+            case NAME, COMMENT -> {
+                if (b == 0) nextHeaderField();
+                return;
+            }
+            case EXTRA -> {
+                if (--extraRemaining == 0) nextHeaderField();
+                return;
+            }
+            default -> field[fieldLength++] = b;
+        }
+        if (state == State.HEADER && fieldLength == 1 && b != 0x1f && !firstMember) {
+            // Not another member: trailing garbage.
+            state = State.DONE;
+            return;
+        }
+        if (fieldLength < fieldNeeded) return;
+        switch (state) {
+            case HEADER -> {
+                if ((field[0] & 0xff) != 0x1f || (field[1] & 0xff) != 0x8b) {
+                    if (!firstMember) {
+                        state = State.DONE;
+                        return;
+                    }
+                    throw new ZipException("Not in gzip format");
+                }
+                if (field[2] != 8) throw new ZipException("Unsupported gzip compression method " + field[2]);
+                flags = field[3] & 0xff;
+                nextHeaderField();
+            }
+            case EXTRA_LENGTH -> {
+                extraRemaining = (field[0] & 0xff) | (field[1] & 0xff) << 8;
+                flags &= ~FEXTRA;
+                if (extraRemaining == 0) {
+                    nextHeaderField();
+                } else {
+                    state = State.EXTRA;
+                }
+            }
+            case HEADER_CRC -> {
+                flags &= ~FHCRC;
+                nextHeaderField();
+            }
+            case DEFLATE_HEADER -> {
+                int cmf = field[0] & 0xff;
+                boolean zlib = (cmf & 0x0f) == 8 && (cmf << 8 | field[1] & 0xff) % 31 == 0;
+                if (zlib && (field[1] & 0x20) != 0) throw new ZipException("Deflate body needs a preset dictionary");
+                if (!zlib) inflater.setInput(field, 0, 2);
+                // A zlib body's Adler-32 trailer is left unread: the raw stream ends before it.
+                state = State.BODY;
+            }
+            case TRAILER -> {
+                if (readInt(0) != (int) crc.getValue()) throw new ZipException("Corrupt gzip trailer: CRC-32 mismatch");
+                if (readInt(4) != (int) inflater.getBytesWritten()) {
+                    throw new ZipException("Corrupt gzip trailer: length mismatch");
+                }
+                firstMember = false;
+                expect(State.HEADER, 10);
+            }
+            default -> throw new IllegalStateException(state.name());
+        }
+    }
+
+    /**
+     * Moves to the next optional gzip header field present in {@link #flags}, or to the body.
+     */
+    private void nextHeaderField() {
+        if ((flags & FEXTRA) != 0) {
+            expect(State.EXTRA_LENGTH, 2);
+        } else if ((flags & FNAME) != 0) {
+            flags &= ~FNAME;
+            state = State.NAME;
+        } else if ((flags & FCOMMENT) != 0) {
+            flags &= ~FCOMMENT;
+            state = State.COMMENT;
+        } else if ((flags & FHCRC) != 0) {
+            expect(State.HEADER_CRC, 2);
+        } else {
+            inflater.reset();
+            crc.reset();
+            state = State.BODY;
+        }
+    }
+
+    private void expect(State next, int bytes) {
+        state = next;
+        fieldLength = 0;
+        fieldNeeded = bytes;
+    }
+
+    private int readInt(int offset) {
+        return (field[offset] & 0xff) | (field[offset + 1] & 0xff) << 8
+                | (field[offset + 2] & 0xff) << 16 | (field[offset + 3] & 0xff) << 24;
+    }
+}
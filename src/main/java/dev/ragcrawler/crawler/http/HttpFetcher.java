@@ -1,39 +1,131 @@
 package dev.ragcrawler.crawler.http;
 
 import dev.ragcrawler.crawler.CrawlConfig;
+import dev.ragcrawler.crawler.jfr.FetchEvent;
+import dev.ragcrawler.crawler.parsing.ContentExtractor;
+import dev.ragcrawler.crawler.parsing.StreamedPage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public final class HttpFetcher implements Closeable {
 
     private static final Logger log = LoggerFactory.getLogger(HttpFetcher.class);
 
+    /** Encodings {@link PageBodyHandler} decodes as bodies arrive; the JDK has no brotli decoder. */
+    private static final String ACCEPT_ENCODING = "gzip, deflate";
+
     private final HttpClient client;
     private final CrawlConfig config;
     private final Instant deadline;
     private final AtomicBoolean cancelled;
+    private final ContentExtractor pageExtractor;
 
     public HttpFetcher(CrawlConfig config, Instant deadline, AtomicBoolean cancelled) {
+        this(config, deadline, cancelled, null);
+    }
+
+    /**
+     * @param pageExtractor extracts pages above {@link CrawlConfig#streamingThresholdBytes()} while
+     *                      they are fetched; null to always buffer bodies
+     */
+    public HttpFetcher(CrawlConfig config, Instant deadline, AtomicBoolean cancelled, ContentExtractor pageExtractor) {
         this.config = config;
         this.deadline = deadline;
         this.cancelled = cancelled;
+        this.pageExtractor = pageExtractor;
         this.client = HttpClient.newBuilder()
                 .followRedirects(HttpClient.Redirect.NORMAL)
                 .connectTimeout(Duration.ofSeconds(5))
                 .build();
     }
 
+    /**
+     * Fetches an HTML page. Bodies of non-HTML or non-2xx responses are never read. A body above
+     * the streaming threshold comes back extracted, as {@link Response#streamed()}.
+     */
     public Response fetch(URI uri) throws IOException, InterruptedException {
+        return fetch(uri, null, true);
+    }
+
+    /**
+     * Conditionally fetches an HTML page. With non-null validators the request carries
+     * {@code If-None-Match} / {@code If-Modified-Since}, and an unchanged page comes back as a
+     * body-less response for which {@link Response#isNotModified()} is true.
+     */
+    public Response fetch(URI uri, Validators validators) throws IOException, InterruptedException {
+        return fetch(uri, validators, true);
+    }
+
+    /**
+     * Fetches a non-page resource such as robots.txt, reading the body whatever its content type.
+     */
+    public Response fetchResource(URI uri) throws IOException, InterruptedException {
+        return fetch(uri, null, false);
+    }
+
+    /**
+     * Opens a resource for parsing as it arrives, for bodies too large to buffer such as sitemaps.
+     * One attempt, no size cap or politeness; the caller must close the body. Only gzip is accepted, and the
+     * body is not decoded: the caller must recognise gzip, as {@code SitemapParser} does.
+     */
+    public HttpResponse<InputStream> openStream(URI uri) throws IOException, InterruptedException {
+        Duration remaining = Duration.between(Instant.now(), deadline);
+        if (cancelled.get() || remaining.isNegative() || remaining.isZero()) {
+            throw new IOException("Cancelled or deadline exceeded before fetch: " + uri);
+        }
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(uri)
+                .header("User-Agent", config.userAgent())
+                .header("Accept-Encoding", "gzip")
+                .timeout(remaining.compareTo(Duration.ofSeconds(10)) < 0 ? remaining : Duration.ofSeconds(10))
+                .GET()
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+    }
+
+    private Response fetch(URI uri, Validators validators, boolean htmlOnly) throws IOException, InterruptedException {
+        FetchEvent event = new FetchEvent();
+        event.begin();
+        Response response = null;
+        try {
+            response = fetchWithRetries(uri, validators, htmlOnly);
+            return response;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.page(uri.toString());
+                event.htmlPage = htmlOnly;
+                if (response != null) {
+                    event.statusCode = response.statusCode();
+                    event.bytes = response.bodyLength();
+                }
+                event.commit();
+            }
+        }
+    }
+
+    private Response fetchWithRetries(URI uri, Validators validators, boolean htmlOnly)
+            throws IOException, InterruptedException {
+        PageBodyHandler bodyHandler = htmlOnly && pageExtractor != null && config.streamingThresholdBytes() > 0
+                ? new PageBodyHandler(config.maxPageBytes(), config.oversizePolicy(), true,
+                        config.streamingThresholdBytes(), charset -> pageExtractor.streaming(charset, uri.toString()))
+                : new PageBodyHandler(config.maxPageBytes(), config.oversizePolicy(), htmlOnly);
         int maxAttempts = 3;
         int attempt = 0;
         IOException lastIo = null;
@@ -52,28 +144,35 @@ public final class HttpFetcher implements Closeable {
                     ? remaining
                     : Duration.ofSeconds(10);
 
-            HttpRequest request = HttpRequest.newBuilder()
+            HttpRequest.Builder builder = HttpRequest.newBuilder()
                     .uri(uri)
                     .header("User-Agent", config.userAgent())
+                    .header("Accept-Encoding", ACCEPT_ENCODING)
                     .timeout(timeout)
-                    .GET()
-                    .build();
+                    .GET();
+            if (validators != null) {
+                if (validators.etag() != null) {
+                    builder.header("If-None-Match", validators.etag());
+                }
+                if (validators.lastModified() != null) {
+                    builder.header("If-Modified-Since", validators.lastModified());
+                }
+            }
+            HttpRequest request = builder.build();
 
             try {
-                HttpResponse<String> resp = client.send(request, HttpResponse.BodyHandlers.ofString());
+                HttpResponse<PageBodyHandler.PageBody> resp = client.send(request, bodyHandler);
                 int code = resp.statusCode();
-                if (code >= 200 && code < 300) {
-                    return new Response(uri, resp.uri(), code,
-                            resp.headers().firstValue("Content-Type").orElse(""),
-                            resp.body());
+                if ((code >= 200 && code < 300) || code == 304) {
+                    return toResponse(uri, resp);
                 }
-                if (code == 502 || code == 503 || code == 504) {
+                if ((code == 502 || code == 503 || code == 504) && attempt < maxAttempts
+                        && resp.headers().firstValue("Retry-After").isEmpty()) {
                     Thread.sleep(200L * attempt);
                     continue;
                 }
-                return new Response(uri, resp.uri(), code,
-                        resp.headers().firstValue("Content-Type").orElse(""),
-                        resp.body());
+                // With Retry-After, the per-host scheduler holds the host instead of this task sleeping.
+                return toResponse(uri, resp);
             } catch (IOException e) {
                 lastIo = e;
                 log.warn("HTTP attempt {} failed for {}: {}", attempt, uri, e.toString());
@@ -86,22 +185,123 @@ public final class HttpFetcher implements Closeable {
         throw new IOException("Cancelled or deadline exceeded before successful fetch: " + uri);
     }
 
+    private Response toResponse(URI uri, HttpResponse<PageBodyHandler.PageBody> resp) {
+        PageBodyHandler.PageBody body = resp.body();
+        if (body.status() == BodyStatus.TRUNCATED || body.status() == BodyStatus.REJECTED) {
+            log.info("Body of {} exceeds maxPageBytes={}; {}", uri, config.maxPageBytes(),
+                    body.status() == BodyStatus.TRUNCATED ? "truncated" : "rejected");
+        }
+        return new Response(uri, resp.uri(), resp.statusCode(),
+                resp.headers().firstValue("Content-Type").orElse(""),
+                body.bytes(),
+                body.charset(),
+                body.status(),
+                new Validators(
+                        resp.headers().firstValue("ETag").orElse(null),
+                        resp.headers().firstValue("Last-Modified").orElse(null)),
+                resp.headers().firstValue("Retry-After").map(HttpFetcher::parseRetryAfter).orElse(null),
+                body.streamed(),
+                body.wireBytes());
+    }
+
+    /**
+     * Parses delay-seconds or an HTTP-date; null if the value is neither.
+     */
+    public static Duration parseRetryAfter(String value) {
+        String v = value.trim();
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(v)));
+        } catch (NumberFormatException e) {
+            try {
+                Instant at = ZonedDateTime.parse(v, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+                Duration d = Duration.between(Instant.now(), at);
+                return d.isNegative() ? Duration.ZERO : d;
+            } catch (DateTimeParseException ignored) {
+                return null;
+            }
+        }
+    }
+
     @Override
     public void close() {
         // HttpClient does not need explicit close.
     }
 
+    /**
+     * How much of a response body was read.
+     */
+    public enum BodyStatus {
+        /** The whole body was read. */
+        COMPLETE,
+        /** The body was cut at the configured max page size. */
+        TRUNCATED,
+        /** The body exceeded the max page size and was dropped. */
+        REJECTED,
+        /** The body was not read because of the status code, content type or an unsupported encoding. */
+        SKIPPED
+    }
+
+    /**
+     * HTTP cache validators of a response; either value may be null.
+     */
+    public record Validators(String etag, String lastModified) {
+        public boolean isEmpty() {
+            return etag == null && lastModified == null;
+        }
+    }
+
+    /**
+     * A page body that was extracted as it arrived instead of being kept.
+     *
+     * @param sha256 digest of the body bytes
+     */
+    public record StreamedBody(StreamedPage page, byte[] sha256) {
+    }
+
+    /**
+     * @param body       raw body bytes, empty unless {@code bodyStatus} is COMPLETE or TRUNCATED
+     *                   and the body was buffered
+     * @param charset    charset declared in the Content-Type header, or null if none was declared
+     * @param validators ETag / Last-Modified sent by the server
+     * @param retryAfter the {@code Retry-After} header as a delay, or null if absent or unparseable
+     * @param streamed   the page extracted while it was fetched, or null if the body was buffered
+     * @param wireBytes  body bytes received, before gzip or deflate decoding
+     */
     public record Response(
             URI requestedUri,
             URI effectiveUri,
             int statusCode,
             String contentType,
-            String body
+            byte[] body,
+            Charset charset,
+            BodyStatus bodyStatus,
+            Validators validators,
+            Duration retryAfter,
+            StreamedBody streamed,
+            long wireBytes
     ) {
+        public boolean isNotModified() {
+            return statusCode == 304;
+        }
+
         public boolean isSuccessHtml() {
             if (statusCode < 200 || statusCode >= 300) return false;
-            String ct = contentType.toLowerCase();
-            return ct.contains("text/html");
+            if (bodyStatus != BodyStatus.COMPLETE && bodyStatus != BodyStatus.TRUNCATED) return false;
+            return PageBodyHandler.isHtml(contentType);
+        }
+
+        /**
+         * Bytes of body read after content decoding, whether buffered or streamed.
+         */
+        public long bodyLength() {
+            return streamed != null ? streamed.page().bytes() : body.length;
+        }
+
+        /**
+         * Decodes the body as text, using the declared charset or UTF-8.
+         */
+        public String bodyAsString() {
+            return new String(body, charset == null ? StandardCharsets.UTF_8 : charset);
         }
     }
 }
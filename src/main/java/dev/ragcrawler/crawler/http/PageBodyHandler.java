@@ -0,0 +1,327 @@
+package dev.ragcrawler.crawler.http;
+
+import dev.ragcrawler.crawler.CrawlConfig;
+import dev.ragcrawler.crawler.parsing.StreamingExtractor;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.function.Function;
+import java.util.zip.ZipException;
+
+/**
+ * Body handler that decides from the status line and headers whether a body is worth reading.
+ * <p>
+ * Non-2xx responses and (when {@code htmlOnly}) non-HTML content types are cancelled before any
+ * body bytes are consumed. Accepted bodies are streamed into a byte buffer capped at
+ * {@code maxBytes}; what happens past the cap is decided by the {@link CrawlConfig.OversizePolicy}.
+ * The body is kept as raw bytes plus the charset declared in {@code Content-Type} (if any), so the
+ * HTML parser decodes it exactly once.
+ * <p>
+ * A {@code gzip} or {@code deflate} body is decoded as it arrives by a {@link ContentDecoder}; the
+ * size cap, the streaming threshold and the kept bytes are all in decoded bytes. Bodies in any other
+ * encoding are skipped.
+ * <p>
+ * With a streaming extractor, a body larger than {@code streamingThresholdBytes} (by its
+ * {@code Content-Length}, or once that much has arrived) is not kept: its bytes go through a
+ * {@link StreamingExtractor} and a SHA-256 digest as they arrive, and the body carries the
+ * extracted page instead. The size cap still applies to the bytes read.
+ */
+final class PageBodyHandler implements HttpResponse.BodyHandler<PageBodyHandler.PageBody> {
+
+    private static final int INITIAL_BUFFER_BYTES = 64 * 1024;
+
+    private static final byte[] NO_BYTES = new byte[0];
+
+    /**
+     * @param streamed  the page extracted while it arrived, or null if {@code bytes} holds the body
+     * @param wireBytes body bytes received, before content decoding
+     */
+    record PageBody(byte[] bytes, Charset charset, HttpFetcher.BodyStatus status, HttpFetcher.StreamedBody streamed,
+                    long wireBytes) {
+        static PageBody skipped(HttpFetcher.BodyStatus status, Charset charset, long wireBytes) {
+            return new PageBody(NO_BYTES, charset, status, null, wireBytes);
+        }
+    }
+
+    private final int maxBytes;
+    private final CrawlConfig.OversizePolicy oversizePolicy;
+    private final boolean htmlOnly;
+    private final int streamingThresholdBytes;
+    private final Function<Charset, StreamingExtractor> streaming;
+
+    PageBodyHandler(int maxBytes, CrawlConfig.OversizePolicy oversizePolicy, boolean htmlOnly) {
+        this(maxBytes, oversizePolicy, htmlOnly, 0, null);
+    }
+
+    /**
+     * @param streaming creates an extractor for a body of the given declared charset; null to
+     *                  always buffer
+     */
+    PageBodyHandler(int maxBytes, CrawlConfig.OversizePolicy oversizePolicy, boolean htmlOnly,
+                    int streamingThresholdBytes, Function<Charset, StreamingExtractor> streaming) {
+        this.maxBytes = maxBytes;
+        this.oversizePolicy = oversizePolicy;
+        this.htmlOnly = htmlOnly;
+        this.streamingThresholdBytes = streamingThresholdBytes;
+        this.streaming = streaming;
+    }
+
+    @Override
+    public HttpResponse.BodySubscriber<PageBody> apply(HttpResponse.ResponseInfo info) {
+        String contentType = info.headers().firstValue("Content-Type").orElse("");
+        Charset charset = charsetOf(contentType);
+        int code = info.statusCode();
+        if (code < 200 || code >= 300) {
+            return new CancellingSubscriber(PageBody.skipped(HttpFetcher.BodyStatus.SKIPPED, charset, 0));
+        }
+        if (htmlOnly && !isHtml(contentType)) {
+            return new CancellingSubscriber(PageBody.skipped(HttpFetcher.BodyStatus.SKIPPED, charset, 0));
+        }
+        ContentDecoder decoder;
+        try {
+            decoder = ContentDecoder.forEncoding(info.headers().firstValue("Content-Encoding").orElse(""));
+        } catch (ZipException e) {
+            return new CancellingSubscriber(PageBody.skipped(HttpFetcher.BodyStatus.SKIPPED, charset, 0));
+        }
+        // Content-Length counts encoded bytes, which say little about the decoded size.
+        long contentLength = decoder == null
+                ? info.headers().firstValueAsLong("Content-Length").orElse(-1L)
+                : -1L;
+        if (contentLength > maxBytes && oversizePolicy == CrawlConfig.OversizePolicy.REJECT) {
+            return new CancellingSubscriber(PageBody.skipped(HttpFetcher.BodyStatus.REJECTED, charset, 0));
+        }
+        if (streaming != null && contentLength > streamingThresholdBytes) {
+            BoundedSubscriber subscriber = new BoundedSubscriber(0, charset, null);
+            subscriber.startStreaming();
+            return subscriber;
+        }
+        int initial = contentLength > 0
+                ? (int) Math.min(contentLength, maxBytes)
+                : Math.min(INITIAL_BUFFER_BYTES, maxBytes);
+        if (streaming != null) {
+            initial = Math.min(initial, streamingThresholdBytes);
+        }
+        return new BoundedSubscriber(initial, charset, decoder);
+    }
+
+    static boolean isHtml(String contentType) {
+        String ct = contentType.toLowerCase(Locale.ROOT);
+        return ct.contains("text/html") || ct.contains("application/xhtml+xml");
+    }
+
+    static Charset charsetOf(String contentType) {
+        for (String param : contentType.split(";")) {
+            String p = param.trim();
+            if (p.regionMatches(true, 0, "charset=", 0, "charset=".length())) {
+                String name = p.substring("charset=".length()).trim().replace("\"", "");
+                try {
+                    return Charset.forName(name);
+                } catch (IllegalArgumentException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Completes immediately with a fixed result and cancels the subscription,
+     * which makes the client close the exchange without reading the body.
+     */
+    private static final class CancellingSubscriber implements HttpResponse.BodySubscriber<PageBody> {
+
+        private final CompletableFuture<PageBody> result;
+
+        CancellingSubscriber(PageBody body) {
+            this.result = CompletableFuture.completedFuture(body);
+        }
+
+        @Override
+        public CompletionStage<PageBody> getBody() {
+            return result;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.cancel();
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> item) {
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+
+    private final class BoundedSubscriber implements HttpResponse.BodySubscriber<PageBody> {
+
+        private final CompletableFuture<PageBody> result = new CompletableFuture<>();
+        private final Charset charset;
+        private final ContentDecoder decoder;
+        private Flow.Subscription subscription;
+        private byte[] buf;
+        /** Decoded bytes read, whether buffered or streamed. */
+        private int count;
+        private long wireBytes;
+        private StreamingExtractor extractor;
+        private MessageDigest digest;
+
+        /**
+         * @param decoder decodes the body's content encoding; null for an identity encoding
+         */
+        BoundedSubscriber(int initialCapacity, Charset charset, ContentDecoder decoder) {
+            this.buf = new byte[Math.max(initialCapacity, 1)];
+            this.charset = charset;
+            this.decoder = decoder;
+        }
+
+        @Override
+        public CompletionStage<PageBody> getBody() {
+            return result;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> item) {
+            if (result.isDone()) return;
+            try {
+                for (ByteBuffer bb : item) {
+                    wireBytes += bb.remaining();
+                    if (decoder == null) {
+                        if (!accept(bb)) return;
+                        continue;
+                    }
+                    for (ByteBuffer decoded = decoder.decode(bb); decoded != null; decoded = decoder.decode(bb)) {
+                        if (!accept(decoded)) return;
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                // The client waits on the result, so a failing decoder or extractor must not leave it pending.
+                subscription.cancel();
+                fail(e);
+                return;
+            }
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            fail(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            if (result.isDone()) return;
+            try {
+                if (decoder != null && !decoder.finished()) {
+                    throw new EOFException("Encoded body ended early after " + wireBytes + " bytes");
+                }
+                complete(body(HttpFetcher.BodyStatus.COMPLETE));
+            } catch (IOException | RuntimeException e) {
+                fail(e);
+            }
+        }
+
+        /**
+         * Takes decoded bytes, up to the size cap.
+         *
+         * @return false if the cap was reached and the result completed
+         */
+        private boolean accept(ByteBuffer bb) {
+            int n = bb.remaining();
+            if ((long) count + n > maxBytes) {
+                subscription.cancel();
+                if (oversizePolicy == CrawlConfig.OversizePolicy.REJECT) {
+                    complete(PageBody.skipped(HttpFetcher.BodyStatus.REJECTED, charset, wireBytes));
+                } else {
+                    append(bb, maxBytes - count);
+                    complete(body(HttpFetcher.BodyStatus.TRUNCATED));
+                }
+                return false;
+            }
+            append(bb, n);
+            return true;
+        }
+
+        private void complete(PageBody body) {
+            if (decoder != null) decoder.end();
+            result.complete(body);
+        }
+
+        private void fail(Throwable throwable) {
+            if (decoder != null) decoder.end();
+            result.completeExceptionally(throwable);
+        }
+
+        private PageBody body(HttpFetcher.BodyStatus status) {
+            if (extractor == null) {
+                return new PageBody(trimmed(), charset, status, null, wireBytes);
+            }
+            return new PageBody(NO_BYTES, charset, status,
+                    new HttpFetcher.StreamedBody(extractor.finish(), digest.digest()), wireBytes);
+        }
+
+        /**
+         * Hands what has been buffered to a new extractor; from here on bytes are not kept.
+         */
+        void startStreaming() {
+            extractor = streaming.apply(charset);
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 not available", e);
+            }
+            ByteBuffer buffered = ByteBuffer.wrap(buf, 0, count);
+            digest.update(buffered.duplicate());
+            extractor.feed(buffered);
+            buf = null;
+        }
+
+        private void append(ByteBuffer bb, int n) {
+            if (extractor == null && streaming != null && count + n > streamingThresholdBytes) {
+                startStreaming();
+            }
+            if (extractor != null) {
+                int limit = bb.limit();
+                bb.limit(bb.position() + n);
+                digest.update(bb.duplicate());
+                extractor.feed(bb);
+                bb.limit(limit);
+                count += n;
+                return;
+            }
+            if (count + n > buf.length) {
+                int newCap = (int) Math.min(Math.max((long) buf.length * 2, (long) count + n), maxBytes);
+                buf = Arrays.copyOf(buf, newCap);
+            }
+            bb.get(buf, count, n);
+            count += n;
+        }
+
+        private byte[] trimmed() {
+            return count == buf.length ? buf : Arrays.copyOf(buf, count);
+        }
+    }
+}
@@ -1,69 +1,361 @@
 package dev.ragcrawler.crawler.http;
 
+import dev.ragcrawler.crawler.CrawlConfig;
+import dev.ragcrawler.crawler.state.UrlNormalizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.net.URI;
-import java.time.Instant;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Semaphore;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * Enforces per-host concurrency and minimum delay between requests.
+ * Politeness and capacity policy: a concurrency limit and a minimum spacing between request starts
+ * per host, a global in-flight limit, and optional per-host budgets of requests and time so one
+ * large site cannot starve the others.
+ * <p>
+ * Every host's spacing is at least its robots.txt {@code Crawl-delay}, and a {@code Retry-After}
+ * on a 429 or 503 holds the host until it expires. With adaptive rate control on, each host's
+ * limit and delay follow AIMD: while latency stays within {@value #HEALTHY_LATENCY_FACTOR}x the
+ * host's best observed latency, concurrency grows by about one per round trip (up to
+ * {@code perHostMaxConcurrency}) and the delay shrinks by {@value #DELAY_DECAY}; on 429/503, failures
+ * or rising latency both are cut multiplicatively.
+ * <p>
+ * It never blocks; it only answers when a host may start its next request. Waiting happens in
+ * {@link dev.ragcrawler.crawler.state.UrlFrontier}. Thread-safe.
  */
 public final class PerHostScheduler {
 
-    private record HostState(Semaphore semaphore, AtomicLong lastRequestNanos) {}
+    private static final Logger log = LoggerFactory.getLogger(PerHostScheduler.class);
+
+    private static final double HEALTHY_LATENCY_FACTOR = 2.0;
+    private static final double DELAY_DECAY = 0.9;
+    private static final double LATENCY_EWMA_ALPHA = 0.2;
+    private static final long THROTTLED_MIN_DELAY_NANOS = 250_000_000L;
+    private static final long SLOW_MIN_DELAY_NANOS = 10_000_000L;
+    private static final long MAX_DELAY_NANOS = 30_000_000_000L;
+
+    /**
+     * Current rate settings of one host.
+     *
+     * @param requestsPerSecond the rate these settings allow: limited by the delay, and by
+     *                          concurrency over the observed latency
+     * @param bodyBytes         page body bytes fetched, after content decoding
+     * @param wireBytes         the same bodies as received, before decoding
+     */
+    public record HostRate(
+            String host,
+            double concurrency,
+            long delayMillis,
+            long crawlDelayMillis,
+            long latencyMillis,
+            double requestsPerSecond,
+            int requests,
+            int throttled,
+            long bodyBytes,
+            long wireBytes
+    ) {
+    }
+
+    private static final class HostState {
+        int inFlight;
+        int started;
+        int throttled;
+        long bodyBytes;
+        long wireBytes;
+        long firstStartNanos;
+        long lastStartNanos;
+        double limit;
+        long delayNanos;
+        long crawlDelayNanos;
+        long holdUntilNanos;
+        boolean held;
+        double latencyEwmaNanos;
+        double minLatencyNanos = Double.MAX_VALUE;
+        long lastDecreaseNanos;
+    }
 
+    private final int initialPerHost;
+    private final long initialDelayNanos;
+    private final boolean adaptive;
     private final int maxPerHost;
-    private final long minDelayMillis;
-    private final Instant deadline;
-    private final AtomicBoolean cancelled;
-    private final Map<String, HostState> hosts = new ConcurrentHashMap<>();
-
-    public PerHostScheduler(int maxPerHost, long minDelayMillis, Instant deadline, AtomicBoolean cancelled) {
-        this.maxPerHost = maxPerHost;
-        this.minDelayMillis = minDelayMillis;
-        this.deadline = deadline;
-        this.cancelled = cancelled;
-    }
-
-    public boolean beforeRequest(URI uri) throws InterruptedException {
-        if (cancelled.get()) return false;
-        HostState state = hosts.computeIfAbsent(hostKey(uri),
-                k -> new HostState(new Semaphore(maxPerHost), new AtomicLong(0L)));
-        if (!state.semaphore.tryAcquire()) {
-            state.semaphore.acquire();
+    private final int maxTotal;
+    private final Integer maxRequestsPerHost;
+    private final Long maxTimePerHostNanos;
+    private final Map<String, HostState> hosts = new HashMap<>();
+    private final Lock lock = new ReentrantLock();
+    private int inFlight;
+
+    public PerHostScheduler(int maxPerHost, long minDelayMillis) {
+        this(maxPerHost, minDelayMillis, false, maxPerHost, Integer.MAX_VALUE, null, null);
+    }
+
+    public PerHostScheduler(CrawlConfig config) {
+        this(config.perHostConcurrency(),
+                config.perHostMinDelayMillis(),
+                config.adaptiveRate(),
+                config.adaptiveRate() ? config.perHostMaxConcurrency() : config.perHostConcurrency(),
+                config.maxConcurrency() == null ? Integer.MAX_VALUE : config.maxConcurrency(),
+                config.perHostMaxPages(),
+                config.perHostMaxTime());
+    }
+
+    private PerHostScheduler(int initialPerHost, long initialDelayMillis, boolean adaptive, int maxPerHost,
+                             int maxTotal, Integer maxRequestsPerHost, Duration maxTimePerHost) {
+        this.initialPerHost = initialPerHost;
+        this.initialDelayNanos = initialDelayMillis * 1_000_000L;
+        this.adaptive = adaptive;
+        this.maxPerHost = Math.max(maxPerHost, initialPerHost);
+        this.maxTotal = maxTotal;
+        this.maxRequestsPerHost = maxRequestsPerHost;
+        this.maxTimePerHostNanos = maxTimePerHost == null ? null : maxTimePerHost.toNanos();
+    }
+
+    /**
+     * A policy with no limits or delay.
+     */
+    public static PerHostScheduler unlimited() {
+        return new PerHostScheduler(Integer.MAX_VALUE, 0);
+    }
+
+    /**
+     * @return the {@link System#nanoTime()} at which the host may start another request, or
+     *         {@link Long#MAX_VALUE} while it is at its concurrency limit
+     */
+    public long readyAtNanos(String hostKey, long nowNanos) {
+        lock.lock();
+        try {
+            HostState state = hosts.get(hostKey);
+            if (state == null) {
+                return nowNanos;
+            }
+            if (state.inFlight >= (int) state.limit) {
+                return Long.MAX_VALUE;
+            }
+            long readyAt = state.started == 0 ? nowNanos : state.lastStartNanos + state.delayNanos;
+            if (state.held && state.holdUntilNanos - readyAt > 0) {
+                readyAt = state.holdUntilNanos;
+            }
+            return readyAt - nowNanos > 0 ? readyAt : nowNanos;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return true while the global in-flight limit is reached
+     */
+    public boolean atCapacity() {
+        lock.lock();
+        try {
+            return inFlight >= maxTotal;
+        } finally {
+            lock.unlock();
         }
+    }
+
+    /**
+     * @return true once the host has used up its request or time budget
+     */
+    public boolean exhausted(String hostKey, long nowNanos) {
+        lock.lock();
         try {
-            if (cancelled.get() || Instant.now().isAfter(deadline)) {
-                cancelled.set(true);
+            HostState state = hosts.get(hostKey);
+            if (state == null || state.started == 0) {
                 return false;
             }
-            long now = System.nanoTime();
-            long last = state.lastRequestNanos.get();
-            long minNanos = minDelayMillis * 1_000_000L;
-            long elapsed = now - last;
-            if (last > 0 && elapsed < minNanos) {
-                long sleepNanos = minNanos - elapsed;
-                long sleepMillis = sleepNanos / 1_000_000L;
-                if (sleepMillis > 0) {
-                    Thread.sleep(sleepMillis);
+            if (maxRequestsPerHost != null && state.started >= maxRequestsPerHost) {
+                return true;
+            }
+            return maxTimePerHostNanos != null && nowNanos - state.firstStartNanos >= maxTimePerHostNanos;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void started(String hostKey, long nowNanos) {
+        lock.lock();
+        try {
+            HostState state = state(hostKey);
+            if (state.started == 0) {
+                state.firstStartNanos = nowNanos;
+            }
+            state.inFlight++;
+            state.started++;
+            state.lastStartNanos = nowNanos;
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void finished(String hostKey) {
+        lock.lock();
+        try {
+            HostState state = hosts.get(hostKey);
+            if (state != null && state.inFlight > 0) {
+                state.inFlight--;
+                inFlight--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the host's robots.txt {@code Crawl-delay}, the floor for its request spacing.
+     */
+    public void crawlDelay(String hostKey, Duration crawlDelay) {
+        if (crawlDelay == null || crawlDelay.isZero() || crawlDelay.isNegative()) return;
+        lock.lock();
+        try {
+            HostState state = state(hostKey);
+            long nanos = Math.min(crawlDelay.toNanos(), MAX_DELAY_NANOS);
+            if (state.crawlDelayNanos != nanos) {
+                state.crawlDelayNanos = nanos;
+                state.delayNanos = Math.max(state.delayNanos, nanos);
+                log.info("Host {} asks for Crawl-delay {}ms", hostKey, nanos / 1_000_000);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Feeds back the outcome of a page request.
+     *
+     * @param latencyNanos time from sending the request to having the body
+     * @param retryAfter   the response's {@code Retry-After}, or null
+     */
+    public void onResponse(String hostKey, int statusCode, long latencyNanos, Duration retryAfter) {
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            HostState state = state(hostKey);
+            boolean throttled = statusCode == 429 || statusCode == 503;
+            if (throttled && retryAfter != null && !retryAfter.isNegative()) {
+                state.holdUntilNanos = now + Math.min(retryAfter.toNanos(), MAX_DELAY_NANOS);
+                state.held = true;
+            }
+            if (throttled) {
+                state.throttled++;
+                if (adaptive) {
+                    backOff(state, now, 0.5, 2.0, THROTTLED_MIN_DELAY_NANOS);
                 }
+                log.info("Host {} throttled us ({}{}); concurrency={} delay={}ms", hostKey, statusCode,
+                        retryAfter == null ? "" : ", Retry-After " + retryAfter.toSeconds() + "s",
+                        (int) state.limit, state.delayNanos / 1_000_000);
+                return;
+            }
+            if (statusCode < 200 || statusCode >= 400) {
+                return;
+            }
+            state.latencyEwmaNanos = state.latencyEwmaNanos == 0
+                    ? latencyNanos
+                    : state.latencyEwmaNanos + LATENCY_EWMA_ALPHA * (latencyNanos - state.latencyEwmaNanos);
+            state.minLatencyNanos = Math.min(state.minLatencyNanos, latencyNanos);
+            if (!adaptive) return;
+            if (state.latencyEwmaNanos > HEALTHY_LATENCY_FACTOR * state.minLatencyNanos) {
+                backOff(state, now, 0.75, 1.5, SLOW_MIN_DELAY_NANOS);
+            } else {
+                if (state.inFlight >= (int) state.limit) {
+                    // Only grow a limit that is actually constraining the host.
+                    state.limit = Math.min(maxPerHost, state.limit + 1.0 / state.limit);
+                }
+                state.delayNanos = Math.max(state.crawlDelayNanos, (long) (state.delayNanos * DELAY_DECAY));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Counts a page body received from the host.
+     *
+     * @param bodyBytes bytes after content decoding
+     * @param wireBytes bytes as received
+     */
+    public void received(String hostKey, long bodyBytes, long wireBytes) {
+        lock.lock();
+        try {
+            HostState state = state(hostKey);
+            state.bodyBytes += bodyBytes;
+            state.wireBytes += wireBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Feeds back a request that failed without a response (timeout, connection reset).
+     */
+    public void onFailure(String hostKey) {
+        if (!adaptive) return;
+        lock.lock();
+        try {
+            backOff(state(hostKey), System.nanoTime(), 0.5, 2.0, THROTTLED_MIN_DELAY_NANOS);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return current settings of every host seen so far, busiest first
+     */
+    public List<HostRate> rates() {
+        lock.lock();
+        try {
+            List<HostRate> out = new ArrayList<>(hosts.size());
+            for (Map.Entry<String, HostState> e : hosts.entrySet()) {
+                HostState s = e.getValue();
+                double byDelay = s.delayNanos == 0 ? Double.POSITIVE_INFINITY : 1e9 / s.delayNanos;
+                double byLatency = s.latencyEwmaNanos == 0
+                        ? Double.POSITIVE_INFINITY : (int) s.limit * 1e9 / s.latencyEwmaNanos;
+                double rate = Math.min(byDelay, byLatency);
+                out.add(new HostRate(e.getKey(), s.limit, s.delayNanos / 1_000_000,
+                        s.crawlDelayNanos / 1_000_000, (long) (s.latencyEwmaNanos / 1_000_000),
+                        Double.isInfinite(rate) ? 0 : rate, s.started, s.throttled, s.bodyBytes, s.wireBytes));
             }
-            state.lastRequestNanos.set(System.nanoTime());
-            return true;
+            out.sort(Comparator.comparingInt(HostRate::requests).reversed());
+            return out;
         } finally {
-            state.semaphore.release();
+            lock.unlock();
         }
     }
 
-    private static String hostKey(URI uri) {
-        String host = Objects.toString(uri.getHost(), "");
-        int port = uri.getPort();
-        String scheme = uri.getScheme() == null ? "" : uri.getScheme();
-        return scheme + "://" + host + ":" + port;
+    private static void backOff(HostState state, long now, double limitFactor, double delayFactor, long minDelayNanos) {
+        // At most one cut per round trip, so one burst of slow responses counts once.
+        if (state.lastDecreaseNanos != 0 && now - state.lastDecreaseNanos < (long) state.latencyEwmaNanos) return;
+        state.lastDecreaseNanos = now;
+        state.limit = Math.max(1, state.limit * limitFactor);
+        long delay = Math.max((long) (state.delayNanos * delayFactor), minDelayNanos);
+        state.delayNanos = Math.min(MAX_DELAY_NANOS, Math.max(state.crawlDelayNanos, delay));
     }
-}
 
+    private HostState state(String hostKey) {
+        return hosts.computeIfAbsent(hostKey, k -> {
+            HostState s = new HostState();
+            s.limit = initialPerHost;
+            s.delayNanos = initialDelayNanos;
+            return s;
+        });
+    }
+
+    /**
+     * Politeness key of the server behind {@code uri}: the same for every spelling of it, like
+     * an explicit default port or an upper-case host.
+     */
+    public static String hostKey(URI uri) {
+        String host = Objects.toString(uri.getHost(), "").toLowerCase(Locale.ROOT);
+        String scheme = Objects.toString(uri.getScheme(), "").toLowerCase(Locale.ROOT);
+        return scheme + "://" + host + ":" + UrlNormalizer.effectivePort(uri);
+    }
+}
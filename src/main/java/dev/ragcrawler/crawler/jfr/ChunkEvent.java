@@ -0,0 +1,17 @@
+package dev.ragcrawler.crawler.jfr;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name(ChunkEvent.NAME)
+@Label("Chunk")
+public class ChunkEvent extends CrawlEvent {
+
+    public static final String NAME = "dev.ragcrawler.Chunk";
+
+    @Label("Blocks")
+    public int blocks;
+
+    @Label("Chunks")
+    public int chunks;
+}
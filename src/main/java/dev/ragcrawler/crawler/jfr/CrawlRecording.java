@@ -0,0 +1,76 @@
+package dev.ragcrawler.crawler.jfr;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A JFR recording of the whole crawl, written to a file when the crawl ends (or the JVM exits).
+ * <p>
+ * Starts from the JDK's low-overhead {@code default} settings and enables the crawler's events:
+ * every fetch, and parse/extract/chunk/write or frontier waits above a small threshold, so slow
+ * pages stand out without recording millions of trivial events.
+ */
+public final class CrawlRecording implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(CrawlRecording.class);
+
+    private static final Map<String, String> THRESHOLDS = Map.of(
+            FetchEvent.NAME, "0 ms",
+            FrontierWaitEvent.NAME, "10 ms",
+            ParseEvent.NAME, "1 ms",
+            ExtractEvent.NAME, "1 ms",
+            ChunkEvent.NAME, "1 ms",
+            EmbedEvent.NAME, "1 ms",
+            WriteEvent.NAME, "1 ms");
+
+    private final Recording recording;
+    private final Path file;
+
+    private CrawlRecording(Recording recording, Path file) {
+        this.recording = recording;
+        this.file = file;
+    }
+
+    public static CrawlRecording disabled() {
+        return new CrawlRecording(null, null);
+    }
+
+    public static CrawlRecording start(Path file) throws IOException {
+        Map<String, String> settings;
+        try {
+            settings = new HashMap<>(Configuration.getConfiguration("default").getSettings());
+        } catch (ParseException e) {
+            throw new IOException("Cannot read JFR default settings", e);
+        }
+        THRESHOLDS.forEach((event, threshold) -> {
+            settings.put(event + "#enabled", "true");
+            settings.put(event + "#threshold", threshold);
+        });
+        Recording recording = new Recording(settings);
+        recording.setName("rag-crawler");
+        recording.setToDisk(true);
+        recording.setDestination(file);
+        recording.setDumpOnExit(true);
+        recording.start();
+        log.info("JFR recording to {}", file);
+        return new CrawlRecording(recording, file);
+    }
+
+    @Override
+    public void close() {
+        if (recording == null) return;
+        // With a destination set, stop() writes the file.
+        recording.stop();
+        recording.close();
+        log.info("JFR recording written to {}", file);
+    }
+}
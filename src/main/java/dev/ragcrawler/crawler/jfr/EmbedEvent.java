@@ -0,0 +1,16 @@
+package dev.ragcrawler.crawler.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name(EmbedEvent.NAME)
+@Label("Embed Page")
+@Description("Embedding a page's chunks, including any wait for the embedding queue and batch")
+public class EmbedEvent extends CrawlEvent {
+
+    public static final String NAME = "dev.ragcrawler.Embed";
+
+    @Label("Chunks")
+    public int chunks;
+}
@@ -0,0 +1,17 @@
+package dev.ragcrawler.crawler.jfr;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name(ExtractEvent.NAME)
+@Label("Extract")
+public class ExtractEvent extends CrawlEvent {
+
+    public static final String NAME = "dev.ragcrawler.Extract";
+
+    @Label("Blocks")
+    public int blocks;
+
+    @Label("Characters")
+    public long chars;
+}
@@ -0,0 +1,25 @@
+package dev.ragcrawler.crawler.jfr;
+
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name(FetchEvent.NAME)
+@Label("Fetch")
+@Description("One HTTP fetch, all retry attempts included")
+public class FetchEvent extends CrawlEvent {
+
+    public static final String NAME = "dev.ragcrawler.Fetch";
+
+    @Label("Status Code")
+    public int statusCode;
+
+    @Label("Body Bytes")
+    @DataAmount
+    public long bytes;
+
+    @Label("HTML Page")
+    @Description("False for robots.txt and other non-page resources")
+    public boolean htmlPage;
+}
@@ -0,0 +1,16 @@
+package dev.ragcrawler.crawler.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name(FrontierWaitEvent.NAME)
+@Label("Frontier Wait")
+@Description("Time the dispatcher waited for a host to become eligible under the politeness and capacity limits")
+public class FrontierWaitEvent extends CrawlEvent {
+
+    public static final String NAME = "dev.ragcrawler.FrontierWait";
+
+    @Label("Queued URLs")
+    public long queued;
+}
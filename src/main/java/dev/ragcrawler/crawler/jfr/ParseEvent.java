@@ -0,0 +1,19 @@
+package dev.ragcrawler.crawler.jfr;
+
+import jdk.jfr.DataAmount;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name(ParseEvent.NAME)
+@Label("Parse")
+public class ParseEvent extends CrawlEvent {
+
+    public static final String NAME = "dev.ragcrawler.Parse";
+
+    @Label("Body Bytes")
+    @DataAmount
+    public long bytes;
+
+    @Label("Links")
+    public int links;
+}
@@ -0,0 +1,32 @@
+package dev.ragcrawler.crawler.jfr;
+
+import dev.ragcrawler.crawler.parsing.OutputChunk;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import java.util.List;
+
+@Name(WriteEvent.NAME)
+@Label("Write Page")
+@Description("Handing a page's chunks to the output, including any wait for the writer")
+public class WriteEvent extends CrawlEvent {
+
+    public static final String NAME = "dev.ragcrawler.Write";
+
+    @Label("Chunks")
+    public int chunks;
+
+    @Label("Characters")
+    public long chars;
+
+    public void fill(List<OutputChunk> pageChunks) {
+        page(pageChunks.get(0).rootUrl());
+        chunks = pageChunks.size();
+        long total = 0;
+        for (OutputChunk chunk : pageChunks) {
+            total += chunk.content().length();
+        }
+        chars = total;
+    }
+}
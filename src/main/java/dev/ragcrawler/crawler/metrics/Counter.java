@@ -0,0 +1,24 @@
+package dev.ragcrawler.crawler.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonic counter. Striped ({@link LongAdder}), so concurrent increments from many virtual
+ * threads do not contend on one cache line.
+ */
+public final class Counter {
+
+    private final LongAdder value = new LongAdder();
+
+    public void increment() {
+        value.increment();
+    }
+
+    public void add(long delta) {
+        value.add(delta);
+    }
+
+    public long get() {
+        return value.sum();
+    }
+}
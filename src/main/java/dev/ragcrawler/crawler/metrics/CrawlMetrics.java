@@ -0,0 +1,207 @@
+package dev.ragcrawler.crawler.metrics;
+
+import dev.ragcrawler.crawler.http.PerHostScheduler;
+import dev.ragcrawler.crawler.state.UrlFrontier;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+/**
+ * The crawl's metrics: fetch latency, sizes and status codes, robots decisions, time spent in
+ * each processing stage, and gauges for the frontier, in-flight requests and per-host rates.
+ * Recording is lock-free and allocation-free apart from the first use of a status code.
+ */
+public final class CrawlMetrics {
+
+    private static final double NANOS_PER_SECOND = 1e9;
+    private static final int MAX_HOST_GAUGES = 50;
+
+    private final MetricsRegistry registry = new MetricsRegistry();
+    private final Histogram fetchTime = registry.histogram("crawler_fetch_seconds",
+            "Time from sending a page request to having its body", NANOS_PER_SECOND);
+    private final Histogram fetchSize = registry.histogram("crawler_fetch_body_bytes",
+            "Body size of fetched pages", 1);
+    private final Counter fetchedBytes = registry.counter("crawler_fetched_bytes_total",
+            "Body bytes fetched");
+    private final Counter fetchedWireBytes = registry.counter("crawler_fetched_wire_bytes_total",
+            "Body bytes received, before gzip or deflate decoding");
+    private final Counter fetchErrors = registry.counter("crawler_fetch_errors_total",
+            "Page requests that failed without a response");
+    private final Counter robotsAllowed = registry.counter("crawler_robots_decisions_total",
+            "URLs checked against robots.txt", "decision", "allowed");
+    private final Counter robotsDisallowed = registry.counter("crawler_robots_decisions_total",
+            "URLs checked against robots.txt", "decision", "disallowed");
+    private final Histogram parseTime = registry.histogram("crawler_parse_seconds",
+            "HTML parse time per page", NANOS_PER_SECOND);
+    private final Histogram extractTime = registry.histogram("crawler_extract_seconds",
+            "Content extraction time per page", NANOS_PER_SECOND);
+    private final Histogram chunkTime = registry.histogram("crawler_chunk_seconds",
+            "Chunking time per page", NANOS_PER_SECOND);
+    private final Histogram writeTime = registry.histogram("crawler_write_seconds",
+            "Time writing a page's chunks to the output", NANOS_PER_SECOND);
+    private final Counter chunksWritten = registry.counter("crawler_chunks_written_total",
+            "Chunks written to the output");
+    private final Histogram flushTime = registry.histogram("crawler_output_flush_seconds",
+            "Time per group commit of the asynchronous writer, or per finished output shard", NANOS_PER_SECOND);
+    private final Histogram embedTime = registry.histogram("crawler_embed_batch_seconds",
+            "Time per embedder call", NANOS_PER_SECOND);
+    private final Histogram embedBatchSize = registry.histogram("crawler_embed_batch_chunks",
+            "Chunks per embedder call", 1);
+    private final Counter chunksEmbedded = registry.counter("crawler_chunks_embedded_total",
+            "Chunks embedded");
+    private final Counter boilerplateBlocks = registry.counter("crawler_boilerplate_dropped_blocks_total",
+            "Blocks dropped as navigation or other boilerplate");
+    private final Counter boilerplateBytes = registry.counter("crawler_boilerplate_dropped_bytes_total",
+            "Text bytes dropped as navigation or other boilerplate");
+    private final Counter[] statusCounters = new Counter[600];
+
+    public MetricsRegistry registry() {
+        return registry;
+    }
+
+    /**
+     * Registers gauges that read crawl state at each scrape.
+     */
+    public void watch(UrlFrontier frontier, PerHostScheduler scheduler, AtomicInteger pagesCrawled) {
+        registry.gauge("crawler_pages_crawled", "Pages fetched and counted towards maxPages",
+                pagesCrawled::get);
+        registry.gauge("crawler_frontier_size", "URLs queued in the frontier", frontier::size);
+        registry.gauge("crawler_in_flight", "Page requests in flight", frontier::inFlight);
+        registry.gauges("crawler_host_requests_per_second",
+                "Request rate each host's current settings allow (busiest hosts)", "host", () -> {
+                    List<PerHostScheduler.HostRate> rates = scheduler.rates();
+                    Map<String, Double> out = new LinkedHashMap<>();
+                    for (PerHostScheduler.HostRate rate : rates.subList(0, Math.min(MAX_HOST_GAUGES, rates.size()))) {
+                        out.put(rate.host(), rate.requestsPerSecond());
+                    }
+                    return out;
+                });
+    }
+
+    /**
+     * Registers a gauge for the pages waiting in the asynchronous or sharded writer's queues.
+     */
+    public void watchOutputQueue(IntSupplier queuedPages) {
+        registry.gauge("crawler_output_queue_pages", "Pages waiting to be written to the output",
+                queuedPages::getAsInt);
+    }
+
+    /**
+     * Registers a gauge for the chunks waiting for the embedding stage.
+     */
+    public void watchEmbeddingQueue(IntSupplier queuedChunks) {
+        registry.gauge("crawler_embed_queue_chunks", "Chunks waiting to be embedded",
+                queuedChunks::getAsInt);
+    }
+
+    public void robots(boolean allowed) {
+        (allowed ? robotsAllowed : robotsDisallowed).increment();
+    }
+
+    /**
+     * @param bodyBytes body bytes after content decoding
+     * @param wireBytes body bytes as received
+     */
+    public void fetched(int statusCode, long nanos, long bodyBytes, long wireBytes) {
+        statusCounter(statusCode).increment();
+        fetchTime.record(nanos);
+        fetchSize.record(bodyBytes);
+        fetchedBytes.add(bodyBytes);
+        fetchedWireBytes.add(wireBytes);
+    }
+
+    private Counter statusCounter(int statusCode) {
+        int slot = statusCode >= 0 && statusCode < statusCounters.length ? statusCode : 0;
+        Counter counter = statusCounters[slot];
+        if (counter == null) {
+            // Racing threads get the same instance back from the registry.
+            counter = registry.counter("crawler_http_responses_total", "Page responses by status code",
+                    "status", slot == 0 ? "other" : Integer.toString(statusCode));
+            statusCounters[slot] = counter;
+        }
+        return counter;
+    }
+
+    public void fetchFailed() {
+        fetchErrors.increment();
+    }
+
+    public void parsed(long nanos) {
+        parseTime.record(nanos);
+    }
+
+    public void extracted(long nanos) {
+        extractTime.record(nanos);
+    }
+
+    public void boilerplateDropped(int blocks, long bytes) {
+        boilerplateBlocks.add(blocks);
+        boilerplateBytes.add(bytes);
+    }
+
+    public void chunked(long nanos) {
+        chunkTime.record(nanos);
+    }
+
+    public void written(long nanos, int chunks) {
+        writeTime.record(nanos);
+        chunksWritten.add(chunks);
+    }
+
+    public void embedded(long nanos, int chunks) {
+        embedTime.record(nanos);
+        embedBatchSize.record(chunks);
+        chunksEmbedded.add(chunks);
+    }
+
+    public long fetchedBytes() {
+        return fetchedBytes.get();
+    }
+
+    public long fetchedWireBytes() {
+        return fetchedWireBytes.get();
+    }
+
+    public long boilerplateBlocks() {
+        return boilerplateBlocks.get();
+    }
+
+    public long boilerplateBytes() {
+        return boilerplateBytes.get();
+    }
+
+    public long chunksWritten() {
+        return chunksWritten.get();
+    }
+
+    public Histogram fetchTime() {
+        return fetchTime;
+    }
+
+    public Histogram parseTime() {
+        return parseTime;
+    }
+
+    public Histogram extractTime() {
+        return extractTime;
+    }
+
+    public Histogram writeTime() {
+        return writeTime;
+    }
+
+    public Histogram flushTime() {
+        return flushTime;
+    }
+
+    public Histogram embedTime() {
+        return embedTime;
+    }
+
+    public Histogram embedBatchSize() {
+        return embedBatchSize;
+    }
+}
@@ -0,0 +1,220 @@
+package dev.ragcrawler.crawler.metrics;
+
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes {@link CrawlMetrics}: always as a JMX MBean ({@value #OBJECT_NAME}), optionally on a
+ * local HTTP endpoint ({@code http://127.0.0.1:<port>/metrics}, Prometheus text format) and as a
+ * periodic progress log line.
+ */
+public final class MetricsExporter implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(MetricsExporter.class);
+
+    static final String OBJECT_NAME = "dev.ragcrawler:type=CrawlMetrics";
+
+    private final CrawlMetrics metrics;
+    private final ObjectName objectName;
+    private final HttpServer server;
+    private final ScheduledExecutorService progress;
+    private long lastPages;
+    private long lastBytes;
+    private long lastNanos = System.nanoTime();
+
+    private MetricsExporter(CrawlMetrics metrics, Integer port, Duration progressInterval) throws IOException {
+        this.metrics = metrics;
+        this.objectName = registerMBean(metrics.registry());
+        if (port != null) {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+            server.createContext("/metrics", exchange -> {
+                byte[] body = metrics.registry().toPrometheus().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            server.start();
+            log.info("Serving metrics on http://{}:{}/metrics",
+                    server.getAddress().getHostString(), server.getAddress().getPort());
+        } else {
+            server = null;
+        }
+        if (progressInterval != null) {
+            progress = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "crawler-progress");
+                t.setDaemon(true);
+                return t;
+            });
+            long millis = progressInterval.toMillis();
+            progress.scheduleAtFixedRate(this::logProgress, millis, millis, TimeUnit.MILLISECONDS);
+        } else {
+            progress = null;
+        }
+    }
+
+    /**
+     * @param port             HTTP port for the Prometheus endpoint, or null for none
+     * @param progressInterval how often to log a progress line, or null for never
+     */
+    public static MetricsExporter start(CrawlMetrics metrics, Integer port, Duration progressInterval)
+            throws IOException {
+        return new MetricsExporter(metrics, port, progressInterval);
+    }
+
+    private void logProgress() {
+        Map<String, Double> v = metrics.registry().values();
+        long now = System.nanoTime();
+        long pages = v.getOrDefault("crawler_pages_crawled", 0.0).longValue();
+        long bytes = metrics.fetchedBytes();
+        double seconds = Math.max(1e-3, (now - lastNanos) / 1e9);
+        Histogram.Snapshot fetch = metrics.fetchTime().snapshot();
+        log.info("Progress: pages={} ({}/s) frontier={} inFlight={} fetched={} MiB ({} KiB/s) "
+                        + "fetch p50={}ms p99={}ms parse p50={}ms write p50={}ms",
+                pages, String.format("%.1f", (pages - lastPages) / seconds),
+                v.getOrDefault("crawler_frontier_size", 0.0).longValue(),
+                v.getOrDefault("crawler_in_flight", 0.0).longValue(),
+                bytes >> 20, (long) ((bytes - lastBytes) / 1024 / seconds),
+                fetch.p50() / 1_000_000, fetch.p99() / 1_000_000,
+                metrics.parseTime().snapshot().p50() / 1_000_000,
+                metrics.writeTime().snapshot().p50() / 1_000_000);
+        lastPages = pages;
+        lastBytes = bytes;
+        lastNanos = now;
+    }
+
+    /**
+     * Logs where the crawl spent its time, for the end of a run.
+     */
+    public void logSummary() {
+        log.info("Stages: fetch p50={}ms p99={}ms, parse p50={}ms, extract p50={}ms, write p50={}ms; "
+                        + "fetched={} bytes ({} on the wire), chunks={}",
+                millis(metrics.fetchTime().snapshot().p50()), millis(metrics.fetchTime().snapshot().p99()),
+                millis(metrics.parseTime().snapshot().p50()), millis(metrics.extractTime().snapshot().p50()),
+                millis(metrics.writeTime().snapshot().p50()), metrics.fetchedBytes(), metrics.fetchedWireBytes(),
+                metrics.chunksWritten());
+        if (metrics.boilerplateBlocks() > 0) {
+            log.info("Boilerplate: dropped {} blocks, {} bytes of text", metrics.boilerplateBlocks(),
+                    metrics.boilerplateBytes());
+        }
+        Histogram.Snapshot embed = metrics.embedTime().snapshot();
+        if (embed.count() > 0) {
+            log.info("Embedding: {} batches, mean {} chunks per batch, batch p50={}ms p99={}ms",
+                    embed.count(), String.format("%.1f", metrics.embedBatchSize().snapshot().mean()),
+                    millis(embed.p50()), millis(embed.p99()));
+        }
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.1f", nanos / 1e6);
+    }
+
+    private static ObjectName registerMBean(MetricsRegistry registry) {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+            if (mbs.isRegistered(name)) {
+                // A previous crawl in the same JVM did not unregister; the newest crawl wins.
+                mbs.unregisterMBean(name);
+            }
+            mbs.registerMBean(new RegistryMBean(registry), name);
+            return name;
+        } catch (JMException e) {
+            log.warn("Could not register metrics MBean: {}", e.toString());
+            return null;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (progress != null) {
+            progress.shutdownNow();
+        }
+        if (server != null) {
+            server.stop(0);
+        }
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException e) {
+                log.debug("Could not unregister metrics MBean: {}", e.toString());
+            }
+        }
+    }
+
+    /**
+     * Read-only MBean whose attributes are the registry's flattened values.
+     */
+    private static final class RegistryMBean implements DynamicMBean {
+
+        private final MetricsRegistry registry;
+
+        RegistryMBean(MetricsRegistry registry) {
+            this.registry = registry;
+        }
+
+        @Override
+        public Object getAttribute(String attribute) {
+            return registry.values().get(attribute);
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) {
+            throw new UnsupportedOperationException("Crawl metrics are read-only");
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            Map<String, Double> values = registry.values();
+            AttributeList out = new AttributeList();
+            for (String a : attributes) {
+                if (values.containsKey(a)) {
+                    out.add(new Attribute(a, values.get(a)));
+                }
+            }
+            return out;
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) {
+            throw new UnsupportedOperationException(actionName);
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            // Built per call: label values such as status codes and hosts appear during the crawl.
+            MBeanAttributeInfo[] attributes = registry.values().keySet().stream()
+                    .map(name -> new MBeanAttributeInfo(name, Double.class.getName(), name, true, false, false))
+                    .toArray(MBeanAttributeInfo[]::new);
+            return new MBeanInfo(RegistryMBean.class.getName(), "Crawl metrics", attributes, null, null, null);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package dev.ragcrawler.crawler.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Named counters, histograms and gauges, optionally split by one label, rendered in the
+ * Prometheus text format or flattened to name/value pairs for JMX and log lines.
+ * <p>
+ * Registration returns the metric so hot paths hold a direct reference and never look names up.
+ * Histograms are exposed as Prometheus summaries (p50/p90/p99 quantiles plus sum and count),
+ * converted to base units, e.g. nanoseconds to seconds.
+ */
+public final class MetricsRegistry {
+
+    private enum Type {
+        COUNTER("counter"), GAUGE("gauge"), SUMMARY("summary");
+
+        final String prometheus;
+
+        Type(String prometheus) {
+            this.prometheus = prometheus;
+        }
+    }
+
+    private static final class Family {
+        final String name;
+        final String help;
+        final Type type;
+        final String labelName;
+        final double unitsPerBaseUnit;
+        // Label value ("" without a label) -> Counter, Histogram or DoubleSupplier.
+        final ConcurrentMap<String, Object> children = new ConcurrentHashMap<>();
+        Supplier<Map<String, ? extends Number>> dynamic;
+
+        Family(String name, String help, Type type, String labelName, double unitsPerBaseUnit) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+            this.labelName = labelName;
+            this.unitsPerBaseUnit = unitsPerBaseUnit;
+        }
+    }
+
+    private final List<Family> families = new CopyOnWriteArrayList<>();
+    private final ConcurrentMap<String, Family> byName = new ConcurrentHashMap<>();
+
+    public Counter counter(String name, String help) {
+        return counter(name, help, null, "");
+    }
+
+    /**
+     * @return the counter for one value of the family's label, created on first use
+     */
+    public Counter counter(String name, String help, String labelName, String labelValue) {
+        Family family = family(name, help, Type.COUNTER, labelName, 1);
+        return (Counter) family.children.computeIfAbsent(labelValue, k -> new Counter());
+    }
+
+    /**
+     * @param unitsPerBaseUnit recorded units per exported base unit (1e9 for nanoseconds to seconds)
+     */
+    public Histogram histogram(String name, String help, double unitsPerBaseUnit) {
+        Family family = family(name, help, Type.SUMMARY, null, unitsPerBaseUnit);
+        return (Histogram) family.children.computeIfAbsent("", k -> new Histogram());
+    }
+
+    public void gauge(String name, String help, DoubleSupplier value) {
+        family(name, help, Type.GAUGE, null, 1).children.put("", value);
+    }
+
+    /**
+     * A gauge per label value, read from {@code values} at each scrape.
+     */
+    public void gauges(String name, String help, String labelName, Supplier<Map<String, ? extends Number>> values) {
+        family(name, help, Type.GAUGE, labelName, 1).dynamic = values;
+    }
+
+    private Family family(String name, String help, Type type, String labelName, double unitsPerBaseUnit) {
+        Family family = byName.computeIfAbsent(name, k -> {
+            Family f = new Family(name, help, type, labelName, unitsPerBaseUnit);
+            families.add(f);
+            return f;
+        });
+        if (family.type != type) {
+            throw new IllegalArgumentException("Metric " + name + " is already a " + family.type.prometheus);
+        }
+        return family;
+    }
+
+    public String toPrometheus() {
+        StringBuilder out = new StringBuilder(4096);
+        for (Family f : families) {
+            out.append("# HELP ").append(f.name).append(' ').append(f.help).append('\n');
+            out.append("# TYPE ").append(f.name).append(' ').append(f.type.prometheus).append('\n');
+            for (Map.Entry<String, Object> child : children(f).entrySet()) {
+                String label = f.labelName == null ? "" : f.labelName + "=\"" + escape(child.getKey()) + "\"";
+                Object metric = child.getValue();
+                if (metric instanceof Histogram h) {
+                    Histogram.Snapshot s = h.snapshot();
+                    quantile(out, f, label, "0.5", s.p50());
+                    quantile(out, f, label, "0.9", s.p90());
+                    quantile(out, f, label, "0.99", s.p99());
+                    sample(out, f.name + "_sum", label, s.sum() / f.unitsPerBaseUnit);
+                    sample(out, f.name + "_count", label, s.count());
+                } else {
+                    sample(out, f.name, label, value(metric));
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Every sample as a flat name ({@code name_labelValue}, histograms as {@code _count},
+     * {@code _mean}, {@code _p50}, {@code _p90}, {@code _p99} and {@code _max}) in base units.
+     */
+    public Map<String, Double> values() {
+        Map<String, Double> out = new LinkedHashMap<>();
+        for (Family f : families) {
+            for (Map.Entry<String, Object> child : children(f).entrySet()) {
+                String name = child.getKey().isEmpty() ? f.name : f.name + "_" + sanitize(child.getKey());
+                if (child.getValue() instanceof Histogram h) {
+                    Histogram.Snapshot s = h.snapshot();
+                    out.put(name + "_count", (double) s.count());
+                    out.put(name + "_mean", s.mean() / f.unitsPerBaseUnit);
+                    out.put(name + "_p50", s.p50() / f.unitsPerBaseUnit);
+                    out.put(name + "_p90", s.p90() / f.unitsPerBaseUnit);
+                    out.put(name + "_p99", s.p99() / f.unitsPerBaseUnit);
+                    out.put(name + "_max", s.max() / f.unitsPerBaseUnit);
+                } else {
+                    out.put(name, value(child.getValue()));
+                }
+            }
+        }
+        return out;
+    }
+
+    private static Map<String, Object> children(Family f) {
+        if (f.dynamic == null) {
+            return new TreeMap<>(f.children);
+        }
+        Map<String, Object> out = new LinkedHashMap<>();
+        f.dynamic.get().forEach((k, v) -> out.put(k, (DoubleSupplier) v::doubleValue));
+        return out;
+    }
+
+    private static double value(Object metric) {
+        if (metric instanceof Counter c) return c.get();
+        return ((DoubleSupplier) metric).getAsDouble();
+    }
+
+    private static void quantile(StringBuilder out, Family f, String label, String q, long value) {
+        sample(out, f.name, (label.isEmpty() ? "" : label + ",") + "quantile=\"" + q + "\"", value / f.unitsPerBaseUnit);
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+
+    private static String escape(String labelValue) {
+        return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String sanitize(String labelValue) {
+        return labelValue.replaceAll("[^A-Za-z0-9_]", "_");
+    }
+}
@@ -0,0 +1,246 @@
+package dev.ragcrawler.crawler.output;
+
+import dev.ragcrawler.crawler.CrawlConfig.FsyncPolicy;
+import dev.ragcrawler.crawler.CrawlConfig.OutputFormat;
+import dev.ragcrawler.crawler.jfr.WriteEvent;
+import dev.ragcrawler.crawler.metrics.Histogram;
+import dev.ragcrawler.crawler.parsing.OutputChunk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Output writer that takes pages off the crawl's threads.
+ * <p>
+ * {@link #writePage} puts the page's chunks on a bounded queue; when the queue is full it blocks,
+ * which slows the crawl to the speed of the disk. One writer thread serializes pages in arrival
+ * order, each page in one piece, into a large buffer and commits the group (flush, plus fsync
+ * with {@link FsyncPolicy#COMMIT}) once {@code flushBytes} are pending or {@code flushInterval}
+ * has passed since the last commit, then runs the commit callbacks of the pages it covered. An I/O
+ * error on the writer thread fails every later call, and the callbacks of uncommitted pages never run.
+ */
+public final class AsyncChunkWriter implements ChunkWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncChunkWriter.class);
+
+    public static final int DEFAULT_QUEUE_PAGES = 1024;
+
+    private static final Runnable NOTHING = () -> {};
+    private static final Page CLOSE = new Page(List.of(), NOTHING);
+
+    private record Page(List<OutputChunk> chunks, Runnable committed) {}
+
+    private final BlockingQueue<Page> queue;
+    private final FileChannel channel;
+    private final CountingOutputStream counted;
+    private final StreamChunkWriter serializer;
+    private final long flushBytes;
+    private final long flushIntervalNanos;
+    private final FsyncPolicy fsync;
+    private final Histogram flushLatency;
+    private final Thread thread;
+    private volatile IOException failure;
+    private volatile boolean closed;
+    private long committedBytes;
+    // Pages appended since the last commit; the serializer may still hold them in its own buffer.
+    private boolean dirty;
+    private final List<Runnable> uncommitted = new ArrayList<>();
+    private long lastCommitNanos = System.nanoTime();
+
+    /**
+     * @param append       keep the existing file, cutting off a partial last line (for resume); not for binary COPY
+     * @param flushLatency receives the duration of every group commit, in nanoseconds
+     */
+    public AsyncChunkWriter(Path path, OutputFormat format, boolean append, int queuePages, long flushBytes,
+                            Duration flushInterval, FsyncPolicy fsync, Histogram flushLatency) throws IOException {
+        if (append) {
+            JsonlChunkWriter.truncatePartialLine(path);
+        }
+        this.channel = append
+                ? FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)
+                : FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+        // Serializer -> byte counter -> commit-sized buffer -> file.
+        int bufferBytes = (int) Math.min(Math.max(flushBytes, 8192), 64L * 1024 * 1024);
+        this.counted = new CountingOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(channel), bufferBytes));
+        this.serializer = StreamChunkWriter.open(format, counted);
+        this.queue = new ArrayBlockingQueue<>(queuePages);
+        this.flushBytes = flushBytes;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.fsync = fsync;
+        this.flushLatency = flushLatency;
+        this.thread = new Thread(this::drain, "chunk-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Queues the page, waiting while the queue is full.
+     */
+    @Override
+    public void writePage(List<OutputChunk> chunks) throws IOException {
+        writePage(chunks, NOTHING);
+    }
+
+    /**
+     * Queues the page, waiting while the queue is full; {@code committed} runs on the writer thread
+     * after the group commit that covers the page.
+     */
+    @Override
+    public void writePage(List<OutputChunk> chunks, Runnable committed) throws IOException {
+        if (chunks.isEmpty()) {
+            committed.run();
+            return;
+        }
+        checkOpen();
+        WriteEvent event = new WriteEvent();
+        event.begin();
+        try {
+            queue.put(new Page(chunks, committed));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the output queue", e);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.fill(chunks);
+            event.commit();
+        }
+    }
+
+    /**
+     * @return pages waiting for the writer thread
+     */
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    private void checkOpen() throws IOException {
+        if (failure != null) {
+            throw new IOException("Output writer failed", failure);
+        }
+        if (closed) {
+            throw new IOException("Output writer is closed");
+        }
+    }
+
+    private void drain() {
+        List<Page> batch = new ArrayList<>();
+        while (true) {
+            Page page;
+            try {
+                long untilCommit = lastCommitNanos + flushIntervalNanos - System.nanoTime();
+                page = dirty
+                        ? queue.poll(Math.max(untilCommit, 0), TimeUnit.NANOSECONDS)
+                        : queue.take();
+            } catch (InterruptedException e) {
+                page = CLOSE;
+            }
+            boolean closing = false;
+            if (page != null) {
+                batch.add(page);
+                queue.drainTo(batch);
+                for (Page p : batch) {
+                    if (p == CLOSE) {
+                        closing = true;
+                    } else if (failure == null) {
+                        // After a failure keep draining, so producers never block on a dead writer.
+                        append(p);
+                    }
+                }
+                batch.clear();
+            }
+            if (failure == null && dirty && (closing || pending() >= flushBytes
+                    || System.nanoTime() - lastCommitNanos >= flushIntervalNanos)) {
+                commit(fsync == FsyncPolicy.COMMIT);
+            }
+            if (closing) return;
+        }
+    }
+
+    private void append(Page page) {
+        try {
+            serializer.appendPage(page.chunks());
+            dirty = true;
+            uncommitted.add(page.committed());
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private long pending() {
+        return counted.count - committedBytes;
+    }
+
+    private void commit(boolean sync) {
+        long start = System.nanoTime();
+        try {
+            serializer.flush();
+            if (sync) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            fail(e);
+            return;
+        }
+        long now = System.nanoTime();
+        flushLatency.record(now - start);
+        committedBytes = counted.count;
+        lastCommitNanos = now;
+        dirty = false;
+        for (Runnable committed : uncommitted) {
+            try {
+                committed.run();
+            } catch (RuntimeException e) {
+                log.warn("Commit callback failed: {}", e.toString());
+            }
+        }
+        uncommitted.clear();
+    }
+
+    private void fail(IOException e) {
+        if (failure == null) {
+            log.error("Writing output failed; further pages are dropped: {}", e.toString());
+            failure = e;
+        }
+        uncommitted.clear();
+    }
+
+    /**
+     * Writes everything queued, commits, and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            queue.put(CLOSE);
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if (failure == null && fsync != FsyncPolicy.NEVER) {
+                channel.force(false);
+            }
+        } finally {
+            serializer.close();
+        }
+        if (failure != null) {
+            throw new IOException("Output writer failed", failure);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package dev.ragcrawler.crawler.output;
+
+import dev.ragcrawler.crawler.parsing.OutputChunk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Destination for the chunks of crawled pages. Implementations are thread-safe, and the chunks of
+ * one {@link #writePage} call end up contiguous in the output.
+ */
+public interface ChunkWriter extends Closeable {
+
+    void writePage(List<OutputChunk> chunks) throws IOException;
+
+    /**
+     * Writes the page and runs {@code committed} once its chunks have been committed to the output,
+     * which a writer that buffers may do later and on its own thread. {@code committed} never runs
+     * if the page is not written, so a caller can use it to record the page as done.
+     */
+    default void writePage(List<OutputChunk> chunks, Runnable committed) throws IOException {
+        writePage(chunks);
+        committed.run();
+    }
+}
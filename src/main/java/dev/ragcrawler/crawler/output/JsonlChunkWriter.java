@@ -7,38 +7,87 @@ import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import dev.ragcrawler.crawler.parsing.OutputChunk;
 
-import java.io.Closeable;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
 
-public final class JsonlChunkWriter implements Closeable {
+public final class JsonlChunkWriter extends StreamChunkWriter {
 
     private final ObjectMapper mapper;
     private final JsonGenerator generator;
     private final OutputStream out;
-    private final Lock lock = new ReentrantLock();
 
     public JsonlChunkWriter(Path path) throws IOException {
-        this.out = Files.newOutputStream(path);
+        this(Files.newOutputStream(path));
+    }
+
+    /**
+     * Opens {@code path} for appending, e.g. when resuming a crawl. A partial last line left
+     * behind by a crash is cut off first so the file stays valid JSONL.
+     */
+    public static JsonlChunkWriter openForAppend(Path path) throws IOException {
+        truncatePartialLine(path);
+        return new JsonlChunkWriter(Files.newOutputStream(path, StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+    }
+
+    public JsonlChunkWriter(OutputStream out) throws IOException {
+        this.out = out;
         this.mapper = new ObjectMapper();
         this.mapper.registerModule(new JavaTimeModule());
         this.mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        // Flushing is up to writePage/flush, not every value.
+        this.mapper.disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
         JsonFactory factory = mapper.getFactory();
         this.generator = factory.createGenerator(out);
     }
 
     public void writeChunk(OutputChunk chunk) throws IOException {
-        lock.lock();
-        try {
+        writePage(List.of(chunk));
+    }
+
+    @Override
+    void appendPage(List<OutputChunk> chunks) throws IOException {
+        for (OutputChunk chunk : chunks) {
             mapper.writeValue(generator, chunk);
             generator.writeRaw('\n');
-            generator.flush();
-        } finally {
-            lock.unlock();
+        }
+    }
+
+    @Override
+    void flush() throws IOException {
+        generator.flush();
+    }
+
+    /**
+     * Cuts off a partial last line, e.g. one left behind by a crash, so the file can be appended to.
+     */
+    public static void truncatePartialLine(Path path) throws IOException {
+        if (Files.notExists(path)) return;
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = ch.size();
+            ByteBuffer buf = ByteBuffer.allocate(8192);
+            long pos = size;
+            while (pos > 0) {
+                int n = (int) Math.min(buf.capacity(), pos);
+                buf.clear().limit(n);
+                ch.read(buf, pos - n);
+                for (int i = n - 1; i >= 0; i--) {
+                    if (buf.get(i) == '\n') {
+                        long keep = pos - n + i + 1;
+                        if (keep < size) {
+                            ch.truncate(keep);
+                        }
+                        return;
+                    }
+                }
+                pos -= n;
+            }
+            ch.truncate(0);
         }
     }
 
@@ -0,0 +1,309 @@
+package dev.ragcrawler.crawler.output;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.ragcrawler.crawler.embedding.Embedding;
+import dev.ragcrawler.crawler.parsing.OutputChunk;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes chunks as PostgreSQL {@code COPY} input for the {@code doc_chunks} table, one row per chunk
+ * in the column order of {@link #COLUMNS}:
+ * <pre>
+ * COPY doc_chunks (id, url, ...) FROM 'part-00000.copy';                          -- text
+ * COPY doc_chunks (id, url, ...) FROM 'part-00000.pgcopy' WITH (FORMAT binary);   -- binary
+ * </pre>
+ * Lists become {@code text[]}, {@code crawledAt} a {@code timestamptz} (truncated to microseconds)
+ * {@code metadata} {@code jsonb} and the embedding, if any, a pgvector {@code vector}. A binary file carries its own header and trailer, so it can
+ * only be loaded whole and never appended to; text files have neither. NUL characters, which
+ * PostgreSQL text cannot hold, are written as U+FFFD.
+ */
+public final class PgCopyChunkWriter extends StreamChunkWriter {
+
+    /**
+     * Target columns, in the order rows are written.
+     */
+    public static final List<String> COLUMNS = List.of(
+            "id", "url", "canonical_url", "root_url", "title", "headings", "chunk_index", "chunk_count",
+            "content", "content_type", "block_types", "code_language", "page_hash", "chunk_hash", "depth",
+            "h_path", "lang", "crawled_at", "source", "metadata", "embedding");
+
+    static final byte[] BINARY_SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xff, '\r', '\n', 0};
+    static final int TEXT_OID = 25;
+    static final byte JSONB_VERSION = 1;
+    // timestamptz counts microseconds from 2000-01-01T00:00:00Z.
+    static final long PG_EPOCH_SECONDS = 946_684_800L;
+
+    private final DataOutputStream out;
+    private final boolean binary;
+    private final ObjectMapper json = new ObjectMapper();
+    private final StringBuilder row = new StringBuilder(4096);
+
+    public PgCopyChunkWriter(Path path, boolean binary) throws IOException {
+        this(Files.newOutputStream(path), binary);
+    }
+
+    /**
+     * Opens a text-format file for appending, e.g. when resuming a crawl, after cutting off a
+     * partial last row.
+     */
+    public static PgCopyChunkWriter openForAppend(Path path) throws IOException {
+        JsonlChunkWriter.truncatePartialLine(path);
+        return new PgCopyChunkWriter(Files.newOutputStream(path, StandardOpenOption.CREATE, StandardOpenOption.APPEND),
+                false);
+    }
+
+    public PgCopyChunkWriter(OutputStream out, boolean binary) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024));
+        this.binary = binary;
+        if (binary) {
+            this.out.write(BINARY_SIGNATURE);
+            this.out.writeInt(0); // flags
+            this.out.writeInt(0); // header extension length
+        }
+    }
+
+    @Override
+    void appendPage(List<OutputChunk> chunks) throws IOException {
+        for (OutputChunk chunk : chunks) {
+            if (binary) {
+                writeBinaryRow(chunk);
+            } else {
+                writeTextRow(chunk);
+            }
+        }
+    }
+
+    @Override
+    void flush() throws IOException {
+        out.flush();
+    }
+
+    private void writeTextRow(OutputChunk c) throws IOException {
+        row.setLength(0);
+        text(c.id()).append('\t');
+        text(c.url()).append('\t');
+        text(c.canonicalUrl()).append('\t');
+        text(c.rootUrl()).append('\t');
+        text(c.title()).append('\t');
+        text(arrayLiteral(c.headings())).append('\t');
+        row.append(c.chunkIndex()).append('\t');
+        row.append(c.chunkCount()).append('\t');
+        text(c.content()).append('\t');
+        text(c.contentType()).append('\t');
+        text(arrayLiteral(c.blockTypes())).append('\t');
+        text(c.codeLanguage()).append('\t');
+        text(c.pageHash()).append('\t');
+        text(c.chunkHash()).append('\t');
+        row.append(c.depth()).append('\t');
+        text(arrayLiteral(c.hPath())).append('\t');
+        text(c.lang()).append('\t');
+        text(c.crawledAt() == null ? null : c.crawledAt().truncatedTo(ChronoUnit.MICROS).toString()).append('\t');
+        text(c.source()).append('\t');
+        text(metadataJson(c.metadata())).append('\t');
+        vectorLiteral(c.embedding()).append('\n');
+        out.write(row.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Appends a text-format field: backslash escapes for the delimiter, line breaks and backslash,
+     * {@code \N} for null.
+     */
+    private StringBuilder text(String value) {
+        if (value == null) {
+            return row.append("\\N");
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            switch (ch) {
+                case '\\' -> row.append("\\\\");
+                case '\t' -> row.append("\\t");
+                case '\n' -> row.append("\\n");
+                case '\r' -> row.append("\\r");
+                case '\0' -> row.append('\uFFFD');
+                default -> row.append(ch);
+            }
+        }
+        return row;
+    }
+
+    /**
+     * pgvector literal, e.g. {@code [0.25,-0.5]}.
+     */
+    private StringBuilder vectorLiteral(Embedding embedding) {
+        if (embedding == null) {
+            return row.append("\\N");
+        }
+        float[] values = embedding.toFloats();
+        row.append('[');
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) row.append(',');
+            row.append(values[i]);
+        }
+        return row.append(']');
+    }
+
+    /**
+     * PostgreSQL array literal with every element quoted, e.g. {@code {"a","b \"c\""}}.
+     */
+    private static String arrayLiteral(List<String> values) {
+        if (values == null) return null;
+        StringBuilder sb = new StringBuilder().append('{');
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) sb.append(',');
+            String value = values.get(i);
+            if (value == null) {
+                sb.append("NULL");
+                continue;
+            }
+            sb.append('"');
+            for (int j = 0; j < value.length(); j++) {
+                char ch = value.charAt(j);
+                if (ch == '"' || ch == '\\') sb.append('\\');
+                sb.append(ch);
+            }
+            sb.append('"');
+        }
+        return sb.append('}').toString();
+    }
+
+    private void writeBinaryRow(OutputChunk c) throws IOException {
+        out.writeShort(COLUMNS.size());
+        binaryText(c.id());
+        binaryText(c.url());
+        binaryText(c.canonicalUrl());
+        binaryText(c.rootUrl());
+        binaryText(c.title());
+        binaryTextArray(c.headings());
+        binaryInt(c.chunkIndex());
+        binaryInt(c.chunkCount());
+        binaryText(c.content());
+        binaryText(c.contentType());
+        binaryTextArray(c.blockTypes());
+        binaryText(c.codeLanguage());
+        binaryText(c.pageHash());
+        binaryText(c.chunkHash());
+        binaryInt(c.depth());
+        binaryTextArray(c.hPath());
+        binaryText(c.lang());
+        binaryTimestamp(c.crawledAt());
+        binaryText(c.source());
+        String metadata = metadataJson(c.metadata());
+        if (metadata == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = utf8(metadata);
+            out.writeInt(bytes.length + 1);
+            out.writeByte(JSONB_VERSION);
+            out.write(bytes);
+        }
+        binaryVector(c.embedding());
+    }
+
+    private void binaryText(String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = utf8(value);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private void binaryInt(int value) throws IOException {
+        out.writeInt(4);
+        out.writeInt(value);
+    }
+
+    private void binaryTimestamp(Instant value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(8);
+        out.writeLong((value.getEpochSecond() - PG_EPOCH_SECONDS) * 1_000_000L + value.getNano() / 1_000);
+    }
+
+    /**
+     * One-dimensional {@code text[]}: dimensions, null flag and element type, then each element
+     * as a length-prefixed value. An empty array has no dimensions.
+     */
+    private void binaryTextArray(List<String> values) throws IOException {
+        if (values == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[][] elements = new byte[values.size()][];
+        int length = 12 + (values.isEmpty() ? 0 : 8);
+        boolean hasNull = false;
+        for (int i = 0; i < elements.length; i++) {
+            String value = values.get(i);
+            elements[i] = value == null ? null : utf8(value);
+            hasNull |= value == null;
+            length += 4 + (value == null ? 0 : elements[i].length);
+        }
+        out.writeInt(length);
+        out.writeInt(values.isEmpty() ? 0 : 1);
+        out.writeInt(hasNull ? 1 : 0);
+        out.writeInt(TEXT_OID);
+        if (!values.isEmpty()) {
+            out.writeInt(values.size());
+            out.writeInt(1); // lower bound
+        }
+        for (byte[] element : elements) {
+            if (element == null) {
+                out.writeInt(-1);
+            } else {
+                out.writeInt(element.length);
+                out.write(element);
+            }
+        }
+    }
+
+    /**
+     * pgvector {@code vector}: dimension count, an unused int16, then big-endian float4 values.
+     */
+    private void binaryVector(Embedding embedding) throws IOException {
+        if (embedding == null) {
+            out.writeInt(-1);
+            return;
+        }
+        float[] values = embedding.toFloats();
+        out.writeInt(4 + values.length * Float.BYTES);
+        out.writeShort(values.length);
+        out.writeShort(0);
+        for (float value : values) {
+            out.writeFloat(value);
+        }
+    }
+
+    private String metadataJson(Map<String, Object> metadata) throws IOException {
+        return metadata == null ? null : json.writeValueAsString(metadata);
+    }
+
+    private static byte[] utf8(String value) {
+        return value.replace('\0', '\uFFFD').getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (binary) {
+                out.writeShort(-1);
+            }
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,410 @@
+package dev.ragcrawler.crawler.output;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.luben.zstd.ZstdOutputStream;
+import dev.ragcrawler.crawler.CrawlConfig.FsyncPolicy;
+import dev.ragcrawler.crawler.CrawlConfig.OutputCompression;
+import dev.ragcrawler.crawler.CrawlConfig.OutputFormat;
+import dev.ragcrawler.crawler.jfr.WriteEvent;
+import dev.ragcrawler.crawler.metrics.Histogram;
+import dev.ragcrawler.crawler.parsing.OutputChunk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Output split over rolling, compressed shard files in one directory.
+ * <p>
+ * Pages are dealt round-robin to a fixed number of lanes. Each lane has its own bounded queue,
+ * writer thread and open shard, so compression runs in parallel, and a full queue makes the crawl
+ * wait instead of growing memory. A lane finishes its shard and starts the next one once the shard
+ * holds {@code maxBytes} of uncompressed output or {@code maxChunks} chunks; shards roll only between
+ * pages, so every page lies in one shard. Finished shards are listed in {@value #MANIFEST} with
+ * page and chunk counts, sizes and the SHA-256 of the file; the manifest is rewritten after every
+ * shard, so it only ever lists complete files. A page counts as committed, and its commit callback
+ * runs, only once its shard is in the manifest; shards a killed run left unfinished are deleted on
+ * resume, since their pages were never committed and are crawled again.
+ */
+public final class ShardedChunkWriter implements ChunkWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardedChunkWriter.class);
+
+    public static final String MANIFEST = "manifest.json";
+    private static final Pattern SHARD_NAME = Pattern.compile("part-(\\d+)\\..+");
+    private static final int QUEUE_PAGES_PER_LANE = 256;
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final Runnable NOTHING = () -> {};
+    private static final Page CLOSE = new Page(List.of(), NOTHING);
+
+    private record Page(List<OutputChunk> chunks, Runnable committed) {}
+
+    /**
+     * @param bytes             size of the file as written
+     * @param uncompressedBytes size of the output it holds
+     * @param sha256            hex SHA-256 of the file as written
+     */
+    public record Shard(String file, long pages, long chunks, long bytes, long uncompressedBytes, String sha256) {
+    }
+
+    public record Manifest(String format, String compression, long pages, long chunks, List<Shard> shards) {
+    }
+
+    private final Path dir;
+    private final OutputFormat format;
+    private final OutputCompression compression;
+    private final long maxBytes;
+    private final long maxChunks;
+    private final FsyncPolicy fsync;
+    private final Histogram finishLatency;
+    private final ObjectMapper json = new ObjectMapper();
+    private final Lock manifestLock = new ReentrantLock();
+    private final List<Shard> shards = new ArrayList<>();
+    private final AtomicInteger nextShard;
+    private final AtomicInteger nextLane = new AtomicInteger();
+    private final Lane[] lanes;
+    private volatile IOException failure;
+    private volatile boolean closed;
+
+    /**
+     * @param resume        keep the shards and manifest of an earlier run and number new shards after them
+     * @param maxChunks     chunks per shard, or {@code null} for no limit
+     * @param finishLatency receives the time to finish each shard (compression trailer, close, fsync), in nanoseconds
+     */
+    public ShardedChunkWriter(Path dir, OutputFormat format, boolean resume, int lanes, OutputCompression compression,
+                              long maxBytes, Long maxChunks, FsyncPolicy fsync, Histogram finishLatency)
+            throws IOException {
+        this.dir = dir;
+        this.format = format;
+        this.compression = compression;
+        this.maxBytes = maxBytes;
+        this.maxChunks = maxChunks == null ? Long.MAX_VALUE : maxChunks;
+        this.fsync = fsync;
+        this.finishLatency = finishLatency;
+        Files.createDirectories(dir);
+        this.nextShard = new AtomicInteger(resume ? restore() : clear());
+        this.lanes = new Lane[lanes];
+        for (int i = 0; i < lanes; i++) {
+            this.lanes[i] = new Lane(i);
+        }
+    }
+
+    private int restore() throws IOException {
+        Path manifest = dir.resolve(MANIFEST);
+        if (Files.exists(manifest)) {
+            shards.addAll(json.readValue(manifest.toFile(), Manifest.class).shards());
+        }
+        Set<String> listed = new HashSet<>();
+        for (Shard shard : shards) {
+            listed.add(shard.file());
+        }
+        int next = 0;
+        for (Path file : shardFiles()) {
+            String name = file.getFileName().toString();
+            Matcher m = SHARD_NAME.matcher(name);
+            if (m.matches()) {
+                next = Math.max(next, Integer.parseInt(m.group(1)) + 1);
+            }
+            if (!listed.contains(name)) {
+                log.warn("Deleting shard {}: the previous run did not finish it, so its pages are crawled again", file);
+                Files.delete(file);
+            }
+        }
+        return next;
+    }
+
+    private int clear() throws IOException {
+        for (Path file : shardFiles()) {
+            Files.delete(file);
+        }
+        Files.deleteIfExists(dir.resolve(MANIFEST));
+        return 0;
+    }
+
+    private List<Path> shardFiles() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "part-*")) {
+            for (Path file : stream) {
+                if (SHARD_NAME.matcher(file.getFileName().toString()).matches()) {
+                    files.add(file);
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Queues the page on the next lane with room, waiting on its round-robin lane when all are full.
+     */
+    @Override
+    public void writePage(List<OutputChunk> chunks) throws IOException {
+        writePage(chunks, NOTHING);
+    }
+
+    /**
+     * Queues the page as {@link #writePage(List)} does; {@code committed} runs on the lane's thread
+     * once the shard holding the page is finished and listed in the manifest.
+     */
+    @Override
+    public void writePage(List<OutputChunk> chunks, Runnable committed) throws IOException {
+        if (chunks.isEmpty()) {
+            committed.run();
+            return;
+        }
+        checkOpen();
+        Page page = new Page(chunks, committed);
+        WriteEvent event = new WriteEvent();
+        event.begin();
+        int first = Math.floorMod(nextLane.getAndIncrement(), lanes.length);
+        boolean queued = false;
+        for (int i = 0; i < lanes.length && !queued; i++) {
+            queued = lanes[(first + i) % lanes.length].queue.offer(page);
+        }
+        if (!queued) {
+            try {
+                lanes[first].queue.put(page);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the output queue", e);
+            }
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.fill(chunks);
+            event.commit();
+        }
+    }
+
+    /**
+     * @return pages waiting for the lanes' writer threads
+     */
+    public int queueDepth() {
+        int depth = 0;
+        for (Lane lane : lanes) {
+            depth += lane.queue.size();
+        }
+        return depth;
+    }
+
+    private void checkOpen() throws IOException {
+        if (failure != null) {
+            throw new IOException("Output writer failed", failure);
+        }
+        if (closed) {
+            throw new IOException("Output writer is closed");
+        }
+    }
+
+    private void fail(IOException e) {
+        if (failure == null) {
+            log.error("Writing output failed; further pages are dropped: {}", e.toString());
+            failure = e;
+        }
+    }
+
+    private void finished(Shard shard) throws IOException {
+        manifestLock.lock();
+        try {
+            shards.add(shard);
+            writeManifest();
+        } finally {
+            manifestLock.unlock();
+        }
+    }
+
+    private void writeManifest() throws IOException {
+        List<Shard> sorted = new ArrayList<>(shards);
+        sorted.sort(Comparator.comparing(Shard::file));
+        long pages = 0;
+        long chunks = 0;
+        for (Shard shard : sorted) {
+            pages += shard.pages();
+            chunks += shard.chunks();
+        }
+        Manifest manifest = new Manifest(format.name().toLowerCase(Locale.ROOT),
+                compression.name().toLowerCase(Locale.ROOT), pages, chunks, sorted);
+        Path tmp = dir.resolve(MANIFEST + ".tmp");
+        json.writerWithDefaultPrettyPrinter().writeValue(tmp.toFile(), manifest);
+        Files.move(tmp, dir.resolve(MANIFEST), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writes everything queued, finishes every open shard and writes the final manifest.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            for (Lane lane : lanes) {
+                lane.queue.put(CLOSE);
+            }
+            for (Lane lane : lanes) {
+                lane.thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        manifestLock.lock();
+        try {
+            writeManifest();
+        } finally {
+            manifestLock.unlock();
+        }
+        if (failure != null) {
+            throw new IOException("Output writer failed", failure);
+        }
+    }
+
+    private final class Lane implements Runnable {
+        final BlockingQueue<Page> queue = new ArrayBlockingQueue<>(QUEUE_PAGES_PER_LANE);
+        final Thread thread;
+        // The open shard, if any; only this lane's thread touches it.
+        private Path file;
+        private StreamChunkWriter serializer;
+        private CountingOutputStream uncompressed;
+        private CountingOutputStream written;
+        private MessageDigest digest;
+        private long pages;
+        private long chunks;
+        private final List<Runnable> uncommitted = new ArrayList<>();
+
+        Lane(int index) {
+            this.thread = new Thread(this, "shard-writer-" + index);
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        @Override
+        public void run() {
+            List<Page> batch = new ArrayList<>();
+            boolean closing = false;
+            while (!closing) {
+                try {
+                    batch.add(queue.take());
+                } catch (InterruptedException e) {
+                    batch.add(CLOSE);
+                }
+                queue.drainTo(batch);
+                for (Page page : batch) {
+                    if (page == CLOSE) {
+                        closing = true;
+                    } else if (failure == null) {
+                        // After a failure keep draining, so producers never block on a dead lane.
+                        write(page);
+                    }
+                }
+                batch.clear();
+            }
+            if (serializer != null && failure == null) {
+                try {
+                    finish();
+                } catch (IOException e) {
+                    fail(e);
+                }
+            }
+        }
+
+        private void write(Page page) {
+            try {
+                if (serializer == null) {
+                    open();
+                }
+                serializer.appendPage(page.chunks());
+                pages++;
+                chunks += page.chunks().size();
+                uncommitted.add(page.committed());
+                if (uncompressed.count >= maxBytes || chunks >= maxChunks) {
+                    finish();
+                }
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        private void open() throws IOException {
+            file = dir.resolve("part-%05d".formatted(nextShard.getAndIncrement()) + extension());
+            digest = sha256();
+            // Serializer -> uncompressed count -> compressor -> file size and checksum -> file.
+            written = new CountingOutputStream(new DigestOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE),
+                    BUFFER_BYTES), digest));
+            uncompressed = new CountingOutputStream(compress(written));
+            serializer = StreamChunkWriter.open(format, uncompressed);
+            pages = 0;
+            chunks = 0;
+        }
+
+        private void finish() throws IOException {
+            long start = System.nanoTime();
+            serializer.close();
+            serializer = null;
+            if (fsync != FsyncPolicy.NEVER) {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.force(true);
+                }
+            }
+            finishLatency.record(System.nanoTime() - start);
+            finished(new Shard(file.getFileName().toString(), pages, chunks, written.count, uncompressed.count,
+                    HexFormat.of().formatHex(digest.digest())));
+            for (Runnable committed : uncommitted) {
+                try {
+                    committed.run();
+                } catch (RuntimeException e) {
+                    log.warn("Commit callback failed: {}", e.toString());
+                }
+            }
+            uncommitted.clear();
+        }
+    }
+
+    private String extension() {
+        return StreamChunkWriter.extension(format) + switch (compression) {
+            case NONE -> "";
+            case GZIP -> ".gz";
+            case ZSTD -> ".zst";
+        };
+    }
+
+    private OutputStream compress(OutputStream out) throws IOException {
+        return switch (compression) {
+            case NONE -> out;
+            case GZIP -> new GZIPOutputStream(out, BUFFER_BYTES);
+            case ZSTD -> new ZstdOutputStream(out);
+        };
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package dev.ragcrawler.crawler.output;
+
+import dev.ragcrawler.crawler.CrawlConfig.OutputFormat;
+import dev.ragcrawler.crawler.jfr.WriteEvent;
+import dev.ragcrawler.crawler.parsing.OutputChunk;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Serializes chunks in one output format onto a stream. Used directly it writes each page under a
+ * lock and flushes; {@link AsyncChunkWriter} and {@link ShardedChunkWriter} instead drive it from a
+ * single thread with {@link #appendPage} and choose when to {@link #flush}.
+ */
+abstract class StreamChunkWriter implements ChunkWriter {
+
+    private final Lock lock = new ReentrantLock();
+
+    static StreamChunkWriter open(OutputFormat format, OutputStream out) throws IOException {
+        return switch (format) {
+            case JSONL -> new JsonlChunkWriter(out);
+            case PGCOPY_TEXT -> new PgCopyChunkWriter(out, false);
+            case PGCOPY_BINARY -> new PgCopyChunkWriter(out, true);
+        };
+    }
+
+    /**
+     * File name extension for the format, without compression.
+     */
+    static String extension(OutputFormat format) {
+        return switch (format) {
+            case JSONL -> ".jsonl";
+            case PGCOPY_TEXT -> ".copy";
+            case PGCOPY_BINARY -> ".pgcopy";
+        };
+    }
+
+    /**
+     * Writes the page's chunks under one lock acquisition and flushes once.
+     */
+    @Override
+    public void writePage(List<OutputChunk> chunks) throws IOException {
+        if (chunks.isEmpty()) return;
+        WriteEvent event = new WriteEvent();
+        event.begin();
+        lock.lock();
+        try {
+            appendPage(chunks);
+            flush();
+        } finally {
+            lock.unlock();
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.fill(chunks);
+            event.commit();
+        }
+    }
+
+    /**
+     * Serializes without flushing; the caller must be the only thread using the writer.
+     */
+    abstract void appendPage(List<OutputChunk> chunks) throws IOException;
+
+    /**
+     * Pushes serialized output down to the underlying stream and flushes it.
+     */
+    abstract void flush() throws IOException;
+}
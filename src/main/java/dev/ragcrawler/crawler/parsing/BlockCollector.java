@@ -0,0 +1,300 @@
+package dev.ragcrawler.crawler.parsing;
+
+import org.jsoup.internal.StringUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Turns a document-order stream of element starts, text and element ends into blocks. A block
+ * element ({@code p}, {@code ul}/{@code ol}, {@code pre}, standalone {@code code}, {@code h1}-{@code h6})
+ * is emitted whole when it ends and its subtree is not emitted again, so code inside {@code pre},
+ * paragraphs inside list items and nested lists appear once. Headings open sections: each block
+ * carries the path of headings it sits under.
+ * <p>
+ * Block text is accumulated the way jsoup's {@code Element.text()} does it: whitespace is
+ * normalised except under {@code pre}, and block-level elements and {@code br} are separated by a
+ * space. The DOM walk in {@link ContentExtractor} and the tokenizer in {@link StreamingExtractor}
+ * both feed this class, so the two paths cut and label blocks the same way.
+ * <p>
+ * With a {@link BoilerplateFilter}, it also counts text, link text and elements in each
+ * container. When a container closes and the filter rejects it, the blocks and headings it
+ * produced are taken back and the heading path is restored to what it was before it.
+ * <p>
+ * Events must be balanced: every {@link #start} has a matching {@link #end}.
+ */
+final class BlockCollector {
+
+    /** jsoup preserves whitespace in text up to this many levels below a {@code pre}. */
+    private static final int PRESERVE_LEVELS = 6;
+
+    final List<String> headings = new ArrayList<>();
+    final List<LogicalBlock> blocks = new ArrayList<>();
+    String canonical;
+    int droppedBlocks;
+    long droppedBytes;
+
+    private final BoilerplateFilter boilerplate;
+    /** The open heading at each level, h1 first; null where the page skips a level. */
+    private final String[] open = new String[6];
+    private List<String> path = List.of();
+    private int depth;
+    /** Depth of the block element being emitted, 0 if none; its descendants only add text. */
+    private int blockDepth;
+    private LogicalBlock.BlockType blockType;
+    private String codeLanguage;
+    /** A {@code pre} without a class takes the class of a {@code code} first child. */
+    private boolean languageFromChild;
+    private final StringBuilder text = new StringBuilder();
+    /** Depths of the open whitespace-preserving elements, innermost last. */
+    private int[] preserving = new int[4];
+    private int preservingCount;
+    /** The innermost open container being scored. */
+    private Container container;
+    private int linkDepth;
+    private int mainContentDepth;
+
+    BlockCollector(BoilerplateFilter boilerplate) {
+        this.boilerplate = boilerplate;
+    }
+
+    /**
+     * @param name    lower-case tag name
+     * @param isBlock whether jsoup formats the element as a block, for spacing within block text
+     * @param attrs   attribute lookup with jsoup's {@code attr} semantics: "" if absent, and an
+     *                {@code abs:} prefix resolves a URL against the document base
+     */
+    void start(String name, boolean isBlock, Function<String, String> attrs) {
+        depth++;
+        if (boilerplate != null) {
+            score(name, attrs);
+        }
+        if (preservesWhitespace(name)) {
+            if (preservingCount == preserving.length) {
+                preserving = Arrays.copyOf(preserving, preservingCount * 2);
+            }
+            preserving[preservingCount++] = depth;
+        }
+        if (blockDepth > 0) {
+            if (languageFromChild) {
+                languageFromChild = false;
+                if (name.equals("code")) codeLanguage = className(attrs);
+            }
+            if (!text.isEmpty() && (isBlock || name.equals("br")) && !endsWithSpace()) {
+                text.append(' ');
+            }
+            return;
+        }
+        switch (name) {
+            case "h1", "h2", "h3", "h4", "h5", "h6" -> begin(LogicalBlock.BlockType.HEADING, null);
+            case "p" -> begin(LogicalBlock.BlockType.PARAGRAPH, null);
+            case "ul", "ol" -> begin(LogicalBlock.BlockType.LIST, null);
+            case "pre" -> {
+                begin(LogicalBlock.BlockType.CODE, className(attrs));
+                languageFromChild = codeLanguage == null;
+            }
+            case "code" -> begin(LogicalBlock.BlockType.CODE, className(attrs));
+            case "link" -> {
+                if (canonical == null && attrs.apply("rel").equalsIgnoreCase("canonical")) {
+                    canonical = attrs.apply("abs:href");
+                }
+            }
+            default -> { }
+        }
+    }
+
+    /**
+     * Text inside the innermost open element, entities already decoded. A text node may arrive
+     * in several pieces.
+     */
+    void text(String s) {
+        if (container != null) {
+            int chars = nonSpaceLength(s);
+            container.textChars += chars;
+            if (linkDepth > 0) container.linkChars += chars;
+        }
+        if (blockDepth == 0) return;
+        if (preservingCount > 0 && depth - preserving[preservingCount - 1] < PRESERVE_LEVELS) {
+            text.append(s);
+        } else {
+            StringUtil.appendNormalisedWhitespace(text, s, endsWithSpace());
+        }
+    }
+
+    /**
+     * @param spaceAfter whether block text continuing after this element is separated from it
+     */
+    void end(String name, boolean spaceAfter) {
+        if (depth == blockDepth) {
+            finishBlock(name);
+        } else if (blockDepth > 0 && spaceAfter && !endsWithSpace()) {
+            text.append(' ');
+        }
+        if (preservingCount > 0 && preserving[preservingCount - 1] == depth) {
+            preservingCount--;
+        }
+        if (boilerplate != null) {
+            switch (name) {
+                case "a" -> linkDepth--;
+                case "main", "article" -> mainContentDepth--;
+                default -> { }
+            }
+            if (container != null && container.depth == depth) {
+                close(container);
+                container = container.parent;
+            }
+        }
+        depth--;
+    }
+
+    private void begin(LogicalBlock.BlockType type, String language) {
+        blockDepth = depth;
+        blockType = type;
+        codeLanguage = language;
+        languageFromChild = false;
+        text.setLength(0);
+    }
+
+    private void finishBlock(String name) {
+        String s = text.toString().trim();
+        text.setLength(0);
+        blockDepth = 0;
+        if (blockType == LogicalBlock.BlockType.HEADING) {
+            heading(s, name.charAt(1) - '1');
+        } else if (!s.isEmpty()) {
+            blocks.add(new LogicalBlock(blockType, s, codeLanguage, path));
+        }
+    }
+
+    private void score(String name, Function<String, String> attrs) {
+        switch (name) {
+            case "a" -> linkDepth++;
+            case "main", "article" -> {
+                mainContentDepth++;
+                for (Container c = container; c != null; c = c.parent) {
+                    c.keep = true;
+                }
+            }
+            default -> { }
+        }
+        if (boilerplate.isContainer(name, attrs)) {
+            container = new Container(depth, container, blocks.size(), headings.size(), path,
+                    boilerplate.isSemanticBoilerplate(name, attrs, mainContentDepth > 0));
+        }
+        if (container != null) {
+            container.elements++;
+        }
+    }
+
+    private void close(Container c) {
+        if (!c.keep && (c.semantic || boilerplate.isLowValue(c.textChars, c.linkChars, c.elements))) {
+            List<LogicalBlock> dropped = blocks.subList(c.firstBlock, blocks.size());
+            for (LogicalBlock block : dropped) {
+                droppedBytes += utf8Length(block.text());
+            }
+            droppedBlocks += dropped.size();
+            dropped.clear();
+            headings.subList(c.firstHeading, headings.size()).clear();
+            if (c.open != null) {
+                System.arraycopy(c.open, 0, open, 0, open.length);
+            }
+            path = c.path;
+        }
+        Container parent = c.parent;
+        if (parent != null) {
+            parent.textChars += c.textChars;
+            parent.linkChars += c.linkChars;
+            parent.elements += c.elements;
+        }
+    }
+
+    private void heading(String text, int level) {
+        if (text.isEmpty()) return;
+        // Open containers that have not seen a heading yet keep the stack to restore if dropped.
+        for (Container c = container; c != null && c.open == null; c = c.parent) {
+            c.open = open.clone();
+        }
+        open[level] = text;
+        Arrays.fill(open, level + 1, open.length, null);
+        List<String> opened = new ArrayList<>(level + 1);
+        for (int i = 0; i <= level; i++) {
+            if (open[i] != null) opened.add(open[i]);
+        }
+        path = List.copyOf(opened);
+        headings.add(text);
+        blocks.add(new LogicalBlock(LogicalBlock.BlockType.HEADING, text, null, path));
+    }
+
+    private boolean endsWithSpace() {
+        return !text.isEmpty() && text.charAt(text.length() - 1) == ' ';
+    }
+
+    private static boolean preservesWhitespace(String name) {
+        return switch (name) {
+            case "pre", "textarea", "title", "plaintext" -> true;
+            default -> false;
+        };
+    }
+
+    private static String className(Function<String, String> attrs) {
+        String classAttr = attrs.apply("class").trim();
+        return classAttr.isEmpty() ? null : classAttr;
+    }
+
+    private static int nonSpaceLength(String text) {
+        int chars = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (!Character.isWhitespace(text.charAt(i))) chars++;
+        }
+        return chars;
+    }
+
+    private static long utf8Length(String text) {
+        long bytes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            if (ch < 0x80) {
+                bytes++;
+            } else if (ch < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(ch) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * A container being scored, with the extraction state from before it opened.
+     */
+    private static final class Container {
+        final int depth;
+        final Container parent;
+        final int firstBlock;
+        final int firstHeading;
+        final List<String> path;
+        final boolean semantic;
+        /** The heading stack before the container's first heading, if it has one. */
+        String[] open;
+        boolean keep;
+        int textChars;
+        int linkChars;
+        int elements;
+
+        Container(int depth, Container parent, int firstBlock, int firstHeading, List<String> path,
+                  boolean semantic) {
+            this.depth = depth;
+            this.parent = parent;
+            this.firstBlock = firstBlock;
+            this.firstHeading = firstHeading;
+            this.path = path;
+            this.semantic = semantic;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package dev.ragcrawler.crawler.parsing;
+
+import java.util.function.Function;
+
+/**
+ * Main-content detection for {@link ContentExtractor} and {@link StreamingExtractor}: decides
+ * which containers are page furniture (navigation, sidebars, footers, link lists) rather than
+ * content.
+ * <p>
+ * A container is dropped if it is a {@code nav} or has {@code role="navigation"}; if it is a
+ * {@code footer} or {@code aside} outside {@code main} and {@code article}; if more than
+ * {@code maxLinkDensity} of its text is link text; or if more than half that share is link text
+ * and it has fewer than {@code minTextDensity} characters of text per element. Containers that
+ * hold a {@code main} or {@code article} are always kept.
+ *
+ * @param maxLinkDensity share of link text, 0 to 1, above which a container is dropped
+ * @param minTextDensity characters of text per element below which a linked container is dropped
+ */
+public record BoilerplateFilter(double maxLinkDensity, double minTextDensity) {
+
+    public BoilerplateFilter {
+        if (!(maxLinkDensity > 0 && maxLinkDensity <= 1)) {
+            throw new IllegalArgumentException("maxLinkDensity must be > 0 and <= 1");
+        }
+        if (!(minTextDensity >= 0)) {
+            throw new IllegalArgumentException("minTextDensity must be >= 0");
+        }
+    }
+
+    /**
+     * Whether an element is scored as a unit: block containers and anything with a navigation role.
+     *
+     * @param name  lower-case tag name
+     * @param attrs attribute lookup, "" for an absent attribute
+     */
+    boolean isContainer(String name, Function<String, String> attrs) {
+        return switch (name) {
+            case "div", "section", "header", "footer", "aside", "nav", "ul", "ol", "menu", "table", "form" -> true;
+            default -> isNavigationRole(attrs);
+        };
+    }
+
+    boolean isSemanticBoilerplate(String name, Function<String, String> attrs, boolean inMainContent) {
+        return switch (name) {
+            case "nav" -> true;
+            case "footer", "aside" -> !inMainContent;
+            default -> isNavigationRole(attrs);
+        };
+    }
+
+    /**
+     * @param textChars non-whitespace characters of text in the container
+     * @param linkChars those of them inside links
+     * @param elements  elements in the container, itself included
+     */
+    boolean isLowValue(int textChars, int linkChars, int elements) {
+        if (textChars == 0) return false;
+        double linkDensity = (double) linkChars / textChars;
+        if (linkDensity > maxLinkDensity) return true;
+        return linkDensity > maxLinkDensity / 2 && (double) textChars / elements < minTextDensity;
+    }
+
+    private static boolean isNavigationRole(Function<String, String> attrs) {
+        return attrs.apply("role").equalsIgnoreCase("navigation");
+    }
+}
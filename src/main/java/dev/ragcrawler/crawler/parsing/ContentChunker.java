@@ -1,22 +1,79 @@
 package dev.ragcrawler.crawler.parsing;
 
-import java.nio.charset.StandardCharsets;
+import dev.ragcrawler.crawler.jfr.ChunkEvent;
+import dev.ragcrawler.crawler.tokenizer.Tokenizer;
+
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 public final class ContentChunker {
 
     private static final int DEFAULT_MAX_CHARS = 1500;
+    private static final String BLOCK_SEPARATOR = "\n\n";
+    private static final List<String> CODE_TYPES = List.of("code");
+    private static final Map<String, Object> METADATA = Map.of(
+            "status_code", 200,
+            "content_type_header", "text/html"
+    );
+    private static final Base64.Encoder BASE64 = Base64.getEncoder();
+    private static final String[] TYPE_NAMES = Arrays.stream(LogicalBlock.BlockType.values())
+            .map(type -> type.name().toLowerCase(Locale.ROOT))
+            .toArray(String[]::new);
+
+    private final Tokenizer tokenizer;
+    private final int maxTokens;
+    private final int overlapTokens;
+    private final int separatorTokens;
+
+    /**
+     * Chunks of up to {@value #DEFAULT_MAX_CHARS} characters.
+     */
+    public ContentChunker() {
+        this.tokenizer = null;
+        this.maxTokens = 0;
+        this.overlapTokens = 0;
+        this.separatorTokens = 0;
+    }
+
+    /**
+     * Chunks of up to {@code maxTokens} tokens as counted by {@code tokenizer}, each starting with
+     * up to {@code overlapTokens} tokens from the end of the previous one.
+     */
+    public ContentChunker(Tokenizer tokenizer, int maxTokens, int overlapTokens) {
+        if (maxTokens <= 0) throw new IllegalArgumentException("maxTokens must be > 0");
+        if (overlapTokens < 0 || overlapTokens >= maxTokens) {
+            throw new IllegalArgumentException("overlapTokens must be >= 0 and < maxTokens");
+        }
+        this.tokenizer = tokenizer;
+        this.maxTokens = maxTokens;
+        this.overlapTokens = overlapTokens;
+        this.separatorTokens = tokenizer.count(BLOCK_SEPARATOR, 0, BLOCK_SEPARATOR.length());
+    }
 
     public List<OutputChunk> chunk(ExtractedDocument doc) {
-        List<OutputChunk> out = new ArrayList<>();
+        ChunkEvent event = new ChunkEvent();
+        event.begin();
+        List<OutputChunk> chunks = build(doc, tokenizer == null ? chunkBlocks(doc) : chunkByTokens(doc));
+        event.end();
+        if (event.shouldCommit()) {
+            event.page(doc.rootUrl());
+            event.blocks = doc.blocks().size();
+            event.chunks = chunks.size();
+            event.commit();
+        }
+        return chunks;
+    }
+
+    private static List<Draft> chunkBlocks(ExtractedDocument doc) {
+        List<Draft> out = new ArrayList<>();
         List<LogicalBlock> blocks = doc.blocks();
         if (blocks.isEmpty()) {
             return out;
@@ -24,6 +81,7 @@ public final class ContentChunker {
 
         List<String> currentLines = new ArrayList<>();
         List<String> currentBlockTypes = new ArrayList<>();
+        List<String> currentPath = null;
         String currentCodeLang = null;
         int charCount = 0;
 
@@ -33,117 +91,365 @@ public final class ContentChunker {
 
             if (block.type() == LogicalBlock.BlockType.CODE) {
                 if (!currentLines.isEmpty()) {
-                    out.add(buildChunk(doc, out.size(), joinLines(currentLines), currentBlockTypes,
-                            currentCodeLang));
+                    out.add(new Draft(joinLines(currentLines), currentBlockTypes, currentCodeLang, currentPath));
                     currentLines.clear();
-                    currentBlockTypes.clear();
+                    currentBlockTypes = new ArrayList<>();
+                    currentPath = null;
                     currentCodeLang = null;
                     charCount = 0;
                 }
-                out.add(buildChunk(doc, out.size(), text,
-                        List.of("code"),
-                        block.codeLanguage()));
+                out.add(new Draft(text, CODE_TYPES, block.codeLanguage(), block.headingPath()));
                 continue;
             }
 
-            String toAdd = text + "\n\n";
-            if (charCount + toAdd.length() > DEFAULT_MAX_CHARS && !currentLines.isEmpty()) {
-                out.add(buildChunk(doc, out.size(), joinLines(currentLines), currentBlockTypes,
-                        currentCodeLang));
+            int toAdd = text.length() + BLOCK_SEPARATOR.length();
+            if (charCount + toAdd > DEFAULT_MAX_CHARS && !currentLines.isEmpty()) {
+                out.add(new Draft(joinLines(currentLines), currentBlockTypes, currentCodeLang, currentPath));
                 currentLines.clear();
-                currentBlockTypes.clear();
+                currentBlockTypes = new ArrayList<>();
+                currentPath = null;
                 currentCodeLang = null;
                 charCount = 0;
             }
             currentLines.add(text);
-            currentBlockTypes.add(block.type().name().toLowerCase());
-            charCount += toAdd.length();
+            currentBlockTypes.add(TYPE_NAMES[block.type().ordinal()]);
+            currentPath = commonPath(currentPath, block.headingPath());
+            charCount += toAdd;
         }
 
         if (!currentLines.isEmpty()) {
-            out.add(buildChunk(doc, out.size(), joinLines(currentLines), currentBlockTypes,
-                    currentCodeLang));
+            out.add(new Draft(joinLines(currentLines), currentBlockTypes, currentCodeLang, currentPath));
         }
+        return out;
+    }
 
-        int total = out.size();
-        List<OutputChunk> adjusted = new ArrayList<>(total);
+    /**
+     * Packs blocks into chunks of at most {@code maxTokens} tokens. Every block is counted once,
+     * as it is added; of the text carried over as overlap only the block it starts inside is
+     * counted again. Code blocks get chunks of their own, and a block over budget by itself is
+     * cut into overlapping windows between words.
+     */
+    private List<Draft> chunkByTokens(ExtractedDocument doc) {
+        List<Draft> out = new ArrayList<>();
+        TokenChunk current = new TokenChunk();
+        for (LogicalBlock block : doc.blocks()) {
+            String text = block.text();
+            if (text == null || text.isBlank()) continue;
+
+            int blockTokens = tokenizer.count(text, 0, text.length());
+            String type = TYPE_NAMES[block.type().ordinal()];
+            if (block.type() == LogicalBlock.BlockType.CODE || blockTokens > maxTokens) {
+                if (!current.isEmpty()) {
+                    out.add(current.draft());
+                    current.clear();
+                }
+                addWindows(out, text, blockTokens, List.of(type), block.codeLanguage(), block.headingPath());
+                continue;
+            }
+            if (!current.isEmpty() && current.tokens + separatorTokens + blockTokens > maxTokens) {
+                out.add(current.draft());
+                carryOverlap(current, Math.min(overlapTokens, maxTokens - blockTokens - separatorTokens));
+            }
+            current.add(text, type, block.headingPath(), blockTokens, separatorTokens);
+        }
+        if (!current.isEmpty()) {
+            out.add(current.draft());
+        }
+        return out;
+    }
+
+    /**
+     * Keeps the last {@code room} tokens (or fewer, cutting only between words) of a chunk just
+     * written, to open the next one.
+     */
+    private void carryOverlap(TokenChunk chunk, int room) {
+        int keepFrom = chunk.lines.size();
+        int kept = 0;
+        while (keepFrom > 0) {
+            int cost = chunk.blockTokens[keepFrom - 1] + (kept > 0 ? separatorTokens : 0);
+            if (kept + cost > room) break;
+            kept += cost;
+            keepFrom--;
+        }
+        String partial = null;
+        int partialTokens = 0;
+        int wanted = room - kept - (kept > 0 ? separatorTokens : 0);
+        if (keepFrom > 0 && wanted > 0) {
+            String text = chunk.lines.get(keepFrom - 1);
+            int blockTokens = chunk.blockTokens[keepFrom - 1];
+            int cut = tokenizer.advance(text, 0, text.length(), blockTokens - wanted);
+            String tail = text.substring(cut).strip();
+            int tailTokens = tokenizer.count(tail, 0, tail.length());
+            if (!tail.isEmpty() && tailTokens <= wanted) {
+                partial = tail;
+                partialTokens = tailTokens;
+            }
+        }
+        List<String> lines = List.copyOf(chunk.lines.subList(keepFrom, chunk.lines.size()));
+        List<String> types = List.copyOf(chunk.types.subList(keepFrom, chunk.types.size()));
+        List<List<String>> paths = List.copyOf(chunk.paths.subList(keepFrom, chunk.paths.size()));
+        int[] blockTokens = Arrays.copyOfRange(chunk.blockTokens, keepFrom, chunk.lines.size());
+        String partialType = partial == null ? null : chunk.types.get(keepFrom - 1);
+        List<String> partialPath = partial == null ? null : chunk.paths.get(keepFrom - 1);
+        chunk.clear();
+        if (partial != null) {
+            chunk.add(partial, partialType, partialPath, partialTokens, separatorTokens);
+        }
+        for (int i = 0; i < lines.size(); i++) {
+            chunk.add(lines.get(i), types.get(i), paths.get(i), blockTokens[i], separatorTokens);
+        }
+    }
+
+    /**
+     * Adds one block as a single chunk, or, if it is over budget, as windows of at most
+     * {@code maxTokens} tokens where each window repeats the last {@code overlapTokens} of the one before.
+     * A single word over budget, such as a long separator line, is cut between characters.
+     */
+    private void addWindows(List<Draft> out, String text, int blockTokens, List<String> blockTypes,
+                            String codeLang, List<String> hPath) {
+        if (blockTokens <= maxTokens) {
+            out.add(new Draft(text, blockTypes, codeLang, hPath));
+            return;
+        }
+        int length = text.length();
+        int start = 0;
+        while (start < length) {
+            int next = tokenizer.advance(text, start, length, maxTokens - overlapTokens);
+            int end = overlapTokens == 0 || next >= length ? next : tokenizer.advance(text, next, length, overlapTokens);
+            String window = text.substring(start, end).strip();
+            boolean cutInWord = end > next
+                    && !Character.isWhitespace(text.charAt(next)) && !Character.isWhitespace(text.charAt(next - 1));
+            if (cutInWord && tokenizer.count(window, 0, window.length()) > maxTokens) {
+                // The overlap continues a word cut at next, and whole it encodes to more tokens than its halves.
+                window = text.substring(start, next).strip();
+            }
+            if (!window.isEmpty()) {
+                out.add(new Draft(window, blockTypes, codeLang, hPath));
+            }
+            if (end >= length) break;
+            start = next;
+            while (start < length && Character.isWhitespace(text.charAt(start))) start++;
+        }
+    }
+
+    /**
+     * The blocks of the chunk being filled in token mode, with their token counts.
+     */
+    private static final class TokenChunk {
+        final List<String> lines = new ArrayList<>();
+        final List<String> types = new ArrayList<>();
+        final List<List<String>> paths = new ArrayList<>();
+        int[] blockTokens = new int[16];
+        int tokens;
+
+        boolean isEmpty() {
+            return lines.isEmpty();
+        }
+
+        void add(String text, String type, List<String> path, int textTokens, int separatorTokens) {
+            if (lines.size() == blockTokens.length) {
+                blockTokens = Arrays.copyOf(blockTokens, blockTokens.length * 2);
+            }
+            if (!lines.isEmpty()) tokens += separatorTokens;
+            blockTokens[lines.size()] = textTokens;
+            lines.add(text);
+            types.add(type);
+            paths.add(path);
+            tokens += textTokens;
+        }
+
+        void clear() {
+            lines.clear();
+            types.clear();
+            paths.clear();
+            tokens = 0;
+        }
+
+        Draft draft() {
+            List<String> path = null;
+            for (List<String> blockPath : paths) {
+                path = commonPath(path, blockPath);
+            }
+            return new Draft(joinLines(lines), List.copyOf(types), null, path);
+        }
+    }
+
+    /**
+     * The section path of a chunk holding blocks from both paths: their common prefix.
+     */
+    private static List<String> commonPath(List<String> path, List<String> blockPath) {
+        if (path == null || path == blockPath) return blockPath;
+        int shared = 0;
+        int max = Math.min(path.size(), blockPath.size());
+        while (shared < max && path.get(shared).equals(blockPath.get(shared))) shared++;
+        return shared == path.size() ? path : path.subList(0, shared);
+    }
+
+    /**
+     * A chunk's content before the page's chunk count is known.
+     */
+    private record Draft(String content, List<String> blockTypes, String codeLang, List<String> hPath) {}
+
+    /**
+     * Builds the page's chunks from their drafts, each exactly once. Hashes are fed to a per-thread
+     * digest without concatenating the input, and the id is the chunk hash's first 128 bits as a
+     * UUID, so a re-crawl of unchanged content yields the same ids.
+     */
+    private static List<OutputChunk> build(ExtractedDocument doc, List<Draft> drafts) {
+        int total = drafts.size();
+        List<OutputChunk> out = new ArrayList<>(total);
+        if (total == 0) {
+            return out;
+        }
+        Sha256 sha = Sha256.get();
+        String pageHash = BASE64.encodeToString(sha.update(doc.url()).digest());
         for (int i = 0; i < total; i++) {
-            OutputChunk c = out.get(i);
-            adjusted.add(new OutputChunk(
-                    c.id(),
-                    c.url(),
-                    c.canonicalUrl(),
-                    c.rootUrl(),
-                    c.title(),
-                    c.headings(),
+            Draft draft = drafts.get(i);
+            byte[] digest = sha.update(doc.url()).update(':').update(i).update(':').update(draft.content()).digest();
+            List<String> blockTypes = draft.blockTypes();
+            String contentType = (blockTypes.size() == 1 && blockTypes.contains("code"))
+                    ? "code"
+                    : "text";
+            out.add(new OutputChunk(
+                    uuid(digest),
+                    doc.url(),
+                    doc.canonicalUrl(),
+                    doc.rootUrl(),
+                    doc.title(),
+                    doc.headings(),
                     i,
                     total,
-                    c.content(),
-                    c.contentType(),
-                    c.blockTypes(),
-                    c.codeLanguage(),
-                    c.pageHash(),
-                    c.chunkHash(),
-                    c.depth(),
-                    c.hPath(),
-                    c.lang(),
-                    c.crawledAt(),
-                    c.source(),
-                    c.metadata()
+                    draft.content(),
+                    contentType,
+                    blockTypes,
+                    draft.codeLang(),
+                    pageHash,
+                    BASE64.encodeToString(digest),
+                    doc.depth(),
+                    draft.hPath(),
+                    "en",
+                    doc.crawledAt(),
+                    "web-docs",
+                    METADATA,
+                    null
             ));
         }
-        return adjusted;
+        return out;
     }
 
-    private static OutputChunk buildChunk(ExtractedDocument doc,
-                                          int chunkIndex,
-                                          String content,
-                                          List<String> blockTypes,
-                                          String codeLang) {
-        String pageHash = sha256(doc.url());
-        String chunkHash = sha256(doc.url() + ":" + chunkIndex + ":" + content);
-        String contentType = (blockTypes.size() == 1 && blockTypes.contains("code"))
-                ? "code"
-                : "text";
-        return new OutputChunk(
-                UUID.randomUUID().toString(),
-                doc.url(),
-                doc.canonicalUrl(),
-                doc.rootUrl(),
-                doc.title(),
-                doc.headings(),
-                chunkIndex,
-                0,
-                content,
-                contentType,
-                blockTypes,
-                codeLang,
-                pageHash,
-                chunkHash,
-                doc.depth(),
-                doc.headings(),
-                "en",
-                doc.crawledAt(),
-                "web-docs",
-                Map.of(
-                        "status_code", 200,
-                        "content_type_header", "text/html"
-                )
-        );
+    /**
+     * An RFC 9562 version 8 (custom) UUID holding the first 122 bits of {@code digest}.
+     */
+    private static String uuid(byte[] digest) {
+        long msb = 0;
+        long lsb = 0;
+        for (int i = 0; i < 8; i++) {
+            msb = msb << 8 | (digest[i] & 0xff);
+            lsb = lsb << 8 | (digest[8 + i] & 0xff);
+        }
+        msb = msb & ~0xF000L | 0x8000L;
+        lsb = lsb & 0x3FFFFFFFFFFFFFFFL | 0x8000000000000000L;
+        return new UUID(msb, lsb).toString();
     }
 
     private static String joinLines(List<String> lines) {
-        return lines.stream().collect(Collectors.joining("\n\n"));
+        return String.join(BLOCK_SEPARATOR, lines);
     }
 
-    private static String sha256(String input) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            byte[] digest = md.digest(input.getBytes(StandardCharsets.UTF_8));
-            return Base64.getEncoder().encodeToString(digest);
-        } catch (NoSuchAlgorithmException e) {
-            throw new IllegalStateException("SHA-256 not available", e);
+    /**
+     * SHA-256 over text encoded to UTF-8 through a fixed buffer, with the same bytes as
+     * {@link String#getBytes} (an unpaired surrogate becomes {@code '?'}). One per thread, as
+     * {@link MessageDigest} is not thread-safe and {@code getInstance} is a provider lookup.
+     */
+    private static final class Sha256 {
+        private static final ThreadLocal<Sha256> CURRENT = ThreadLocal.withInitial(Sha256::new);
+
+        private final MessageDigest digest;
+        private final byte[] buffer = new byte[4096];
+        private final byte[] result = new byte[32];
+        private int count;
+
+        private Sha256() {
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 not available", e);
+            }
+        }
+
+        static Sha256 get() {
+            return CURRENT.get();
+        }
+
+        Sha256 update(String text) {
+            int length = text.length();
+            int i = 0;
+            while (i < length) {
+                if (buffer.length - count < 4) drain();
+                // At most three bytes per char; a surrogate pair may take its low half from past the limit.
+                int limit = Math.min(length, i + (buffer.length - count - 1) / 3);
+                while (i < limit) {
+                    char ch = text.charAt(i++);
+                    if (ch < 0x80) {
+                        buffer[count++] = (byte) ch;
+                    } else if (ch < 0x800) {
+                        buffer[count++] = (byte) (0xC0 | ch >> 6);
+                        buffer[count++] = (byte) (0x80 | ch & 0x3F);
+                    } else if (!Character.isSurrogate(ch)) {
+                        buffer[count++] = (byte) (0xE0 | ch >> 12);
+                        buffer[count++] = (byte) (0x80 | ch >> 6 & 0x3F);
+                        buffer[count++] = (byte) (0x80 | ch & 0x3F);
+                    } else if (Character.isHighSurrogate(ch) && i < length && Character.isLowSurrogate(text.charAt(i))) {
+                        int cp = Character.toCodePoint(ch, text.charAt(i++));
+                        buffer[count++] = (byte) (0xF0 | cp >> 18);
+                        buffer[count++] = (byte) (0x80 | cp >> 12 & 0x3F);
+                        buffer[count++] = (byte) (0x80 | cp >> 6 & 0x3F);
+                        buffer[count++] = (byte) (0x80 | cp & 0x3F);
+                    } else {
+                        buffer[count++] = '?';
+                    }
+                }
+            }
+            return this;
+        }
+
+        Sha256 update(char ascii) {
+            if (count == buffer.length) drain();
+            buffer[count++] = (byte) ascii;
+            return this;
+        }
+
+        Sha256 update(int value) {
+            if (buffer.length - count < 10) drain();
+            int from = count;
+            do {
+                buffer[count++] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value > 0);
+            for (int i = from, j = count - 1; i < j; i++, j--) {
+                byte b = buffer[i];
+                buffer[i] = buffer[j];
+                buffer[j] = b;
+            }
+            return this;
+        }
+
+        /**
+         * @return the digest of everything fed since the last call, in an array reused by the next call
+         */
+        byte[] digest() {
+            drain();
+            try {
+                digest.digest(result, 0, result.length);
+            } catch (DigestException e) {
+                throw new IllegalStateException(e);
+            }
+            return result;
+        }
+
+        private void drain() {
+            digest.update(buffer, 0, count);
+            count = 0;
         }
     }
 }
-
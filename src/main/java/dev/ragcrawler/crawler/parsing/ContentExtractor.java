@@ -1,76 +1,143 @@
 package dev.ragcrawler.crawler.parsing;
 
+import dev.ragcrawler.crawler.jfr.ExtractEvent;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.NodeVisitor;
 
+import java.nio.charset.Charset;
 import java.time.Instant;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.function.Function;
 
 public final class ContentExtractor {
 
+    private final BoilerplateFilter boilerplate;
+
+    /**
+     * Extracts every block on the page.
+     */
+    public ContentExtractor() {
+        this(null);
+    }
+
+    /**
+     * Extracts the blocks outside containers that {@code boilerplate} rejects; null keeps them all.
+     */
+    public ContentExtractor(BoilerplateFilter boilerplate) {
+        this.boilerplate = boilerplate;
+    }
+
     public ExtractedDocument extract(Document doc,
                                      String url,
                                      String effectiveUrl,
                                      int depth) {
-        String canonical = null;
-        Element canonicalEl = doc.selectFirst("link[rel=canonical]");
-        if (canonicalEl != null) {
-            canonical = canonicalEl.attr("abs:href");
+        ExtractEvent event = new ExtractEvent();
+        event.begin();
+        ExtractedDocument extracted = extractBlocks(doc, url, effectiveUrl, depth);
+        event.end();
+        if (event.shouldCommit()) {
+            event.page(url);
+            event.blocks = extracted.blocks().size();
+            long chars = 0;
+            for (LogicalBlock block : extracted.blocks()) {
+                chars += block.text().length();
+            }
+            event.chars = chars;
+            event.commit();
         }
+        return extracted;
+    }
 
-        String title = doc.title();
-        List<String> headings = new ArrayList<>();
-        List<LogicalBlock> blocks = new ArrayList<>();
+    /**
+     * Wraps a page extracted by a {@link StreamingExtractor} as it was fetched.
+     */
+    public ExtractedDocument extract(StreamedPage page,
+                                     String url,
+                                     String effectiveUrl,
+                                     int depth) {
+        return new ExtractedDocument(
+                effectiveUrl,
+                page.canonicalUrl(),
+                url,
+                page.title(),
+                page.headings(),
+                page.blocks(),
+                depth,
+                Instant.now(),
+                page.boilerplateBlocks(),
+                page.boilerplateBytes()
+        );
+    }
 
-        Elements headingEls = doc.select("h1, h2, h3, h4");
-        for (Element h : headingEls) {
-            String text = h.text().trim();
-            if (!text.isEmpty()) {
-                headings.add(text);
-                blocks.add(new LogicalBlock(LogicalBlock.BlockType.HEADING, text, null));
-            }
+    /**
+     * A {@link StreamingExtractor} that cuts blocks the way this extractor does, with the same filter.
+     */
+    public StreamingExtractor streaming(Charset charset, String baseUri) {
+        return new StreamingExtractor(charset, baseUri, boilerplate);
+    }
+
+    private ExtractedDocument extractBlocks(Document doc, String url, String effectiveUrl, int depth) {
+        DomEvents events = new DomEvents(new BlockCollector(boilerplate));
+        doc.traverse(events);
+        BlockCollector blocks = events.collector;
+        return new ExtractedDocument(
+                effectiveUrl,
+                blocks.canonical,
+                url,
+                doc.title(),
+                blocks.headings,
+                blocks.blocks,
+                depth,
+                Instant.now(),
+                blocks.droppedBlocks,
+                blocks.droppedBytes
+        );
+    }
+
+    /**
+     * Walks the DOM once, in document order, feeding elements and text to a {@link BlockCollector}.
+     * Doubles as the attribute lookup of the element being started, so no lookup is allocated per
+     * element.
+     */
+    private static final class DomEvents implements NodeVisitor, Function<String, String> {
+        final BlockCollector collector;
+        private Element current;
+
+        DomEvents(BlockCollector collector) {
+            this.collector = collector;
         }
 
-        Elements paraEls = doc.select("p");
-        for (Element p : paraEls) {
-            String text = p.text().trim();
-            if (!text.isEmpty()) {
-                blocks.add(new LogicalBlock(LogicalBlock.BlockType.PARAGRAPH, text, null));
+        @Override
+        public void head(Node node, int depth) {
+            if (node instanceof TextNode text) {
+                collector.text(text.getWholeText());
+            } else if (node instanceof Element el) {
+                current = el;
+                collector.start(el.normalName(), el.isBlock(), this);
             }
         }
 
-        Elements listEls = doc.select("ul, ol");
-        for (Element list : listEls) {
-            String text = list.text().trim();
-            if (!text.isEmpty()) {
-                blocks.add(new LogicalBlock(LogicalBlock.BlockType.LIST, text, null));
+        @Override
+        public void tail(Node node, int depth) {
+            if (node instanceof Element el) {
+                collector.end(el.normalName(), el.isBlock() && spacedFromNext(el));
             }
         }
 
-        Elements codeEls = doc.select("pre, code");
-        for (Element code : codeEls) {
-            String text = code.text().trim();
-            if (text.isEmpty()) continue;
-            String lang = null;
-            String classAttr = code.className();
-            if (classAttr != null && !classAttr.isBlank()) {
-                lang = classAttr;
-            }
-            blocks.add(new LogicalBlock(LogicalBlock.BlockType.CODE, text, lang));
+        @Override
+        public String apply(String attribute) {
+            return current.attr(attribute);
         }
 
-        return new ExtractedDocument(
-                effectiveUrl,
-                canonical,
-                url,
-                title,
-                headings,
-                blocks,
-                depth,
-                Instant.now()
-        );
+        /**
+         * As in jsoup's {@code Element.text()}: a block is followed by a space unless the next
+         * sibling is a block that brings its own.
+         */
+        private static boolean spacedFromNext(Element el) {
+            Node next = el.nextSibling();
+            return next instanceof TextNode || next instanceof Element e && !e.tag().formatAsBlock();
+        }
     }
 }
-
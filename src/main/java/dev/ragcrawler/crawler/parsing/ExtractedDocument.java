@@ -3,6 +3,10 @@ package dev.ragcrawler.crawler.parsing;
 import java.time.Instant;
 import java.util.List;
 
+/**
+ * @param boilerplateBlocks blocks dropped as boilerplate
+ * @param boilerplateBytes  UTF-8 size of their text
+ */
 public record ExtractedDocument(
         String url,
         String canonicalUrl,
@@ -11,7 +15,8 @@ public record ExtractedDocument(
         List<String> headings,
         List<LogicalBlock> blocks,
         int depth,
-        Instant crawledAt
+        Instant crawledAt,
+        int boilerplateBlocks,
+        long boilerplateBytes
 ) {
 }
-
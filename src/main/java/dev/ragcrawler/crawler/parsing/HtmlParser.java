@@ -1,10 +1,14 @@
 package dev.ragcrawler.crawler.parsing;
 
+import dev.ragcrawler.crawler.jfr.ParseEvent;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -14,8 +18,39 @@ public final class HtmlParser {
         return Jsoup.parse(html, baseUri);
     }
 
+    /**
+     * Parses the page once and collects its links from the same DOM,
+     * so callers never need a second parse for link discovery.
+     */
+    public ParsedPage parsePage(String html, String baseUri) {
+        Document doc = parse(html, baseUri);
+        return new ParsedPage(doc, extractLinks(doc));
+    }
+
+    /**
+     * Parses raw body bytes, decoding them once. With a null charset jsoup detects it
+     * from a BOM or {@code <meta charset>}, falling back to UTF-8.
+     */
+    public ParsedPage parsePage(byte[] html, Charset charset, String baseUri) throws IOException {
+        ParseEvent event = new ParseEvent();
+        event.begin();
+        Document doc = Jsoup.parse(new ByteArrayInputStream(html), charset == null ? null : charset.name(), baseUri);
+        ParsedPage page = new ParsedPage(doc, extractLinks(doc));
+        event.end();
+        if (event.shouldCommit()) {
+            event.page(baseUri);
+            event.bytes = html.length;
+            event.links = page.links().size();
+            event.commit();
+        }
+        return page;
+    }
+
     public List<String> extractLinks(String html, String baseUri) {
-        Document doc = Jsoup.parse(html, baseUri);
+        return extractLinks(parse(html, baseUri));
+    }
+
+    public List<String> extractLinks(Document doc) {
         List<String> links = new ArrayList<>();
         Elements anchors = doc.select("a[href]");
         for (Element a : anchors) {
@@ -26,4 +61,3 @@ public final class HtmlParser {
         return links;
     }
 }
-
@@ -1,9 +1,16 @@
 package dev.ragcrawler.crawler.parsing;
 
+import java.util.List;
+
+/**
+ * @param headingPath the headings of the section the block is in, outermost first; a heading's
+ *                    path ends with the heading itself
+ */
 public record LogicalBlock(
         BlockType type,
         String text,
-        String codeLanguage
+        String codeLanguage,
+        List<String> headingPath
 ) {
     public enum BlockType {
         HEADING,
@@ -12,4 +19,3 @@ public record LogicalBlock(
         CODE
     }
 }
-
@@ -1,5 +1,8 @@
 package dev.ragcrawler.crawler.parsing;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import dev.ragcrawler.crawler.embedding.Embedding;
+
 import java.time.Instant;
 import java.util.List;
 import java.util.Map;
@@ -24,7 +27,14 @@ public record OutputChunk(
         String lang,
         Instant crawledAt,
         String source,
-        Map<String, Object> metadata
+        Map<String, Object> metadata,
+        @JsonInclude(JsonInclude.Include.NON_NULL) Embedding embedding
 ) {
+
+    public OutputChunk withEmbedding(Embedding embedding) {
+        return new OutputChunk(id, url, canonicalUrl, rootUrl, title, headings, chunkIndex, chunkCount, content,
+                contentType, blockTypes, codeLanguage, pageHash, chunkHash, depth, hPath, lang, crawledAt, source,
+                metadata, embedding);
+    }
 }
 
@@ -0,0 +1,15 @@
+package dev.ragcrawler.crawler.parsing;
+
+import org.jsoup.nodes.Document;
+
+import java.util.List;
+
+/**
+ * Result of a single parse of a fetched page: the DOM used for content extraction
+ * and the raw out-link hrefs, in document order.
+ */
+public record ParsedPage(
+        Document document,
+        List<String> links
+) {
+}
@@ -0,0 +1,193 @@
+package dev.ragcrawler.crawler.parsing;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streaming parser for sitemaps and sitemap indexes (sitemaps.org protocol).
+ * <p>
+ * Reads with StAX, so memory use does not grow with the file: each {@code <url>} or
+ * {@code <sitemap>} entry is handed to the caller as soon as its end tag is read. Gzipped
+ * input is detected by its magic bytes and inflated on the fly. DTDs and external entities
+ * are disabled. Input beyond the protocol's limits (50,000 entries, 50 MB uncompressed) is
+ * ignored.
+ */
+public final class SitemapParser {
+
+    public static final int MAX_ENTRIES = 50_000;
+    public static final long MAX_UNCOMPRESSED_BYTES = 50L * 1024 * 1024;
+
+    public enum Type {
+        /** A {@code <urlset>}: entries are pages. */
+        URLSET,
+        /** A {@code <sitemapindex>}: entries are further sitemaps. */
+        INDEX,
+        /** Anything else; no entries were reported. */
+        UNKNOWN
+    }
+
+    /**
+     * @param lastModified the entry's {@code <lastmod>}, or null if absent or unparseable
+     */
+    public record Entry(String loc, Instant lastModified) {}
+
+    private final XMLInputFactory factory;
+
+    public SitemapParser() {
+        factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+    }
+
+    /**
+     * Parses one sitemap, reporting its entries in document order. Does not close {@code in}.
+     *
+     * @return whether the document was a urlset or an index
+     */
+    public Type parse(InputStream in, Consumer<Entry> entries) throws IOException {
+        return parse(in, entries, Long.MAX_VALUE);
+    }
+
+    /**
+     * Parses one sitemap, reading at most {@code maxInputBytes} of {@code in} as given, i.e. before
+     * any gunzipping; a sitemap cut off there keeps the entries read so far.
+     */
+    public Type parse(InputStream in, Consumer<Entry> entries, long maxInputBytes) throws IOException {
+        LimitedInputStream input = new LimitedInputStream(in, maxInputBytes);
+        LimitedInputStream body = new LimitedInputStream(maybeGunzip(input), MAX_UNCOMPRESSED_BYTES);
+        XMLStreamReader reader = null;
+        Type type = Type.UNKNOWN;
+        try {
+            reader = factory.createXMLStreamReader(body);
+            int count = 0;
+            String loc = null;
+            String lastmod = null;
+            while (reader.hasNext() && count < MAX_ENTRIES) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = reader.getLocalName();
+                    if (type == Type.UNKNOWN) {
+                        type = switch (name) {
+                            case "urlset" -> Type.URLSET;
+                            case "sitemapindex" -> Type.INDEX;
+                            default -> Type.UNKNOWN;
+                        };
+                        if (type == Type.UNKNOWN) return type;
+                        continue;
+                    }
+                    switch (name) {
+                        case "url", "sitemap" -> {
+                            loc = null;
+                            lastmod = null;
+                        }
+                        case "loc" -> loc = reader.getElementText().trim();
+                        case "lastmod" -> lastmod = reader.getElementText().trim();
+                        default -> {
+                        }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && loc != null) {
+                    String name = reader.getLocalName();
+                    if ((name.equals("url") || name.equals("sitemap")) && !loc.isEmpty()) {
+                        entries.accept(new Entry(loc, parseLastmod(lastmod)));
+                        count++;
+                        loc = null;
+                    }
+                }
+            }
+            return type;
+        } catch (XMLStreamException e) {
+            if (body.exhausted() || input.exhausted()) {
+                // Cut at a size limit: keep what was read.
+                return type;
+            }
+            throw new IOException("Malformed sitemap: " + e.getMessage(), e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Parses a W3C datetime: a date, or a date-time with or without seconds and offset.
+     */
+    static Instant parseLastmod(String value) {
+        if (value == null || value.isEmpty()) return null;
+        try {
+            if (value.length() == 10) {
+                return LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC).toInstant();
+            }
+            return OffsetDateTime.parse(value).toInstant();
+        } catch (DateTimeParseException e) {
+            try {
+                return LocalDateTime.parse(value).toInstant(ZoneOffset.UTC);
+            } catch (DateTimeParseException ignored) {
+                return null;
+            }
+        }
+    }
+
+    private static InputStream maybeGunzip(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in);
+        buffered.mark(2);
+        int b1 = buffered.read();
+        int b2 = buffered.read();
+        buffered.reset();
+        return b1 == 0x1f && b2 == 0x8b ? new GZIPInputStream(buffered, 8192) : buffered;
+    }
+
+    /**
+     * Reports end of input once {@code limit} bytes have been read.
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        boolean exhausted() {
+            return remaining <= 0;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) return -1;
+            int b = super.read();
+            if (b >= 0) remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) return -1;
+            int n = super.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) remaining -= n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+            // The caller owns the underlying stream.
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package dev.ragcrawler.crawler.parsing;
+
+import java.util.List;
+
+/**
+ * A page extracted by a {@link StreamingExtractor} while it was fetched: what {@link ParsedPage}
+ * and {@link ContentExtractor} produce for a buffered page, without the DOM.
+ *
+ * @param links             raw out-link hrefs, in document order
+ * @param boilerplateBlocks blocks dropped as boilerplate
+ * @param boilerplateBytes  UTF-8 size of their text
+ * @param bytes             body bytes read
+ * @param parseNanos        time spent tokenizing and extracting, excluding waits for the network
+ */
+public record StreamedPage(
+        String title,
+        String canonicalUrl,
+        List<String> links,
+        List<String> headings,
+        List<LogicalBlock> blocks,
+        int boilerplateBlocks,
+        long boilerplateBytes,
+        long bytes,
+        long parseNanos
+) {
+}
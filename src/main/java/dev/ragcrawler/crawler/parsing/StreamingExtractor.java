@@ -0,0 +1,724 @@
+package dev.ragcrawler.crawler.parsing;
+
+import org.jsoup.internal.StringUtil;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.Tag;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Extracts a page from its bytes as they arrive, without building a DOM, for bodies too large to
+ * parse into a jsoup {@code Document} (which costs several times the page size in heap).
+ * <p>
+ * Bytes are decoded through a fixed buffer, with the declared charset or else one sniffed from a
+ * BOM or {@code <meta charset>} in the first 5 KB, as jsoup does, falling back to UTF-8. A small
+ * state machine splits the text into tags, text, comments and raw text ({@code script},
+ * {@code style}, {@code title}, {@code textarea}). A stack of open elements applies the implied
+ * end tags of the HTML tree builder (an open {@code p} closed by a block, {@code li} by the next
+ * {@code li}, headings, table cells), so a {@link BlockCollector} receives balanced events and
+ * emits each block as its element closes, cut and labelled as in {@link ContentExtractor}. Links,
+ * {@code <base href>} and the title are picked up on the way.
+ * <p>
+ * Working memory is bounded whatever the page size: {@value #BUFFER_CHARS}-char decode and text
+ * buffers, tags of up to {@value #MAX_TAG_CHARS} chars (attributes past that are ignored) and
+ * {@value #MAX_DEPTH} levels of nesting (deeper elements only contribute their text). What grows
+ * with the page is the output: the extracted text and the links.
+ * <p>
+ * The tree builder's adoption agency and foster parenting, which repair misnested formatting and
+ * table markup, are not applied, so on such markup a block can end where the DOM path would not.
+ * Not thread-safe.
+ */
+public final class StreamingExtractor {
+
+    static final int BUFFER_CHARS = 8 * 1024;
+    static final int MAX_TAG_CHARS = 16 * 1024;
+    static final int MAX_DEPTH = 512;
+    private static final int SNIFF_BYTES = 5 * 1024;
+    private static final int MAX_TITLE_CHARS = 4 * 1024;
+    /** Longest character reference kept whole when a long text run is split. */
+    private static final int MAX_ENTITY_CHARS = 32;
+    private static final Pattern DECLARED_CHARSET = Pattern.compile(
+            "<meta[^>]*?charset\\s*=\\s*[\"']?\\s*([a-z0-9_.:\\-]+)|<\\?xml[^>]*?encoding\\s*=\\s*[\"']([a-z0-9_.:\\-]+)");
+
+    private static final Predicate<String> PARAGRAPH = "p"::equals;
+    private static final Predicate<String> LIST_ITEM = "li"::equals;
+    private static final Predicate<String> DEFINITION = name -> name.equals("dd") || name.equals("dt");
+    private static final Predicate<String> CELL = name -> name.equals("td") || name.equals("th");
+    private static final Predicate<String> ROW = "tr"::equals;
+    private static final Predicate<String> ROW_GROUP =
+            name -> name.equals("tbody") || name.equals("thead") || name.equals("tfoot");
+    private static final Predicate<String> HEADING = StreamingExtractor::isHeading;
+    private static final Predicate<String> SCOPE = StreamingExtractor::isScopeBoundary;
+    private static final Predicate<String> BUTTON_SCOPE = name -> isScopeBoundary(name) || name.equals("button");
+    private static final Predicate<String> LIST_ITEM_SCOPE =
+            name -> isScopeBoundary(name) || name.equals("ul") || name.equals("ol");
+    /** An open {@code li}, {@code dd} or {@code dt} is only closed by a sibling from outside other blocks. */
+    private static final Predicate<String> SIBLING_SCOPE =
+            name -> isSpecial(name) && !name.equals("address") && !name.equals("div") && !name.equals("p");
+    private static final Predicate<String> TABLE_SCOPE = name -> name.equals("table") || name.equals("template");
+    private static final Predicate<String> ROW_SCOPE = name -> name.equals("tr") || TABLE_SCOPE.test(name);
+
+    private enum State { DATA, TAG_OPEN, END_TAG_OPEN, TAG, MARKUP, MARKUP_DASH, COMMENT, BOGUS, RAW_TEXT }
+
+    private final BlockCollector collector;
+    private final TagAttributes attributes = new TagAttributes();
+    private final List<String> links = new ArrayList<>();
+    private String base;
+    private boolean baseSet;
+    private String title = "";
+    /** The text of the first {@code title} while it is open. */
+    private StringBuilder titleText;
+    private long bytes;
+    private long nanos;
+
+    /** Bytes held until the charset is known. */
+    private ByteBuffer sniff;
+    private CharsetDecoder decoder;
+    private ByteBuffer in;
+    private final CharBuffer chars = CharBuffer.allocate(BUFFER_CHARS);
+
+    private State state = State.DATA;
+    private final StringBuilder textRun = new StringBuilder();
+    private final StringBuilder tag = new StringBuilder();
+    private boolean endTag;
+    private char quote;
+    /** Last non-space char of the tag so far, to tell a quoted attribute value from a stray quote. */
+    private char lastTagChar;
+    private int dashes;
+    /** The element whose raw text is being read, and how many chars of its end tag have been seen. */
+    private String rawTextName;
+    private int rawTextMatched;
+    private boolean keepRawText;
+    private boolean decodeEntities = true;
+    /** A line feed right after {@code <pre>} or {@code <listing>} is not part of its text. */
+    private boolean skipLineFeed;
+
+    private final String[] stack = new String[MAX_DEPTH];
+    private int depth;
+    /** Open elements beyond {@link #MAX_DEPTH}, which get no events. */
+    private int overflow;
+    /** Open {@code svg} and {@code math} elements, whose content follows XML rules. */
+    private int foreign;
+
+    /**
+     * @param charset charset declared by the server, or null to sniff it from the page
+     * @param baseUri URL the page was fetched from, for resolving the canonical link
+     * @param boilerplate filter for page furniture, or null to keep every block
+     */
+    public StreamingExtractor(Charset charset, String baseUri, BoilerplateFilter boilerplate) {
+        this.collector = new BlockCollector(boilerplate);
+        this.base = baseUri;
+        if (charset != null) {
+            startDecoding(charset);
+        } else {
+            sniff = ByteBuffer.allocate(SNIFF_BYTES);
+        }
+    }
+
+    /**
+     * Consumes all remaining bytes of {@code data}.
+     */
+    public void feed(ByteBuffer data) {
+        long start = System.nanoTime();
+        bytes += data.remaining();
+        if (decoder == null) {
+            int n = Math.min(sniff.remaining(), data.remaining());
+            int limit = data.limit();
+            data.limit(data.position() + n);
+            sniff.put(data);
+            data.limit(limit);
+            if (!sniff.hasRemaining()) {
+                decodeSniffed();
+            }
+        }
+        if (decoder != null) {
+            decode(data, false);
+        }
+        nanos += System.nanoTime() - start;
+    }
+
+    /**
+     * Ends the input: closes whatever is still open and returns the page.
+     */
+    public StreamedPage finish() {
+        long start = System.nanoTime();
+        if (decoder == null) {
+            decodeSniffed();
+        }
+        decode(ByteBuffer.allocate(0), true);
+        decoder.flush(chars);
+        tokenizeDecoded();
+        switch (state) {
+            case TAG_OPEN -> textRun.append('<');
+            case END_TAG_OPEN -> textRun.append("</");
+            // An unterminated tag or comment is dropped; raw text keeps what it read.
+            default -> { }
+        }
+        flushText();
+        while (depth > 0) {
+            pop();
+        }
+        nanos += System.nanoTime() - start;
+        return new StreamedPage(title, collector.canonical, links, collector.headings, collector.blocks,
+                collector.droppedBlocks, collector.droppedBytes, bytes, nanos);
+    }
+
+    // ---- bytes to chars ----
+
+    private void startDecoding(Charset charset) {
+        decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        in = ByteBuffer.allocate(BUFFER_CHARS);
+    }
+
+    private void decodeSniffed() {
+        sniff.flip();
+        startDecoding(detectCharset(sniff));
+        decode(sniff, false);
+        sniff = null;
+    }
+
+    private void decode(ByteBuffer data, boolean endOfInput) {
+        do {
+            int n = Math.min(in.remaining(), data.remaining());
+            int limit = data.limit();
+            data.limit(data.position() + n);
+            in.put(data);
+            data.limit(limit);
+            in.flip();
+            CoderResult result;
+            do {
+                result = decoder.decode(in, chars, endOfInput && !data.hasRemaining());
+                tokenizeDecoded();
+            } while (result.isOverflow());
+            in.compact();
+        } while (data.hasRemaining());
+    }
+
+    /**
+     * The charset from a byte-order mark, which is skipped, or from a {@code <meta>} or XML
+     * declaration; UTF-8 if there is neither.
+     */
+    static Charset detectCharset(ByteBuffer head) {
+        int p = head.position();
+        int n = head.remaining();
+        if (n >= 3 && (head.get(p) & 0xFF) == 0xEF && (head.get(p + 1) & 0xFF) == 0xBB && (head.get(p + 2) & 0xFF) == 0xBF) {
+            head.position(p + 3);
+            return StandardCharsets.UTF_8;
+        }
+        if (n >= 2 && (head.get(p) & 0xFF) == 0xFE && (head.get(p + 1) & 0xFF) == 0xFF) {
+            head.position(p + 2);
+            return StandardCharsets.UTF_16BE;
+        }
+        if (n >= 2 && (head.get(p) & 0xFF) == 0xFF && (head.get(p + 1) & 0xFF) == 0xFE) {
+            head.position(p + 2);
+            return StandardCharsets.UTF_16LE;
+        }
+        byte[] prefix = new byte[n];
+        head.get(p, prefix);
+        Matcher m = DECLARED_CHARSET.matcher(new String(prefix, StandardCharsets.ISO_8859_1).toLowerCase(Locale.ROOT));
+        if (m.find()) {
+            String name = m.group(1) != null ? m.group(1) : m.group(2);
+            // The page got this far in an ASCII-compatible encoding, whatever it claims.
+            if (name.startsWith("utf-16") || name.startsWith("utf-32")) return StandardCharsets.UTF_8;
+            try {
+                if (Charset.isSupported(name)) return Charset.forName(name);
+            } catch (IllegalCharsetNameException ignored) {
+                // fall through to the default
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    // ---- chars to tokens ----
+
+    private void tokenizeDecoded() {
+        chars.flip();
+        tokenize(chars.array(), chars.arrayOffset() + chars.position(), chars.arrayOffset() + chars.limit());
+        chars.clear();
+    }
+
+    private void tokenize(char[] a, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = a[i];
+            switch (state) {
+                case DATA -> {
+                    if (skipLineFeed) {
+                        skipLineFeed = false;
+                        if (c == '\n') continue;
+                    }
+                    int end = i;
+                    while (end < to && a[end] != '<') end++;
+                    appendText(a, i, end);
+                    if (end < to) state = State.TAG_OPEN;
+                    i = end;
+                }
+                case TAG_OPEN -> {
+                    if (isAsciiLetter(c)) {
+                        beginTag(false, c);
+                    } else if (c == '/') {
+                        state = State.END_TAG_OPEN;
+                    } else if (c == '!') {
+                        flushText();
+                        state = State.MARKUP;
+                    } else if (c == '?') {
+                        flushText();
+                        state = State.BOGUS;
+                    } else {
+                        textRun.append('<');
+                        state = State.DATA;
+                        i--;
+                    }
+                }
+                case END_TAG_OPEN -> {
+                    if (isAsciiLetter(c)) {
+                        beginTag(true, c);
+                    } else if (c == '>') {
+                        state = State.DATA;
+                    } else {
+                        flushText();
+                        state = State.BOGUS;
+                    }
+                }
+                case TAG -> {
+                    if (quote != 0) {
+                        if (c == quote) quote = 0;
+                        appendTag(c);
+                    } else if (c == '>') {
+                        state = State.DATA;
+                        endOfTag();
+                    } else {
+                        if ((c == '"' || c == '\'') && lastTagChar == '=') quote = c;
+                        if (!isSpace(c)) lastTagChar = c;
+                        appendTag(c);
+                    }
+                }
+                case MARKUP -> {
+                    state = c == '-' ? State.MARKUP_DASH : State.BOGUS;
+                    if (c != '-') i--;
+                }
+                case MARKUP_DASH -> {
+                    if (c == '-') {
+                        state = State.COMMENT;
+                        // "<!-->" and "<!--->" are complete comments.
+                        dashes = 2;
+                    } else {
+                        state = State.BOGUS;
+                        i--;
+                    }
+                }
+                case COMMENT -> {
+                    if (c == '>' && dashes >= 2) {
+                        state = State.DATA;
+                    } else {
+                        dashes = c == '-' ? dashes + 1 : 0;
+                    }
+                }
+                case BOGUS -> {
+                    if (c == '>') state = State.DATA;
+                }
+                case RAW_TEXT -> {
+                    if (rawText(c)) i--;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads one char of raw text, watching for the end tag.
+     *
+     * @return true if the end tag was found and {@code c} must be read again as part of it
+     */
+    private boolean rawText(char c) {
+        int length = rawTextName.length() + 2;
+        if (rawTextMatched == length) {
+            if (isSpace(c) || c == '/' || c == '>') {
+                if (keepRawText) {
+                    textRun.setLength(textRun.length() - length);
+                }
+                flushText();
+                rawTextMatched = 0;
+                decodeEntities = true;
+                beginTag(true, rawTextName.charAt(0));
+                tag.append(rawTextName, 1, rawTextName.length());
+                return true;
+            }
+            rawTextMatched = 0;
+        } else {
+            char expected = rawTextMatched == 0 ? '<' : rawTextMatched == 1 ? '/' : rawTextName.charAt(rawTextMatched - 2);
+            rawTextMatched = Character.toLowerCase(c) == expected ? rawTextMatched + 1 : 0;
+        }
+        if (rawTextMatched == 0 && c == '<') rawTextMatched = 1;
+        if (keepRawText) {
+            textRun.append(c);
+            if (rawTextMatched == 0 && textRun.length() >= BUFFER_CHARS) flushText();
+        }
+        return false;
+    }
+
+    private void appendText(char[] a, int from, int to) {
+        textRun.append(a, from, to - from);
+        if (textRun.length() >= BUFFER_CHARS) {
+            int cut = textRun.length();
+            // Keep a character reference that may continue in the next buffer whole.
+            int amp = textRun.lastIndexOf("&");
+            if (amp >= 0 && cut - amp <= MAX_ENTITY_CHARS && textRun.indexOf(";", amp) < 0) cut = amp;
+            if (Character.isHighSurrogate(textRun.charAt(cut - 1))) cut--;
+            String s = textRun.substring(0, cut);
+            textRun.delete(0, cut);
+            deliverText(s);
+        }
+    }
+
+    private void flushText() {
+        if (textRun.isEmpty()) return;
+        String s = textRun.toString();
+        textRun.setLength(0);
+        deliverText(s);
+    }
+
+    private void deliverText(String s) {
+        if (decodeEntities && s.indexOf('&') >= 0) {
+            s = Parser.unescapeEntities(s, false);
+        }
+        if (titleText != null && titleText.length() < MAX_TITLE_CHARS) {
+            titleText.append(s, 0, Math.min(s.length(), MAX_TITLE_CHARS - titleText.length()));
+        }
+        collector.text(s);
+    }
+
+    private void beginTag(boolean end, char first) {
+        flushText();
+        tag.setLength(0);
+        tag.append(first);
+        endTag = end;
+        quote = 0;
+        lastTagChar = first;
+        state = State.TAG;
+    }
+
+    private void appendTag(char c) {
+        if (tag.length() < MAX_TAG_CHARS) tag.append(c);
+    }
+
+    private void endOfTag() {
+        int n = tag.length();
+        int nameEnd = 0;
+        while (nameEnd < n && !isSpace(tag.charAt(nameEnd)) && tag.charAt(nameEnd) != '/') nameEnd++;
+        String name = tag.substring(0, nameEnd).toLowerCase(Locale.ROOT);
+        attributes.reset(nameEnd);
+        if (endTag) {
+            handleEnd(name);
+        } else {
+            handleStart(name, tag.charAt(n - 1) == '/');
+        }
+    }
+
+    // ---- tokens to elements ----
+
+    private void handleStart(String name, boolean selfClosing) {
+        switch (name) {
+            // The DOM has exactly one of each, wherever the tags are.
+            case "html", "head", "body" -> {
+                return;
+            }
+            case "a" -> {
+                String href = attributes.apply("href");
+                if (!href.isBlank()) links.add(href);
+            }
+            case "base" -> {
+                String href = attributes.apply("href");
+                if (!baseSet && !href.isEmpty()) {
+                    base = StringUtil.resolve(base, href);
+                    baseSet = true;
+                }
+            }
+            default -> { }
+        }
+        if (foreign == 0) {
+            closeImplied(name);
+        }
+        boolean foreignRoot = name.equals("svg") || name.equals("math");
+        if (isVoid(name) || selfClosing && (foreign > 0 || foreignRoot || !Tag.isKnownTag(name))) {
+            if (overflow == 0 && depth < MAX_DEPTH) {
+                collector.start(name, isBlock(name), attributes);
+                collector.end(name, isBlock(name));
+            }
+            return;
+        }
+        push(name);
+        if (foreign == 0) {
+            switch (name) {
+                case "script", "style" -> readRawText(name, false, false);
+                case "title", "textarea" -> readRawText(name, true, true);
+                case "xmp", "iframe", "noembed", "noframes", "plaintext" -> readRawText(name, true, false);
+                case "pre", "listing" -> skipLineFeed = true;
+                default -> { }
+            }
+        }
+    }
+
+    private void handleEnd(String name) {
+        if (overflow > 0) {
+            overflow--;
+            return;
+        }
+        switch (name) {
+            case "html", "head", "body" -> { }
+            case "br" -> handleStart(name, false);
+            case "p" -> popTo(innermost(PARAGRAPH, BUTTON_SCOPE));
+            case "li" -> popTo(innermost(LIST_ITEM, LIST_ITEM_SCOPE));
+            case "h1", "h2", "h3", "h4", "h5", "h6" -> popTo(innermost(HEADING, SCOPE));
+            case "table" -> popTo(innermost("table"::equals, TABLE_SCOPE));
+            case "tr" -> popTo(innermost(ROW, TABLE_SCOPE));
+            case "tbody", "thead", "tfoot" -> popTo(innermost(ROW_GROUP, TABLE_SCOPE));
+            default -> {
+                for (int i = depth - 1; i >= 0; i--) {
+                    if (stack[i].equals(name)) {
+                        popTo(i);
+                        return;
+                    }
+                    // Block end tags close what is open inside them; other end tags stop at a block.
+                    if (isSpecial(name) ? isScopeBoundary(stack[i]) : isSpecial(stack[i])) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The end tags the HTML tree builder implies before a start tag.
+     */
+    private void closeImplied(String name) {
+        switch (name) {
+            case "address", "article", "aside", "blockquote", "center", "details", "dialog", "dir", "div", "dl",
+                 "fieldset", "figcaption", "figure", "footer", "form", "header", "hgroup", "hr", "listing", "main",
+                 "menu", "nav", "ol", "p", "plaintext", "pre", "search", "section", "summary", "table", "ul",
+                 "xmp" -> popTo(innermost(PARAGRAPH, BUTTON_SCOPE));
+            case "h1", "h2", "h3", "h4", "h5", "h6" -> {
+                popTo(innermost(PARAGRAPH, BUTTON_SCOPE));
+                if (depth > 0 && isHeading(stack[depth - 1])) pop();
+            }
+            case "li" -> {
+                popTo(innermost(LIST_ITEM, SIBLING_SCOPE));
+                popTo(innermost(PARAGRAPH, BUTTON_SCOPE));
+            }
+            case "dd", "dt" -> {
+                popTo(innermost(DEFINITION, SIBLING_SCOPE));
+                popTo(innermost(PARAGRAPH, BUTTON_SCOPE));
+            }
+            case "td", "th" -> popTo(innermost(CELL, ROW_SCOPE));
+            case "tr" -> popTo(innermost(ROW, TABLE_SCOPE));
+            case "tbody", "thead", "tfoot" -> popTo(innermost(ROW_GROUP, TABLE_SCOPE));
+            case "option", "optgroup" -> {
+                if (depth > 0 && stack[depth - 1].equals("option")) pop();
+            }
+            // Links do not nest: a second one closes the first.
+            case "a" -> handleEnd("a");
+            default -> { }
+        }
+    }
+
+    private void readRawText(String name, boolean keep, boolean entities) {
+        state = State.RAW_TEXT;
+        rawTextName = name;
+        rawTextMatched = 0;
+        keepRawText = keep;
+        decodeEntities = entities;
+        if (name.equals("title") && titleText == null && title.isEmpty()) {
+            titleText = new StringBuilder();
+        }
+    }
+
+    /**
+     * The stack index of the innermost open element matching {@code target}, or -1 if an element
+     * matching {@code stop} is found first.
+     */
+    private int innermost(Predicate<String> target, Predicate<String> stop) {
+        for (int i = depth - 1; i >= 0; i--) {
+            if (target.test(stack[i])) return i;
+            if (stop.test(stack[i])) return -1;
+        }
+        return -1;
+    }
+
+    private void push(String name) {
+        if (overflow > 0 || depth == MAX_DEPTH) {
+            overflow++;
+            return;
+        }
+        stack[depth++] = name;
+        if (name.equals("svg") || name.equals("math")) foreign++;
+        collector.start(name, isBlock(name), attributes);
+    }
+
+    /**
+     * Closes the element at stack index {@code index} and everything open inside it; -1 closes nothing.
+     */
+    private void popTo(int index) {
+        if (index < 0) return;
+        while (depth > index) {
+            pop();
+        }
+    }
+
+    private void pop() {
+        String name = stack[--depth];
+        stack[depth] = null;
+        if (name.equals("svg") || name.equals("math")) foreign--;
+        if (name.equals("title") && titleText != null) {
+            title = StringUtil.normaliseWhitespace(titleText.toString()).trim();
+            titleText = null;
+        }
+        collector.end(name, isBlock(name));
+    }
+
+    // ---- element categories ----
+
+    private static boolean isBlock(String name) {
+        return Tag.isKnownTag(name) && Tag.valueOf(name).isBlock();
+    }
+
+    private static boolean isHeading(String name) {
+        return name.length() == 2 && name.charAt(0) == 'h' && name.charAt(1) >= '1' && name.charAt(1) <= '6';
+    }
+
+    private static boolean isVoid(String name) {
+        return switch (name) {
+            case "area", "base", "basefont", "bgsound", "br", "col", "embed", "frame", "hr", "img", "input",
+                 "keygen", "link", "meta", "param", "source", "track", "wbr" -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * Elements that limit how far an end tag looks for the element it closes.
+     */
+    private static boolean isScopeBoundary(String name) {
+        return switch (name) {
+            case "applet", "caption", "html", "table", "td", "th", "marquee", "object", "template" -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * The HTML "special" category: structural elements that formatting end tags do not close.
+     */
+    private static boolean isSpecial(String name) {
+        return switch (name) {
+            case "address", "applet", "area", "article", "aside", "base", "basefont", "bgsound", "blockquote",
+                 "body", "br", "button", "caption", "center", "col", "colgroup", "dd", "details", "dir", "div",
+                 "dl", "dt", "embed", "fieldset", "figcaption", "figure", "footer", "form", "frame", "frameset",
+                 "h1", "h2", "h3", "h4", "h5", "h6", "head", "header", "hgroup", "hr", "html", "iframe", "img",
+                 "input", "keygen", "li", "link", "listing", "main", "marquee", "menu", "meta", "nav", "noembed",
+                 "noframes", "noscript", "object", "ol", "p", "param", "plaintext", "pre", "script", "search",
+                 "section", "select", "source", "style", "summary", "table", "tbody", "td", "template",
+                 "textarea", "tfoot", "th", "thead", "title", "tr", "track", "ul", "wbr", "xmp" -> true;
+            default -> false;
+        };
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+
+    /**
+     * Attribute lookup for the tag just read, parsed on first use.
+     */
+    private final class TagAttributes implements Function<String, String> {
+        private int from;
+        private boolean parsed;
+        private String[] names = new String[8];
+        private String[] values = new String[8];
+        private int count;
+
+        void reset(int from) {
+            this.from = from;
+            parsed = false;
+            count = 0;
+        }
+
+        @Override
+        public String apply(String name) {
+            if (name.startsWith("abs:")) {
+                String value = apply(name.substring(4));
+                return value.isEmpty() ? "" : StringUtil.resolve(base, value);
+            }
+            if (!parsed) parse();
+            for (int i = 0; i < count; i++) {
+                if (names[i].equals(name)) return values[i];
+            }
+            return "";
+        }
+
+        private void parse() {
+            parsed = true;
+            int n = tag.length();
+            int i = from;
+            while (true) {
+                while (i < n && (isSpace(tag.charAt(i)) || tag.charAt(i) == '/')) i++;
+                if (i >= n) return;
+                int nameStart = i;
+                while (i < n && !isSpace(tag.charAt(i)) && tag.charAt(i) != '=' && tag.charAt(i) != '/') i++;
+                if (i == nameStart) i++;
+                String name = tag.substring(nameStart, i).toLowerCase(Locale.ROOT);
+                while (i < n && isSpace(tag.charAt(i))) i++;
+                String value = "";
+                if (i < n && tag.charAt(i) == '=') {
+                    i++;
+                    while (i < n && isSpace(tag.charAt(i))) i++;
+                    int valueStart;
+                    int valueEnd;
+                    if (i < n && (tag.charAt(i) == '"' || tag.charAt(i) == '\'')) {
+                        char q = tag.charAt(i++);
+                        valueStart = i;
+                        while (i < n && tag.charAt(i) != q) i++;
+                        valueEnd = i;
+                        i++;
+                    } else {
+                        valueStart = i;
+                        while (i < n && !isSpace(tag.charAt(i))) i++;
+                        valueEnd = i;
+                    }
+                    value = tag.substring(valueStart, Math.min(valueEnd, n));
+                    if (value.indexOf('&') >= 0) value = Parser.unescapeEntities(value, true);
+                }
+                add(name, value);
+            }
+        }
+
+        private void add(String name, String value) {
+            for (int i = 0; i < count; i++) {
+                // The first of duplicate attributes wins.
+                if (names[i].equals(name)) return;
+            }
+            if (count == names.length) {
+                names = Arrays.copyOf(names, count * 2);
+                values = Arrays.copyOf(values, count * 2);
+            }
+            names[count] = name;
+            values[count++] = value;
+        }
+    }
+}
@@ -4,67 +4,131 @@ import dev.ragcrawler.crawler.http.HttpFetcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
 import java.net.URI;
 import java.time.Duration;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
- * Very small robots.txt cache and parser, focused on Disallow rules.
- * This is intentionally conservative and simple.
+ * Per-origin cache of compiled robots.txt rules.
+ * <p>
+ * Each origin is fetched once: the first caller installs a future and fetches outside the map,
+ * later callers for the same origin wait on that future, and callers for other origins are never
+ * held up. Entries expire after a TTL (shorter when the fetch failed); the first caller after
+ * expiry refreshes the entry while everyone else keeps using the previous rules.
  */
 public final class RobotsCache {
 
     private static final Logger log = LoggerFactory.getLogger(RobotsCache.class);
 
-    private final Map<String, RobotsRules> cache = new ConcurrentHashMap<>();
+    public static final Duration DEFAULT_TTL = Duration.ofHours(24);
+    private static final Duration FAILURE_TTL = Duration.ofMinutes(10);
+
+    private static final class Entry {
+        final CompletableFuture<RobotsRules> rules = new CompletableFuture<>();
+        final RobotsRules previous;
+        volatile long expiresAtNanos;
+
+        Entry(RobotsRules previous) {
+            this.previous = previous;
+        }
+
+        boolean expired(long nowNanos) {
+            return rules.isDone() && nowNanos - expiresAtNanos >= 0;
+        }
+
+        RobotsRules get() {
+            if (previous != null && !rules.isDone()) {
+                return previous;
+            }
+            return rules.join();
+        }
+    }
+
+    private final ConcurrentMap<String, Entry> cache = new ConcurrentHashMap<>();
     private final HttpFetcher httpFetcher;
     private final String userAgent;
+    private final long ttlNanos;
 
     public RobotsCache(HttpFetcher fetcher, String userAgent) {
+        this(fetcher, userAgent, DEFAULT_TTL);
+    }
+
+    public RobotsCache(HttpFetcher fetcher, String userAgent, Duration ttl) {
         this.httpFetcher = fetcher;
         this.userAgent = userAgent;
+        this.ttlNanos = ttl.toNanos();
     }
 
     public RobotsRules rulesFor(URI uri) {
         String key = hostKey(uri);
-        return cache.computeIfAbsent(key, k -> fetchRules(uri));
+        long now = System.nanoTime();
+        Entry entry = cache.get(key);
+        if (entry != null && !entry.expired(now)) {
+            return entry.get();
+        }
+        Entry fresh = new Entry(entry == null ? null : entry.rules.join());
+        boolean won = entry == null
+                ? cache.putIfAbsent(key, fresh) == null
+                : cache.replace(key, entry, fresh);
+        if (!won) {
+            return cache.get(key).get();
+        }
+        try {
+            load(fresh, uri);
+        } finally {
+            // Never leave waiters hanging, whatever load() threw.
+            fresh.rules.complete(RobotsRules.allowAll());
+        }
+        return fresh.rules.join();
     }
 
-    private RobotsRules fetchRules(URI uri) {
+    private void load(Entry entry, URI uri) {
+        RobotsRules rules;
+        long ttl = ttlNanos;
         try {
             URI robotsUri = new URI(uri.getScheme(), uri.getAuthority(), "/robots.txt", null, null);
-            HttpFetcher.Response resp = httpFetcher.fetch(robotsUri);
+            HttpFetcher.Response resp = httpFetcher.fetchResource(robotsUri);
             if (resp.statusCode() >= 200 && resp.statusCode() < 300) {
-                return RobotsParser.parse(resp.body(), userAgent);
+                rules = RobotsParser.parse(resp.bodyAsString(), userAgent);
+            } else {
+                // If robots not found or inaccessible, default to allow all; retry 5xx sooner.
+                rules = RobotsRules.allowAll();
+                if (resp.statusCode() >= 500) {
+                    ttl = Math.min(ttl, FAILURE_TTL.toNanos());
+                }
             }
-            // If robots not found or inaccessible, default to allow all.
-            return RobotsRules.allowAll();
         } catch (Exception e) {
             log.warn("Failed to fetch robots.txt for {}: {}", uri, e.toString());
-            return RobotsRules.allowAll();
+            rules = RobotsRules.allowAll();
+            ttl = Math.min(ttl, FAILURE_TTL.toNanos());
         }
+        entry.expiresAtNanos = System.nanoTime() + ttl;
+        entry.rules.complete(rules);
     }
 
     private static String hostKey(URI uri) {
-        return uri.getScheme() + "://" + uri.getHost();
+        // robots.txt applies per scheme, host and port.
+        return uri.getScheme() + "://" + uri.getRawAuthority();
     }
 
-    public record RobotsRules(List<String> disallowPaths, Duration crawlDelay) {
+    /**
+     * @param matcher    compiled Allow/Disallow rules of the group that applies to us
+     * @param crawlDelay the group's {@code Crawl-delay}, or zero
+     * @param sitemaps   URLs of the file's {@code Sitemap} lines, which apply to every agent
+     */
+    public record RobotsRules(RobotsMatcher matcher, Duration crawlDelay, List<String> sitemaps) {
         public static RobotsRules allowAll() {
-            return new RobotsRules(List.of(), Duration.ZERO);
+            return new RobotsRules(RobotsMatcher.allowAll(), Duration.ZERO, List.of());
         }
 
-        public boolean isAllowed(String path) {
-            for (String dis : disallowPaths) {
-                if (!dis.isEmpty() && path.startsWith(dis)) {
-                    return false;
-                }
-            }
-            return true;
+        /**
+         * @param pathAndQuery the URL's raw path plus {@code ?query} if it has one
+         */
+        public boolean isAllowed(String pathAndQuery) {
+            return matcher.isAllowed(pathAndQuery);
         }
     }
 }
-
@@ -0,0 +1,289 @@
+package dev.ragcrawler.crawler.robots;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Allow/Disallow rules of one robots.txt group compiled into a trie, evaluated in one pass per URL.
+ * <p>
+ * Semantics follow RFC 9309: {@code *} matches any run of characters, a trailing {@code $}
+ * anchors the pattern at the end of the URL, the longest matching pattern wins and an Allow beats
+ * a Disallow of the same length. An empty Disallow matches nothing. Patterns and paths are
+ * compared after {@linkplain #canonical percent-encoding normalization}, so {@code /%7Ejoe} matches
+ * {@code /~joe}.
+ * <p>
+ * Each {@code *} becomes a node that loops on every character, so the trie is an NFA whose active
+ * set holds one node per wildcard in play. Without wildcards that set is a single node and a lookup
+ * is a plain trie walk over the path.
+ */
+public final class RobotsMatcher {
+
+    private static final RobotsMatcher EMPTY = new Builder().build();
+
+    private static final int NONE = -1;
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    // Node arrays, indexed by node id; node 0 is the root.
+    private final char[][] edgeChars;
+    private final int[][] edgeTargets;
+    private final int[] starChild;
+    private final boolean[] isStar;
+    private final int[] prefixRule;
+    private final int[] anchoredRule;
+    private final int ruleCount;
+
+    private RobotsMatcher(Builder b) {
+        int n = b.nodes.size();
+        edgeChars = new char[n][];
+        edgeTargets = new int[n][];
+        starChild = new int[n];
+        isStar = new boolean[n];
+        prefixRule = new int[n];
+        anchoredRule = new int[n];
+        for (int i = 0; i < n; i++) {
+            Builder.Node node = b.nodes.get(i);
+            int[] order = node.chars.isEmpty() ? new int[0] : sortedOrder(node.chars);
+            edgeChars[i] = new char[order.length];
+            edgeTargets[i] = new int[order.length];
+            for (int j = 0; j < order.length; j++) {
+                edgeChars[i][j] = node.chars.get(order[j]);
+                edgeTargets[i][j] = node.targets.get(order[j]);
+            }
+            starChild[i] = node.star;
+            isStar[i] = node.isStar;
+            prefixRule[i] = node.prefixRule;
+            anchoredRule[i] = node.anchoredRule;
+        }
+        ruleCount = b.rules;
+    }
+
+    public static RobotsMatcher allowAll() {
+        return EMPTY;
+    }
+
+    public int ruleCount() {
+        return ruleCount;
+    }
+
+    /**
+     * @param pathAndQuery the URL's path plus {@code ?query} if it has one
+     */
+    public boolean isAllowed(String pathAndQuery) {
+        if (ruleCount == 0) return true;
+        pathAndQuery = canonical(pathAndQuery);
+        int[] active = new int[8];
+        int activeCount = closure(active, 0, 0);
+        int[] next = new int[8];
+        int best = NONE;
+        for (int a = 0; a < activeCount; a++) {
+            best = Math.max(best, prefixRule[active[a]]);
+        }
+        for (int i = 0, len = pathAndQuery.length(); i < len && activeCount > 0; i++) {
+            char c = pathAndQuery.charAt(i);
+            int nextCount = 0;
+            for (int a = 0; a < activeCount; a++) {
+                int node = active[a];
+                if (isStar[node]) {
+                    next = grow(next, nextCount);
+                    nextCount = addUnique(next, nextCount, node);
+                }
+                int target = edge(node, c);
+                if (target != NONE) {
+                    next = grow(next, nextCount + 2);
+                    nextCount = closure(next, nextCount, target);
+                }
+            }
+            int[] t = active;
+            active = next;
+            next = t;
+            activeCount = nextCount;
+            for (int a = 0; a < activeCount; a++) {
+                best = Math.max(best, prefixRule[active[a]]);
+            }
+        }
+        for (int a = 0; a < activeCount; a++) {
+            best = Math.max(best, anchoredRule[active[a]]);
+        }
+        return best == NONE || (best & 1) == 1;
+    }
+
+    /**
+     * Percent-encodes non-ASCII characters as UTF-8, decodes escapes of unreserved characters and
+     * upper-cases the remaining escapes, as RFC 9309 section 2.2.2 asks before comparing. Escapes of
+     * reserved characters such as {@code %2F} stay escaped: they differ from the character itself.
+     */
+    static String canonical(String s) {
+        int i = 0;
+        while (i < s.length() && s.charAt(i) != '%' && s.charAt(i) < 0x80) i++;
+        if (i == s.length()) return s;
+        StringBuilder sb = new StringBuilder(s.length() + 16).append(s, 0, i);
+        while (i < s.length()) {
+            char c = s.charAt(i);
+            if (c == '%' && i + 2 < s.length() && hex(s.charAt(i + 1)) >= 0 && hex(s.charAt(i + 2)) >= 0) {
+                int b = hex(s.charAt(i + 1)) << 4 | hex(s.charAt(i + 2));
+                if (isUnreserved(b)) {
+                    sb.append((char) b);
+                } else {
+                    appendEscape(sb, b);
+                }
+                i += 3;
+            } else if (c >= 0x80) {
+                int cp = s.codePointAt(i);
+                for (byte b : new String(Character.toChars(cp)).getBytes(StandardCharsets.UTF_8)) {
+                    appendEscape(sb, b & 0xff);
+                }
+                i += Character.charCount(cp);
+            } else {
+                sb.append(c);
+                i++;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static int hex(char c) {
+        if (c >= '0' && c <= '9') return c - '0';
+        if (c >= 'A' && c <= 'F') return c - 'A' + 10;
+        if (c >= 'a' && c <= 'f') return c - 'a' + 10;
+        return -1;
+    }
+
+    private static boolean isUnreserved(int b) {
+        return b >= 'a' && b <= 'z' || b >= 'A' && b <= 'Z' || b >= '0' && b <= '9'
+                || b == '-' || b == '.' || b == '_' || b == '~';
+    }
+
+    private static void appendEscape(StringBuilder sb, int b) {
+        sb.append('%').append(HEX[b >> 4]).append(HEX[b & 0xf]);
+    }
+
+    /**
+     * Adds {@code node} and, if it has one, its wildcard child (a {@code *} also matches nothing).
+     */
+    private int closure(int[] set, int count, int node) {
+        count = addUnique(set, count, node);
+        int star = starChild[node];
+        if (star != NONE) {
+            count = addUnique(set, count, star);
+        }
+        return count;
+    }
+
+    private int edge(int node, char c) {
+        char[] chars = edgeChars[node];
+        int i = chars.length <= 8 ? linearSearch(chars, c) : Arrays.binarySearch(chars, c);
+        return i < 0 ? NONE : edgeTargets[node][i];
+    }
+
+    private static int linearSearch(char[] chars, char c) {
+        for (int i = 0; i < chars.length; i++) {
+            if (chars[i] == c) return i;
+        }
+        return -1;
+    }
+
+    private static int addUnique(int[] set, int count, int node) {
+        for (int i = 0; i < count; i++) {
+            if (set[i] == node) return count;
+        }
+        set[count] = node;
+        return count + 1;
+    }
+
+    private static int[] grow(int[] set, int needed) {
+        return needed + 2 <= set.length ? set : Arrays.copyOf(set, Math.max(set.length * 2, needed + 2));
+    }
+
+    private static int[] sortedOrder(List<Character> chars) {
+        Integer[] idx = new Integer[chars.size()];
+        for (int i = 0; i < idx.length; i++) idx[i] = i;
+        Arrays.sort(idx, (x, y) -> Character.compare(chars.get(x), chars.get(y)));
+        int[] out = new int[idx.length];
+        for (int i = 0; i < idx.length; i++) out[i] = idx[i];
+        return out;
+    }
+
+    public static final class Builder {
+
+        private static final class Node {
+            final List<Character> chars = new ArrayList<>(2);
+            final List<Integer> targets = new ArrayList<>(2);
+            int star = NONE;
+            boolean isStar;
+            int prefixRule = NONE;
+            int anchoredRule = NONE;
+        }
+
+        private final List<Node> nodes = new ArrayList<>();
+        private int rules;
+
+        public Builder() {
+            nodes.add(new Node());
+        }
+
+        public Builder allow(String pattern) {
+            return add(pattern, true);
+        }
+
+        public Builder disallow(String pattern) {
+            return add(pattern, false);
+        }
+
+        private Builder add(String pattern, boolean allow) {
+            if (pattern.isEmpty()) {
+                // "Disallow:" with no value disallows nothing; "Allow:" likewise adds nothing.
+                return this;
+            }
+            pattern = canonical(pattern);
+            boolean anchored = pattern.endsWith("$");
+            String body = anchored ? pattern.substring(0, pattern.length() - 1) : pattern;
+            int node = 0;
+            for (int i = 0; i < body.length(); i++) {
+                char c = body.charAt(i);
+                if (c == '*') {
+                    if (nodes.get(node).isStar) continue; // "**" is the same as "*"
+                    node = starOf(node);
+                } else {
+                    node = childOf(node, c);
+                }
+            }
+            // Priority: longer patterns first, Allow over Disallow on ties (low bit).
+            int priority = pattern.length() * 2 + (allow ? 1 : 0);
+            Node n = nodes.get(node);
+            if (anchored) {
+                n.anchoredRule = Math.max(n.anchoredRule, priority);
+            } else {
+                n.prefixRule = Math.max(n.prefixRule, priority);
+            }
+            rules++;
+            return this;
+        }
+
+        private int childOf(int parent, char c) {
+            Node p = nodes.get(parent);
+            int i = p.chars.indexOf(c);
+            if (i >= 0) return p.targets.get(i);
+            nodes.add(new Node());
+            int id = nodes.size() - 1;
+            p.chars.add(c);
+            p.targets.add(id);
+            return id;
+        }
+
+        private int starOf(int parent) {
+            Node p = nodes.get(parent);
+            if (p.star != NONE) return p.star;
+            Node s = new Node();
+            s.isStar = true;
+            nodes.add(s);
+            p.star = nodes.size() - 1;
+            return p.star;
+        }
+
+        public RobotsMatcher build() {
+            return new RobotsMatcher(this);
+        }
+    }
+}
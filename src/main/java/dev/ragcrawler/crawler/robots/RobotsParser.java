@@ -7,44 +7,99 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 
+/**
+ * Parses robots.txt into the rules of the group that applies to our user agent.
+ * <p>
+ * Consecutive {@code User-agent} lines open one group. Groups naming our agent are merged and
+ * take precedence; only if there are none do the {@code *} groups apply. {@code Sitemap} lines
+ * belong to no group and are collected wherever they appear.
+ */
 final class RobotsParser {
 
     private RobotsParser() {}
 
+    private static final class Group {
+        final RobotsMatcher.Builder rules = new RobotsMatcher.Builder();
+        Duration crawlDelay = Duration.ZERO;
+        boolean seen;
+    }
+
     static RobotsRules parse(String body, String userAgent) {
         String[] lines = body.split("\\R");
         String agentLower = userAgent.toLowerCase(Locale.ROOT);
-        List<String> disallows = new ArrayList<>();
-        Duration crawlDelay = Duration.ZERO;
+        Group specific = new Group();
+        Group wildcard = new Group();
+        List<String> sitemaps = new ArrayList<>();
 
-        boolean inRelevantSection = false;
+        boolean matchesSpecific = false;
+        boolean matchesWildcard = false;
+        boolean inAgentLines = false;
         for (String rawLine : lines) {
-            String line = rawLine.trim();
-            if (line.isEmpty() || line.startsWith("#")) {
+            int comment = rawLine.indexOf('#');
+            String line = (comment >= 0 ? rawLine.substring(0, comment) : rawLine).trim();
+            int colon = line.indexOf(':');
+            if (colon < 0) {
                 continue;
             }
-            String lower = line.toLowerCase(Locale.ROOT);
-            if (lower.startsWith("user-agent:")) {
-                String value = line.substring("user-agent:".length()).trim();
+            String key = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+
+            if (key.equals("user-agent")) {
+                if (!inAgentLines) {
+                    matchesSpecific = false;
+                    matchesWildcard = false;
+                    inAgentLines = true;
+                }
                 String vLower = value.toLowerCase(Locale.ROOT);
-                inRelevantSection = vLower.equals("*") || agentLower.contains(vLower);
+                if (vLower.equals("*")) {
+                    matchesWildcard = true;
+                    wildcard.seen = true;
+                } else if (!vLower.isEmpty() && agentLower.contains(vLower)) {
+                    matchesSpecific = true;
+                    specific.seen = true;
+                }
+                continue;
+            }
+            if (key.equals("sitemap")) {
+                if (!value.isEmpty()) sitemaps.add(value);
                 continue;
             }
-            if (!inRelevantSection) continue;
-
-            if (lower.startsWith("disallow:")) {
-                String path = line.substring("disallow:".length()).trim();
-                disallows.add(path);
-            } else if (lower.startsWith("crawl-delay:")) {
-                String v = line.substring("crawl-delay:".length()).trim();
-                try {
-                    long seconds = Long.parseLong(v);
-                    crawlDelay = Duration.ofSeconds(seconds);
-                } catch (NumberFormatException ignored) {
+            inAgentLines = false;
+            if (!matchesSpecific && !matchesWildcard) continue;
+
+            switch (key) {
+                case "allow" -> {
+                    if (matchesSpecific) specific.rules.allow(value);
+                    if (matchesWildcard) wildcard.rules.allow(value);
+                }
+                case "disallow" -> {
+                    if (matchesSpecific) specific.rules.disallow(value);
+                    if (matchesWildcard) wildcard.rules.disallow(value);
+                }
+                case "crawl-delay" -> {
+                    Duration delay = parseCrawlDelay(value);
+                    if (delay != null) {
+                        if (matchesSpecific) specific.crawlDelay = delay;
+                        if (matchesWildcard) wildcard.crawlDelay = delay;
+                    }
+                }
+                default -> {
                 }
             }
         }
-        return new RobotsRules(disallows, crawlDelay);
+        Group group = specific.seen ? specific : wildcard;
+        return new RobotsRules(group.rules.build(), group.crawlDelay, List.copyOf(sitemaps));
     }
-}
 
+    private static Duration parseCrawlDelay(String v) {
+        try {
+            // Fractional values such as "0.5" are common.
+            double seconds = Double.parseDouble(v);
+            if (seconds >= 0 && seconds < 86_400) {
+                return Duration.ofMillis(Math.round(seconds * 1000));
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        return null;
+    }
+}
@@ -1,6 +1,8 @@
 package dev.ragcrawler.crawler.robots;
 
 import java.net.URI;
+import java.time.Duration;
+import java.util.List;
 
 public final class RobotsPolicy {
 
@@ -12,8 +14,19 @@ public final class RobotsPolicy {
 
     public boolean isAllowed(URI uri) {
         RobotsCache.RobotsRules rules = cache.rulesFor(uri);
-        String path = uri.getPath() == null ? "/" : uri.getPath();
-        return rules.isAllowed(path);
+        String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+        String query = uri.getRawQuery();
+        return rules.isAllowed(query == null ? path : path + "?" + query);
+    }
+
+    public Duration crawlDelay(URI uri) {
+        return cache.rulesFor(uri).crawlDelay();
     }
-}
 
+    /**
+     * @return sitemap URLs listed in the robots.txt of the URI's origin
+     */
+    public List<String> sitemaps(URI uri) {
+        return cache.rulesFor(uri).sitemaps();
+    }
+}
@@ -0,0 +1,154 @@
+package dev.ragcrawler.crawler.state;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrent set of non-zero longs in lock-striped, open-addressing tables of primitive longs
+ * (linear probing, 0 marks an empty slot), either on the heap or in direct (off-heap) buffers.
+ * Costs 8 bytes per slot, about 11-16 bytes per element depending on load.
+ */
+final class ConcurrentLongSet {
+
+    private static final int STRIPES = 64;
+    private static final int INITIAL_STRIPE_CAPACITY = 1024;
+    private static final double MAX_LOAD = 0.6;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    ConcurrentLongSet(boolean offHeap) {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(offHeap);
+        }
+    }
+
+    /**
+     * @return true if the value was not present before
+     */
+    boolean add(long value) {
+        return stripeFor(value).add(value);
+    }
+
+    boolean contains(long value) {
+        return stripeFor(value).contains(value);
+    }
+
+    long size() {
+        long n = 0;
+        for (Stripe s : stripes) {
+            n += s.size();
+        }
+        return n;
+    }
+
+    long memoryBytes() {
+        long bytes = 0;
+        for (Stripe s : stripes) {
+            bytes += s.capacity() * (long) Long.BYTES;
+        }
+        return bytes;
+    }
+
+    private Stripe stripeFor(long value) {
+        // High bits pick the stripe, low bits the slot, so the two are independent.
+        return stripes[(int) (value >>> 58) & (STRIPES - 1)];
+    }
+
+    private static final class Stripe {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final boolean offHeap;
+        private LongBuffer table;
+        private int mask;
+        private int size;
+
+        Stripe(boolean offHeap) {
+            this.offHeap = offHeap;
+            this.table = allocate(INITIAL_STRIPE_CAPACITY);
+            this.mask = INITIAL_STRIPE_CAPACITY - 1;
+        }
+
+        boolean add(long value) {
+            lock.lock();
+            try {
+                if (size + 1 > (mask + 1) * MAX_LOAD) {
+                    grow();
+                }
+                int i = (int) value & mask;
+                while (true) {
+                    long cur = table.get(i);
+                    if (cur == 0) {
+                        table.put(i, value);
+                        size++;
+                        return true;
+                    }
+                    if (cur == value) {
+                        return false;
+                    }
+                    i = (i + 1) & mask;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        boolean contains(long value) {
+            lock.lock();
+            try {
+                int i = (int) value & mask;
+                while (true) {
+                    long cur = table.get(i);
+                    if (cur == 0) return false;
+                    if (cur == value) return true;
+                    i = (i + 1) & mask;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int size() {
+            lock.lock();
+            try {
+                return size;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int capacity() {
+            lock.lock();
+            try {
+                return mask + 1;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void grow() {
+            int newCap = (mask + 1) * 2;
+            int newMask = newCap - 1;
+            LongBuffer next = allocate(newCap);
+            for (int j = 0; j <= mask; j++) {
+                long value = table.get(j);
+                if (value == 0) continue;
+                int i = (int) value & newMask;
+                while (next.get(i) != 0) {
+                    i = (i + 1) & newMask;
+                }
+                next.put(i, value);
+            }
+            table = next;
+            mask = newMask;
+        }
+
+        private LongBuffer allocate(int slots) {
+            if (!offHeap) {
+                return LongBuffer.allocate(slots);
+            }
+            return ByteBuffer.allocateDirect(slots * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+        }
+    }
+}
@@ -2,13 +2,90 @@ package dev.ragcrawler.crawler.state;
 
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Drops repeated content. Always dedups chunks by {@code chunkHash}; optionally also drops
+ * byte-identical page bodies (before parsing) and near-duplicate chunks (by SimHash), which
+ * catch the same text served at several URLs.
+ */
 public final class ContentDeduplicator {
 
+    /** Chunks with fewer words than this are too short for a meaningful SimHash and are never near-deduped. */
+    private static final int NEAR_DUPLICATE_MIN_TOKENS = 8;
+
     private final Set<String> hashes = ConcurrentHashMap.newKeySet();
+    private final ConcurrentLongSet pageFingerprints;
+    private final NearDuplicateIndex nearDuplicates;
+    private final AtomicLong duplicateChunks = new AtomicLong();
+    private final AtomicLong duplicatePages = new AtomicLong();
+    private final AtomicLong nearDuplicateChunks = new AtomicLong();
+
+    public ContentDeduplicator() {
+        this(false, false);
+    }
+
+    public ContentDeduplicator(boolean dedupPages, boolean dedupNearChunks) {
+        this.pageFingerprints = dedupPages ? new ConcurrentLongSet(false) : null;
+        this.nearDuplicates = dedupNearChunks ? new NearDuplicateIndex() : null;
+    }
 
     public boolean isDuplicate(String hash) {
-        return !hashes.add(hash);
+        if (hashes.add(hash)) {
+            return false;
+        }
+        duplicateChunks.incrementAndGet();
+        return true;
+    }
+
+    public boolean dedupsPages() {
+        return pageFingerprints != null;
+    }
+
+    public boolean dedupsNearChunks() {
+        return nearDuplicates != null;
+    }
+
+    /**
+     * @param fingerprint {@link Fingerprints#fingerprint64(byte[])} of the raw page body
+     * @return true if a page with the same body was seen before
+     */
+    public boolean isDuplicatePage(long fingerprint) {
+        if (pageFingerprints == null || pageFingerprints.add(fingerprint)) {
+            return false;
+        }
+        duplicatePages.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * @return the chunk's SimHash, or 0 if it is too short to be near-deduped
+     */
+    public static long nearDuplicateHash(String content) {
+        return SimHash.of(content, NEAR_DUPLICATE_MIN_TOKENS);
     }
-}
 
+    /**
+     * @param simHash {@link #nearDuplicateHash} of the chunk content
+     * @return true if a chunk within {@link NearDuplicateIndex#MAX_DISTANCE} bits was seen before
+     */
+    public boolean isNearDuplicate(long simHash) {
+        if (nearDuplicates == null || simHash == 0 || !nearDuplicates.addIfAbsent(simHash)) {
+            return false;
+        }
+        nearDuplicateChunks.incrementAndGet();
+        return true;
+    }
+
+    public long duplicateChunks() {
+        return duplicateChunks.get();
+    }
+
+    public long duplicatePages() {
+        return duplicatePages.get();
+    }
+
+    public long nearDuplicateChunks() {
+        return nearDuplicateChunks.get();
+    }
+}
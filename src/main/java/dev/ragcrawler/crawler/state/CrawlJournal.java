@@ -0,0 +1,374 @@
+package dev.ragcrawler.crawler.state;
+
+import dev.ragcrawler.crawler.output.JsonlChunkWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Append-only journal of frontier, visited and dedup state, so a killed crawl can be resumed.
+ * <p>
+ * One tab-separated record per line in {@code <dir>/journal.log}:
+ * <ul>
+ *     <li>{@code F depth url}: URL offered to the frontier</li>
+ *     <li>{@code V url}: URL dispatched to a crawl task</li>
+ *     <li>{@code C url}: crawl task for the URL finished</li>
+ *     <li>{@code D hash}: chunk hash recorded by the deduplicator</li>
+ *     <li>{@code P hex}: page body fingerprint recorded by the deduplicator</li>
+ *     <li>{@code N hex}: chunk SimHash recorded by the near-duplicate index</li>
+ *     <li>{@code S url}: sitemap whose URLs have all been offered; {@code S *}: sitemap ingestion finished</li>
+ * </ul>
+ * A page's {@code D}, {@code P} and {@code N} records are held back and appended together with its
+ * {@code C} record, and replay only trusts hashes followed by a {@code C}. The buffer is flushed
+ * whenever a page completes, so a crash loses at most the records of pages still in flight; those
+ * pages left no hashes behind and are crawled again on resume (at-least-once). On close the
+ * journal is compacted to just the dedup hashes, completed URLs, pending frontier entries and
+ * sitemap progress.
+ */
+public final class CrawlJournal implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(CrawlJournal.class);
+
+    private static final String FILE_NAME = "journal.log";
+    private static final String ALL_SITEMAPS = "*";
+
+    private final Path file;
+    private final BufferedWriter out;
+    private final Lock lock = new ReentrantLock();
+    private long records;
+    private long bytes;
+    private long writeNanos;
+    private Set<String> sitemapsIngested = Set.of();
+    private boolean sitemapIngestionFinished;
+
+    private CrawlJournal(Path dir, boolean resume) throws IOException {
+        if (dir == null) {
+            this.file = null;
+            this.out = null;
+            return;
+        }
+        Files.createDirectories(dir);
+        this.file = dir.resolve(FILE_NAME);
+        if (resume) {
+            // Appending to a partial last record would glue the next record onto it.
+            JsonlChunkWriter.truncatePartialLine(file);
+        } else {
+            Files.deleteIfExists(file);
+        }
+        this.out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Opens the journal in {@code dir}. With {@code resume} the existing journal is kept
+     * so that {@link #restore} can replay it; otherwise it is discarded.
+     */
+    public static CrawlJournal open(Path dir, boolean resume) throws IOException {
+        return new CrawlJournal(dir, resume);
+    }
+
+    /**
+     * A journal that records nothing, used when checkpointing is off.
+     */
+    public static CrawlJournal disabled() {
+        try {
+            return new CrawlJournal(null, false);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public boolean isEnabled() {
+        return file != null;
+    }
+
+    public void offered(UrlFrontier.Task task) {
+        append("F\t" + task.depth() + "\t" + task.normalizedUrl(), false);
+    }
+
+    public void visited(String normalizedUrl) {
+        append("V\t" + normalizedUrl, false);
+    }
+
+    /**
+     * Records that every URL of the sitemap has been offered, so a resumed crawl need not read it again.
+     */
+    public void sitemapIngested(String sitemapUrl) {
+        append("S\t" + sitemapUrl, false);
+    }
+
+    public void sitemapIngestionFinished() {
+        append("S\t" + ALL_SITEMAPS, true);
+    }
+
+    /**
+     * @return after {@link #restore}, the sitemaps whose URLs the earlier run offered in full
+     */
+    public Set<String> sitemapsIngested() {
+        return sitemapsIngested;
+    }
+
+    /**
+     * @return after {@link #restore}, whether the earlier run finished sitemap ingestion
+     */
+    public boolean isSitemapIngestionFinished() {
+        return sitemapIngestionFinished;
+    }
+
+    /**
+     * Starts collecting the dedup records of one crawl task; see {@link #completed(Page)}.
+     */
+    public Page page(String normalizedUrl) {
+        return new Page(normalizedUrl);
+    }
+
+    /**
+     * Appends the task's held-back dedup records and its {@code C} record in one write, and flushes.
+     */
+    public void completed(Page page) {
+        page.records.append("C\t").append(page.normalizedUrl).append('\n');
+        append(page.records, page.count + 1, true);
+    }
+
+    /**
+     * Replays the journal into the given stores. Completed URLs are marked visited; URLs that were
+     * offered or in flight but never completed go back into the frontier in their original order.
+     *
+     * @return true if any state was restored
+     */
+    public boolean restore(VisitedUrlStore visited, UrlFrontier frontier, ContentDeduplicator deduplicator)
+            throws IOException {
+        if (file == null || Files.notExists(file) || Files.size(file) == 0) {
+            return false;
+        }
+        long start = System.nanoTime();
+        State state = replay(file);
+        for (String url : state.completed) {
+            visited.markVisited(url);
+        }
+        int pending = 0;
+        for (Map.Entry<String, Integer> e : state.offered.entrySet()) {
+            if (state.completed.contains(e.getKey())) continue;
+            frontier.offer(new UrlFrontier.Task(e.getKey(), e.getValue()));
+            pending++;
+        }
+        for (String hash : state.hashes) {
+            deduplicator.isDuplicate(hash);
+        }
+        for (long fp : state.pages) {
+            deduplicator.isDuplicatePage(fp);
+        }
+        for (long simHash : state.nearHashes) {
+            deduplicator.isNearDuplicate(simHash);
+        }
+        state.dispatched.removeAll(state.completed);
+        sitemapIngestionFinished = state.sitemaps.remove(ALL_SITEMAPS);
+        sitemapsIngested = Set.copyOf(state.sitemaps);
+        log.info("Resumed from {}: completed={} pending={} (of which interrupted in flight={}) hashes={} lines={} in {}ms",
+                file, state.completed.size(), pending, state.dispatched.size(), state.hashes.size(), state.lines,
+                (System.nanoTime() - start) / 1_000_000);
+        return true;
+    }
+
+    private void append(String record, boolean flush) {
+        append(record + "\n", 1, flush);
+    }
+
+    /**
+     * @param lines one or more newline-terminated records
+     */
+    private void append(CharSequence lines, int count, boolean flush) {
+        if (file == null) return;
+        lock.lock();
+        try {
+            long start = System.nanoTime();
+            out.append(lines);
+            if (flush) {
+                out.flush();
+            }
+            writeNanos += System.nanoTime() - start;
+            records += count;
+            bytes += lines.length();
+        } catch (IOException e) {
+            log.warn("Failed to append to crawl journal {}: {}", file, e.toString());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Flushes pending records and compacts the journal into a checkpoint of the current state.
+     */
+    @Override
+    public void close() throws IOException {
+        if (file == null) return;
+        lock.lock();
+        try {
+            out.close();
+            long start = System.nanoTime();
+            State state = replay(file);
+            Path tmp = file.resolveSibling(FILE_NAME + ".tmp");
+            try (BufferedWriter w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                // Hashes first: replay keeps them only once a C record follows.
+                for (String hash : state.hashes) {
+                    w.write("D\t" + hash + "\n");
+                }
+                for (long fp : state.pages) {
+                    w.write("P\t" + Long.toHexString(fp) + "\n");
+                }
+                for (long simHash : state.nearHashes) {
+                    w.write("N\t" + Long.toHexString(simHash) + "\n");
+                }
+                for (String url : state.completed) {
+                    w.write("C\t" + url + "\n");
+                }
+                for (Map.Entry<String, Integer> e : state.offered.entrySet()) {
+                    if (state.completed.contains(e.getKey())) continue;
+                    w.write("F\t" + e.getValue() + "\t" + e.getKey() + "\n");
+                }
+                for (String sitemap : state.sitemaps) {
+                    w.write("S\t" + sitemap + "\n");
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Crawl journal: records={} bytes={} writeTime={}ms; checkpoint of {} completed URLs written in {}ms",
+                    records, bytes, writeNanos / 1_000_000, state.completed.size(),
+                    (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The dedup records of one crawl task, held back until {@link #completed(Page)} so that a page
+     * interrupted in flight leaves no hashes behind: otherwise its chunks would be taken for
+     * duplicates, and dropped, when it is crawled again on resume. Used by one thread at a time.
+     */
+    public final class Page {
+        private final String normalizedUrl;
+        private final StringBuilder records = new StringBuilder();
+        private int count;
+
+        private Page(String normalizedUrl) {
+            this.normalizedUrl = normalizedUrl;
+        }
+
+        public void chunkHash(String hash) {
+            add("D\t" + hash);
+        }
+
+        public void pageFingerprint(long fingerprint) {
+            add("P\t" + Long.toHexString(fingerprint));
+        }
+
+        public void nearDuplicateHash(long simHash) {
+            add("N\t" + Long.toHexString(simHash));
+        }
+
+        private void add(String record) {
+            if (file == null) return;
+            records.append(record).append('\n');
+            count++;
+        }
+    }
+
+    private static final class State {
+        final Map<String, Integer> offered = new LinkedHashMap<>();
+        final Set<String> dispatched = new HashSet<>();
+        final Set<String> completed = new HashSet<>();
+        final Set<String> hashes = new HashSet<>();
+        final Set<Long> pages = new LinkedHashSet<>();
+        final Set<Long> nearHashes = new LinkedHashSet<>();
+        final Set<String> sitemaps = new LinkedHashSet<>();
+        /** Hashes read since the last {@code C} record; dropped if none follows. */
+        final Set<String> pendingHashes = new LinkedHashSet<>();
+        final Set<Long> pendingPages = new LinkedHashSet<>();
+        final Set<Long> pendingNearHashes = new LinkedHashSet<>();
+        long lines;
+    }
+
+    private static State replay(Path file) throws IOException {
+        State state = new State();
+        // A crash can leave a partial last record; it is only trusted if terminated by a newline.
+        boolean partialTail = !endsWithNewline(file);
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            while (line != null) {
+                String next = reader.readLine();
+                if (next != null || !partialTail) {
+                    state.lines++;
+                    apply(state, line);
+                }
+                line = next;
+            }
+        }
+        return state;
+    }
+
+    private static void apply(State state, String line) {
+        if (line.length() < 3 || line.charAt(1) != '\t') return;
+        String rest = line.substring(2);
+        switch (line.charAt(0)) {
+            case 'F' -> {
+                int tab = rest.indexOf('\t');
+                if (tab < 0) return;
+                try {
+                    int depth = Integer.parseInt(rest.substring(0, tab));
+                    state.offered.merge(rest.substring(tab + 1), depth, Math::min);
+                } catch (NumberFormatException ignored) {
+                }
+            }
+            case 'V' -> state.dispatched.add(rest);
+            case 'C' -> {
+                state.completed.add(rest);
+                state.hashes.addAll(state.pendingHashes);
+                state.pages.addAll(state.pendingPages);
+                state.nearHashes.addAll(state.pendingNearHashes);
+                state.pendingHashes.clear();
+                state.pendingPages.clear();
+                state.pendingNearHashes.clear();
+            }
+            case 'D' -> state.pendingHashes.add(rest);
+            case 'P' -> addHex(state.pendingPages, rest);
+            case 'N' -> addHex(state.pendingNearHashes, rest);
+            case 'S' -> state.sitemaps.add(rest);
+            default -> {
+            }
+        }
+    }
+
+    private static void addHex(Set<Long> target, String hex) {
+        try {
+            target.add(Long.parseUnsignedLong(hex, 16));
+        } catch (NumberFormatException ignored) {
+        }
+    }
+
+    private static boolean endsWithNewline(Path file) throws IOException {
+        try (SeekableByteChannel ch = Files.newByteChannel(file)) {
+            long size = ch.size();
+            if (size == 0) return true;
+            ByteBuffer last = ByteBuffer.allocate(1);
+            ch.position(size - 1).read(last);
+            return last.get(0) == '\n';
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package dev.ragcrawler.crawler.state;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Visited set that stores a 64-bit fingerprint per URL instead of the URL itself.
+ * <p>
+ * Fingerprints live in a {@link ConcurrentLongSet}: lock-striped, open-addressing tables of
+ * primitive longs, about 11-16 bytes per URL depending on load, either on the heap or in
+ * direct (off-heap) buffers. Two distinct URLs share a fingerprint with probability ~n²/2⁶⁵,
+ * about 3·10⁻⁶ at ten million URLs; the loser of such a collision is treated as already visited.
+ * <p>
+ * An optional Bloom filter in front of the tables answers {@link #isVisited} for unseen URLs
+ * without taking a stripe lock.
+ */
+public final class FingerprintVisitedUrlStore implements VisitedUrlStore {
+
+    private final ConcurrentLongSet fingerprints;
+    private final BloomFilter bloom;
+
+    /**
+     * @param offHeap     keep the tables in direct buffers outside the Java heap
+     * @param bloomFront  put a Bloom filter in front of the tables
+     * @param expectedUrls sizing hint for the Bloom filter (1% false positives at this many URLs)
+     */
+    public FingerprintVisitedUrlStore(boolean offHeap, boolean bloomFront, long expectedUrls) {
+        this.fingerprints = new ConcurrentLongSet(offHeap);
+        this.bloom = bloomFront ? new BloomFilter(expectedUrls) : null;
+    }
+
+    @Override
+    public boolean markVisited(String normalizedUrl) {
+        long fp = Fingerprints.fingerprint64(normalizedUrl);
+        boolean added = fingerprints.add(fp);
+        if (added && bloom != null) {
+            bloom.add(fp);
+        }
+        return added;
+    }
+
+    @Override
+    public boolean isVisited(String normalizedUrl) {
+        long fp = Fingerprints.fingerprint64(normalizedUrl);
+        if (bloom != null && !bloom.mightContain(fp)) {
+            return false;
+        }
+        return fingerprints.contains(fp);
+    }
+
+    public long size() {
+        return fingerprints.size();
+    }
+
+    /**
+     * Bytes held by the tables and Bloom filter (excluding small fixed object overhead).
+     */
+    public long memoryBytes() {
+        return fingerprints.memoryBytes() + (bloom == null ? 0 : bloom.memoryBytes());
+    }
+
+    /**
+     * Lock-free Bloom filter over fingerprints, using double hashing on the two 32-bit halves.
+     */
+    private static final class BloomFilter {
+
+        private final AtomicLongArray bits;
+        private final long numBits;
+        private final int hashes;
+
+        BloomFilter(long expected) {
+            long n = Math.max(expected, 1024);
+            // m = -n ln p / (ln 2)^2 with p = 0.01, k = m/n ln 2
+            long m = (long) Math.ceil(-n * Math.log(0.01) / (Math.log(2) * Math.log(2)));
+            int words = (int) Math.min((m + 63) / 64, Integer.MAX_VALUE - 8);
+            this.bits = new AtomicLongArray(words);
+            this.numBits = (long) words * 64;
+            this.hashes = Math.max(1, (int) Math.round((double) m / n * Math.log(2)));
+        }
+
+        void add(long fp) {
+            int h1 = (int) fp;
+            int h2 = (int) (fp >>> 32);
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(h1 + (long) i * h2, numBits);
+                long mask = 1L << bit;
+                int word = (int) (bit >>> 6);
+                if ((bits.get(word) & mask) == 0) {
+                    bits.accumulateAndGet(word, mask, (a, b) -> a | b);
+                }
+            }
+        }
+
+        boolean mightContain(long fp) {
+            int h1 = (int) fp;
+            int h2 = (int) (fp >>> 32);
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(h1 + (long) i * h2, numBits);
+                if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        long memoryBytes() {
+            return (long) bits.length() * Long.BYTES;
+        }
+    }
+}
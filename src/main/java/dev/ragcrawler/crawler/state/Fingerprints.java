@@ -0,0 +1,72 @@
+package dev.ragcrawler.crawler.state;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Fast non-cryptographic 64-bit fingerprints for compact in-memory sets.
+ */
+public final class Fingerprints {
+
+    private static final VarHandle LONGS =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private Fingerprints() {}
+
+    /**
+     * FNV-1a over the UTF-16 code units in two interleaved lanes (halving the multiply dependency
+     * chain), finished with the MurmurHash3 fmix64 avalanche step so every output bit depends on
+     * every input char. Never returns 0, which callers use as the empty-slot marker.
+     */
+    public static long fingerprint64(CharSequence s) {
+        long h0 = 0xcbf29ce484222325L;
+        long h1 = 0x84222325cbf29ce4L;
+        int n = s.length();
+        int i = 0;
+        for (; i + 1 < n; i += 2) {
+            h0 = (h0 ^ s.charAt(i)) * 0x100000001b3L;
+            h1 = (h1 ^ s.charAt(i + 1)) * 0x100000001b3L;
+        }
+        if (i < n) {
+            h0 = (h0 ^ s.charAt(i)) * 0x100000001b3L;
+        }
+        long h = fmix64(h0 ^ Long.rotateLeft(h1, 29) ^ n);
+        return h == 0 ? 1 : h;
+    }
+
+    /**
+     * 64-bit hash of a byte array, eight bytes per step (MurmurHash3 x64 block mixing, one lane).
+     * Never returns 0.
+     */
+    public static long fingerprint64(byte[] data) {
+        long h = 0x9E3779B97F4A7C15L ^ data.length;
+        int i = 0;
+        for (; i + Long.BYTES <= data.length; i += Long.BYTES) {
+            h = mixBlock(h, (long) LONGS.get(data, i));
+        }
+        long tail = 0;
+        for (int shift = 0; i < data.length; i++, shift += 8) {
+            tail |= (data[i] & 0xFFL) << shift;
+        }
+        h = fmix64(mixBlock(h, tail));
+        return h == 0 ? 1 : h;
+    }
+
+    private static long mixBlock(long h, long k) {
+        k *= 0x87c37b91114253d5L;
+        k = Long.rotateLeft(k, 31);
+        k *= 0x4cf5ad432745937fL;
+        h ^= k;
+        return Long.rotateLeft(h, 27) * 5 + 0x52dce729;
+    }
+
+    public static long fmix64(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,67 @@
+package dev.ragcrawler.crawler.state;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Index of 64-bit SimHashes that finds any stored hash within Hamming distance
+ * {@value #MAX_DISTANCE} of a query, using LSH banding.
+ * <p>
+ * The hash is split into four 16-bit bands. Two hashes that differ in at most three bits agree
+ * exactly on at least one band (pigeonhole), so only the four buckets keyed by the query's bands
+ * have to be scanned. Buckets are primitive {@code long[]} arrays: 32 bytes per stored hash.
+ */
+final class NearDuplicateIndex {
+
+    static final int MAX_DISTANCE = 3;
+
+    private static final int BANDS = 4;
+    private static final int BAND_BITS = 16;
+    private static final int BUCKETS = 1 << BAND_BITS;
+
+    private final long[][][] buckets = new long[BANDS][BUCKETS][];
+    private final int[][] sizes = new int[BANDS][BUCKETS];
+    private final Lock lock = new ReentrantLock();
+
+    /**
+     * Adds the hash unless a near duplicate is already present.
+     *
+     * @return true if a stored hash is within {@link #MAX_DISTANCE} bits (the hash is not added)
+     */
+    boolean addIfAbsent(long hash) {
+        lock.lock();
+        try {
+            for (int band = 0; band < BANDS; band++) {
+                int key = bandKey(hash, band);
+                long[] bucket = buckets[band][key];
+                int size = sizes[band][key];
+                for (int i = 0; i < size; i++) {
+                    if (Long.bitCount(bucket[i] ^ hash) <= MAX_DISTANCE) {
+                        return true;
+                    }
+                }
+            }
+            for (int band = 0; band < BANDS; band++) {
+                int key = bandKey(hash, band);
+                long[] bucket = buckets[band][key];
+                int size = sizes[band][key];
+                if (bucket == null) {
+                    bucket = new long[4];
+                } else if (size == bucket.length) {
+                    bucket = Arrays.copyOf(bucket, size * 2);
+                }
+                bucket[size] = hash;
+                buckets[band][key] = bucket;
+                sizes[band][key] = size + 1;
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static int bandKey(long hash, int band) {
+        return (int) (hash >>> (band * BAND_BITS)) & (BUCKETS - 1);
+    }
+}
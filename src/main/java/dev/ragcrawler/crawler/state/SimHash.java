@@ -0,0 +1,59 @@
+package dev.ragcrawler.crawler.state;
+
+/**
+ * 64-bit SimHash over word 3-shingles. Texts that share most of their shingles get hashes
+ * that differ in only a few bits, so Hamming distance approximates textual similarity.
+ */
+public final class SimHash {
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private SimHash() {}
+
+    /**
+     * Tokenizes on letters and digits (case-folded) in a single pass without allocating tokens.
+     *
+     * @return the SimHash, or 0 if the text has fewer than {@code minTokens} words
+     */
+    public static long of(CharSequence text, int minTokens) {
+        int[] weights = new int[64];
+        long prev2 = 0;
+        long prev1 = 0;
+        long token = 0xcbf29ce484222325L;
+        boolean inToken = false;
+        int tokens = 0;
+        for (int i = 0, n = text.length(); i <= n; i++) {
+            char c = i < n ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                token = (token ^ Character.toLowerCase(c)) * FNV_PRIME;
+                inToken = true;
+                continue;
+            }
+            if (!inToken) continue;
+            tokens++;
+            if (tokens >= 3) {
+                addShingle(weights, Fingerprints.fmix64(prev2 * 31 * 31 + prev1 * 31 + token));
+            }
+            prev2 = prev1;
+            prev1 = token;
+            token = 0xcbf29ce484222325L;
+            inToken = false;
+        }
+        if (tokens < Math.max(minTokens, 3)) {
+            return 0;
+        }
+        long hash = 0;
+        for (int b = 0; b < 64; b++) {
+            if (weights[b] > 0) {
+                hash |= 1L << b;
+            }
+        }
+        return hash == 0 ? 1 : hash;
+    }
+
+    private static void addShingle(int[] weights, long h) {
+        for (int b = 0; b < 64; b++) {
+            weights[b] += (int) ((h >>> b) & 1L) * 2 - 1;
+        }
+    }
+}
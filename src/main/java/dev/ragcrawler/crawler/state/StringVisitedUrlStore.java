@@ -0,0 +1,23 @@
+package dev.ragcrawler.crawler.state;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Exact visited set holding every normalized URL string.
+ * Simple and collision-free, but costs roughly 150-250 bytes per URL.
+ */
+public final class StringVisitedUrlStore implements VisitedUrlStore {
+
+    private final Set<String> visited = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public boolean markVisited(String normalizedUrl) {
+        return visited.add(normalizedUrl);
+    }
+
+    @Override
+    public boolean isVisited(String normalizedUrl) {
+        return visited.contains(normalizedUrl);
+    }
+}
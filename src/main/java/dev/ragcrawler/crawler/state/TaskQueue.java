@@ -0,0 +1,310 @@
+package dev.ragcrawler.crawler.state;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Compact FIFO of frontier tasks for one host.
+ * <p>
+ * Tasks are encoded into byte blocks instead of being kept as objects. Each record is
+ * {@code varint depth, varint shared, varint suffixLength, suffix}: the URL's UTF-8 bytes
+ * front-coded against the previous URL in the block. The first record of a block is coded against
+ * the host origin, so the scheme and host are never stored per URL. Blocks are decoded strictly
+ * in order, so front coding costs nothing on the way out.
+ * <p>
+ * Sealed blocks between the head (being read) and the tail (being written) may be written to
+ * disk by a {@link Spill} when the frontier exceeds its memory budget, and are read back whole
+ * when they reach the head. Not thread-safe; {@link UrlFrontier} calls it under its lock.
+ */
+final class TaskQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(TaskQueue.class);
+
+    static final int BLOCK_BYTES = 32 * 1024;
+    private static final int INITIAL_BLOCK_BYTES = 256;
+
+    private static final class Block {
+        byte[] data;
+        int length;
+        int count;
+        Path segment;
+    }
+
+    private final byte[] origin;
+    private final Spill spill;
+    private final ArrayDeque<Block> blocks = new ArrayDeque<>();
+    private int size;
+
+    // Writer state: the previous URL appended to the tail block.
+    private byte[] lastWritten;
+    private int lastWrittenLength;
+
+    // Reader state: position in the head block and the previous URL decoded from it.
+    private int readPos;
+    private int readCount;
+    private byte[] lastRead = new byte[128];
+    private int lastReadLength;
+
+    TaskQueue(String origin, Spill spill) {
+        this.origin = origin.getBytes(StandardCharsets.UTF_8);
+        this.spill = spill;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void add(UrlFrontier.Task task) {
+        byte[] url = task.normalizedUrl().getBytes(StandardCharsets.UTF_8);
+        Block tail = blocks.peekLast();
+        if (tail == null || tail.segment != null || tail.length >= BLOCK_BYTES) {
+            if (tail != null && blocks.size() > 1) {
+                // The old tail is sealed; the head stays in memory because it is being read.
+                spill.maybeSpill(tail);
+            }
+            tail = new Block();
+            tail.data = new byte[INITIAL_BLOCK_BYTES];
+            spill.allocated(tail.data.length);
+            blocks.addLast(tail);
+            lastWritten = origin;
+            lastWrittenLength = origin.length;
+        }
+        int shared = sharedPrefix(lastWritten, lastWrittenLength, url);
+        int suffix = url.length - shared;
+        ensureCapacity(tail, 15 + suffix);
+        tail.length = writeVarint(tail.data, tail.length, task.depth());
+        tail.length = writeVarint(tail.data, tail.length, shared);
+        tail.length = writeVarint(tail.data, tail.length, suffix);
+        System.arraycopy(url, shared, tail.data, tail.length, suffix);
+        tail.length += suffix;
+        tail.count++;
+        lastWritten = url;
+        lastWrittenLength = url.length;
+        size++;
+    }
+
+    UrlFrontier.Task poll() {
+        if (size == 0) return null;
+        Block head = blocks.peekFirst();
+        if (readCount == head.count) {
+            // Head was fully read while it was still the tail; a newer block exists now.
+            dropHead(head);
+            head = blocks.peekFirst();
+        }
+        if (readCount == 0) {
+            if (head.segment != null && !spill.load(head)) {
+                // Segment lost: drop its URLs rather than wedge the queue.
+                size -= head.count;
+                blocks.pollFirst();
+                return poll();
+            }
+            System.arraycopy(origin, 0, ensureLastRead(origin.length), 0, origin.length);
+            lastReadLength = origin.length;
+        }
+        byte[] data = head.data;
+        int pos = readPos;
+        long v = readVarint(data, pos);
+        int depth = (int) v;
+        pos = (int) (v >>> 32);
+        v = readVarint(data, pos);
+        int shared = (int) v;
+        pos = (int) (v >>> 32);
+        v = readVarint(data, pos);
+        int suffix = (int) v;
+        pos = (int) (v >>> 32);
+        byte[] url = ensureLastRead(shared + suffix);
+        System.arraycopy(data, pos, url, shared, suffix);
+        lastReadLength = shared + suffix;
+        readPos = pos + suffix;
+        readCount++;
+        size--;
+        UrlFrontier.Task task = new UrlFrontier.Task(
+                new String(url, 0, lastReadLength, StandardCharsets.UTF_8), depth);
+        if (readCount == head.count && head != blocks.peekLast()) {
+            dropHead(head);
+        }
+        return task;
+    }
+
+    private void dropHead(Block head) {
+        blocks.pollFirst();
+        spill.released(head.data.length);
+        readPos = 0;
+        readCount = 0;
+    }
+
+    /**
+     * Drops every queued task, deleting any segments on disk.
+     */
+    void clear() {
+        for (Block b : blocks) {
+            if (b.segment != null) {
+                spill.delete(b);
+            } else {
+                spill.released(b.data.length);
+            }
+        }
+        blocks.clear();
+        size = 0;
+        readPos = 0;
+        readCount = 0;
+    }
+
+    private byte[] ensureLastRead(int length) {
+        if (lastRead.length < length) {
+            lastRead = Arrays.copyOf(lastRead, Math.max(length, lastRead.length * 2));
+        }
+        return lastRead;
+    }
+
+    private void ensureCapacity(Block block, int extra) {
+        int needed = block.length + extra;
+        if (needed <= block.data.length) return;
+        int capacity = Math.max(needed, Math.min(block.data.length * 2, BLOCK_BYTES + extra));
+        spill.allocated(capacity - block.data.length);
+        block.data = Arrays.copyOf(block.data, capacity);
+    }
+
+    private static int sharedPrefix(byte[] a, int aLength, byte[] b) {
+        int max = Math.min(aLength, b.length);
+        int i = Arrays.mismatch(a, 0, max, b, 0, max);
+        return i < 0 ? max : i;
+    }
+
+    private static int writeVarint(byte[] out, int pos, int value) {
+        while ((value & ~0x7F) != 0) {
+            out[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[pos++] = (byte) value;
+        return pos;
+    }
+
+    /**
+     * @return the value in the low 32 bits and the next position in the high 32 bits
+     */
+    private static long readVarint(byte[] in, int pos) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in[pos++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return ((long) pos << 32) | (value & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Shared memory budget and segment directory for all host queues of one frontier.
+     */
+    static final class Spill {
+
+        private static final String SEGMENT_PREFIX = "frontier-";
+        private static final String SEGMENT_SUFFIX = ".seg";
+
+        private final Path dir;
+        private final long maxMemoryBytes;
+        private long memoryBytes;
+        private long segmentSeq;
+        private long spilledBlocks;
+        private long spilledBytes;
+
+        /**
+         * @param dir            segment directory, or null to keep everything in memory
+         * @param maxMemoryBytes block bytes to keep in memory before spilling
+         */
+        Spill(Path dir, long maxMemoryBytes) throws IOException {
+            this.dir = dir;
+            this.maxMemoryBytes = maxMemoryBytes;
+            if (dir != null) {
+                Files.createDirectories(dir);
+                // Leftovers of a killed crawl; the journal, not the spill, is what resumes a crawl.
+                try (var old = Files.newDirectoryStream(dir, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+                    for (Path p : old) {
+                        Files.deleteIfExists(p);
+                    }
+                }
+            }
+        }
+
+        static Spill inMemory() {
+            try {
+                return new Spill(null, Long.MAX_VALUE);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        long memoryBytes() {
+            return memoryBytes;
+        }
+
+        long spilledBlocks() {
+            return spilledBlocks;
+        }
+
+        long spilledBytes() {
+            return spilledBytes;
+        }
+
+        void allocated(long bytes) {
+            memoryBytes += bytes;
+        }
+
+        void released(long bytes) {
+            memoryBytes -= bytes;
+        }
+
+        void maybeSpill(Block block) {
+            if (dir == null || block.segment != null || memoryBytes <= maxMemoryBytes) return;
+            Path segment = dir.resolve(SEGMENT_PREFIX + (segmentSeq++) + SEGMENT_SUFFIX);
+            try {
+                Files.write(segment, block.length == block.data.length
+                        ? block.data : Arrays.copyOf(block.data, block.length));
+            } catch (IOException e) {
+                log.warn("Failed to spill frontier block to {}; keeping it in memory: {}", segment, e.toString());
+                return;
+            }
+            memoryBytes -= block.data.length;
+            spilledBlocks++;
+            spilledBytes += block.length;
+            block.data = null;
+            block.segment = segment;
+        }
+
+        boolean load(Block block) {
+            try {
+                block.data = Files.readAllBytes(block.segment);
+                memoryBytes += block.data.length;
+                return true;
+            } catch (IOException e) {
+                log.warn("Failed to read frontier segment {}; dropping {} queued URLs: {}",
+                        block.segment, block.count, e.toString());
+                return false;
+            } finally {
+                delete(block);
+            }
+        }
+
+        void delete(Block block) {
+            try {
+                Files.deleteIfExists(block.segment);
+            } catch (IOException e) {
+                log.debug("Could not delete frontier segment {}", block.segment);
+            }
+            block.segment = null;
+        }
+    }
+}
@@ -1,37 +1,472 @@
 package dev.ragcrawler.crawler.state;
 
+import dev.ragcrawler.crawler.http.PerHostScheduler;
+import dev.ragcrawler.crawler.jfr.FrontierWaitEvent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.TimeUnit;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
- * Simple unbounded frontier.
- * Can be evolved to bounded if needed.
+ * Frontier with one FIFO queue per host.
+ * <p>
+ * Queued URLs are held front-coded in byte blocks ({@link TaskQueue}), not as objects. With a
+ * spill directory the frontier is bounded: once its blocks exceed the memory budget, sealed blocks
+ * are written to segment files and read back sequentially when their host reaches them, so heap
+ * use stays flat however many URLs are queued.
+ * <p>
+ * Hosts with queued URLs sit in a heap ordered by the time the {@link PerHostScheduler} allows
+ * their next request; hosts at their concurrency limit leave the heap until a task finishes.
+ * {@link #take} sleeps until exactly the head host's ready time, or until new work, a finished
+ * task or {@link #wakeUp()} changes the picture, so the dispatcher never polls. Among hosts that
+ * are ready, the one that has waited longest goes first, which shares a global concurrency limit
+ * fairly; hosts that exhaust their crawl budget have their queue dropped. With a
+ * {@linkplain #prepareHostsWith host preparer}, a newly seen origin's URLs wait until it has run,
+ * so its first requests already see the politeness it sets up.
  */
-public final class UrlFrontier {
+public final class UrlFrontier implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(UrlFrontier.class);
 
     public record Task(String normalizedUrl, int depth) {}
 
-    private final BlockingQueue<Task> queue = new LinkedBlockingQueue<>();
+    private static final class HostQueue {
+        final String hostKey;
+        final TaskQueue tasks;
+        long readyAtNanos;
+        boolean scheduled;
+        boolean overBudget;
+        boolean preparing;
+        // Retries so far of tasks put back by retry(), until they complete; null until the first retry.
+        Map<String, Integer> retries;
+        // Put back and not yet taken again: these skip take()'s accept predicate, which would see them as visited.
+        Set<String> requeued;
+
+        HostQueue(String hostKey, TaskQueue tasks) {
+            this.hostKey = hostKey;
+            this.tasks = tasks;
+        }
+    }
+
+    private final PerHostScheduler politeness;
+    private final TaskQueue.Spill spill;
+    // Keyed by origin so offering a URL needs no URI parsing.
+    private final Map<String, HostQueue> hosts = new HashMap<>();
+    // Compare by difference: nanoTime values may wrap.
+    private final PriorityQueue<HostQueue> ready =
+            new PriorityQueue<>((a, b) -> Long.signum(a.readyAtNanos - b.readyAtNanos));
+    private final Lock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private long size;
+    private long droppedOverBudget;
+    private int inFlight;
+    private int producers;
+    private int preparing;
+    private Consumer<String> prepareHost;
+
+    public UrlFrontier() {
+        this(PerHostScheduler.unlimited());
+    }
+
+    /**
+     * An in-memory frontier.
+     */
+    public UrlFrontier(PerHostScheduler politeness) {
+        this.politeness = politeness;
+        this.spill = TaskQueue.Spill.inMemory();
+    }
+
+    /**
+     * A bounded frontier that spills to {@code spillDir} above {@code maxMemoryBytes} of queued URLs.
+     */
+    public UrlFrontier(PerHostScheduler politeness, Path spillDir, long maxMemoryBytes) throws IOException {
+        this.politeness = politeness;
+        this.spill = new TaskQueue.Spill(spillDir, maxMemoryBytes);
+    }
+
+    /**
+     * Holds the URLs of each newly seen origin until {@code prepare} has run for it, e.g. to load
+     * its robots.txt and apply the {@code Crawl-delay} before the host's first request. It runs on
+     * its own virtual thread; the origin is released when it returns or throws. Call before the
+     * first {@link #offer}.
+     */
+    public void prepareHostsWith(Consumer<String> prepare) {
+        lock.lock();
+        try {
+            this.prepareHost = prepare;
+        } finally {
+            lock.unlock();
+        }
+    }
 
     public void offer(Task task) {
-        queue.offer(task);
+        String origin = origin(task.normalizedUrl());
+        lock.lock();
+        try {
+            HostQueue queue = hosts.get(origin);
+            if (queue == null) {
+                queue = new HostQueue(hostKey(origin), new TaskQueue(origin, spill));
+                hosts.put(origin, queue);
+                if (prepareHost != null) {
+                    prepare(origin, queue);
+                }
+            }
+            if (queue.overBudget) {
+                droppedOverBudget++;
+                return;
+            }
+            queue.tasks.add(task);
+            size++;
+            schedule(queue, System.nanoTime());
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public Optional<Task> poll() {
-        Task t = queue.poll();
-        return Optional.ofNullable(t);
+    /**
+     * Waits for the next task whose host may be requested now and counts it as in flight;
+     * the caller must pass it to {@link #complete} when done. Tasks rejected by {@code accept}
+     * are dropped without using their host's politeness slot.
+     *
+     * @return the task, or empty once the crawl is cancelled, the deadline passes, or the frontier
+     *         is {@linkplain #isDrained() drained}
+     */
+    public Optional<Task> take(Instant deadline, AtomicBoolean cancelled, Predicate<Task> accept)
+            throws InterruptedException {
+        FrontierWaitEvent event = new FrontierWaitEvent();
+        event.begin();
+        lock.lock();
+        try {
+            while (true) {
+                if (cancelled.get()) return Optional.empty();
+                long untilDeadline = Duration.between(Instant.now(), deadline).toNanos();
+                if (untilDeadline <= 0) return Optional.empty();
+
+                if (politeness.atCapacity()) {
+                    changed.awaitNanos(untilDeadline);
+                    continue;
+                }
+                HostQueue head = ready.peek();
+                if (head == null) {
+                    // Every host with queued URLs is at its concurrency limit or being prepared, or there is nothing left.
+                    if (inFlight == 0 && producers == 0 && preparing == 0) return Optional.empty();
+                    changed.awaitNanos(untilDeadline);
+                    continue;
+                }
+                long now = System.nanoTime();
+                long wait = head.readyAtNanos - now;
+                if (wait > 0) {
+                    changed.awaitNanos(Math.min(wait, untilDeadline));
+                    continue;
+                }
+
+                ready.poll();
+                head.scheduled = false;
+                if (politeness.exhausted(head.hostKey, now)) {
+                    dropOverBudget(head);
+                    continue;
+                }
+                if (politeness.readyAtNanos(head.hostKey, now) - now > 0) {
+                    // The host's ready time moved after it was scheduled: a Retry-After hold, a longer
+                    // adaptive delay, or a sitemap fetch that took one of its slots.
+                    schedule(head, now);
+                    continue;
+                }
+                Task task = head.tasks.poll();
+                size--;
+                boolean wasRequeued = head.requeued != null && head.requeued.remove(task.normalizedUrl());
+                if (wasRequeued || accept.test(task)) {
+                    politeness.started(head.hostKey, now);
+                    inFlight++;
+                    schedule(head, now);
+                    event.end();
+                    if (event.shouldCommit()) {
+                        event.url = task.normalizedUrl();
+                        event.host = head.hostKey;
+                        event.queued = size;
+                        event.commit();
+                    }
+                    return Optional.of(task);
+                }
+                schedule(head, now);
+            }
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public Optional<Task> poll(Duration timeout) throws InterruptedException {
-        Task t = queue.poll(timeout.toMillis(), TimeUnit.MILLISECONDS);
-        return Optional.ofNullable(t);
+    /**
+     * Releases the host slot taken by {@link #take}.
+     */
+    public void complete(Task task) {
+        String url = task.normalizedUrl();
+        String origin = origin(url);
+        lock.lock();
+        try {
+            HostQueue queue = hosts.get(origin);
+            if (queue != null && queue.retries != null) {
+                queue.retries.remove(url);
+            }
+            releaseSlot(origin);
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public int size() {
-        return queue.size();
+    /**
+     * Waits until the host of {@code url} may be requested now and takes a slot there, as
+     * {@link #take} does for queued URLs; for requests made outside the frontier, such as sitemap
+     * fetches. The caller must pass the same URL to {@link #release} when done.
+     *
+     * @return false if the crawl was cancelled or the deadline passed first
+     */
+    public boolean acquire(String url, Instant deadline, AtomicBoolean cancelled) throws InterruptedException {
+        String hostKey = hostKey(origin(url));
+        lock.lock();
+        try {
+            while (true) {
+                if (cancelled.get()) return false;
+                long untilDeadline = Duration.between(Instant.now(), deadline).toNanos();
+                if (untilDeadline <= 0) return false;
+                long now = System.nanoTime();
+                long wait = politeness.atCapacity() ? untilDeadline : politeness.readyAtNanos(hostKey, now) - now;
+                if (wait <= 0) {
+                    politeness.started(hostKey, now);
+                    inFlight++;
+                    return true;
+                }
+                changed.awaitNanos(Math.min(wait, untilDeadline));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases the host slot taken by {@link #acquire}.
+     */
+    public void release(String url) {
+        String origin = origin(url);
+        lock.lock();
+        try {
+            releaseSlot(origin);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void releaseSlot(String origin) {
+        inFlight--;
+        HostQueue queue = hosts.get(origin);
+        politeness.finished(queue != null ? queue.hostKey : hostKey(origin));
+        if (queue != null) {
+            schedule(queue, System.nanoTime());
+        }
+        changed.signalAll();
     }
-}
 
+    /**
+     * Puts a task taken by {@link #take} back at the end of its host's queue, e.g. after the host
+     * answered 429, and releases its host slot; the host's politeness state decides when it runs
+     * again. Once the task has been retried {@code maxRetries} times it is left to the caller,
+     * who must {@link #complete} it instead.
+     *
+     * @return whether the task was queued again
+     */
+    public boolean retry(Task task, int maxRetries) {
+        String url = task.normalizedUrl();
+        lock.lock();
+        try {
+            HostQueue queue = hosts.get(origin(url));
+            if (queue == null || queue.overBudget) {
+                return false;
+            }
+            if (queue.retries == null) {
+                queue.retries = new HashMap<>();
+                queue.requeued = new HashSet<>();
+            }
+            int retried = queue.retries.getOrDefault(url, 0);
+            if (retried >= maxRetries) {
+                return false;
+            }
+            queue.retries.put(url, retried + 1);
+            queue.requeued.add(url);
+            queue.tasks.add(task);
+            size++;
+            inFlight--;
+            politeness.finished(queue.hostKey);
+            schedule(queue, System.nanoTime());
+            changed.signalAll();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Registers a source outside the crawl loop (such as sitemap ingestion) that may still offer
+     * tasks; the frontier does not count as drained until it calls {@link #producerDone()}.
+     */
+    public void producerStarted() {
+        lock.lock();
+        try {
+            producers++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void producerDone() {
+        lock.lock();
+        try {
+            producers--;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Makes a waiting {@link #take} re-check its cancellation flag.
+     */
+    public void wakeUp() {
+        lock.lock();
+        try {
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return true if nothing is queued or in flight and no producer is running
+     */
+    public boolean isDrained() {
+        lock.lock();
+        try {
+            return size == 0 && inFlight == 0 && producers == 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return tasks taken and not yet completed
+     */
+    public int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Deletes spill segments still on disk.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            log.info("Frontier closed: queued={} droppedOverHostBudget={} memoryBytes={} spilledBlocks={} spilledBytes={}",
+                    size, droppedOverBudget, spill.memoryBytes(), spill.spilledBlocks(), spill.spilledBytes());
+            for (HostQueue queue : hosts.values()) {
+                queue.tasks.clear();
+            }
+            ready.clear();
+            size = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void dropOverBudget(HostQueue queue) {
+        long dropped = queue.tasks.size();
+        log.info("Host {} used up its crawl budget; dropping {} queued URLs", queue.hostKey, dropped);
+        queue.overBudget = true;
+        queue.tasks.clear();
+        // Throttled tasks waiting for a retry were in that queue and are never taken now.
+        queue.retries = null;
+        queue.requeued = null;
+        size -= dropped;
+        droppedOverBudget += dropped;
+    }
+
+    private void prepare(String origin, HostQueue queue) {
+        Consumer<String> prepare = prepareHost;
+        queue.preparing = true;
+        preparing++;
+        Thread.ofVirtual().name("host-prepare").start(() -> {
+            try {
+                prepare.accept(origin);
+            } catch (RuntimeException e) {
+                log.debug("Preparing host {} failed: {}", origin, e.toString());
+            } finally {
+                lock.lock();
+                try {
+                    queue.preparing = false;
+                    preparing--;
+                    schedule(queue, System.nanoTime());
+                    changed.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        });
+    }
+
+    private void schedule(HostQueue queue, long now) {
+        if (queue.scheduled || queue.preparing || queue.tasks.isEmpty()) return;
+        long readyAt = politeness.readyAtNanos(queue.hostKey, now);
+        if (readyAt == Long.MAX_VALUE) return;
+        queue.readyAtNanos = readyAt;
+        queue.scheduled = true;
+        ready.add(queue);
+    }
+
+    /**
+     * Scheme, authority and nothing else; the part every URL of a host shares.
+     */
+    private static String origin(String normalizedUrl) {
+        int schemeEnd = normalizedUrl.indexOf("://");
+        int pathStart = schemeEnd < 0 ? -1 : normalizedUrl.indexOf('/', schemeEnd + 3);
+        return pathStart < 0 ? normalizedUrl : normalizedUrl.substring(0, pathStart);
+    }
+
+    private static String hostKey(String origin) {
+        try {
+            return PerHostScheduler.hostKey(URI.create(origin));
+        } catch (IllegalArgumentException e) {
+            return "";
+        }
+    }
+}
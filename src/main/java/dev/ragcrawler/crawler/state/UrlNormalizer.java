@@ -2,48 +2,73 @@ package dev.ragcrawler.crawler.state;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
 /**
- * Normalizes URLs and enforces same-host policy.
+ * Normalizes URLs and enforces the crawl scope: the scheme, host and port of any seed, plus any
+ * host under an allowed domain.
  */
 public final class UrlNormalizer {
 
     private final URI root;
-    private final String rootHost;
-    private final String rootScheme;
-    private final int rootPort;
+    private final Set<String> seedOrigins = new HashSet<>();
+    private final List<String> allowedDomains;
 
     public UrlNormalizer(URI root) {
-        this.root = Objects.requireNonNull(root);
-        this.rootHost = root.getHost();
-        this.rootScheme = root.getScheme();
-        this.rootPort = effectivePort(root);
+        this(List.of(root), List.of());
     }
 
+    /**
+     * @param seeds          crawl seeds; the first one resolves relative links without a base
+     * @param allowedDomains domains whose hosts (the domain itself and any subdomain) are in scope
+     *                       over http and https
+     */
+    public UrlNormalizer(List<URI> seeds, List<String> allowedDomains) {
+        this.root = Objects.requireNonNull(seeds.get(0));
+        for (URI seed : seeds) {
+            seedOrigins.add(originKey(seed));
+        }
+        this.allowedDomains = allowedDomains.stream()
+                .map(d -> d.toLowerCase(Locale.ROOT))
+                .toList();
+    }
+
+    /**
+     * Drops the fragment and dot segments, lower-cases the scheme and host and drops a default
+     * port, so one resource has one spelling.
+     */
     public String normalize(URI uri) {
-        URI noFrag = stripFragment(uri);
-        return noFrag.normalize().toString();
+        return canonical(uri).normalize().toString();
     }
 
     public String normalize(String url) {
         return normalize(URI.create(url));
     }
 
-    public Optional<String> normalizeIfSameHost(String candidate) {
-        URI abs = toAbsolute(candidate);
+    public Optional<String> normalizeIfInScope(String candidate) {
+        return normalizeIfInScope(candidate, root);
+    }
+
+    /**
+     * @param base URI that relative candidates are resolved against, normally the linking page
+     */
+    public Optional<String> normalizeIfInScope(String candidate, URI base) {
+        URI abs = toAbsolute(candidate, base);
         if (abs == null) return Optional.empty();
-        if (!isSameHost(abs)) return Optional.empty();
+        if (!isInScope(abs)) return Optional.empty();
         return Optional.of(normalize(abs));
     }
 
-    private URI toAbsolute(String url) {
+    private static URI toAbsolute(String url, URI base) {
         try {
             URI uri = new URI(url);
             if (!uri.isAbsolute()) {
-                uri = root.resolve(uri);
+                uri = base.resolve(uri);
             }
             return uri;
         } catch (URISyntaxException e) {
@@ -51,33 +76,60 @@ public final class UrlNormalizer {
         }
     }
 
-    private boolean isSameHost(URI uri) {
-        if (!Objects.equals(rootScheme.toLowerCase(Locale.ROOT),
-                nullToEmpty(uri.getScheme()).toLowerCase(Locale.ROOT))) {
+    private boolean isInScope(URI uri) {
+        if (seedOrigins.contains(originKey(uri))) {
+            return true;
+        }
+        if (allowedDomains.isEmpty() || uri.getHost() == null) {
             return false;
         }
-        if (!Objects.equals(rootHost, uri.getHost())) {
+        String scheme = nullToEmpty(uri.getScheme()).toLowerCase(Locale.ROOT);
+        if (!scheme.equals("http") && !scheme.equals("https")) {
             return false;
         }
-        return effectivePort(uri) == rootPort;
+        String host = uri.getHost().toLowerCase(Locale.ROOT);
+        for (String domain : allowedDomains) {
+            if (host.equals(domain) || host.endsWith("." + domain)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String originKey(URI uri) {
+        return nullToEmpty(uri.getScheme()).toLowerCase(Locale.ROOT) + "://"
+                + nullToEmpty(uri.getHost()).toLowerCase(Locale.ROOT) + ":" + effectivePort(uri);
     }
 
-    private static int effectivePort(URI uri) {
+    /**
+     * @return the URI's port, or the scheme's default port if it has none, or -1 if the scheme
+     * has no default either
+     */
+    public static int effectivePort(URI uri) {
         int port = uri.getPort();
-        if (port != -1) return port;
-        String scheme = nullToEmpty(uri.getScheme()).toLowerCase(Locale.ROOT);
-        return switch (scheme) {
+        return port != -1 ? port : defaultPort(uri.getScheme());
+    }
+
+    private static int defaultPort(String scheme) {
+        return switch (nullToEmpty(scheme).toLowerCase(Locale.ROOT)) {
             case "http" -> 80;
             case "https" -> 443;
             default -> -1;
         };
     }
 
-    private static URI stripFragment(URI uri) {
+    private static URI canonical(URI uri) {
+        String scheme = uri.getScheme() == null ? null : uri.getScheme().toLowerCase(Locale.ROOT);
         try {
+            if (uri.getHost() == null) {
+                return new URI(scheme, uri.getAuthority(), uri.getPath(), uri.getQuery(), null);
+            }
+            int port = uri.getPort() == defaultPort(scheme) ? -1 : uri.getPort();
             return new URI(
-                    uri.getScheme(),
-                    uri.getAuthority(),
+                    scheme,
+                    uri.getUserInfo(),
+                    uri.getHost().toLowerCase(Locale.ROOT),
+                    port,
                     uri.getPath(),
                     uri.getQuery(),
                     null
@@ -0,0 +1,175 @@
+package dev.ragcrawler.crawler.state;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.ragcrawler.crawler.output.JsonlChunkWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Persistent per-URL record of what the last crawl saw: HTTP validators, a body fingerprint
+ * and the page's out-links. Used to send conditional requests and to expand links of
+ * unchanged pages without parsing them again.
+ * <p>
+ * Stored as JSONL in {@code <dir>/validators.jsonl}. Updates are appended during the crawl
+ * (last line for a URL wins) and the file is compacted on close.
+ */
+public final class ValidatorCache implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ValidatorCache.class);
+
+    private static final String FILE_NAME = "validators.jsonl";
+
+    public record Entry(
+            String url,
+            String etag,
+            String lastModified,
+            String fingerprint,
+            List<String> links
+    ) {
+    }
+
+    private final Path file;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Lock lock = new ReentrantLock();
+    private final BufferedWriter appender;
+    private final AtomicInteger notModified = new AtomicInteger();
+    private final AtomicInteger unchanged = new AtomicInteger();
+
+    private ValidatorCache(Path dir) throws IOException {
+        if (dir == null) {
+            this.file = null;
+            this.appender = null;
+            return;
+        }
+        Files.createDirectories(dir);
+        this.file = dir.resolve(FILE_NAME);
+        load();
+        // A crash mid-write leaves a partial last line that the next put would be glued onto.
+        JsonlChunkWriter.truncatePartialLine(file);
+        this.appender = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    public static ValidatorCache open(Path dir) throws IOException {
+        return new ValidatorCache(dir);
+    }
+
+    /**
+     * A cache that remembers nothing, used when no cache directory is configured.
+     */
+    public static ValidatorCache disabled() {
+        try {
+            return new ValidatorCache(null);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public boolean isEnabled() {
+        return file != null;
+    }
+
+    public Entry get(String normalizedUrl) {
+        return file == null ? null : entries.get(normalizedUrl);
+    }
+
+    public void put(Entry entry) throws IOException {
+        if (file == null) return;
+        entries.put(entry.url(), entry);
+        String line = mapper.writeValueAsString(entry);
+        lock.lock();
+        try {
+            appender.write(line);
+            appender.write('\n');
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void recordNotModified() {
+        notModified.incrementAndGet();
+    }
+
+    public void recordUnchanged() {
+        unchanged.incrementAndGet();
+    }
+
+    public static String fingerprint(byte[] body) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return fingerprintOfDigest(md.digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * The fingerprint of a body whose SHA-256 digest was computed as it streamed in.
+     */
+    public static String fingerprintOfDigest(byte[] sha256) {
+        return Base64.getEncoder().encodeToString(sha256);
+    }
+
+    private void load() throws IOException {
+        if (Files.notExists(file)) return;
+        long start = System.nanoTime();
+        int lines = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) continue;
+                lines++;
+                try {
+                    Entry e = mapper.readValue(line, Entry.class);
+                    entries.put(e.url(), e);
+                } catch (IOException e) {
+                    // A crash can leave a partial last line; the rest of the file is still usable.
+                    log.warn("Skipping unreadable validator cache line {} in {}", lines, file);
+                }
+            }
+        }
+        log.info("Validator cache loaded: entries={} lines={} in {}ms",
+                entries.size(), lines, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (file == null) return;
+        lock.lock();
+        try {
+            appender.close();
+            Path tmp = file.resolveSibling(FILE_NAME + ".tmp");
+            try (BufferedWriter w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                for (Entry e : entries.values()) {
+                    w.write(mapper.writeValueAsString(e));
+                    w.write('\n');
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            lock.unlock();
+        }
+        log.info("Validator cache saved: entries={} notModified={} unchanged={}",
+                entries.size(), notModified.get(), unchanged.get());
+    }
+}
@@ -0,0 +1,252 @@
+package dev.ragcrawler.crawler.tokenizer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Byte-level BPE loaded from a tiktoken ranks file ({@code cl100k_base.tiktoken} and similar: one
+ * base64-encoded byte sequence and its merge rank per line).
+ * <p>
+ * Text is split into words with the rules of the cl100k pattern: letter runs with one leading
+ * non-letter, up to three digits, punctuation runs with one leading space, English contractions
+ * and whitespace. Each word is looked up whole first; otherwise its UTF-8 bytes are merged pair
+ * by pair, lowest rank first. The bytes and merge state live in per-thread scratch arrays.
+ */
+public final class BpeTokenizer extends WordTokenizer {
+
+    private static final int NO_RANK = Integer.MAX_VALUE;
+
+    private static final class Scratch {
+        byte[] bytes = new byte[64];
+        int[] starts = new int[65];
+        int[] ranks = new int[65];
+
+        void ensure(int length) {
+            if (bytes.length < length) {
+                bytes = new byte[length * 2];
+                starts = new int[length * 2 + 1];
+                ranks = new int[length * 2 + 1];
+            }
+        }
+    }
+
+    private final byte[] pool;
+    private final int[] offsets;
+    private final int[] lengths;
+    private final int[] entryRanks;
+    private final int[] slots;
+    private final int mask;
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    BpeTokenizer(byte[][] tokens, int[] ranks) {
+        if (tokens.length == 0) throw new IllegalArgumentException("BPE ranks file is empty");
+        int total = 0;
+        for (byte[] token : tokens) {
+            total += token.length;
+        }
+        this.pool = new byte[total];
+        this.offsets = new int[tokens.length];
+        this.lengths = new int[tokens.length];
+        this.entryRanks = ranks;
+        int capacity = Integer.highestOneBit(Math.max(tokens.length * 2, 16) - 1) << 1;
+        this.slots = new int[capacity];
+        this.mask = capacity - 1;
+        int offset = 0;
+        for (int entry = 0; entry < tokens.length; entry++) {
+            byte[] token = tokens[entry];
+            System.arraycopy(token, 0, pool, offset, token.length);
+            offsets[entry] = offset;
+            lengths[entry] = token.length;
+            offset += token.length;
+            int slot = hash(token, 0, token.length) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = entry + 1;
+        }
+    }
+
+    public static BpeTokenizer load(Path ranksFile) throws IOException {
+        byte[][] tokens = new byte[1024][];
+        int[] ranks = new int[1024];
+        int count = 0;
+        try (BufferedReader reader = Files.newBufferedReader(ranksFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.strip();
+                if (line.isEmpty()) continue;
+                int space = line.indexOf(' ');
+                if (space <= 0) throw new IOException("Malformed BPE rank line: " + line);
+                if (count == tokens.length) {
+                    tokens = Arrays.copyOf(tokens, count * 2);
+                    ranks = Arrays.copyOf(ranks, count * 2);
+                }
+                try {
+                    tokens[count] = Base64.getDecoder().decode(line.substring(0, space));
+                    ranks[count] = Integer.parseInt(line.substring(space + 1).strip());
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Malformed BPE rank line: " + line, e);
+                }
+                count++;
+            }
+        }
+        return new BpeTokenizer(Arrays.copyOf(tokens, count), Arrays.copyOf(ranks, count));
+    }
+
+    @Override
+    int wordEnd(CharSequence text, int start, int end) {
+        char first = text.charAt(start);
+        if (first == '\'' && start + 1 < end) {
+            int contraction = contractionLength(text, start + 1, end);
+            if (contraction > 0) return start + 1 + contraction;
+        }
+        if (Character.isLetter(first)) {
+            return letters(text, start + 1, end);
+        }
+        if (first != '\r' && first != '\n' && !Character.isLetterOrDigit(first)
+                && start + 1 < end && Character.isLetter(text.charAt(start + 1))) {
+            return letters(text, start + 2, end);
+        }
+        if (Character.isDigit(first)) {
+            int i = start + 1;
+            while (i < end && i < start + 3 && Character.isDigit(text.charAt(i))) i++;
+            return i;
+        }
+        int p = first == ' ' && start + 1 < end && isSymbol(text.charAt(start + 1)) ? start + 1 : start;
+        if (isSymbol(text.charAt(p))) {
+            int i = p + 1;
+            while (i < end && isSymbol(text.charAt(i))) i++;
+            while (i < end && isNewline(text.charAt(i))) i++;
+            return i;
+        }
+        int i = start;
+        int lastNewline = -1;
+        while (i < end && Character.isWhitespace(text.charAt(i))) {
+            if (isNewline(text.charAt(i))) lastNewline = i;
+            i++;
+        }
+        if (lastNewline >= 0) return lastNewline + 1;
+        // A space right before a word belongs to that word.
+        return i < end && i - start > 1 ? i - 1 : Math.max(i, start + 1);
+    }
+
+    private static int contractionLength(CharSequence text, int i, int end) {
+        char a = Character.toLowerCase(text.charAt(i));
+        if (a == 's' || a == 't' || a == 'm' || a == 'd') return 1;
+        if (i + 1 < end) {
+            char b = Character.toLowerCase(text.charAt(i + 1));
+            if ((a == 'r' || a == 'v') && b == 'e' || a == 'l' && b == 'l') return 2;
+        }
+        return 0;
+    }
+
+    private static int letters(CharSequence text, int i, int end) {
+        while (i < end && Character.isLetter(text.charAt(i))) i++;
+        return i;
+    }
+
+    private static boolean isSymbol(char ch) {
+        return !Character.isWhitespace(ch) && !Character.isLetterOrDigit(ch);
+    }
+
+    private static boolean isNewline(char ch) {
+        return ch == '\r' || ch == '\n';
+    }
+
+    @Override
+    int wordTokens(CharSequence text, int start, int end) {
+        Scratch s = scratch.get();
+        s.ensure((end - start) * 3);
+        int n = utf8(text, start, end, s.bytes);
+        byte[] bytes = s.bytes;
+        if (rank(bytes, 0, n) != NO_RANK) return 1;
+
+        // tiktoken's merge loop: starts[i] is where part i begins, ranks[i] the rank of parts i and i+1 merged.
+        int[] starts = s.starts;
+        int[] ranks = s.ranks;
+        int bounds = n + 1;
+        for (int i = 0; i < bounds; i++) {
+            starts[i] = i;
+        }
+        for (int i = 0; i + 2 < bounds; i++) {
+            ranks[i] = rank(bytes, starts[i], starts[i + 2]);
+        }
+        while (bounds > 2) {
+            int best = -1;
+            int bestRank = NO_RANK;
+            for (int i = 0; i + 2 < bounds; i++) {
+                if (ranks[i] < bestRank) {
+                    bestRank = ranks[i];
+                    best = i;
+                }
+            }
+            if (best < 0) break;
+            System.arraycopy(starts, best + 2, starts, best + 1, bounds - best - 2);
+            System.arraycopy(ranks, best + 2, ranks, best + 1, Math.max(bounds - best - 4, 0));
+            bounds--;
+            ranks[best] = best + 2 < bounds ? rank(bytes, starts[best], starts[best + 2]) : NO_RANK;
+            if (best > 0) {
+                ranks[best - 1] = rank(bytes, starts[best - 1], starts[best + 1]);
+            }
+        }
+        return bounds - 1;
+    }
+
+    private int rank(byte[] bytes, int start, int end) {
+        int slot = hash(bytes, start, end) & mask;
+        int entry;
+        while ((entry = slots[slot]) != 0) {
+            entry--;
+            if (lengths[entry] == end - start
+                    && Arrays.equals(pool, offsets[entry], offsets[entry] + lengths[entry], bytes, start, end)) {
+                return entryRanks[entry];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NO_RANK;
+    }
+
+    private static int hash(byte[] bytes, int start, int end) {
+        int h = 0x811c9dc5;
+        for (int i = start; i < end; i++) {
+            h = (h ^ (bytes[i] & 0xff)) * 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Encodes {@code text[start, end)} as UTF-8 into {@code out}; an unpaired surrogate becomes U+FFFD.
+     */
+    private static int utf8(CharSequence text, int start, int end, byte[] out) {
+        int n = 0;
+        for (int i = start; i < end; i++) {
+            int cp = text.charAt(i);
+            if (Character.isHighSurrogate((char) cp) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1))) {
+                cp = Character.toCodePoint((char) cp, text.charAt(++i));
+            } else if (Character.isSurrogate((char) cp)) {
+                cp = 0xFFFD;
+            }
+            if (cp < 0x80) {
+                out[n++] = (byte) cp;
+            } else if (cp < 0x800) {
+                out[n++] = (byte) (0xC0 | cp >> 6);
+                out[n++] = (byte) (0x80 | cp & 0x3F);
+            } else if (cp < 0x10000) {
+                out[n++] = (byte) (0xE0 | cp >> 12);
+                out[n++] = (byte) (0x80 | cp >> 6 & 0x3F);
+                out[n++] = (byte) (0x80 | cp & 0x3F);
+            } else {
+                out[n++] = (byte) (0xF0 | cp >> 18);
+                out[n++] = (byte) (0x80 | cp >> 12 & 0x3F);
+                out[n++] = (byte) (0x80 | cp >> 6 & 0x3F);
+                out[n++] = (byte) (0x80 | cp & 0x3F);
+            }
+        }
+        return n;
+    }
+}
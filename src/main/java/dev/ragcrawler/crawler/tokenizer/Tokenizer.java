@@ -0,0 +1,33 @@
+package dev.ragcrawler.crawler.tokenizer;
+
+import dev.ragcrawler.crawler.CrawlConfig.TokenizerType;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Counts the tokens an embedding model would see, so chunks can be sized by token budget.
+ * Implementations are thread-safe and count in place: no strings or token lists are built.
+ * Text is only cut inside a word when that word alone is over budget.
+ */
+public interface Tokenizer {
+
+    /**
+     * @return the number of tokens in {@code text[start, end)}
+     */
+    int count(CharSequence text, int start, int end);
+
+    /**
+     * @return the end of the longest run of whole words from {@code start} that holds at most
+     *         {@code maxTokens} tokens; if the first word alone is over budget, the end of its
+     *         longest prefix within budget, and always at least one character
+     */
+    int advance(CharSequence text, int start, int end, int maxTokens);
+
+    static Tokenizer load(TokenizerType type, Path vocabulary) throws IOException {
+        return switch (type) {
+            case WORDPIECE -> WordPieceTokenizer.load(vocabulary);
+            case BPE -> BpeTokenizer.load(vocabulary);
+        };
+    }
+}
@@ -0,0 +1,173 @@
+package dev.ragcrawler.crawler.tokenizer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * WordPiece as used by BERT-family embedding models, loaded from the model's {@code vocab.txt}
+ * (one token per line, continuation pieces prefixed with {@code ##}).
+ * <p>
+ * Text is split on whitespace and around punctuation and CJK characters; each word is then
+ * encoded greedily, longest vocabulary piece first. A word that cannot be encoded, or is longer
+ * than {@value #MAX_WORD_CHARS} characters, counts as one {@code [UNK]}. Vocabularies without
+ * upper-case entries are treated as uncased and the text is lower-cased while it is matched.
+ * Accents are not stripped, so an accented word in an uncased model may count a piece or two
+ * more than the reference tokenizer.
+ */
+public final class WordPieceTokenizer extends WordTokenizer {
+
+    static final int MAX_WORD_CHARS = 100;
+    private static final String CONTINUATION = "##";
+
+    private final String[] keys;
+    private final boolean[] continuations;
+    private final int mask;
+    private final boolean lowerCase;
+    private final int maxPieceChars;
+
+    WordPieceTokenizer(List<String> vocabulary) {
+        int entries = 0;
+        boolean cased = false;
+        int longest = 1;
+        for (String token : vocabulary) {
+            if (token.isEmpty() || isSpecial(token)) continue;
+            entries++;
+            String piece = token.startsWith(CONTINUATION) ? token.substring(CONTINUATION.length()) : token;
+            longest = Math.max(longest, piece.length());
+            for (int i = 0; i < piece.length() && !cased; i++) {
+                cased = Character.isUpperCase(piece.charAt(i));
+            }
+        }
+        if (entries == 0) throw new IllegalArgumentException("WordPiece vocabulary is empty");
+        int capacity = Integer.highestOneBit(Math.max(entries * 2, 16) - 1) << 1;
+        this.keys = new String[capacity];
+        this.continuations = new boolean[capacity];
+        this.mask = capacity - 1;
+        this.lowerCase = !cased;
+        this.maxPieceChars = longest;
+        for (String token : vocabulary) {
+            if (token.isEmpty() || isSpecial(token)) continue;
+            boolean continuation = token.startsWith(CONTINUATION) && token.length() > CONTINUATION.length();
+            String piece = continuation ? token.substring(CONTINUATION.length()) : token;
+            int slot = hash(piece, 0, piece.length(), continuation) & mask;
+            while (keys[slot] != null && !matches(slot, piece, 0, piece.length(), continuation)) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = piece;
+            continuations[slot] = continuation;
+        }
+    }
+
+    public static WordPieceTokenizer load(Path vocabulary) throws IOException {
+        return new WordPieceTokenizer(Files.readAllLines(vocabulary, StandardCharsets.UTF_8).stream()
+                .map(String::strip)
+                .toList());
+    }
+
+    private static boolean isSpecial(String token) {
+        return token.length() > 2 && token.charAt(0) == '[' && token.charAt(token.length() - 1) == ']';
+    }
+
+    @Override
+    int wordEnd(CharSequence text, int start, int end) {
+        char first = text.charAt(start);
+        if (isSpace(first)) {
+            int i = start + 1;
+            while (i < end && isSpace(text.charAt(i))) i++;
+            return i;
+        }
+        if (isSplitChar(first)) return start + 1;
+        int i = start + 1;
+        while (i < end) {
+            char ch = text.charAt(i);
+            if (isSpace(ch) || isSplitChar(ch)) break;
+            i++;
+        }
+        return i;
+    }
+
+    @Override
+    int wordTokens(CharSequence text, int start, int end) {
+        if (isSpace(text.charAt(start))) return 0;
+        if (end - start > MAX_WORD_CHARS) return 1;
+        int tokens = 0;
+        int pieceStart = start;
+        while (pieceStart < end) {
+            int pieceEnd = longestPiece(text, pieceStart, Math.min(end, pieceStart + maxPieceChars), pieceStart > start);
+            if (pieceEnd < 0) return 1;
+            tokens++;
+            pieceStart = pieceEnd;
+        }
+        return tokens;
+    }
+
+    /**
+     * Greedy longest match, found by extending the candidate one character at a time so its hash
+     * is updated rather than recomputed for every length.
+     *
+     * @return the end of the longest vocabulary piece starting at {@code start}, or -1
+     */
+    private int longestPiece(CharSequence text, int start, int limit, boolean continuation) {
+        int longest = -1;
+        int h = seed(continuation);
+        for (int i = start; i < limit; i++) {
+            h = (h ^ fold(text.charAt(i))) * 0x01000193;
+            int slot = (h ^ (h >>> 16)) & mask;
+            while (keys[slot] != null) {
+                if (matches(slot, text, start, i + 1, continuation)) {
+                    longest = i + 1;
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+        return longest;
+    }
+
+    private boolean matches(int slot, CharSequence text, int start, int end, boolean continuation) {
+        String key = keys[slot];
+        if (continuations[slot] != continuation || key.length() != end - start) return false;
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) != fold(text.charAt(start + i))) return false;
+        }
+        return true;
+    }
+
+    private static int seed(boolean continuation) {
+        return continuation ? 0x9e3779b9 : 0x811c9dc5;
+    }
+
+    private int hash(CharSequence text, int start, int end, boolean continuation) {
+        int h = seed(continuation);
+        for (int i = start; i < end; i++) {
+            h = (h ^ fold(text.charAt(i))) * 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private char fold(char ch) {
+        return lowerCase ? Character.toLowerCase(ch) : ch;
+    }
+
+    private static boolean isSpace(char ch) {
+        return Character.isWhitespace(ch) || Character.isISOControl(ch) || Character.isSpaceChar(ch);
+    }
+
+    /**
+     * Punctuation and CJK ideographs are words of their own, as in BERT's basic tokenizer.
+     */
+    private static boolean isSplitChar(char ch) {
+        if (ch < 128) {
+            return (ch >= 33 && ch <= 47) || (ch >= 58 && ch <= 64) || (ch >= 91 && ch <= 96) || (ch >= 123 && ch <= 126);
+        }
+        return switch (Character.getType(ch)) {
+            case Character.CONNECTOR_PUNCTUATION, Character.DASH_PUNCTUATION, Character.START_PUNCTUATION,
+                 Character.END_PUNCTUATION, Character.INITIAL_QUOTE_PUNCTUATION, Character.FINAL_QUOTE_PUNCTUATION,
+                 Character.OTHER_PUNCTUATION -> true;
+            default -> Character.UnicodeScript.of(ch) == Character.UnicodeScript.HAN;
+        };
+    }
+}
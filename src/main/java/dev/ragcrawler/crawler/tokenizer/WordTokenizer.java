@@ -0,0 +1,84 @@
+package dev.ragcrawler.crawler.tokenizer;
+
+/**
+ * Base for tokenizers that first split text into words (pre-tokens) and then encode each word
+ * on its own, which is how both WordPiece and byte-level BPE work. Counting and cutting both
+ * walk the words once; only a single word over budget is cut between characters.
+ */
+abstract class WordTokenizer implements Tokenizer {
+
+    /**
+     * @return the end of the word starting at {@code start}; whitespace runs count as words
+     */
+    abstract int wordEnd(CharSequence text, int start, int end);
+
+    /**
+     * @return the number of tokens in the word {@code text[start, end)}
+     */
+    abstract int wordTokens(CharSequence text, int start, int end);
+
+    @Override
+    public int count(CharSequence text, int start, int end) {
+        int tokens = 0;
+        for (int i = start; i < end; ) {
+            int wordEnd = wordEnd(text, i, end);
+            tokens += wordTokens(text, i, wordEnd);
+            i = wordEnd;
+        }
+        return tokens;
+    }
+
+    @Override
+    public int advance(CharSequence text, int start, int end, int maxTokens) {
+        int tokens = 0;
+        int i = start;
+        while (i < end) {
+            int wordEnd = wordEnd(text, i, end);
+            int wordTokens = wordTokens(text, i, wordEnd);
+            if (tokens + wordTokens > maxTokens) {
+                if (tokens > 0) return i;
+                // One word over budget by itself, e.g. a long separator or a minified identifier.
+                return cutWord(text, i, wordEnd, maxTokens);
+            }
+            tokens += wordTokens;
+            i = wordEnd;
+        }
+        return i;
+    }
+
+    /**
+     * @return the end of the longest prefix of the word {@code text[start, end)} that holds at most
+     *         {@code maxTokens} tokens, and at least one character
+     */
+    private int cutWord(CharSequence text, int start, int end, int maxTokens) {
+        int fits = start + Character.charCount(Character.codePointAt(text, start));
+        // Probe doubling lengths first, so a long word is only encoded in pieces near the budget.
+        int over = end;
+        for (int length = Math.max(1, maxTokens); start + length < end; length *= 2) {
+            int probe = charBoundary(text, start + length);
+            if (probe <= fits) continue;
+            if (wordTokens(text, start, probe) > maxTokens) {
+                over = probe;
+                break;
+            }
+            fits = probe;
+        }
+        while (over - fits > 1) {
+            int mid = charBoundary(text, (fits + over) >>> 1);
+            if (mid <= fits) break;
+            if (wordTokens(text, start, mid) <= maxTokens) {
+                fits = mid;
+            } else {
+                over = mid;
+            }
+        }
+        return fits;
+    }
+
+    /**
+     * @return {@code i}, moved back off the second half of a surrogate pair
+     */
+    private static int charBoundary(CharSequence text, int i) {
+        return Character.isLowSurrogate(text.charAt(i)) && Character.isHighSurrogate(text.charAt(i - 1)) ? i - 1 : i;
+    }
+}
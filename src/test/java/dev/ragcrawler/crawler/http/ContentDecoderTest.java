@@ -0,0 +1,216 @@
+package dev.ragcrawler.crawler.http;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Decodes gzip, zlib and raw deflate bodies fed whole, a byte at a time and in random slices, and
+ * checks the output against {@link GZIPInputStream} and {@link InflaterInputStream}; then checks
+ * that a corrupt trailer fails and a cut-off body does not count as finished.
+ */
+class ContentDecoderTest {
+
+    private static final byte[] TEXT = text();
+
+    static Stream<Arguments> bodies() throws IOException {
+        byte[] member = gzip(TEXT);
+        byte[] second = gzip("second member".getBytes(StandardCharsets.UTF_8));
+        List<Arguments> bodies = new ArrayList<>();
+        bodies.add(Arguments.of("gzip", "gzip", member));
+        bodies.add(Arguments.of("gzip multi-member", "gzip", concat(member, second, gzip(new byte[0]))));
+        bodies.add(Arguments.of("gzip FEXTRA FNAME FCOMMENT FHCRC", "gzip", gzipWithHeaderFields(TEXT)));
+        bodies.add(Arguments.of("gzip trailing garbage", "gzip", concat(member, new byte[]{0, 0, 0, 0})));
+        bodies.add(Arguments.of("zlib deflate", "deflate", deflate(TEXT, false)));
+        bodies.add(Arguments.of("raw deflate", "deflate", deflate(TEXT, true)));
+        return bodies.stream();
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("bodies")
+    void decodesLikeTheJdkInEverySlicing(String name, String encoding, byte[] body) throws IOException {
+        byte[] expected = reference(encoding, body);
+        Random random = new Random(42);
+        List<IntUnaryOperator> slicings = List.of(
+                remaining -> remaining,
+                remaining -> 1,
+                remaining -> 1 + random.nextInt(Math.min(remaining, 4096)));
+        for (IntUnaryOperator slicing : slicings) {
+            ContentDecoder decoder = ContentDecoder.forEncoding(encoding);
+            try {
+                assertArrayEquals(expected, decode(decoder, body, slicing));
+                assertTrue(decoder.finished());
+            } finally {
+                decoder.end();
+            }
+        }
+    }
+
+    @Test
+    void rejectsACorruptCrc() throws IOException {
+        byte[] body = gzip(TEXT);
+        body[body.length - 8] ^= 1;
+        assertThrows(ZipException.class, () -> reference("gzip", body));
+        ContentDecoder decoder = ContentDecoder.forEncoding("gzip");
+        try {
+            assertThrows(ZipException.class, () -> decode(decoder, body, remaining -> 1));
+        } finally {
+            decoder.end();
+        }
+    }
+
+    @Test
+    void aCutOffBodyIsNotFinished() throws IOException {
+        byte[] gzip = gzip(TEXT);
+        // Cuts in the header, the compressed data and, for gzip, the trailer.
+        assertNotFinished("gzip", gzip, 1, 5, gzip.length / 2, gzip.length - 9, gzip.length - 4, gzip.length - 1);
+        for (boolean nowrap : new boolean[]{false, true}) {
+            byte[] deflate = deflate(TEXT, nowrap);
+            assertNotFinished("deflate", deflate, 1, deflate.length / 2, deflate.length - 9);
+        }
+    }
+
+    private static void assertNotFinished(String encoding, byte[] body, int... cuts) throws ZipException {
+        for (int cut : cuts) {
+            ContentDecoder decoder = ContentDecoder.forEncoding(encoding);
+            try {
+                decode(decoder, Arrays.copyOf(body, cut), remaining -> remaining);
+                assertFalse(decoder.finished(), "finished after " + cut + " of " + body.length + " bytes");
+            } finally {
+                decoder.end();
+            }
+        }
+    }
+
+    @Test
+    void identityNeedsNoDecoderAndUnknownEncodingsFail() throws ZipException {
+        assertNull(ContentDecoder.forEncoding(""));
+        assertNull(ContentDecoder.forEncoding(" Identity "));
+        assertThrows(ZipException.class, () -> ContentDecoder.forEncoding("br"));
+    }
+
+    private static byte[] decode(ContentDecoder decoder, byte[] body, IntUnaryOperator slicing) throws ZipException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int offset = 0;
+        while (offset < body.length) {
+            int n = slicing.applyAsInt(body.length - offset);
+            ByteBuffer in = ByteBuffer.wrap(Arrays.copyOfRange(body, offset, offset + n));
+            offset += n;
+            for (ByteBuffer decoded; (decoded = decoder.decode(in)) != null; ) {
+                out.write(decoded.array(), decoded.arrayOffset() + decoded.position(), decoded.remaining());
+            }
+            assertFalse(in.hasRemaining(), "decoder left input unread");
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] reference(String encoding, byte[] body) throws IOException {
+        ByteArrayInputStream in = new ByteArrayInputStream(body);
+        InputStream decoded;
+        if (encoding.equals("gzip")) {
+            decoded = new GZIPInputStream(in);
+        } else {
+            boolean zlib = (body[0] & 0x0f) == 8 && ((body[0] & 0xff) << 8 | body[1] & 0xff) % 31 == 0;
+            decoded = new InflaterInputStream(in, new Inflater(!zlib));
+        }
+        try (decoded) {
+            return decoded.readAllBytes();
+        }
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] data, boolean nowrap) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, nowrap);
+        try (DeflaterOutputStream deflate = new DeflaterOutputStream(out, deflater)) {
+            deflate.write(data);
+        } finally {
+            deflater.end();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * A gzip member whose header carries every optional field, which GZIPOutputStream never writes.
+     */
+    private static byte[] gzipWithHeaderFields(byte[] data) throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        header.write(new byte[]{0x1f, (byte) 0x8b, 8, 4 | 8 | 16 | 2, 0, 0, 0, 0, 0, (byte) 0xff});
+        byte[] extra = "ab\u0003\u0000xyz".getBytes(StandardCharsets.ISO_8859_1);
+        header.write(extra.length);
+        header.write(0);
+        header.write(extra);
+        header.write("page.html\0".getBytes(StandardCharsets.ISO_8859_1));
+        header.write("a comment\0".getBytes(StandardCharsets.ISO_8859_1));
+        CRC32 headerCrc = new CRC32();
+        headerCrc.update(header.toByteArray());
+        header.write((int) headerCrc.getValue());
+        header.write((int) headerCrc.getValue() >>> 8);
+
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return concat(header.toByteArray(), deflate(data, true), littleEndian((int) crc.getValue()),
+                littleEndian(data.length));
+    }
+
+    private static byte[] littleEndian(int value) {
+        return new byte[]{(byte) value, (byte) (value >>> 8), (byte) (value >>> 16), (byte) (value >>> 24)};
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Several output windows of text that compresses well but not to nothing.
+     */
+    private static byte[] text() {
+        Random random = new Random(7);
+        String[] words = {"crawler", "chunk", "token", "<p>", "</p>", "robots", "gzip", "deflate", "page", "\n"};
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < 200_000) {
+            sb.append(words[random.nextInt(words.length)]).append(' ');
+            if (random.nextInt(50) == 0) sb.append(random.nextLong());
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
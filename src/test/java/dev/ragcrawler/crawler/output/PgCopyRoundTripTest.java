@@ -0,0 +1,247 @@
+package dev.ragcrawler.crawler.output;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.ragcrawler.crawler.CrawlConfig.EmbeddingFormat;
+import dev.ragcrawler.crawler.bench.DocCorpus;
+import dev.ragcrawler.crawler.embedding.Embedding;
+import dev.ragcrawler.crawler.embedding.HashingEmbedder;
+import dev.ragcrawler.crawler.parsing.ContentChunker;
+import dev.ragcrawler.crawler.parsing.ContentExtractor;
+import dev.ragcrawler.crawler.parsing.HtmlParser;
+import dev.ragcrawler.crawler.parsing.OutputChunk;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Writes the SMALL and MEDIUM corpus pages, plus a chunk full of characters that need escaping, in
+ * both COPY formats, decodes the files again following the PostgreSQL wire formats and checks every
+ * field against the source chunk.
+ */
+class PgCopyRoundTripTest {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    @ParameterizedTest(name = "binary={0}")
+    @ValueSource(booleans = {false, true})
+    void everyFieldSurvivesTheRoundTrip(boolean binary) throws IOException {
+        List<OutputChunk> chunks = chunks();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (PgCopyChunkWriter writer = new PgCopyChunkWriter(bytes, binary)) {
+            writer.writePage(chunks);
+        }
+        List<List<Object>> rows = binary ? decodeBinary(bytes.toByteArray()) : decodeText(bytes.toByteArray());
+        assertEquals(chunks.size(), rows.size(), "rows");
+        for (int i = 0; i < rows.size(); i++) {
+            List<Object> expected = expected(chunks.get(i));
+            List<Object> actual = rows.get(i);
+            for (int col = 0; col < expected.size(); col++) {
+                String where = "row " + i + " column " + PgCopyChunkWriter.COLUMNS.get(col);
+                if (expected.get(col) instanceof float[] vector) {
+                    assertArrayEquals(vector, (float[]) actual.get(col), where);
+                } else {
+                    assertEquals(expected.get(col), actual.get(col), where);
+                }
+            }
+        }
+    }
+
+    private static List<OutputChunk> chunks() throws IOException {
+        List<OutputChunk> chunks = new ArrayList<>();
+        // LARGE repeats its ~1500 headings in every one of ~6000 chunks: hundreds of MB for no extra coverage.
+        for (DocCorpus.PageSize size : List.of(DocCorpus.PageSize.SMALL, DocCorpus.PageSize.MEDIUM)) {
+            chunks.addAll(new ContentChunker().chunk(new ContentExtractor().extract(
+                    new HtmlParser().parse(DocCorpus.page(size), DocCorpus.BASE_URL),
+                    DocCorpus.BASE_URL, DocCorpus.BASE_URL, 1)));
+        }
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("status", 200);
+        metadata.put("note", "tab\there \"quoted\" \\ back");
+        chunks.add(new OutputChunk("id\t1", "https://example.com/a\\b", null, "https://example.com/",
+                "Title with\nnewline\r\nand \"quotes\"", List.of("h1", "with \"quote\"", "back\\slash", "{braces}, commas"),
+                3, 7, "nul\0char, emoji \uD83D\uDE00, tab\t, backslash \\N", "text/html", List.of(),
+                null, "p", "c", 2, List.of("A", "B\tC"), "en", Instant.parse("1999-12-31T23:59:59.123456Z"),
+                "crawler", metadata, Embedding.encode("test", EmbeddingFormat.INT8, new float[]{0.5f, -1f, 1e-6f, 0f})));
+        // One embedded chunk per format; the rest cover the NULL encoding.
+        chunks.set(0, chunks.get(0).withEmbedding(
+                Embedding.encode("test", EmbeddingFormat.FLOAT32, new HashingEmbedder(8).embed(chunks.get(0).content()))));
+        return chunks;
+    }
+
+    private static List<Object> expected(OutputChunk c) throws IOException {
+        return Arrays.asList(pg(c.id()), pg(c.url()), pg(c.canonicalUrl()), pg(c.rootUrl()), pg(c.title()),
+                pg(c.headings()), c.chunkIndex(), c.chunkCount(), pg(c.content()), pg(c.contentType()),
+                pg(c.blockTypes()), pg(c.codeLanguage()), pg(c.pageHash()), pg(c.chunkHash()), c.depth(),
+                pg(c.hPath()), pg(c.lang()), c.crawledAt().truncatedTo(ChronoUnit.MICROS), pg(c.source()),
+                c.metadata() == null ? null : JSON.readTree(JSON.writeValueAsString(c.metadata())),
+                c.embedding() == null ? null : c.embedding().toFloats());
+    }
+
+    /** PostgreSQL text cannot hold NUL; the writer substitutes U+FFFD. */
+    private static String pg(String value) {
+        return value == null ? null : value.replace('\0', '\uFFFD');
+    }
+
+    private static List<String> pg(List<String> values) {
+        return values == null ? null : values.stream().map(PgCopyRoundTripTest::pg).toList();
+    }
+
+    private static List<List<Object>> decodeBinary(byte[] file) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(file));
+        assertArrayEquals(PgCopyChunkWriter.BINARY_SIGNATURE, in.readNBytes(PgCopyChunkWriter.BINARY_SIGNATURE.length),
+                "signature");
+        in.readInt();
+        in.skipNBytes(in.readInt());
+        List<List<Object>> rows = new ArrayList<>();
+        while (true) {
+            short fields = in.readShort();
+            if (fields == -1) break;
+            assertEquals(PgCopyChunkWriter.COLUMNS.size(), fields, "field count");
+            List<Object> row = new ArrayList<>();
+            for (String column : PgCopyChunkWriter.COLUMNS) {
+                int length = in.readInt();
+                if (length == -1) {
+                    row.add(null);
+                    continue;
+                }
+                byte[] value = in.readNBytes(length);
+                row.add(switch (column) {
+                    case "chunk_index", "chunk_count", "depth" -> new DataInputStream(new ByteArrayInputStream(value)).readInt();
+                    case "headings", "block_types", "h_path" -> binaryArray(value);
+                    case "crawled_at" -> {
+                        long micros = new DataInputStream(new ByteArrayInputStream(value)).readLong();
+                        yield Instant.ofEpochSecond(PgCopyChunkWriter.PG_EPOCH_SECONDS + Math.floorDiv(micros, 1_000_000L),
+                                Math.floorMod(micros, 1_000_000L) * 1_000L);
+                    }
+                    case "metadata" -> {
+                        assertEquals(PgCopyChunkWriter.JSONB_VERSION, value[0], "jsonb version");
+                        yield JSON.readTree(new String(value, 1, value.length - 1, StandardCharsets.UTF_8));
+                    }
+                    case "embedding" -> {
+                        DataInputStream vector = new DataInputStream(new ByteArrayInputStream(value));
+                        float[] floats = new float[vector.readShort()];
+                        vector.readShort();
+                        for (int i = 0; i < floats.length; i++) {
+                            floats[i] = vector.readFloat();
+                        }
+                        yield floats;
+                    }
+                    default -> new String(value, StandardCharsets.UTF_8);
+                });
+            }
+            rows.add(row);
+        }
+        assertEquals(0, in.available(), "bytes after trailer");
+        return rows;
+    }
+
+    private static List<String> binaryArray(byte[] value) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(value));
+        int dims = in.readInt();
+        in.readInt();
+        assertEquals(PgCopyChunkWriter.TEXT_OID, in.readInt(), "array element type");
+        if (dims == 0) return List.of();
+        int count = in.readInt();
+        assertEquals(1, in.readInt(), "array lower bound");
+        List<String> out = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int length = in.readInt();
+            out.add(length == -1 ? null : new String(in.readNBytes(length), StandardCharsets.UTF_8));
+        }
+        assertEquals(0, in.available(), "bytes after array");
+        return out;
+    }
+
+    private static List<List<Object>> decodeText(byte[] file) throws IOException {
+        String text = new String(file, StandardCharsets.UTF_8);
+        List<List<Object>> rows = new ArrayList<>();
+        for (String line : text.split("\n")) {
+            String[] fields = line.split("\t", -1);
+            assertEquals(PgCopyChunkWriter.COLUMNS.size(), fields.length, "field count");
+            List<Object> row = new ArrayList<>();
+            for (int i = 0; i < fields.length; i++) {
+                String value = fields[i].equals("\\N") ? null : unescape(fields[i]);
+                String column = PgCopyChunkWriter.COLUMNS.get(i);
+                row.add(value == null ? null : switch (column) {
+                    case "chunk_index", "chunk_count", "depth" -> Integer.parseInt(value);
+                    case "headings", "block_types", "h_path" -> textArray(value);
+                    case "crawled_at" -> Instant.parse(value);
+                    case "metadata" -> JSON.readTree(value);
+                    case "embedding" -> textVector(value);
+                    default -> value;
+                });
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static String unescape(String field) {
+        StringBuilder sb = new StringBuilder(field.length());
+        for (int i = 0; i < field.length(); i++) {
+            char ch = field.charAt(i);
+            if (ch != '\\') {
+                sb.append(ch);
+                continue;
+            }
+            char next = field.charAt(++i);
+            sb.append(switch (next) {
+                case 't' -> '\t';
+                case 'n' -> '\n';
+                case 'r' -> '\r';
+                default -> next;
+            });
+        }
+        return sb.toString();
+    }
+
+    private static List<String> textArray(String literal) {
+        assertTrue(literal.startsWith("{") && literal.endsWith("}"), "array literal " + literal);
+        List<String> out = new ArrayList<>();
+        int i = 1;
+        while (i < literal.length() - 1) {
+            if (literal.startsWith("NULL", i)) {
+                out.add(null);
+                i += 4;
+            } else {
+                if (literal.charAt(i) != '"') fail("unquoted array element in " + literal);
+                StringBuilder sb = new StringBuilder();
+                i++;
+                while (literal.charAt(i) != '"') {
+                    if (literal.charAt(i) == '\\') i++;
+                    sb.append(literal.charAt(i++));
+                }
+                out.add(sb.toString());
+                i++;
+            }
+            if (literal.charAt(i) == ',') i++;
+        }
+        return out;
+    }
+
+    private static float[] textVector(String literal) {
+        String[] parts = literal.substring(1, literal.length() - 1).split(",");
+        float[] out = new float[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            out[i] = Float.parseFloat(parts[i]);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,91 @@
+package dev.ragcrawler.crawler.parsing;
+
+import dev.ragcrawler.crawler.CliOptions;
+import dev.ragcrawler.crawler.bench.DocCorpus;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Extracts the corpus pages and a page of edge cases both from the DOM and with
+ * {@link StreamingExtractor}, with and without boilerplate stripping, and checks that title,
+ * canonical URL, links, headings, blocks and dropped counts are identical. The streaming side
+ * sniffs the charset and is fed in random slices of 1 byte to 16 KB, so tags, character references
+ * and multi-byte characters are cut at every kind of boundary.
+ */
+class StreamingExtractionTest {
+
+    /** What real pages showed to differ: line feeds opening a {@code pre}, references, non-ASCII text. */
+    private static final String EDGE_CASES = """
+            <!DOCTYPE html><html><head><meta charset="utf-8"><title>Edge &amp; cases</title>
+            <link rel="canonical" href="/docs/edge"></head><body>
+            <nav><a href="/a">A</a> | <a href="/b">B</a> | <a href="/c">C</a></nav>
+            <main><h1>Café — 日本語 😀</h1>
+            <p>Text with &lt;tags&gt;, &#x2603; and &nbsp;non-breaking spaces, and a <a href="rel/link">link</a>.</p>
+            <pre>
+            first line
+              indented &amp; escaped</pre>
+            <pre>
+
+            two line feeds</pre>
+            <listing>
+            listing</listing>
+            <ul><li>one</li><li>two <code>code</code></li><li>with code<pre>
+            x y</pre></li></ul>
+            <table><tr><th>k</th><td>v</td></tr></table></main></body></html>
+            """;
+
+    static Stream<Arguments> pages() {
+        List<Arguments> pages = new ArrayList<>();
+        for (boolean strip : new boolean[]{false, true}) {
+            for (DocCorpus.PageSize size : DocCorpus.PageSize.values()) {
+                pages.add(Arguments.of(size.name(), DocCorpus.page(size), strip));
+            }
+            pages.add(Arguments.of("EDGE_CASES", EDGE_CASES, strip));
+        }
+        return pages.stream();
+    }
+
+    @ParameterizedTest(name = "{0} stripBoilerplate={2}")
+    @MethodSource("pages")
+    void streamingMatchesDom(String name, String html, boolean strip) throws IOException {
+        byte[] body = html.getBytes(StandardCharsets.UTF_8);
+        ContentExtractor extractor = strip
+                ? new ContentExtractor(new BoilerplateFilter(CliOptions.DEFAULT_BOILERPLATE_MAX_LINK_DENSITY,
+                        CliOptions.DEFAULT_BOILERPLATE_MIN_TEXT_DENSITY))
+                : new ContentExtractor();
+        ParsedPage parsed = new HtmlParser().parsePage(body, null, DocCorpus.BASE_URL);
+        ExtractedDocument dom = extractor.extract(parsed.document(), DocCorpus.BASE_URL, DocCorpus.BASE_URL, 1);
+
+        StreamingExtractor streaming = extractor.streaming(null, DocCorpus.BASE_URL);
+        Random random = new Random(42);
+        for (int offset = 0; offset < body.length; ) {
+            int n = Math.min(body.length - offset, 1 + random.nextInt(16 * 1024));
+            streaming.feed(ByteBuffer.wrap(body, offset, n));
+            offset += n;
+        }
+        StreamedPage page = streaming.finish();
+        ExtractedDocument streamed = extractor.extract(page, DocCorpus.BASE_URL, DocCorpus.BASE_URL, 1);
+
+        assertEquals(dom.title(), streamed.title(), "title");
+        assertEquals(dom.canonicalUrl(), streamed.canonicalUrl(), "canonical URL");
+        assertEquals(parsed.links(), page.links(), "links");
+        assertEquals(dom.headings(), streamed.headings(), "headings");
+        assertEquals(dom.boilerplateBlocks(), streamed.boilerplateBlocks(), "dropped blocks");
+        assertEquals(dom.boilerplateBytes(), streamed.boilerplateBytes(), "dropped bytes");
+        assertEquals(dom.blocks().size(), streamed.blocks().size(), "block count");
+        for (int b = 0; b < dom.blocks().size(); b++) {
+            assertEquals(dom.blocks().get(b), streamed.blocks().get(b), "block " + b);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package dev.ragcrawler.crawler.parsing;
+
+import dev.ragcrawler.crawler.bench.DocCorpus;
+import dev.ragcrawler.crawler.bench.TokenizerVocab;
+import dev.ragcrawler.crawler.tokenizer.BpeTokenizer;
+import dev.ragcrawler.crawler.tokenizer.Tokenizer;
+import dev.ragcrawler.crawler.tokenizer.WordPieceTokenizer;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Chunks the SMALL and MEDIUM corpus pages by token budget with both tokenizers and several
+ * budgets, and checks that no chunk is over budget and that, apart from overlap, the chunks hold
+ * all of the page's block text in order (ignoring whitespace, as a cut may fall between a word and
+ * its punctuation).
+ */
+class TokenChunkingTest {
+
+    static Stream<Arguments> cases() {
+        int[][] budgets = {{64, 0}, {128, 32}, {512, 64}};
+        List<Arguments> cases = new ArrayList<>();
+        for (DocCorpus.PageSize size : List.of(DocCorpus.PageSize.SMALL, DocCorpus.PageSize.MEDIUM)) {
+            for (String tokenizer : List.of("wordpiece", "bpe")) {
+                for (int[] budget : budgets) {
+                    cases.add(Arguments.of(size, tokenizer, budget[0], budget[1]));
+                }
+            }
+        }
+        return cases.stream();
+    }
+
+    @ParameterizedTest(name = "{0} {1} max={2} overlap={3}")
+    @MethodSource("cases")
+    void chunksStayWithinBudgetAndCoverThePage(DocCorpus.PageSize size, String tokenizerName, int maxTokens,
+                                               int overlapTokens) throws IOException {
+        Tokenizer tokenizer = tokenizerName.equals("bpe")
+                ? BpeTokenizer.load(TokenizerVocab.bpe())
+                : WordPieceTokenizer.load(TokenizerVocab.wordPiece());
+        ExtractedDocument doc = new ContentExtractor().extract(
+                new HtmlParser().parse(DocCorpus.page(size), DocCorpus.BASE_URL),
+                DocCorpus.BASE_URL, DocCorpus.BASE_URL, 1);
+
+        List<OutputChunk> chunks = new ContentChunker(tokenizer, maxTokens, overlapTokens).chunk(doc);
+
+        assertTrue(chunks.size() > 1, "page fits in one chunk");
+        for (OutputChunk chunk : chunks) {
+            int tokens = tokenizer.count(chunk.content(), 0, chunk.content().length());
+            assertTrue(tokens <= maxTokens, "chunk " + chunk.chunkIndex() + " has " + tokens + " tokens");
+        }
+        if (overlapTokens == 0) {
+            assertEquals(nonSpace(String.join(" ", doc.blocks().stream().map(LogicalBlock::text).toList())),
+                    nonSpace(String.join(" ", chunks.stream().map(OutputChunk::content).toList())),
+                    "chunks do not add up to the page text");
+        }
+    }
+
+    static Stream<Arguments> longWordCases() {
+        List<Arguments> cases = new ArrayList<>();
+        for (String tokenizer : List.of("wordpiece", "bpe")) {
+            for (int[] budget : new int[][]{{16, 0}, {32, 8}, {64, 0}}) {
+                cases.add(Arguments.of(tokenizer, budget[0], budget[1]));
+            }
+        }
+        return cases.stream();
+    }
+
+    /**
+     * A code block of pre-tokens longer than any budget: a separator line, a minified identifier,
+     * a long nonsense word and a run of emoji outside the BMP.
+     */
+    @ParameterizedTest(name = "{0} max={1} overlap={2}")
+    @MethodSource("longWordCases")
+    void wordsOverBudgetAreCutBetweenCharacters(String tokenizerName, int maxTokens, int overlapTokens)
+            throws IOException {
+        Tokenizer tokenizer = tokenizerName.equals("bpe")
+                ? BpeTokenizer.load(TokenizerVocab.bpe())
+                : WordPieceTokenizer.load(TokenizerVocab.wordPiece());
+        StringBuilder identifier = new StringBuilder();
+        for (int i = 0; i < 400; i++) {
+            identifier.append((char) ('a' + i * 7 % 26)).append((char) ('A' + i * 11 % 26));
+        }
+        String code = "=".repeat(3000) + "\n" + "-".repeat(500) + "\nvar " + identifier + "=1;\n"
+                + "qzxwvkjqpfzgxbmwqvzkjxqpwzfgxvbqmwkzjxqpvfzg" + "\n" + "\uD83D\uDE00".repeat(300) + "\n";
+        String html = "<html><body><main><h1>Separators</h1><p>Before the listing.</p><pre><code>" + code
+                + "</code></pre><p>After the listing.</p></main></body></html>";
+        ExtractedDocument doc = new ContentExtractor().extract(
+                new HtmlParser().parse(html, DocCorpus.BASE_URL), DocCorpus.BASE_URL, DocCorpus.BASE_URL, 1);
+
+        List<OutputChunk> chunks = new ContentChunker(tokenizer, maxTokens, overlapTokens).chunk(doc);
+
+        for (OutputChunk chunk : chunks) {
+            int tokens = tokenizer.count(chunk.content(), 0, chunk.content().length());
+            assertTrue(tokens <= maxTokens, "chunk " + chunk.chunkIndex() + " has " + tokens + " tokens");
+            assertFalse(Character.isLowSurrogate(chunk.content().charAt(0)), "chunk starts inside a surrogate pair");
+        }
+        if (overlapTokens == 0) {
+            assertEquals(nonSpace(String.join(" ", doc.blocks().stream().map(LogicalBlock::text).toList())),
+                    nonSpace(String.join(" ", chunks.stream().map(OutputChunk::content).toList())),
+                    "chunks do not add up to the page text");
+        }
+    }
+
+    private static String nonSpace(String text) {
+        return text.replaceAll("\\s+", "");
+    }
+}
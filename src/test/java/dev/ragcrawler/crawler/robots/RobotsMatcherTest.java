@@ -0,0 +1,117 @@
+package dev.ragcrawler.crawler.robots;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Table of rule sets, paths and expected verdicts, taken from the examples of RFC 9309 and
+ * Google's robots.txt documentation: wildcards, end anchors, longest match, Allow winning a tie,
+ * empty rules and percent-encoding.
+ */
+class RobotsMatcherTest {
+
+    private static final boolean ALLOWED = true;
+    private static final boolean DISALLOWED = false;
+
+    static Stream<Arguments> cases() {
+        return Stream.of(
+                // Plain prefixes are case-sensitive and anchored at the start of the path.
+                row("disallow: /fish", "/fish", DISALLOWED),
+                row("disallow: /fish", "/fish.html", DISALLOWED),
+                row("disallow: /fish", "/fish/salmon.html", DISALLOWED),
+                row("disallow: /fish", "/fishheads/yummy.html", DISALLOWED),
+                row("disallow: /fish", "/fish.php?id=anything", DISALLOWED),
+                row("disallow: /fish", "/Fish.asp", ALLOWED),
+                row("disallow: /fish", "/catfish", ALLOWED),
+                row("disallow: /fish", "/?id=fish", ALLOWED),
+                row("disallow: /fish", "/desert/fish", ALLOWED),
+                // A trailing * changes nothing.
+                row("disallow: /fish*", "/fish", DISALLOWED),
+                row("disallow: /fish*", "/fishheads", DISALLOWED),
+                row("disallow: /fish*", "/catfish", ALLOWED),
+                row("disallow: /fish/", "/fish/", DISALLOWED),
+                row("disallow: /fish/", "/fish/?id=anything", DISALLOWED),
+                row("disallow: /fish/", "/fish/salmon.htm", DISALLOWED),
+                row("disallow: /fish/", "/fish", ALLOWED),
+                row("disallow: /fish/", "/fish.html", ALLOWED),
+                row("disallow: /fish/", "/animals/fish/", ALLOWED),
+                row("disallow: /fish/", "/Fish/Salmon.asp", ALLOWED),
+                // * matches any run of characters, including none and including '/'.
+                row("disallow: /*.php", "/index.php", DISALLOWED),
+                row("disallow: /*.php", "/folder/filename.php?parameters", DISALLOWED),
+                row("disallow: /*.php", "/folder/any.php.file.html", DISALLOWED),
+                row("disallow: /*.php", "/filename.php/", DISALLOWED),
+                row("disallow: /*.php", "/", ALLOWED),
+                row("disallow: /*.php", "/windows.PHP", ALLOWED),
+                row("disallow: /fish*.php", "/fish.php", DISALLOWED),
+                row("disallow: /fish*.php", "/fishheads/catfish.php?parameters", DISALLOWED),
+                row("disallow: /fish*.php", "/Fish.PHP", ALLOWED),
+                row("disallow: /a**b", "/axyb", DISALLOWED),
+                // $ anchors the pattern at the end of path and query.
+                row("disallow: /*.php$", "/filename.php", DISALLOWED),
+                row("disallow: /*.php$", "/folder/filename.php", DISALLOWED),
+                row("disallow: /*.php$", "/filename.php?parameters", ALLOWED),
+                row("disallow: /*.php$", "/filename.php/", ALLOWED),
+                row("disallow: /*.php$", "/filename.php5", ALLOWED),
+                row("disallow: /*.php$", "/windows.PHP", ALLOWED),
+                // The longest matching pattern wins; Allow wins a tie.
+                row(List.of("allow: /p", "disallow: /"), "/page", ALLOWED),
+                row(List.of("allow: /folder", "disallow: /folder"), "/folder/page", ALLOWED),
+                row(List.of("disallow: /folder", "allow: /folder"), "/folder/page", ALLOWED),
+                row(List.of("allow: /page", "disallow: /*.htm"), "/page.htm", DISALLOWED),
+                row(List.of("allow: /$", "disallow: /"), "/", ALLOWED),
+                row(List.of("allow: /$", "disallow: /"), "/page.htm", DISALLOWED),
+                row(List.of("disallow: /fish", "allow: /fish/salmon"), "/fish/salmon.html", ALLOWED),
+                row(List.of("disallow: /fish", "allow: /fish/salmon"), "/fish/trout.html", DISALLOWED),
+                row(List.of("allow: /*.html", "disallow: /priv"), "/private/a.html", ALLOWED),
+                row(List.of("allow: /*.html", "disallow: /private/x"), "/private/x.html", DISALLOWED),
+                // An empty Disallow (or Allow) is no rule at all.
+                row("disallow:", "/anything", ALLOWED),
+                row(List.of("disallow:", "disallow: /private"), "/private/a", DISALLOWED),
+                row("disallow: /", "/", DISALLOWED),
+                row(List.of(), "/", ALLOWED),
+                // Percent-encoding: non-ASCII is compared as UTF-8 escapes, escaped unreserved
+                // characters as themselves, escape hex case-insensitively; reserved escapes stay distinct.
+                row("disallow: /foo/bar/ツ", "/foo/bar/%E3%83%84", DISALLOWED),
+                row("disallow: /foo/bar/%E3%83%84", "/foo/bar/%e3%83%84", DISALLOWED),
+                row("disallow: /foo/bar/%62%61%7A", "/foo/bar/baz", DISALLOWED),
+                row("disallow: /~joe", "/%7Ejoe/index.html", DISALLOWED),
+                row("disallow: /a%2Fb", "/a/b", ALLOWED),
+                row("disallow: /a%2fb", "/a%2Fb", DISALLOWED),
+                row("disallow: /100%", "/100%", DISALLOWED),
+                // A pattern's length is that of its encoded form: "/ツ" counts as "/%E3%83%84".
+                row(List.of("disallow: /ツ", "allow: /*%84"), "/%E3%83%84", DISALLOWED),
+                row(List.of("allow: /ツ", "disallow: /*%84"), "/%E3%83%84", ALLOWED)
+        );
+    }
+
+    @ParameterizedTest(name = "{0} {1}")
+    @MethodSource("cases")
+    void matchesLikeRfc9309(List<String> rules, String pathAndQuery, boolean allowed) {
+        RobotsMatcher.Builder builder = new RobotsMatcher.Builder();
+        for (String rule : rules) {
+            int colon = rule.indexOf(':');
+            String pattern = rule.substring(colon + 1).trim();
+            if (rule.startsWith("allow")) {
+                builder.allow(pattern);
+            } else {
+                builder.disallow(pattern);
+            }
+        }
+        assertEquals(allowed, builder.build().isAllowed(pathAndQuery));
+    }
+
+    private static Arguments row(String rule, String pathAndQuery, boolean allowed) {
+        return row(List.of(rule), pathAndQuery, allowed);
+    }
+
+    private static Arguments row(List<String> rules, String pathAndQuery, boolean allowed) {
+        return Arguments.of(rules, pathAndQuery, allowed);
+    }
+}
@@ -0,0 +1,136 @@
+package dev.ragcrawler.crawler.state;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Writes a journal, cuts it mid-record as a kill would, and checks that resuming restores exactly
+ * the completed pages, their dedup hashes and the pending frontier; then appends to the resumed
+ * journal and checks that compaction on close keeps the state unchanged.
+ */
+class CrawlJournalTest {
+
+    private static final String A = "http://example.com/a";
+    private static final String B = "http://example.com/b";
+    private static final String C = "http://example.com/c";
+    private static final String D = "http://example.com/d";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void resumeRestoresCompletedPagesOnlyAndCompactionKeepsTheState() throws Exception {
+        CrawlJournal journal = CrawlJournal.open(dir, false);
+        journal.offered(new UrlFrontier.Task(A, 0));
+        journal.offered(new UrlFrontier.Task(B, 1));
+        journal.offered(new UrlFrontier.Task(C, 1));
+        journal.visited(A);
+        CrawlJournal.Page a = journal.page(A);
+        a.chunkHash("hash-a");
+        a.pageFingerprint(0xa1L);
+        a.nearDuplicateHash(0xa2L);
+        journal.completed(a);
+        journal.sitemapIngested("http://example.com/sitemap.xml");
+        journal.visited(B);
+        // In flight when killed: its records are held back and never reach the file.
+        journal.page(B).chunkHash("hash-b");
+        journal.offered(new UrlFrontier.Task(D, 2));
+        journal.visited(C);
+        CrawlJournal.Page c = journal.page(C);
+        c.chunkHash("hash-c");
+        journal.completed(c);
+        // Killed while writing C's completion: the D record made it, the C record only in part.
+        Path file = dir.resolve("journal.log");
+        String log = Files.readString(file);
+        int cut = log.lastIndexOf("C\t" + C) + 5;
+        Files.writeString(file, log.substring(0, cut));
+
+        journal = CrawlJournal.open(dir, true);
+        Restored restored = restore(journal);
+        assertEquals(List.of(A), restored.visited(A, B, C, D));
+        assertEquals(List.of("1 " + B, "1 " + C, "2 " + D), restored.pending);
+        assertTrue(restored.dedup.isDuplicate("hash-a"));
+        assertTrue(restored.dedup.isDuplicatePage(0xa1L));
+        assertTrue(restored.dedup.isNearDuplicate(0xa2L));
+        assertFalse(restored.dedup.isDuplicate("hash-b"), "hash of a page interrupted in flight");
+        assertFalse(restored.dedup.isDuplicate("hash-c"), "hash of a page whose C record was cut off");
+        assertEquals(Set.of("http://example.com/sitemap.xml"), journal.sitemapsIngested());
+        assertFalse(journal.isSitemapIngestionFinished());
+
+        // The resumed run crawls C again; its records must not be glued onto the cut-off one.
+        CrawlJournal.Page again = journal.page(C);
+        again.chunkHash("hash-c");
+        journal.completed(again);
+        journal.sitemapIngestionFinished();
+        journal.close();
+        List<String> compacted = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(Set.of("C\t" + A, "C\t" + C),
+                Set.copyOf(compacted.stream().filter(line -> line.startsWith("C\t")).toList()));
+        assertFalse(compacted.stream().anyMatch(line -> line.startsWith("V\t")), "dispatch records survive compaction");
+
+        journal = CrawlJournal.open(dir, true);
+        restored = restore(journal);
+        assertEquals(List.of(A, C), restored.visited(A, B, C, D));
+        assertEquals(List.of("1 " + B, "2 " + D), restored.pending);
+        assertTrue(restored.dedup.isDuplicate("hash-a"));
+        assertTrue(restored.dedup.isDuplicate("hash-c"));
+        assertTrue(restored.dedup.isDuplicatePage(0xa1L));
+        assertTrue(restored.dedup.isNearDuplicate(0xa2L));
+        assertFalse(restored.dedup.isDuplicate("hash-b"));
+        assertTrue(journal.isSitemapIngestionFinished());
+
+        // Compacting a compacted journal changes nothing.
+        journal.close();
+        assertEquals(compacted, Files.readAllLines(file, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void aFreshJournalDiscardsTheOldOne() throws IOException {
+        CrawlJournal journal = CrawlJournal.open(dir, false);
+        journal.offered(new UrlFrontier.Task(A, 0));
+        journal.close();
+
+        journal = CrawlJournal.open(dir, false);
+        try (UrlFrontier frontier = new UrlFrontier()) {
+            assertFalse(journal.restore(new StringVisitedUrlStore(), frontier, new ContentDeduplicator()));
+        }
+        journal.close();
+    }
+
+    private static Restored restore(CrawlJournal journal) throws IOException, InterruptedException {
+        StringVisitedUrlStore visited = new StringVisitedUrlStore();
+        ContentDeduplicator dedup = new ContentDeduplicator(true, true);
+        List<String> pending = new ArrayList<>();
+        try (UrlFrontier frontier = new UrlFrontier()) {
+            assertTrue(journal.restore(visited, frontier, dedup));
+            Optional<UrlFrontier.Task> task;
+            while ((task = frontier.take(Instant.now().plusSeconds(5), new AtomicBoolean(), t -> true)).isPresent()) {
+                pending.add(task.get().depth() + " " + task.get().normalizedUrl());
+                frontier.complete(task.get());
+            }
+        }
+        return new Restored(visited, pending, dedup);
+    }
+
+    private record Restored(VisitedUrlStore visitedStore, List<String> pending, ContentDeduplicator dedup) {
+        List<String> visited(String... urls) {
+            return Arrays.stream(urls).filter(visitedStore::isVisited).toList();
+        }
+    }
+}